@@ -0,0 +1,208 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.model.entity.AuthorEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.CategoryEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.entity.ShelfEntity;
+import com.adityachandel.booklore.model.enums.BookFileType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generates detached book entities with realistic metadata for the benchmarks. The output depends only on the size and
+ * seed, so runs before and after a change measure the same library.
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 42L;
+
+    private static final String[] WORDS = {
+            "the", "shadow", "of", "winter", "king", "river", "glass", "empire", "last", "stars", "house", "silent",
+            "night", "iron", "garden", "city", "broken", "crown", "memory", "sea", "fire", "dark", "light", "road",
+            "storm", "wolf", "song", "hidden", "world", "stone", "machine", "ghost", "paper", "golden", "long", "war"
+    };
+    private static final String[] GENRES = {
+            "Fantasy", "Science Fiction", "Mystery", "Thriller", "Romance", "History", "Biography", "Horror",
+            "Poetry", "Philosophy", "Travel", "Comics", "Young Adult", "Classics", "Non-Fiction", "Adventure"
+    };
+    private static final String[] LANGUAGES = {"en", "en", "en", "de", "fr", "es", "it", "ja"};
+    private static final BookFileType[] TYPES = {BookFileType.EPUB, BookFileType.EPUB, BookFileType.PDF, BookFileType.CBX};
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param size number of books; authors, series and shelves scale with it so the overlap between books stays similar
+     */
+    public static List<BookEntity> books(int size, long seed) {
+        Random random = new Random(seed);
+        int libraryCount = Math.max(1, size / 5000);
+        List<LibraryEntity> libraries = new ArrayList<>();
+        for (int i = 0; i < libraryCount; i++) {
+            LibraryEntity library = LibraryEntity.builder()
+                    .id((long) i + 1)
+                    .name("Library " + (i + 1))
+                    .libraryPaths(new ArrayList<>())
+                    .build();
+            LibraryPathEntity path = LibraryPathEntity.builder()
+                    .id((long) i + 1)
+                    .library(library)
+                    .path("/books/library-" + (i + 1))
+                    .build();
+            library.getLibraryPaths().add(path);
+            libraries.add(library);
+        }
+
+        List<AuthorEntity> authors = new ArrayList<>();
+        for (int i = 0; i < Math.max(4, size / 8); i++) {
+            authors.add(AuthorEntity.builder()
+                    .id((long) i + 1)
+                    .name(capitalize(word(random)) + " " + capitalize(word(random)) + " " + i)
+                    .bookMetadataEntityList(new ArrayList<>())
+                    .build());
+        }
+        List<CategoryEntity> categories = new ArrayList<>();
+        for (int i = 0; i < GENRES.length; i++) {
+            categories.add(CategoryEntity.builder()
+                    .id((long) i + 1)
+                    .name(GENRES[i])
+                    .bookMetadataEntityList(new HashSet<>())
+                    .build());
+        }
+        List<ShelfEntity> shelves = new ArrayList<>();
+        for (int i = 0; i < Math.max(2, size / 500); i++) {
+            shelves.add(ShelfEntity.builder()
+                    .id((long) i + 1)
+                    .name("Shelf " + (i + 1))
+                    .bookEntities(new HashSet<>())
+                    .build());
+        }
+        int seriesCount = Math.max(1, size / 10);
+
+        List<BookEntity> books = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long id = i + 1;
+            LibraryEntity library = libraries.get(i % libraryCount);
+            BookFileType type = TYPES[random.nextInt(TYPES.length)];
+            String title = title(random);
+
+            BookEntity book = BookEntity.builder()
+                    .id(id)
+                    .library(library)
+                    .libraryPath(library.getLibraryPaths().getFirst())
+                    .bookType(type)
+                    .fileSubPath(capitalize(word(random)) + "/" + capitalize(word(random)))
+                    .fileName(title + " - " + id + "." + extension(type))
+                    .fileSizeKb(200L + random.nextInt(50_000))
+                    .addedOn(Instant.parse("2024-01-01T00:00:00Z").plusSeconds(id * 3600))
+                    .currentHash(Long.toHexString(random.nextLong()))
+                    .deleted(false)
+                    .shelves(pick(random, shelves, random.nextInt(3)))
+                    .additionalFiles(new ArrayList<>())
+                    .build();
+
+            BookMetadataEntity metadata = BookMetadataEntity.builder()
+                    .bookId(id)
+                    .title(title)
+                    .subtitle(random.nextInt(4) == 0 ? title(random) : null)
+                    .publisher(capitalize(word(random)) + " Press")
+                    .publishedDate(LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1 + random.nextInt(28)))
+                    .description(description(random))
+                    .seriesName(random.nextInt(3) == 0 ? "Series " + random.nextInt(seriesCount) : null)
+                    .seriesNumber(random.nextInt(3) == 0 ? (float) (1 + random.nextInt(12)) : null)
+                    .isbn13("978" + String.format("%010d", Math.floorMod(random.nextLong(), 10_000_000_000L)))
+                    .pageCount(80 + random.nextInt(900))
+                    .language(LANGUAGES[random.nextInt(LANGUAGES.length)])
+                    .rating(random.nextInt(5) == 0 ? null : 1 + random.nextInt(400) / 100.0)
+                    .goodreadsRating(random.nextInt(400) / 100.0 + 1)
+                    .goodreadsReviewCount(random.nextInt(100_000))
+                    .coverUpdatedOn(Instant.parse("2024-06-01T00:00:00Z").plusSeconds(id))
+                    .authors(pick(random, authors, 1 + random.nextInt(3)))
+                    .categories(pick(random, categories, 1 + random.nextInt(4)))
+                    .reviews(new HashSet<>())
+                    .book(book)
+                    .build();
+            book.setMetadata(metadata);
+            books.add(book);
+        }
+        return books;
+    }
+
+    /**
+     * Metadata as a provider would return it for {@code existing}: mostly the same values, with roughly one field in
+     * four changed so the comparison cannot stop early.
+     */
+    public static BookMetadata fetchedMetadata(BookMetadataEntity existing, Random random) {
+        return BookMetadata.builder()
+                .bookId(existing.getBookId())
+                .title(random.nextInt(4) == 0 ? existing.getTitle() + " (Revised)" : existing.getTitle())
+                .subtitle(existing.getSubtitle())
+                .publisher(existing.getPublisher())
+                .publishedDate(existing.getPublishedDate())
+                .description(random.nextInt(4) == 0 ? description(random) : existing.getDescription())
+                .seriesName(existing.getSeriesName())
+                .seriesNumber(existing.getSeriesNumber())
+                .isbn13(existing.getIsbn13())
+                .pageCount(random.nextInt(4) == 0 ? existing.getPageCount() + 1 : existing.getPageCount())
+                .language(existing.getLanguage())
+                .goodreadsRating(existing.getGoodreadsRating())
+                .goodreadsReviewCount(existing.getGoodreadsReviewCount() + random.nextInt(10))
+                .authors(existing.getAuthors().stream().map(AuthorEntity::getName).collect(Collectors.toCollection(LinkedHashSet::new)))
+                .categories(existing.getCategories().stream().map(CategoryEntity::getName).collect(Collectors.toCollection(LinkedHashSet::new)))
+                .build();
+    }
+
+    private static <T> Set<T> pick(Random random, List<T> values, int count) {
+        Set<T> picked = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            picked.add(values.get(random.nextInt(values.size())));
+        }
+        return picked;
+    }
+
+    private static String title(Random random) {
+        int words = 1 + random.nextInt(5);
+        StringBuilder title = new StringBuilder(capitalize(word(random)));
+        for (int i = 1; i < words; i++) {
+            title.append(' ').append(word(random));
+        }
+        return title.toString();
+    }
+
+    private static String description(Random random) {
+        StringBuilder description = new StringBuilder();
+        int words = 40 + random.nextInt(160);
+        for (int i = 0; i < words; i++) {
+            description.append(i == 0 ? "" : " ").append(word(random));
+        }
+        return description.append('.').toString();
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String extension(BookFileType type) {
+        return switch (type) {
+            case EPUB -> "epub";
+            case PDF -> "pdf";
+            case CBX -> "cbz";
+        };
+    }
+}
@@ -0,0 +1,84 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.mapper.AdditionalFileMapperImpl;
+import com.adityachandel.booklore.mapper.AuthorMapperImpl;
+import com.adityachandel.booklore.mapper.BookMapper;
+import com.adityachandel.booklore.mapper.BookMapperImpl;
+import com.adityachandel.booklore.mapper.BookMetadataMapperImpl;
+import com.adityachandel.booklore.mapper.CategoryMapperImpl;
+import com.adityachandel.booklore.mapper.ShelfMapperImpl;
+import com.adityachandel.booklore.mapper.v2.BookMapperV2;
+import com.adityachandel.booklore.mapper.v2.BookMapperV2Impl;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maps a whole library of entities to DTOs with the generated MapStruct mappers, as the book list endpoints do. The
+ * mappers are wired by a minimal Spring context so the nested mappers they use are the real ones.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookMapperBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    private AnnotationConfigApplicationContext context;
+    private BookMapper bookMapper;
+    private BookMapperV2 bookMapperV2;
+    private List<BookEntity> books;
+
+    @Setup
+    public void setUp() {
+        context = mapperContext();
+        bookMapper = context.getBean(BookMapper.class);
+        bookMapperV2 = context.getBean(BookMapperV2.class);
+        books = BenchmarkData.books(size, BenchmarkData.SEED);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    static AnnotationConfigApplicationContext mapperContext() {
+        return new AnnotationConfigApplicationContext(
+                BookMapperImpl.class, BookMetadataMapperImpl.class, AuthorMapperImpl.class, CategoryMapperImpl.class,
+                ShelfMapperImpl.class, AdditionalFileMapperImpl.class, BookMapperV2Impl.class);
+    }
+
+    @Benchmark
+    public void toBook(Blackhole blackhole) {
+        for (BookEntity book : books) {
+            blackhole.consume(bookMapper.toBook(book));
+        }
+    }
+
+    @Benchmark
+    public void toBookWithoutDescription(Blackhole blackhole) {
+        for (BookEntity book : books) {
+            blackhole.consume(bookMapper.toBookWithDescription(book, false));
+        }
+    }
+
+    @Benchmark
+    public void toDtoV2(Blackhole blackhole) {
+        for (BookEntity book : books) {
+            blackhole.consume(bookMapperV2.toDTO(book));
+        }
+    }
+}
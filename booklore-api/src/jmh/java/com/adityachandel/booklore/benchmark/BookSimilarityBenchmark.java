@@ -0,0 +1,54 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.service.recommender.BookSimilarityService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scores one book against every other book in the library, which is what building the recommendations of a single
+ * book costs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BookSimilarityBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    private final BookSimilarityService similarityService = new BookSimilarityService();
+    private List<BookEntity> books;
+    private BookEntity target;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(size, BenchmarkData.SEED);
+        target = books.get(books.size() / 2);
+    }
+
+    @Benchmark
+    public void scoreAgainstLibrary(Blackhole blackhole) {
+        for (BookEntity candidate : books) {
+            if (candidate != target) {
+                blackhole.consume(similarityService.calculateSimilarity(target, candidate));
+            }
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public double scorePair() {
+        return similarityService.calculateSimilarity(target, books.getFirst());
+    }
+}
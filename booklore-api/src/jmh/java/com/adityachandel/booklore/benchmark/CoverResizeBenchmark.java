@@ -0,0 +1,57 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.util.FileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scales a generated cover down to the thumbnail size with {@link FileService#resizeImage}, the step every cover
+ * extraction and upload goes through.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CoverResizeBenchmark {
+
+    @Param({"600", "1600", "3000"})
+    int sourceWidth;
+
+    private FileService fileService;
+    private BufferedImage cover;
+
+    @Setup
+    public void setUp() {
+        fileService = new FileService(new AppProperties(), null, new SimpleMeterRegistry());
+        int height = sourceWidth * 3 / 2;
+        cover = new BufferedImage(sourceWidth, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = cover.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.DARK_GRAY, sourceWidth, height, Color.ORANGE));
+        graphics.fillRect(0, 0, sourceWidth, height);
+        // Noise keeps the scaler from taking shortcuts on flat regions, as real artwork would.
+        Random random = new Random(BenchmarkData.SEED);
+        for (int i = 0; i < sourceWidth * height / 50; i++) {
+            cover.setRGB(random.nextInt(sourceWidth), random.nextInt(height), random.nextInt(0xFFFFFF));
+        }
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage resizeToThumbnail() {
+        return fileService.resizeImage(cover, 250, 350);
+    }
+}
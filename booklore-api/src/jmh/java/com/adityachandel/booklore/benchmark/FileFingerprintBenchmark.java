@@ -0,0 +1,62 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.service.FileFingerprint;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fingerprints a file through {@link FileFingerprint#generateHash(Path)} and through the incremental hasher used by
+ * chunked uploads. The file stays in the page cache, so this measures hashing and positional reads rather than disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FileFingerprintBenchmark {
+
+    @Param({"64", "1024", "65536"})
+    int fileSizeKb;
+
+    private Path file;
+    private byte[] content;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        content = new byte[fileSizeKb * 1024];
+        new Random(BenchmarkData.SEED).nextBytes(content);
+        file = Files.createTempFile("booklore-fingerprint-", ".epub");
+        Files.write(file, content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String generateHash() {
+        return FileFingerprint.generateHash(file);
+    }
+
+    @Benchmark
+    public String incremental() {
+        FileFingerprint.Incremental incremental = new FileFingerprint.Incremental(content.length);
+        for (int offset = 0; offset < content.length; offset += 64 * 1024) {
+            incremental.update(content, offset, Math.min(64 * 1024, content.length - offset));
+        }
+        return incremental.finish();
+    }
+}
@@ -0,0 +1,63 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.model.MetadataClearFlags;
+import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.util.MetadataChangeDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares freshly fetched metadata with the stored metadata of every book, as a library-wide metadata refresh does
+ * before deciding which books to write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MetadataChangeDetectorBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    private final MetadataClearFlags clearFlags = new MetadataClearFlags();
+    private List<BookMetadataEntity> existing;
+    private List<BookMetadata> fetched;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        existing = new ArrayList<>(size);
+        fetched = new ArrayList<>(size);
+        for (BookEntity book : BenchmarkData.books(size, BenchmarkData.SEED)) {
+            existing.add(book.getMetadata());
+            fetched.add(BenchmarkData.fetchedMetadata(book.getMetadata(), random));
+        }
+    }
+
+    @Benchmark
+    public void isDifferent(Blackhole blackhole) {
+        for (int i = 0; i < existing.size(); i++) {
+            blackhole.consume(MetadataChangeDetector.isDifferent(fetched.get(i), existing.get(i), clearFlags));
+        }
+    }
+
+    @Benchmark
+    public void hasValueChanges(Blackhole blackhole) {
+        for (int i = 0; i < existing.size(); i++) {
+            blackhole.consume(MetadataChangeDetector.hasValueChanges(fetched.get(i), existing.get(i), clearFlags));
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.config.security.service.AuthenticationService;
+import com.adityachandel.booklore.config.security.userdetails.OpdsUserDetails;
+import com.adityachandel.booklore.mapper.BookMapper;
+import com.adityachandel.booklore.mapper.custom.BookLoreUserTransformer;
+import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.OpdsUser;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.repository.UserRepository;
+import com.adityachandel.booklore.service.BookQueryService;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
+import com.adityachandel.booklore.service.opds.OpdsService;
+import com.adityachandel.booklore.service.opds.OpdsV2FeedRequest;
+import com.adityachandel.booklore.service.opds.OpdsV2FeedWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Renders OPDS feeds from an in-memory library. The repositories and services behind {@link OpdsService} and
+ * {@link OpdsV2FeedWriter} are stub-only mocks answering from the generated books, so the numbers cover feed building
+ * and serialization but not the database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OpdsFeedBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    @Param({"50", "500"})
+    int pageSize;
+
+    private OpdsService opdsService;
+    private OpdsV2FeedWriter feedWriter;
+    private MockHttpServletRequest v1Request;
+
+    @Setup
+    public void setUp() {
+        List<BookEntity> books = BenchmarkData.books(size, BenchmarkData.SEED);
+        Map<Long, BookEntity> booksById = books.stream().collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+        List<Long> bookIds = books.stream().map(BookEntity::getId).toList();
+        List<LibraryEntity> libraries = books.stream().map(BookEntity::getLibrary).distinct().toList();
+
+        List<Book> bookDtos;
+        try (AnnotationConfigApplicationContext mappers = BookMapperBenchmark.mapperContext()) {
+            BookMapper bookMapper = mappers.getBean(BookMapper.class);
+            bookDtos = books.stream().map(bookMapper::toBook).toList();
+        }
+
+        BookRepository bookRepository = stub(BookRepository.class);
+        when(bookRepository.findPagedBookIds(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(0);
+            int from = (int) Math.min(pageable.getOffset(), bookIds.size());
+            int to = Math.min(from + pageable.getPageSize(), bookIds.size());
+            return new PageImpl<>(bookIds.subList(from, to), pageable, bookIds.size());
+        });
+        when(bookRepository.findAllForFeedByIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = invocation.getArgument(0);
+            List<BookEntity> found = new ArrayList<>(ids.size());
+            ids.forEach(id -> found.add(booksById.get(id)));
+            return found;
+        });
+        LibraryRepository libraryRepository = stub(LibraryRepository.class);
+        when(libraryRepository.findAll()).thenReturn(libraries);
+
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        MagicShelfBookService magicShelfBookService = stub(MagicShelfBookService.class);
+        feedWriter = new OpdsV2FeedWriter(bookRepository, libraryRepository, objectMapper, magicShelfBookService);
+
+        BookQueryService bookQueryService = stub(BookQueryService.class);
+        when(bookQueryService.getAllBooks(true)).thenReturn(bookDtos);
+        OpdsUser legacyUser = new OpdsUser();
+        legacyUser.setUsername("benchmark");
+        AuthenticationService authenticationService = stub(AuthenticationService.class);
+        when(authenticationService.getOpdsUser()).thenReturn(new OpdsUserDetails(null, legacyUser));
+        opdsService = new OpdsService(bookQueryService, authenticationService, stub(UserRepository.class),
+                stub(BookLoreUserTransformer.class), feedWriter, magicShelfBookService);
+
+        v1Request = new MockHttpServletRequest("GET", "/api/v1/opds/catalog");
+        v1Request.addHeader("Accept", "application/atom+xml");
+    }
+
+    /**
+     * The OPDS 1.2 catalog, which lists every book of the library in a single document.
+     */
+    @Benchmark
+    public String catalogV1() {
+        return opdsService.generateCatalogFeed(v1Request);
+    }
+
+    /**
+     * The first page of the OPDS 2.0 catalog, including navigation and facets.
+     */
+    @Benchmark
+    public long catalogV2FirstPage() throws IOException {
+        return writeV2(1);
+    }
+
+    /**
+     * The last page of the OPDS 2.0 catalog, which has no navigation and starts deep in the id list.
+     */
+    @Benchmark
+    public long catalogV2LastPage() throws IOException {
+        return writeV2(Math.max(1, (size + pageSize - 1) / pageSize));
+    }
+
+    private long writeV2(int page) throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        feedWriter.writeFeed(new OpdsV2FeedRequest("/api/v2/opds/", null, null, null, null, null, page, pageSize), out);
+        return out.count;
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    /**
+     * Discards the feed while counting its size, so the benchmark does not measure buffer growth.
+     */
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
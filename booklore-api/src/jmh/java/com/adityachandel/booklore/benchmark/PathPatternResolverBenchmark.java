@@ -0,0 +1,48 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.util.PathPatternResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the target path of every book in a library, as a bulk file move does before touching the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PathPatternResolverBenchmark {
+
+    @Param({"1000", "10000"})
+    int size;
+
+    @Param({
+            "{authors}/<{series}/><{seriesIndex}. >{title}< - {authors}>< ({year})>",
+            "{title}"
+    })
+    String pattern;
+
+    private List<BookEntity> books;
+
+    @Setup
+    public void setUp() {
+        books = BenchmarkData.books(size, BenchmarkData.SEED);
+    }
+
+    @Benchmark
+    public void resolveLibrary(Blackhole blackhole) {
+        for (BookEntity book : books) {
+            blackhole.consume(PathPatternResolver.resolvePattern(book, pattern));
+        }
+    }
+}
@@ -5,6 +5,9 @@ import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.HashMap;
+import java.util.Map;
+
 @Component
 @ConfigurationProperties(prefix = "app")
 @Getter
@@ -15,6 +18,15 @@ public class AppProperties {
     private String version;
     private RemoteAuth remoteAuth;
     private Swagger swagger = new Swagger();
+    private Watcher watcher = new Watcher();
+    private Rescan rescan = new Rescan();
+    private Progress progress = new Progress();
+    private Metrics metrics = new Metrics();
+    private Bookdrop bookdrop = new Bookdrop();
+    private Kobo kobo = new Kobo();
+    private Upload upload = new Upload();
+    private FileMove fileMove = new FileMove();
+    private Email email = new Email();
 
     @Getter
     @Setter
@@ -33,4 +45,87 @@ public class AppProperties {
     public static class Swagger {
         private boolean enabled = true;
     }
+
+    @Getter
+    @Setter
+    public static class Watcher {
+        private long quietPeriodMs = 1500;
+        private int workerThreads = 4;
+        private int maxBatchSize = 100;
+        private long overflowResyncDelayMs = 5000;
+        private long overflowResyncMaxWaitMs = 60000;
+        private long pollIntervalMs = 30000;
+        private long pollMaxIntervalMs = 600000;
+        private double pollJitter = 0.2;
+        private int registrationThreads = 4;
+        private long suppressionWindowMs = 5000;
+    }
+
+    @Getter
+    @Setter
+    public static class Rescan {
+        private int maxConcurrentLibraries = 4;
+        private int maxConcurrentPerFileStore = 1;
+        private int maxConcurrentDuringMetadataRefresh = 1;
+        private long staggerSeconds = 30;
+        private long timeBudgetMinutes = 240;
+        private int slicesPerLibrary = 20;
+        private Map<Long, Integer> libraryPriority = new HashMap<>();
+    }
+
+    @Getter
+    @Setter
+    public static class Progress {
+        private long flushIntervalMs = 2000;
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+        private boolean prometheusPublic = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Bookdrop {
+        private int extractionThreads = 0;
+        private long enrichmentIntervalMs = 1000;
+        private long progressIntervalMs = 2000;
+    }
+
+    @Getter
+    @Setter
+    public static class Kobo {
+        private int syncPageMin = 5;
+        private int syncPageMax = 100;
+        private int syncPayloadBudgetBytes = 524288;
+        private int metadataCacheSize = 5000;
+        private int changeLogRetentionDays = 90;
+    }
+
+    @Getter
+    @Setter
+    public static class Upload {
+        private int workerThreads = 4;
+        private int queueCapacity = 16;
+        private long expiryHours = 24;
+    }
+
+    @Getter
+    @Setter
+    public static class FileMove {
+        private int copyThreads = 2;
+    }
+
+    @Getter
+    @Setter
+    public static class Email {
+        private int workerThreads = 2;
+        private long pollIntervalMs = 30000;
+        private int maxAttempts = 5;
+        private long retryBaseDelaySeconds = 60;
+        private int batchMaxBooks = 1;
+        private int maxMessageMb = 25;
+        private int retentionDays = 30;
+    }
 }
@@ -12,14 +12,15 @@ public class BookParserConfig {
 
     @Bean
     public Map<MetadataProvider, BookParser> parserMap(GoogleParser googleParser, AmazonBookParser amazonBookParser,
-                                                       GoodReadsParser goodReadsParser, HardcoverParser hardcoverParser, ComicvineBookParser comicvineBookParser, DoubanBookParser doubanBookParser) {
+                                                       GoodReadsParser goodReadsParser, HardcoverParser hardcoverParser, ComicvineBookParser comicvineBookParser, DoubanBookParser doubanBookParser,
+                                                       MetadataProviderMetrics metrics) {
         return Map.of(
-                MetadataProvider.Amazon, amazonBookParser,
-                MetadataProvider.GoodReads, goodReadsParser,
-                MetadataProvider.Google, googleParser,
-                MetadataProvider.Hardcover, hardcoverParser,
-                MetadataProvider.Comicvine, comicvineBookParser,
-                MetadataProvider.Douban, doubanBookParser
+                MetadataProvider.Amazon, metrics.instrument(MetadataProvider.Amazon, amazonBookParser),
+                MetadataProvider.GoodReads, metrics.instrument(MetadataProvider.GoodReads, goodReadsParser),
+                MetadataProvider.Google, metrics.instrument(MetadataProvider.Google, googleParser),
+                MetadataProvider.Hardcover, metrics.instrument(MetadataProvider.Hardcover, hardcoverParser),
+                MetadataProvider.Comicvine, metrics.instrument(MetadataProvider.Comicvine, comicvineBookParser),
+                MetadataProvider.Douban, metrics.instrument(MetadataProvider.Douban, doubanBookParser)
         );
     }
 }
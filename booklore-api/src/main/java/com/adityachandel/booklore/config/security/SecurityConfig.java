@@ -47,12 +47,17 @@ public class SecurityConfig {
             "/v3/api-docs/**"
     };
 
+    private static final String[] METRICS_ENDPOINTS = {
+            "/actuator/prometheus"     // Prometheus scrape endpoint, public only when app.metrics.prometheus-public is set
+    };
+
     private static final String[] COMMON_PUBLIC_ENDPOINTS = {
             "/ws/**",                  // WebSocket connections (auth handled in WebSocketAuthInterceptor)
             "/kobo/**",                // Kobo API requests (auth handled in KoboAuthFilter)
             "/api/v1/auth/**",         // Login and token refresh endpoints (must remain public)
             "/api/v1/public-settings", // Public endpoint for checking OIDC or other app settings
-            "/api/v1/setup/**"         // Setup wizard endpoints (must remain accessible before initial setup)
+            "/api/v1/setup/**",        // Setup wizard endpoints (must remain accessible before initial setup)
+            "/actuator/health/**"      // Health and readiness probes (details only for authenticated users)
     };
 
     private static final String[] COMMON_UNAUTHENTICATED_ENDPOINTS = {
@@ -136,6 +141,9 @@ public class SecurityConfig {
         if (appProperties.getSwagger().isEnabled()) {
             publicEndpoints.addAll(Arrays.asList(SWAGGER_ENDPOINTS));
         }
+        if (appProperties.getMetrics().isPrometheusPublic()) {
+            publicEndpoints.addAll(Arrays.asList(METRICS_ENDPOINTS));
+        }
         http
                 .cors(cors -> cors.configurationSource(corsConfigurationSource()))
                 .csrf(AbstractHttpConfigurer::disable)
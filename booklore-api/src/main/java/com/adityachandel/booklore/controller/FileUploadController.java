@@ -1,15 +1,18 @@
 package com.adityachandel.booklore.controller;
 
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.request.ResumableUploadRequest;
+import com.adityachandel.booklore.model.dto.response.ResumableUploadStatus;
 import com.adityachandel.booklore.service.upload.FileUploadService;
+import com.adityachandel.booklore.service.upload.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.AllArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
-import org.springframework.web.bind.annotation.PostMapping;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.io.IOException;
 
@@ -18,7 +21,11 @@ import java.io.IOException;
 @RequestMapping("/api/v1/files")
 public class FileUploadController {
 
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
     private final FileUploadService fileUploadService;
+    private final ResumableUploadService resumableUploadService;
 
     @PreAuthorize("@securityUtil.isAdmin() or @securityUtil.canUpload()")
     @PostMapping(value = "/upload", consumes = "multipart/form-data")
@@ -37,4 +44,41 @@ public class FileUploadController {
         }
         return ResponseEntity.ok(fileUploadService.uploadFileBookDrop(file));
     }
+
+    @PreAuthorize("@securityUtil.isAdmin() or @securityUtil.canUpload()")
+    @PostMapping("/uploads")
+    public ResponseEntity<ResumableUploadStatus> createUpload(@RequestBody ResumableUploadRequest request) {
+        ResumableUploadStatus status = resumableUploadService.create(request);
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .location(ServletUriComponentsBuilder.fromCurrentRequest().path("/{id}").buildAndExpand(status.getId()).toUri())
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(status.getLength()))
+                .body(status);
+    }
+
+    @PreAuthorize("@securityUtil.isAdmin() or @securityUtil.canUpload()")
+    @RequestMapping(value = "/uploads/{id}", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public ResponseEntity<ResumableUploadStatus> getUpload(@PathVariable String id) {
+        ResumableUploadStatus status = resumableUploadService.getStatus(id);
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(status.getLength()))
+                .body(status);
+    }
+
+    @PreAuthorize("@securityUtil.isAdmin() or @securityUtil.canUpload()")
+    @PatchMapping(value = "/uploads/{id}", consumes = {"application/offset+octet-stream", "application/octet-stream"})
+    public ResponseEntity<ResumableUploadStatus> appendUpload(@PathVariable String id, @RequestHeader(UPLOAD_OFFSET) long offset, HttpServletRequest request) throws IOException {
+        ResumableUploadStatus status = resumableUploadService.append(id, offset, request.getInputStream());
+        return ResponseEntity.ok()
+                .header(UPLOAD_OFFSET, String.valueOf(status.getOffset()))
+                .body(status);
+    }
+
+    @PreAuthorize("@securityUtil.isAdmin() or @securityUtil.canUpload()")
+    @DeleteMapping("/uploads/{id}")
+    public ResponseEntity<Void> cancelUpload(@PathVariable String id) {
+        resumableUploadService.cancel(id);
+        return ResponseEntity.noContent().build();
+    }
 }
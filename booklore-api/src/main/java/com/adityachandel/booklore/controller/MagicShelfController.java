@@ -1,12 +1,17 @@
 package com.adityachandel.booklore.controller;
 
+import com.adityachandel.booklore.model.dto.Book;
 import com.adityachandel.booklore.model.dto.MagicShelf;
 import com.adityachandel.booklore.service.MagicShelfService;
 import jakarta.validation.Valid;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/magic-shelves")
@@ -28,6 +33,23 @@ public class MagicShelfController {
         return ResponseEntity.ok(magicShelfService.getShelf(id));
     }
 
+    @GetMapping("/{id}/books")
+    public ResponseEntity<Page<Book>> getShelfBooks(@PathVariable Long id,
+                                                    @PageableDefault(size = 50) Pageable pageable,
+                                                    @RequestParam(required = false, defaultValue = "false") boolean withDescription) {
+        return ResponseEntity.ok(magicShelfService.getShelfBooks(id, pageable, withDescription));
+    }
+
+    @GetMapping("/{id}/book-ids")
+    public ResponseEntity<List<Long>> getShelfBookIds(@PathVariable Long id) {
+        return ResponseEntity.ok(magicShelfService.getShelfBookIds(id));
+    }
+
+    @GetMapping("/counts")
+    public ResponseEntity<Map<Long, Long>> getShelfBookCounts() {
+        return ResponseEntity.ok(magicShelfService.getShelfBookCounts());
+    }
+
     @PostMapping
     public ResponseEntity<MagicShelf> createUpdateShelf(@Valid @RequestBody MagicShelf shelf) {
         return ResponseEntity.ok(magicShelfService.createOrUpdateShelf(shelf));
@@ -2,46 +2,67 @@ package com.adityachandel.booklore.controller;
 
 import com.adityachandel.booklore.service.BookService;
 import com.adityachandel.booklore.service.opds.OpdsService;
+import com.adityachandel.booklore.service.opds.OpdsV2FeedWriter;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping({"/api/v1/opds", "/api/v2/opds"})
 @RequiredArgsConstructor
 public class OpdsController {
 
+    private static final MediaType OPDS_V1_MEDIA_TYPE = MediaType.parseMediaType("application/atom+xml;profile=opds-catalog");
+    private static final MediaType OPDS_V2_MEDIA_TYPE = MediaType.parseMediaType(OpdsV2FeedWriter.OPDS_JSON);
+
     private final OpdsService opdsService;
     private final BookService bookService;
 
-    @GetMapping(value = "/catalog", produces = "application/atom+xml;profile=opds-catalog")
-    public ResponseEntity<String> getCatalogFeed(HttpServletRequest request) {
-        String feed = opdsService.generateCatalogFeed(request);
+    @GetMapping(value = "/catalog", produces = {"application/atom+xml;profile=opds-catalog", OpdsV2FeedWriter.OPDS_JSON})
+    public ResponseEntity<StreamingResponseBody> getCatalogFeed(HttpServletRequest request,
+                                                                @RequestParam(required = false) Long libraryId,
+                                                                @RequestParam(required = false) Long magicShelfId,
+                                                                @RequestParam(defaultValue = "1") int page,
+                                                                @RequestParam(defaultValue = "50") int size) {
+        if (opdsService.isOpdsV2Request(request)) {
+            return ResponseEntity.ok()
+                    .contentType(OPDS_V2_MEDIA_TYPE)
+                    .body(opdsService.streamOpdsV2Feed(request, null, libraryId, magicShelfId, page, size));
+        }
+        String feed = opdsService.generateCatalogFeed(request, magicShelfId);
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/atom+xml;profile=opds-catalog"))
-                .body(feed);
+                .contentType(OPDS_V1_MEDIA_TYPE)
+                .body(outputStream -> outputStream.write(feed.getBytes(StandardCharsets.UTF_8)));
     }
-   
-    @GetMapping(value = "/search", produces = "application/atom+xml;profile=opds-catalog")
-    public ResponseEntity<String> search(HttpServletRequest request) {
+
+    @GetMapping(value = "/search", produces = {"application/atom+xml;profile=opds-catalog", OpdsV2FeedWriter.OPDS_JSON})
+    public ResponseEntity<StreamingResponseBody> search(HttpServletRequest request,
+                                                        @RequestParam(required = false) Long libraryId,
+                                                        @RequestParam(defaultValue = "1") int page,
+                                                        @RequestParam(defaultValue = "50") int size) {
+        if (opdsService.isOpdsV2Request(request)) {
+            return ResponseEntity.ok()
+                    .contentType(OPDS_V2_MEDIA_TYPE)
+                    .body(opdsService.streamOpdsV2Feed(request, request.getParameter("q"), libraryId, null, page, size));
+        }
         String feed = opdsService.generateSearchResults(request, request.getParameter("q"));
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/atom+xml;profile=opds-catalog"))
-                .body(feed);
+                .contentType(OPDS_V1_MEDIA_TYPE)
+                .body(outputStream -> outputStream.write(feed.getBytes(StandardCharsets.UTF_8)));
     }
 
-    @GetMapping(value = "/search.opds", produces = "application/atom+xml;profile=opds-catalog")
+    @GetMapping(value = "/search.opds", produces = {"application/atom+xml;profile=opds-catalog", OpdsV2FeedWriter.OPDS_JSON})
     public ResponseEntity<String> searchDescription(HttpServletRequest request) {
         String feed = opdsService.generateSearchDescription(request);
         return ResponseEntity.ok()
-                .contentType(MediaType.parseMediaType("application/atom+xml;profile=opds-catalog"))
+                .contentType(opdsService.isOpdsV2Request(request) ? OPDS_V2_MEDIA_TYPE : OPDS_V1_MEDIA_TYPE)
                 .body(feed);
     }
 
@@ -59,4 +80,13 @@ public class OpdsController {
                 .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + coverImage.getFilename() + "\"")
                 .body(coverImage);
     }
+
+    @GetMapping("/{bookId}/cover/full")
+    public ResponseEntity<Resource> getBookFullCover(@PathVariable long bookId) {
+        Resource coverImage = bookService.getBookCover(bookId);
+        return ResponseEntity.ok()
+                .contentType(MediaType.IMAGE_JPEG)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + coverImage.getFilename() + "\"")
+                .body(coverImage);
+    }
 }
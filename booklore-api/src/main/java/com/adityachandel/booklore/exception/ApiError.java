@@ -51,6 +51,11 @@ public enum ApiError {
     UNSUPPORTED_FILE_TYPE(HttpStatus.UNSUPPORTED_MEDIA_TYPE, "%s"),
     CONFLICT(HttpStatus.CONFLICT, "%s"),
     FILE_NOT_FOUND(HttpStatus.NOT_FOUND, "File not found: %s"),
+    UPLOAD_NOT_FOUND(HttpStatus.NOT_FOUND, "Upload not found: %s"),
+    UPLOAD_OFFSET_MISMATCH(HttpStatus.CONFLICT, "Upload offset is %d"),
+    TOO_MANY_UPLOADS(HttpStatus.SERVICE_UNAVAILABLE, "Too many uploads in progress, retry shortly"),
+    UPLOAD_IMPORT_FAILED(HttpStatus.SERVICE_UNAVAILABLE, "Upload could not be imported, retry shortly: %s"),
+    UPLOAD_IMPORTING(HttpStatus.CONFLICT, "Upload %s is being imported"),
     SHELF_CANNOT_BE_DELETED(HttpStatus.FORBIDDEN, "'%s' shelf can't be deleted" ),;
 
     private final HttpStatus status;
@@ -0,0 +1,7 @@
+package com.adityachandel.booklore.model.dto;
+
+/**
+ * A name attached to a book, such as an author or category, read in bulk for many books with one query.
+ */
+public record BookNameEntry(Long bookId, String name) {
+}
@@ -13,4 +13,6 @@ public class BookloreSyncToken {
     private String ongoingSyncPointId;
     private String lastSuccessfulSyncPointId;
     private String rawKoboSyncToken;
+    private Long changeLogOffset;
+    private Long changeLogTime;
 }
@@ -0,0 +1,7 @@
+package com.adityachandel.booklore.model.dto;
+
+/**
+ * Id and on-disk location of a book or additional file, read in bulk to resolve folders without loading entities.
+ */
+public record FilePathEntry(Long id, Long libraryPathId, String fileSubPath, String fileName) {
+}
@@ -0,0 +1,7 @@
+package com.adityachandel.booklore.model.dto;
+
+/**
+ * Id and current file hash of a book or additional file, read in bulk to build the in-memory hash index.
+ */
+public record HashEntry(Long id, String hash) {
+}
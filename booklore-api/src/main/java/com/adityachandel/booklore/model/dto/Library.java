@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.model.dto;
 
 import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
 import com.adityachandel.booklore.model.enums.LibraryScanMode;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
@@ -18,6 +19,7 @@ public class Library {
     private String icon;
     private String fileNamingPattern;
     private boolean watch;
+    private LibraryMonitorMode monitorMode;
     private List<LibraryPath> paths;
     private LibraryScanMode scanMode;
     private BookFileType defaultBookFormat;
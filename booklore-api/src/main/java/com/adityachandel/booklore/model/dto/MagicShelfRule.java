@@ -0,0 +1,38 @@
+package com.adityachandel.booklore.model.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * A node of a magic shelf filter as stored in {@code magic_shelf.filter_json}. Groups carry {@code type = "group"},
+ * a {@code join} of {@code and}/{@code or} and nested {@code rules}; leaf rules carry a field, operator and value(s).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class MagicShelfRule {
+    private String type;
+    private String name;
+    private String join;
+    private List<MagicShelfRule> rules;
+
+    private String field;
+    private String operator;
+    private JsonNode value;
+    private JsonNode valueStart;
+    private JsonNode valueEnd;
+
+    @JsonIgnore
+    public boolean isGroup() {
+        return "group".equals(type);
+    }
+}
@@ -0,0 +1,30 @@
+package com.adityachandel.booklore.model.dto;
+
+/**
+ * Which metadata fields of a book are filled in, as read by the bulk match score recalculation without loading the
+ * book. Each flag follows the same rule {@code MetadataMatchService} applies to a loaded entity.
+ */
+public record MetadataPresence(
+        Long bookId,
+        Float currentScore,
+        boolean title,
+        boolean subtitle,
+        boolean description,
+        boolean authors,
+        boolean publisher,
+        boolean publishedDate,
+        boolean seriesName,
+        boolean seriesNumber,
+        boolean seriesTotal,
+        boolean isbn13,
+        boolean isbn10,
+        boolean language,
+        boolean pageCount,
+        boolean categories,
+        boolean amazonRating,
+        boolean amazonReviewCount,
+        boolean goodreadsRating,
+        boolean goodreadsReviewCount,
+        boolean hardcoverRating,
+        boolean hardcoverReviewCount) {
+}
@@ -0,0 +1,40 @@
+package com.adityachandel.booklore.model.dto.kobo;
+
+import com.adityachandel.booklore.model.enums.BookFileType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Everything a Kobo entitlement is built from, read by projection for a whole sync page. Being a record, two entries
+ * are equal exactly when the payload built from them would be, which is what the entitlement cache keys on.
+ */
+public record KoboBookEntry(
+        Long id,
+        BookFileType bookType,
+        Long fileSizeKb,
+        Instant addedOn,
+        String title,
+        String publisher,
+        LocalDate publishedDate,
+        String isbn13,
+        String isbn10,
+        String description,
+        String seriesName,
+        Float seriesNumber,
+        List<String> authors,
+        List<String> categories) {
+
+    public KoboBookEntry(Long id, BookFileType bookType, Long fileSizeKb, Instant addedOn, String title, String publisher,
+                         LocalDate publishedDate, String isbn13, String isbn10, String description, String seriesName,
+                         Float seriesNumber) {
+        this(id, bookType, fileSizeKb, addedOn, title, publisher, publishedDate, isbn13, isbn10, description, seriesName,
+                seriesNumber, List.of(), List.of());
+    }
+
+    public KoboBookEntry withNames(List<String> authors, List<String> categories) {
+        return new KoboBookEntry(id, bookType, fileSizeKb, addedOn, title, publisher, publishedDate, isbn13, isbn10,
+                description, seriesName, seriesNumber, List.copyOf(authors), List.copyOf(categories));
+    }
+}
@@ -0,0 +1,16 @@
+package com.adityachandel.booklore.model.dto.kobo;
+
+import java.util.Set;
+
+/**
+ * One batch of a user's Kobo shelf change log, collapsed to the net change per book.
+ *
+ * @param offset  id of the last log entry covered, to be handed back for the next batch
+ * @param hasMore whether further entries follow the batch
+ */
+public record KoboShelfChanges(Set<Long> added, Set<Long> updated, Set<Long> removed, long offset, boolean hasMore) {
+
+    public int size() {
+        return added.size() + updated.size() + removed.size();
+    }
+}
@@ -2,6 +2,7 @@ package com.adityachandel.booklore.model.dto.request;
 
 import com.adityachandel.booklore.model.dto.LibraryPath;
 import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
 import com.adityachandel.booklore.model.enums.LibraryScanMode;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.validation.constraints.NotBlank;
@@ -22,6 +23,7 @@ public class CreateLibraryRequest {
     @NotEmpty
     private List<LibraryPath> paths;
     private boolean watch;
+    private LibraryMonitorMode monitorMode;
     private LibraryScanMode scanMode;
     private BookFileType defaultBookFormat;
 }
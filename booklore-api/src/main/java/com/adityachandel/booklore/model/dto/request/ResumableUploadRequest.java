@@ -0,0 +1,11 @@
+package com.adityachandel.booklore.model.dto.request;
+
+import lombok.Data;
+
+@Data
+public class ResumableUploadRequest {
+    private Long libraryId;
+    private Long pathId;
+    private String fileName;
+    private Long length;
+}
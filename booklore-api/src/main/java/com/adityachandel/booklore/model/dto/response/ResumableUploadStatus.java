@@ -0,0 +1,22 @@
+package com.adityachandel.booklore.model.dto.response;
+
+import com.adityachandel.booklore.model.dto.Book;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ResumableUploadStatus {
+    private String id;
+    private String fileName;
+    private long offset;
+    private long length;
+    private boolean complete;
+    private Book book;
+}
@@ -19,6 +19,8 @@ public class LibraryFile {
     private String fileSubPath;
     private String fileName;
     private BookFileType bookFileType;
+    // Fingerprint when it is already known, e.g. computed while the file was uploaded.
+    private String hash;
 
     public Path getFullPath() {
         return Paths.get(libraryPathEntity.getPath(), fileSubPath, fileName);
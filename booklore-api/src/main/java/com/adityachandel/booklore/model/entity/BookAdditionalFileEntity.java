@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.model.entity;
 
 import com.adityachandel.booklore.model.enums.AdditionalFileType;
+import com.adityachandel.booklore.service.BookHashIndexListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -14,6 +15,7 @@ import java.time.Instant;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(BookHashIndexListener.class)
 @Table(name = "book_additional_file")
 public class BookAdditionalFileEntity {
 
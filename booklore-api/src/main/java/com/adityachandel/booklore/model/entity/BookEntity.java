@@ -4,6 +4,9 @@ import com.adityachandel.booklore.convertor.BookRecommendationIdsListConverter;
 import com.adityachandel.booklore.model.dto.BookRecommendationLite;
 import com.adityachandel.booklore.model.enums.BookFileType;
 import com.adityachandel.booklore.model.enums.ReadStatus;
+import com.adityachandel.booklore.service.BookHashIndexListener;
+import com.adityachandel.booklore.service.kobo.KoboShelfChangeListener;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfCacheInvalidationListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -19,6 +22,7 @@ import java.util.Set;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners({MagicShelfCacheInvalidationListener.class, BookHashIndexListener.class, KoboShelfChangeListener.class})
 @Table(name = "book")
 public class BookEntity {
 
@@ -55,10 +59,10 @@ public class BookEntity {
     @Column(name = "added_on")
     private Instant addedOn;
 
-    @Column(name = "initial_hash", length = 128, updatable = false)
+    @Column(name = "initial_hash", length = 32, updatable = false)
     private String initialHash;
 
-    @Column(name = "current_hash", length = 128)
+    @Column(name = "current_hash", length = 32)
     private String currentHash;
 
     @Column(name = "deleted")
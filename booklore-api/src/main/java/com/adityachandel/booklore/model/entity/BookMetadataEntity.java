@@ -1,10 +1,13 @@
 package com.adityachandel.booklore.model.entity;
 
+import com.adityachandel.booklore.service.kobo.KoboShelfChangeListener;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfCacheInvalidationListener;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.Fetch;
 import org.hibernate.annotations.FetchMode;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.Instant;
 import java.time.LocalDate;
@@ -17,6 +20,7 @@ import java.util.Set;
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners({MagicShelfCacheInvalidationListener.class, KoboShelfChangeListener.class})
 @Table(name = "book_metadata")
 public class BookMetadataEntity {
 
@@ -69,6 +73,10 @@ public class BookMetadataEntity {
     @Column(name = "cover_updated_on")
     private Instant coverUpdatedOn;
 
+    @UpdateTimestamp
+    @Column(name = "updated_on")
+    private Instant updatedOn;
+
     @Column(name = "amazon_rating")
     private Double amazonRating;
 
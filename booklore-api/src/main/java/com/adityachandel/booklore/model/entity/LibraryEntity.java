@@ -3,6 +3,7 @@ package com.adityachandel.booklore.model.entity;
 import com.adityachandel.booklore.convertor.SortConverter;
 import com.adityachandel.booklore.model.dto.Sort;
 import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
 import com.adityachandel.booklore.model.enums.LibraryScanMode;
 import jakarta.persistence.*;
 import lombok.*;
@@ -38,6 +39,10 @@ public class LibraryEntity {
 
     private boolean watch;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "monitor_mode", nullable = false)
+    private LibraryMonitorMode monitorMode = LibraryMonitorMode.NATIVE;
+
     private String icon;
 
     @Column(name = "file_naming_pattern")
@@ -50,4 +55,7 @@ public class LibraryEntity {
     @Enumerated(EnumType.STRING)
     @Column(name = "default_book_format")
     private BookFileType defaultBookFormat;
+
+    @Column(name = "rescan_checkpoint", length = 1000)
+    private String rescanCheckpoint;
 }
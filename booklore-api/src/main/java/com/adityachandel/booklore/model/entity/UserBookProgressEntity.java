@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.model.entity;
 
 import com.adityachandel.booklore.model.enums.ReadStatus;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfCacheInvalidationListener;
 import jakarta.persistence.*;
 import lombok.*;
 
@@ -9,9 +10,10 @@ import java.time.Instant;
 @Entity
 @Getter
 @Setter
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
+@EntityListeners(MagicShelfCacheInvalidationListener.class)
 @Table(name = "user_book_progress")
 public class UserBookProgressEntity {
 
@@ -62,6 +62,10 @@ public class JobSchedulerService {
         }
     }
 
+    public synchronized boolean isMetadataRefreshRunning() {
+        return isJobRunning;
+    }
+
     public synchronized boolean cancelJob(String jobId) {
         try {
             String quartzJobId = runningJobs.get(jobId);
@@ -1,5 +1,7 @@
 package com.adityachandel.booklore.repository;
 
+import com.adityachandel.booklore.model.dto.FilePathEntry;
+import com.adityachandel.booklore.model.dto.HashEntry;
 import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
 import com.adityachandel.booklore.model.enums.AdditionalFileType;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -29,11 +32,17 @@ public interface BookAdditionalFileRepository extends JpaRepository<BookAddition
      */
     Optional<BookAdditionalFileEntity> findByAltFormatCurrentHash(String altFormatCurrentHash);
 
+    @Query("SELECT new com.adityachandel.booklore.model.dto.HashEntry(af.id, af.altFormatCurrentHash) FROM BookAdditionalFileEntity af WHERE af.altFormatCurrentHash IS NOT NULL")
+    List<HashEntry> findAllAltFormatCurrentHashes();
+
     @Query("SELECT af FROM BookAdditionalFileEntity af WHERE af.book.libraryPath.id = :libraryPathId AND af.fileSubPath = :fileSubPath AND af.fileName = :fileName")
     Optional<BookAdditionalFileEntity> findByLibraryPath_IdAndFileSubPathAndFileName(@Param("libraryPathId") Long libraryPathId,
                                                                                       @Param("fileSubPath") String fileSubPath,
                                                                                       @Param("fileName") String fileName);
 
+    @Query("SELECT new com.adityachandel.booklore.model.dto.FilePathEntry(af.id, af.book.libraryPath.id, af.fileSubPath, af.fileName) FROM BookAdditionalFileEntity af WHERE af.book.libraryPath.id IN :libraryPathIds")
+    List<FilePathEntry> findFilePathsByLibraryPathIds(@Param("libraryPathIds") Collection<Long> libraryPathIds);
+
     List<BookAdditionalFileEntity> findByAdditionalFileType(AdditionalFileType additionalFileType);
 
     @Query("SELECT COUNT(af) FROM BookAdditionalFileEntity af WHERE af.book.id = :bookId AND af.additionalFileType = :additionalFileType")
@@ -41,4 +50,8 @@ public interface BookAdditionalFileRepository extends JpaRepository<BookAddition
 
     @Query("SELECT af FROM BookAdditionalFileEntity af WHERE af.book.library.id = :libraryId")
     List<BookAdditionalFileEntity> findByLibraryId(@Param("libraryId") Long libraryId);
+
+    List<BookAdditionalFileEntity> findAllByBook_LibraryPath_IdAndFileSubPathStartingWith(Long libraryPathId, String fileSubPathPrefix);
+
+    List<BookAdditionalFileEntity> findAllByBook_LibraryPath_IdAndFileSubPath(Long libraryPathId, String fileSubPath);
 }
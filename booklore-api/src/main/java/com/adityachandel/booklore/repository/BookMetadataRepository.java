@@ -1,11 +1,13 @@
 package com.adityachandel.booklore.repository;
 
+import com.adityachandel.booklore.model.dto.BookNameEntry;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
@@ -24,4 +26,10 @@ public interface BookMetadataRepository extends JpaRepository<BookMetadataEntity
 
     @EntityGraph(attributePaths = {"authors", "categories"})
     List<BookMetadataEntity> findAllByBookIdIn(Set<Long> bookIds);
+
+    @Query("SELECT new com.adityachandel.booklore.model.dto.BookNameEntry(m.bookId, a.name) FROM BookMetadataEntity m JOIN m.authors a WHERE m.bookId IN :bookIds ORDER BY a.id")
+    List<BookNameEntry> findAuthorNamesByBookIds(@Param("bookIds") Collection<Long> bookIds);
+
+    @Query("SELECT new com.adityachandel.booklore.model.dto.BookNameEntry(m.bookId, c.name) FROM BookMetadataEntity m JOIN m.categories c WHERE m.bookId IN :bookIds ORDER BY c.id")
+    List<BookNameEntry> findCategoryNamesByBookIds(@Param("bookIds") Collection<Long> bookIds);
 }
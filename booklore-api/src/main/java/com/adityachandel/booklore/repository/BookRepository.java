@@ -1,7 +1,13 @@
 package com.adityachandel.booklore.repository;
 
+import com.adityachandel.booklore.model.dto.FilePathEntry;
+import com.adityachandel.booklore.model.dto.HashEntry;
+import com.adityachandel.booklore.model.dto.MetadataPresence;
+import com.adityachandel.booklore.model.dto.kobo.KoboBookEntry;
 import com.adityachandel.booklore.model.entity.BookEntity;
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -20,11 +26,19 @@ public interface BookRepository extends JpaRepository<BookEntity, Long>, JpaSpec
 
     Optional<BookEntity> findByCurrentHash(String currentHash);
 
+    @Query("SELECT new com.adityachandel.booklore.model.dto.HashEntry(b.id, b.currentHash) FROM BookEntity b WHERE b.currentHash IS NOT NULL")
+    List<HashEntry> findAllCurrentHashes();
+
     @Query("SELECT b.id FROM BookEntity b WHERE b.library.id = :libraryId AND (b.deleted IS NULL OR b.deleted = false)")
     Set<Long> findBookIdsByLibraryId(@Param("libraryId") long libraryId);
 
     List<BookEntity> findAllByLibraryPathIdAndFileSubPathStartingWith(Long libraryPathId, String fileSubPathPrefix);
 
+    List<BookEntity> findAllByLibraryPathIdAndFileSubPath(Long libraryPathId, String fileSubPath);
+
+    @Query("SELECT new com.adityachandel.booklore.model.dto.FilePathEntry(b.id, b.libraryPath.id, b.fileSubPath, b.fileName) FROM BookEntity b WHERE b.libraryPath.id IN :libraryPathIds ORDER BY b.id")
+    List<FilePathEntry> findFilePathsByLibraryPathIds(@Param("libraryPathIds") Collection<Long> libraryPathIds);
+
     @Query("SELECT b FROM BookEntity b WHERE b.libraryPath.id = :libraryPathId AND b.fileSubPath = :fileSubPath AND b.fileName = :fileName AND (b.deleted IS NULL OR b.deleted = false)")
     Optional<BookEntity> findByLibraryPath_IdAndFileSubPathAndFileName(@Param("libraryPathId") Long libraryPathId,
                                                                        @Param("fileSubPath") String fileSubPath,
@@ -41,6 +55,9 @@ public interface BookRepository extends JpaRepository<BookEntity, Long>, JpaSpec
     @Query("SELECT b FROM BookEntity b WHERE b.id IN :bookIds AND (b.deleted IS NULL OR b.deleted = false)")
     List<BookEntity> findAllWithMetadataByIds(@Param("bookIds") Set<Long> bookIds);
 
+    @Query("SELECT new com.adityachandel.booklore.model.dto.kobo.KoboBookEntry(b.id, b.bookType, b.fileSizeKb, b.addedOn, m.title, m.publisher, m.publishedDate, m.isbn13, m.isbn10, m.description, m.seriesName, m.seriesNumber) FROM BookEntity b LEFT JOIN b.metadata m WHERE b.id IN :bookIds AND (b.deleted IS NULL OR b.deleted = false)")
+    List<KoboBookEntry> findKoboEntriesByIds(@Param("bookIds") Collection<Long> bookIds);
+
     @EntityGraph(attributePaths = {"metadata", "shelves", "libraryPath"})
     @Query("SELECT b FROM BookEntity b WHERE b.library.id = :libraryId AND (b.deleted IS NULL OR b.deleted = false)")
     List<BookEntity> findAllWithMetadataByLibraryId(@Param("libraryId") Long libraryId);
@@ -57,6 +74,9 @@ public interface BookRepository extends JpaRepository<BookEntity, Long>, JpaSpec
     @Query("SELECT b FROM BookEntity b WHERE b.fileSizeKb IS NULL AND (b.deleted IS NULL OR b.deleted = false)")
     List<BookEntity> findAllWithMetadataByFileSizeKbIsNull();
 
+    @EntityGraph(attributePaths = {"libraryPath"})
+    List<BookEntity> findAllByCurrentHashIsNull();
+
     @Query("""
                 SELECT DISTINCT b FROM BookEntity b
                 LEFT JOIN FETCH b.metadata m
@@ -98,6 +118,113 @@ public interface BookRepository extends JpaRepository<BookEntity, Long>, JpaSpec
         """)
     List<BookEntity> searchByMetadataAndLibraryIds(@Param("text") String text, @Param("libraryIds") Collection<Long> libraryIds);
 
+    @Query(value = """
+            SELECT b.id FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false)
+            ORDER BY m.title ASC, b.id ASC
+            """,
+            countQuery = "SELECT COUNT(b) FROM BookEntity b JOIN b.metadata m WHERE (b.deleted IS NULL OR b.deleted = false)")
+    Page<Long> findPagedBookIds(Pageable pageable);
+
+    @Query(value = """
+            SELECT b.id FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false) AND b.library.id IN :libraryIds
+            ORDER BY m.title ASC, b.id ASC
+            """,
+            countQuery = "SELECT COUNT(b) FROM BookEntity b JOIN b.metadata m WHERE (b.deleted IS NULL OR b.deleted = false) AND b.library.id IN :libraryIds")
+    Page<Long> findPagedBookIdsByLibraryIds(@Param("libraryIds") Collection<Long> libraryIds, Pageable pageable);
+
+    @Query(value = """
+            SELECT b.id FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false) AND (
+                  LOWER(m.title) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.subtitle) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.seriesName) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR m.bookId IN (SELECT am.bookId FROM BookMetadataEntity am JOIN am.authors a WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :text, '%')))
+            )
+            ORDER BY m.title ASC, b.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(b) FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false) AND (
+                  LOWER(m.title) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.subtitle) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.seriesName) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR m.bookId IN (SELECT am.bookId FROM BookMetadataEntity am JOIN am.authors a WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :text, '%')))
+            )
+            """)
+    Page<Long> searchPagedBookIds(@Param("text") String text, Pageable pageable);
+
+    @Query(value = """
+            SELECT b.id FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false) AND b.library.id IN :libraryIds AND (
+                  LOWER(m.title) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.subtitle) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.seriesName) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR m.bookId IN (SELECT am.bookId FROM BookMetadataEntity am JOIN am.authors a WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :text, '%')))
+            )
+            ORDER BY m.title ASC, b.id ASC
+            """,
+            countQuery = """
+            SELECT COUNT(b) FROM BookEntity b JOIN b.metadata m
+            WHERE (b.deleted IS NULL OR b.deleted = false) AND b.library.id IN :libraryIds AND (
+                  LOWER(m.title) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.subtitle) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR LOWER(m.seriesName) LIKE LOWER(CONCAT('%', :text, '%'))
+               OR m.bookId IN (SELECT am.bookId FROM BookMetadataEntity am JOIN am.authors a WHERE LOWER(a.name) LIKE LOWER(CONCAT('%', :text, '%')))
+            )
+            """)
+    Page<Long> searchPagedBookIdsByLibraryIds(@Param("text") String text, @Param("libraryIds") Collection<Long> libraryIds, Pageable pageable);
+
+    @Query("""
+                SELECT DISTINCT b FROM BookEntity b
+                LEFT JOIN FETCH b.metadata m
+                LEFT JOIN FETCH m.authors
+                LEFT JOIN FETCH m.categories
+                LEFT JOIN FETCH b.libraryPath
+                WHERE b.id IN :bookIds
+            """)
+    List<BookEntity> findAllForFeedByIds(@Param("bookIds") Collection<Long> bookIds);
+
+    @Query("""
+                SELECT new com.adityachandel.booklore.model.dto.MetadataPresence(
+                    b.id,
+                    b.metadataMatchScore,
+                    CASE WHEN TRIM(m.title) <> '' THEN true ELSE false END,
+                    CASE WHEN TRIM(m.subtitle) <> '' THEN true ELSE false END,
+                    CASE WHEN TRIM(m.description) <> '' THEN true ELSE false END,
+                    CASE WHEN m.authors IS NOT EMPTY THEN true ELSE false END,
+                    CASE WHEN TRIM(m.publisher) <> '' THEN true ELSE false END,
+                    CASE WHEN m.publishedDate IS NOT NULL THEN true ELSE false END,
+                    CASE WHEN TRIM(m.seriesName) <> '' THEN true ELSE false END,
+                    CASE WHEN m.seriesNumber > 0 THEN true ELSE false END,
+                    CASE WHEN m.seriesTotal > 0 THEN true ELSE false END,
+                    CASE WHEN TRIM(m.isbn13) <> '' THEN true ELSE false END,
+                    CASE WHEN TRIM(m.isbn10) <> '' THEN true ELSE false END,
+                    CASE WHEN TRIM(m.language) <> '' THEN true ELSE false END,
+                    CASE WHEN m.pageCount > 0 THEN true ELSE false END,
+                    CASE WHEN m.categories IS NOT EMPTY THEN true ELSE false END,
+                    CASE WHEN m.amazonRating > 0 THEN true ELSE false END,
+                    CASE WHEN m.amazonReviewCount > 0 THEN true ELSE false END,
+                    CASE WHEN m.goodreadsRating > 0 THEN true ELSE false END,
+                    CASE WHEN m.goodreadsReviewCount > 0 THEN true ELSE false END,
+                    CASE WHEN m.hardcoverRating > 0 THEN true ELSE false END,
+                    CASE WHEN m.hardcoverReviewCount > 0 THEN true ELSE false END)
+                FROM BookEntity b
+                LEFT JOIN b.metadata m
+                WHERE b.id > :afterId AND (b.deleted IS NULL OR b.deleted = false)
+                ORDER BY b.id
+            """)
+    List<MetadataPresence> findMetadataPresenceAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT COUNT(b) FROM BookEntity b WHERE (b.deleted IS NULL OR b.deleted = false)")
+    long countActiveBooks();
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE BookEntity b SET b.metadataMatchScore = :score WHERE b.id IN :bookIds")
+    int updateMetadataMatchScore(@Param("bookIds") Collection<Long> bookIds, @Param("score") Float score);
+
     @Modifying
     @Transactional
     @Query("DELETE FROM BookEntity b WHERE b.deletedAt IS NOT NULL AND b.deletedAt < :cutoff")
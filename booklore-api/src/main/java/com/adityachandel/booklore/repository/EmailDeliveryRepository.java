@@ -0,0 +1,28 @@
+package com.adityachandel.booklore.repository;
+
+import com.adityachandel.booklore.model.entity.EmailDeliveryEntity;
+import com.adityachandel.booklore.model.enums.EmailDeliveryStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface EmailDeliveryRepository extends JpaRepository<EmailDeliveryEntity, Long> {
+
+    List<EmailDeliveryEntity> findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(EmailDeliveryStatus status, Instant now, Pageable pageable);
+
+    @Modifying
+    @Query("UPDATE EmailDeliveryEntity d SET d.status = :to WHERE d.status = :from")
+    int updateStatus(@Param("from") EmailDeliveryStatus from, @Param("to") EmailDeliveryStatus to);
+
+    @Modifying
+    @Query("DELETE FROM EmailDeliveryEntity d WHERE d.status IN :statuses AND d.createdAt < :cutoff")
+    int deleteByStatusInAndCreatedBefore(@Param("statuses") Collection<EmailDeliveryStatus> statuses, @Param("cutoff") Instant cutoff);
+}
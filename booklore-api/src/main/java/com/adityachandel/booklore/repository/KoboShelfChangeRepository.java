@@ -0,0 +1,36 @@
+package com.adityachandel.booklore.repository;
+
+import com.adityachandel.booklore.model.entity.KoboShelfChangeEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface KoboShelfChangeRepository extends JpaRepository<KoboShelfChangeEntity, Long> {
+
+    @Query("SELECT COALESCE(MAX(c.id), 0) FROM KoboShelfChangeEntity c")
+    long findLatestId();
+
+    List<KoboShelfChangeEntity> findByUserIdAndIdGreaterThanOrderByIdAsc(Long userId, Long id, Pageable pageable);
+
+    @Modifying
+    @Query(value = """
+            INSERT INTO kobo_shelf_change (user_id, book_id, change_type, created_at)
+            SELECT s.user_id, m.book_id, :changeType, CURRENT_TIMESTAMP
+            FROM shelf s
+            JOIN book_shelf_mapping m ON m.shelf_id = s.id
+            WHERE s.name = :shelfName AND m.book_id IN :bookIds
+            """, nativeQuery = true)
+    int insertForShelvedBooks(@Param("shelfName") String shelfName, @Param("bookIds") Collection<Long> bookIds, @Param("changeType") String changeType);
+
+    @Modifying
+    @Query("DELETE FROM KoboShelfChangeEntity c WHERE c.createdAt < :cutoff")
+    int deleteAllCreatedBefore(@Param("cutoff") Instant cutoff);
+}
@@ -3,9 +3,11 @@ package com.adityachandel.booklore.repository;
 import com.adityachandel.booklore.model.entity.LibraryEntity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -13,4 +15,9 @@ import java.util.List;
 public interface LibraryRepository extends JpaRepository<LibraryEntity, Long>, JpaSpecificationExecutor<LibraryEntity> {
 
     List<LibraryEntity> findByIdIn(List<Long> ids);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE LibraryEntity l SET l.rescanCheckpoint = :checkpoint WHERE l.id = :libraryId")
+    void updateRescanCheckpoint(@Param("libraryId") long libraryId, @Param("checkpoint") String checkpoint);
 }
@@ -25,7 +25,10 @@ public class BookCreatorService {
     private final BookMetadataRepository bookMetadataRepository;
 
     public BookEntity createShellBook(LibraryFile libraryFile, BookFileType bookFileType) {
-        long fileSizeKb = FileUtils.getFileSizeInKb(libraryFile.getFullPath());
+        return createShellBook(libraryFile, bookFileType, FileUtils.getFileSizeInKb(libraryFile.getFullPath()));
+    }
+
+    public BookEntity createShellBook(LibraryFile libraryFile, BookFileType bookFileType, Long fileSizeKb) {
         BookMetadataEntity metadata = BookMetadataEntity.builder().build();
         BookEntity bookEntity = BookEntity.builder()
                 .library(libraryFile.getLibraryEntity())
@@ -0,0 +1,164 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.model.dto.HashEntry;
+import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.enums.AdditionalFileType;
+import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.util.Hash128Index;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Resolves file hashes to books and alternative format files from memory instead of querying the hash columns.
+ * <p>
+ * Both maps are loaded once the application is ready and kept current by {@link BookHashIndexListener}. Until then,
+ * and for hashes that are not fingerprints, lookups go to the database. A hit is always loaded by id and checked
+ * against the stored hash, so an entry made stale by a bulk query is dropped and the database is asked instead. An
+ * entry whose row cannot be seen is kept, as it may belong to a change this transaction does not see yet. A miss once
+ * the index is loaded is trusted, which is what saves a query for every new file a scan sees.
+ */
+@Slf4j
+@Service
+public class BookHashIndex {
+
+    private final BookRepository bookRepository;
+    private final BookAdditionalFileRepository bookAdditionalFileRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Hash128Index books = new Hash128Index();
+    private final Hash128Index alternativeFormats = new Hash128Index();
+    private volatile boolean ready;
+
+    public BookHashIndex(BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository, MeterRegistry meterRegistry) {
+        this.bookRepository = bookRepository;
+        this.bookAdditionalFileRepository = bookAdditionalFileRepository;
+        meterRegistry.gauge("booklore.hash_index.books", this, index -> index.read(() -> index.books.size()));
+        meterRegistry.gauge("booklore.hash_index.alternative_formats", this, index -> index.read(() -> index.alternativeFormats.size()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long start = System.nanoTime();
+        List<HashEntry> bookHashes = bookRepository.findAllCurrentHashes();
+        List<HashEntry> alternativeFormatHashes = bookAdditionalFileRepository.findAllAltFormatCurrentHashes();
+        lock.writeLock().lock();
+        try {
+            // Entries written by the listener while the snapshot was read are kept; an older id from the snapshot
+            // that overwrites one is corrected by the check on lookup.
+            bookHashes.forEach(entry -> put(books, entry.hash(), entry.id()));
+            alternativeFormatHashes.forEach(entry -> put(alternativeFormats, entry.hash(), entry.id()));
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Indexed {} book and {} alternative format hashes in {} ms", bookHashes.size(), alternativeFormatHashes.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    public Optional<BookEntity> findBookByHash(String hash) {
+        if (hash == null) {
+            return Optional.empty();
+        }
+        if (!ready || !Hash128Index.isIndexable(hash)) {
+            return bookRepository.findByCurrentHash(hash);
+        }
+        long bookId = read(() -> books.get(hash));
+        if (bookId == 0) {
+            return Optional.empty();
+        }
+        Optional<BookEntity> book = bookRepository.findById(bookId);
+        if (book.isPresent() && hash.equalsIgnoreCase(book.get().getCurrentHash())) {
+            return book;
+        }
+        if (book.isPresent()) {
+            write(() -> books.remove(hash, bookId));
+        }
+        Optional<BookEntity> stored = bookRepository.findByCurrentHash(hash);
+        stored.ifPresent(found -> indexBook(found.getCurrentHash(), found.getId()));
+        return stored;
+    }
+
+    public Optional<BookAdditionalFileEntity> findAlternativeFormatByHash(String hash) {
+        if (hash == null) {
+            return Optional.empty();
+        }
+        if (!ready || !Hash128Index.isIndexable(hash)) {
+            return bookAdditionalFileRepository.findByAltFormatCurrentHash(hash);
+        }
+        long fileId = read(() -> alternativeFormats.get(hash));
+        if (fileId == 0) {
+            return Optional.empty();
+        }
+        Optional<BookAdditionalFileEntity> file = bookAdditionalFileRepository.findById(fileId);
+        if (file.isPresent() && file.get().getAdditionalFileType() == AdditionalFileType.ALTERNATIVE_FORMAT
+                && hash.equalsIgnoreCase(file.get().getCurrentHash())) {
+            return file;
+        }
+        if (file.isPresent()) {
+            write(() -> alternativeFormats.remove(hash, fileId));
+        }
+        Optional<BookAdditionalFileEntity> stored = bookAdditionalFileRepository.findByAltFormatCurrentHash(hash);
+        stored.ifPresent(found -> indexAlternativeFormat(found.getCurrentHash(), found.getId()));
+        return stored;
+    }
+
+    void indexBook(String hash, Long bookId) {
+        if (bookId != null && Hash128Index.isIndexable(hash)) {
+            write(() -> books.put(hash, bookId));
+        }
+    }
+
+    void indexAlternativeFormat(String hash, Long fileId) {
+        if (fileId != null && Hash128Index.isIndexable(hash)) {
+            write(() -> alternativeFormats.put(hash, fileId));
+        }
+    }
+
+    void removeBook(String hash, Long bookId) {
+        if (bookId != null && Hash128Index.isIndexable(hash)) {
+            write(() -> books.remove(hash, bookId));
+        }
+    }
+
+    void removeAdditionalFile(String hash, Long fileId) {
+        if (fileId != null && Hash128Index.isIndexable(hash)) {
+            write(() -> alternativeFormats.remove(hash, fileId));
+        }
+    }
+
+    private static void put(Hash128Index index, String hash, Long id) {
+        if (id != null && Hash128Index.isIndexable(hash)) {
+            index.put(hash, id);
+        }
+    }
+
+    private long read(LongSupplier lookup) {
+        lock.readLock().lock();
+        try {
+            return lookup.getAsLong();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable change) {
+        lock.writeLock().lock();
+        try {
+            change.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.enums.AdditionalFileType;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA entity listener that keeps {@link BookHashIndex} in step with books and additional files. Every change is
+ * applied only after commit: an insert indexed earlier could be looked up by another transaction before the row is
+ * visible to it, and a rolled back delete must not hide a file that still exists, since a missing entry is trusted.
+ */
+@Component
+@RequiredArgsConstructor
+public class BookHashIndexListener {
+
+    // Resolved lazily: entity listeners are created while the EntityManagerFactory itself is being built.
+    private final ObjectProvider<BookHashIndex> bookHashIndex;
+
+    @PostPersist
+    @PostUpdate
+    public void onSave(Object entity) {
+        BookHashIndex index = bookHashIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        if (entity instanceof BookEntity book) {
+            String hash = book.getCurrentHash();
+            Long id = book.getId();
+            afterCommit(() -> index.indexBook(hash, id));
+        } else if (entity instanceof BookAdditionalFileEntity file) {
+            if (file.getAdditionalFileType() != AdditionalFileType.ALTERNATIVE_FORMAT) {
+                return;
+            }
+            String hash = file.getCurrentHash();
+            Long id = file.getId();
+            afterCommit(() -> index.indexAlternativeFormat(hash, id));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        BookHashIndex index = bookHashIndex.getIfAvailable();
+        if (index == null) {
+            return;
+        }
+        if (entity instanceof BookEntity book) {
+            String hash = book.getCurrentHash();
+            Long id = book.getId();
+            afterCommit(() -> index.removeBook(hash, id));
+        } else if (entity instanceof BookAdditionalFileEntity file) {
+            String hash = file.getCurrentHash();
+            Long id = file.getId();
+            afterCommit(() -> index.removeAdditionalFile(hash, id));
+        }
+    }
+
+    private static void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+        });
+    }
+}
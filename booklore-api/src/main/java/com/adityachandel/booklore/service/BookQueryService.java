@@ -2,13 +2,16 @@ package com.adityachandel.booklore.service;
 
 import com.adityachandel.booklore.mapper.v2.BookMapperV2;
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.BookNameEntry;
+import com.adityachandel.booklore.model.dto.kobo.KoboBookEntry;
 import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.repository.BookMetadataRepository;
 import com.adityachandel.booklore.repository.BookRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.util.List;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
@@ -16,6 +19,7 @@ import java.util.stream.Collectors;
 public class BookQueryService {
 
     private final BookRepository bookRepository;
+    private final BookMetadataRepository bookMetadataRepository;
     private final BookMapperV2 bookMapperV2;
 
     public List<Book> getAllBooks(boolean includeDescription) {
@@ -48,6 +52,41 @@ public class BookQueryService {
         return bookRepository.findAllWithMetadataByIds(bookIds);
     }
 
+    /**
+     * Reads what Kobo entitlements are built from with three flat queries, whatever the number of books, instead of
+     * loading entity graphs.
+     */
+    public List<KoboBookEntry> findKoboEntriesByIds(Collection<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, List<String>> authors = groupNames(bookMetadataRepository.findAuthorNamesByBookIds(bookIds));
+        Map<Long, List<String>> categories = groupNames(bookMetadataRepository.findCategoryNamesByBookIds(bookIds));
+        return bookRepository.findKoboEntriesByIds(bookIds).stream()
+                .map(entry -> entry.withNames(
+                        authors.getOrDefault(entry.id(), List.of()),
+                        categories.getOrDefault(entry.id(), List.of())))
+                .toList();
+    }
+
+    private static Map<Long, List<String>> groupNames(List<BookNameEntry> entries) {
+        return entries.stream()
+                .collect(Collectors.groupingBy(BookNameEntry::bookId, Collectors.mapping(BookNameEntry::name, Collectors.toList())));
+    }
+
+    public List<Book> getBooksByIdsInOrder(List<Long> bookIds) {
+        if (bookIds.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BookEntity> books = bookRepository.findAllWithMetadataByIds(new HashSet<>(bookIds)).stream()
+                .collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+        return bookIds.stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .map(bookMapperV2::toDTO)
+                .collect(Collectors.toList());
+    }
+
     public List<BookEntity> getAllFullBookEntities() {
         return bookRepository.findAllFullBooks();
     }
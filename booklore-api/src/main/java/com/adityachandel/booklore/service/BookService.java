@@ -15,6 +15,7 @@ import com.adityachandel.booklore.model.enums.BookFileType;
 import com.adityachandel.booklore.model.enums.ReadStatus;
 import com.adityachandel.booklore.model.enums.ResetProgressType;
 import com.adityachandel.booklore.repository.*;
+import com.adityachandel.booklore.service.kobo.KoboShelfChangeService;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
 import lombok.AllArgsConstructor;
@@ -24,7 +25,6 @@ import org.springframework.core.io.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -53,11 +53,11 @@ public class BookService {
     private final FileService fileService;
     private final BookMapper bookMapper;
     private final UserRepository userRepository;
-    private final UserBookProgressRepository userBookProgressRepository;
     private final AuthenticationService authenticationService;
     private final BookQueryService bookQueryService;
     private final UserProgressService userProgressService;
     private final BookDownloadService bookDownloadService;
+    private final KoboShelfChangeService koboShelfChangeService;
 
 
     private void setBookProgress(Book book, UserBookProgressEntity progress) {
@@ -136,7 +136,7 @@ public class BookService {
         BookLoreUser user = authenticationService.getAuthenticatedUser();
         BookEntity bookEntity = bookRepository.findById(bookId).orElseThrow(() -> ApiError.BOOK_NOT_FOUND.createException(bookId));
 
-        UserBookProgressEntity userProgress = userBookProgressRepository.findByUserIdAndBookId(user.getId(), bookId).orElse(new UserBookProgressEntity());
+        UserBookProgressEntity userProgress = userProgressService.findUserProgress(user.getId(), bookId).orElse(new UserBookProgressEntity());
 
         Book book = bookMapper.toBook(bookEntity);
         book.setLastReadTime(userProgress.getLastReadTime());
@@ -293,31 +293,43 @@ public class BookService {
         }
     }
 
-    @Transactional
     public void updateReadProgress(ReadProgressRequest request) {
         BookEntity book = bookRepository.findById(request.getBookId()).orElseThrow(() -> ApiError.BOOK_NOT_FOUND.createException(request.getBookId()));
         BookLoreUser user = authenticationService.getAuthenticatedUser();
-        UserBookProgressEntity userBookProgress = userBookProgressRepository.findByUserIdAndBookId(user.getId(), book.getId()).orElse(new UserBookProgressEntity());
-        userBookProgress.setUser(userRepository.findById(user.getId()).orElseThrow(() -> new UsernameNotFoundException("User not found")));
-        userBookProgress.setBook(book);
-        userBookProgress.setLastReadTime(Instant.now());
-        if (book.getBookType() == BookFileType.EPUB && request.getEpubProgress() != null) {
-            userBookProgress.setEpubProgress(request.getEpubProgress().getCfi());
-            userBookProgress.setEpubProgressPercent(request.getEpubProgress().getPercentage());
-        } else if (book.getBookType() == BookFileType.PDF && request.getPdfProgress() != null) {
-            userBookProgress.setPdfProgress(request.getPdfProgress().getPage());
-            userBookProgress.setPdfProgressPercent(request.getPdfProgress().getPercentage());
-        } else if (book.getBookType() == BookFileType.CBX && request.getCbxProgress() != null) {
-            userBookProgress.setCbxProgress(request.getCbxProgress().getPage());
-            userBookProgress.setCbxProgressPercent(request.getCbxProgress().getPercentage());
-        }
+        BookFileType bookType = book.getBookType();
+        EpubProgress epubProgress = bookType == BookFileType.EPUB ? request.getEpubProgress() : null;
+        PdfProgress pdfProgress = bookType == BookFileType.PDF ? request.getPdfProgress() : null;
+        CbxProgress cbxProgress = bookType == BookFileType.CBX ? request.getCbxProgress() : null;
+        validatePercentage(epubProgress != null ? epubProgress.getPercentage() : null);
+        validatePercentage(pdfProgress != null ? pdfProgress.getPercentage() : null);
+        validatePercentage(cbxProgress != null ? cbxProgress.getPercentage() : null);
+        Instant readTime = Instant.now();
+        Instant dateFinished = request.getDateFinished();
+
+        userProgressService.updateProgress(user.getId(), book.getId(), progress -> {
+            progress.setLastReadTime(readTime);
+            if (epubProgress != null) {
+                progress.setEpubProgress(epubProgress.getCfi());
+                progress.setEpubProgressPercent(epubProgress.getPercentage());
+            } else if (pdfProgress != null) {
+                progress.setPdfProgress(pdfProgress.getPage());
+                progress.setPdfProgressPercent(pdfProgress.getPercentage());
+            } else if (cbxProgress != null) {
+                progress.setCbxProgress(cbxProgress.getPage());
+                progress.setCbxProgressPercent(cbxProgress.getPercentage());
+            }
 
-        // Update dateFinished if provided
-        if (request.getDateFinished() != null) {
-            userBookProgress.setDateFinished(request.getDateFinished());
-        }
+            // Update dateFinished if provided
+            if (dateFinished != null) {
+                progress.setDateFinished(dateFinished);
+            }
+        });
+    }
 
-        userBookProgressRepository.save(userBookProgress);
+    private void validatePercentage(Float percentage) {
+        if (percentage != null && (percentage.isNaN() || percentage < 0 || percentage > 100)) {
+            throw ApiError.GENERIC_BAD_REQUEST.createException("Progress percentage must be between 0 and 100");
+        }
     }
 
     @Transactional
@@ -330,24 +342,13 @@ public class BookService {
             throw ApiError.BOOK_NOT_FOUND.createException("One or more books not found");
         }
 
-        BookLoreUserEntity userEntity = userRepository.findById(user.getId()).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        // Set dateFinished when status is READ, clear it otherwise
+        Instant dateFinished = readStatus == ReadStatus.READ ? Instant.now() : null;
         for (BookEntity book : books) {
-            UserBookProgressEntity progress = userBookProgressRepository
-                    .findByUserIdAndBookId(user.getId(), book.getId())
-                    .orElse(new UserBookProgressEntity());
-
-            progress.setUser(userEntity);
-            progress.setBook(book);
-            progress.setReadStatus(readStatus);
-
-            // Set dateFinished when status is READ, clear it otherwise
-            if (readStatus == ReadStatus.READ) {
-                progress.setDateFinished(Instant.now());
-            } else {
-                progress.setDateFinished(null);
-            }
-
-            userBookProgressRepository.save(progress);
+            userProgressService.updateProgress(user.getId(), book.getId(), progress -> {
+                progress.setReadStatus(readStatus);
+                progress.setDateFinished(dateFinished);
+            });
         }
 
         return books.stream()
@@ -355,8 +356,8 @@ public class BookService {
                     Book book = bookMapper.toBook(bookEntity);
                     book.setFilePath(FileUtils.getBookFullPath(bookEntity));
 
-                    UserBookProgressEntity progress = userBookProgressRepository
-                            .findByUserIdAndBookId(user.getId(), bookEntity.getId())
+                    UserBookProgressEntity progress = userProgressService
+                            .findUserProgress(user.getId(), bookEntity.getId())
                             .orElse(null);
 
                     if (progress != null) {
@@ -374,35 +375,29 @@ public class BookService {
     public List<Book> resetProgress(List<Long> bookIds, ResetProgressType type) {
         BookLoreUser user = authenticationService.getAuthenticatedUser();
         List<Book> updatedBooks = new ArrayList<>();
-        Optional<BookLoreUserEntity> userEntity = userRepository.findById(user.getId());
 
         for (Long bookId : bookIds) {
             BookEntity bookEntity = bookRepository.findById(bookId).orElseThrow(() -> ApiError.BOOK_NOT_FOUND.createException(bookId));
 
-            UserBookProgressEntity progress = userBookProgressRepository
-                    .findByUserIdAndBookId(user.getId(), bookId)
-                    .orElse(new UserBookProgressEntity());
-
-            progress.setBook(bookEntity);
-            progress.setUser(userEntity.orElseThrow());
-            progress.setReadStatus(null);
-            progress.setLastReadTime(null);
-            progress.setDateFinished(null);
-            if (type == ResetProgressType.BOOKLORE) {
-                progress.setPdfProgress(null);
-                progress.setPdfProgressPercent(null);
-                progress.setEpubProgress(null);
-                progress.setEpubProgressPercent(null);
-                progress.setCbxProgress(null);
-                progress.setCbxProgressPercent(null);
-            } else if (type == ResetProgressType.KOREADER) {
-                progress.setKoreaderProgress(null);
-                progress.setKoreaderProgressPercent(null);
-                progress.setKoreaderDeviceId(null);
-                progress.setKoreaderDevice(null);
-                progress.setKoreaderLastSyncTime(null);
-            }
-            userBookProgressRepository.save(progress);
+            userProgressService.updateProgress(user.getId(), bookId, progress -> {
+                progress.setReadStatus(null);
+                progress.setLastReadTime(null);
+                progress.setDateFinished(null);
+                if (type == ResetProgressType.BOOKLORE) {
+                    progress.setPdfProgress(null);
+                    progress.setPdfProgressPercent(null);
+                    progress.setEpubProgress(null);
+                    progress.setEpubProgressPercent(null);
+                    progress.setCbxProgress(null);
+                    progress.setCbxProgressPercent(null);
+                } else if (type == ResetProgressType.KOREADER) {
+                    progress.setKoreaderProgress(null);
+                    progress.setKoreaderProgressPercent(null);
+                    progress.setKoreaderDeviceId(null);
+                    progress.setKoreaderDevice(null);
+                    progress.setKoreaderLastSyncTime(null);
+                }
+            });
             updatedBooks.add(bookMapper.toBook(bookEntity));
         }
 
@@ -425,15 +420,29 @@ public class BookService {
 
         List<BookEntity> bookEntities = bookQueryService.findAllWithMetadataByIds(bookIds);
         List<ShelfEntity> shelvesToAssign = shelfRepository.findAllById(shelfIdsToAssign);
+        Map<ShelfEntity, List<Long>> addedToShelf = new HashMap<>();
+        Map<ShelfEntity, List<Long>> removedFromShelf = new HashMap<>();
         for (BookEntity bookEntity : bookEntities) {
-            bookEntity.getShelves().removeIf(shelf -> shelfIdsToUnassign.contains(shelf.getId()));
+            List<ShelfEntity> unassigned = bookEntity.getShelves().stream()
+                    .filter(shelf -> shelfIdsToUnassign.contains(shelf.getId()))
+                    .toList();
+            unassigned.forEach(bookEntity.getShelves()::remove);
+            unassigned.forEach(shelf -> removedFromShelf.computeIfAbsent(shelf, s -> new ArrayList<>()).add(bookEntity.getId()));
             for (ShelfEntity shelf : shelvesToAssign) {
                 if (!bookEntity.getShelves().contains(shelf)) {
                     bookEntity.getShelves().add(shelf);
+                    addedToShelf.computeIfAbsent(shelf, s -> new ArrayList<>()).add(bookEntity.getId());
                 }
             }
         }
         bookRepository.saveAll(bookEntities);
+        Set<ShelfEntity> changedShelves = new HashSet<>(addedToShelf.keySet());
+        changedShelves.addAll(removedFromShelf.keySet());
+        for (ShelfEntity shelf : changedShelves) {
+            koboShelfChangeService.recordShelfChanges(shelf,
+                    addedToShelf.getOrDefault(shelf, List.of()),
+                    removedFromShelf.getOrDefault(shelf, List.of()));
+        }
 
         Map<Long, UserBookProgressEntity> progressMap = userProgressService.fetchUserProgress(
                 user.getId(), bookEntities.stream().map(BookEntity::getId).collect(Collectors.toSet()));
@@ -5,37 +5,134 @@ import java.io.RandomAccessFile;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 public class FileFingerprint {
 
-    public static String generateHash(Path filePath) {
-        final long base = 1024L;
-        final int blockSize = 1024;
+    private static final long BASE = 1024L;
+    private static final int BLOCK_SIZE = 1024;
+
+    /**
+     * Reads up to {@code buffer.length} bytes starting at {@code position}, returning the number of bytes read.
+     */
+    @FunctionalInterface
+    public interface PositionalReader {
+        int read(long position, byte[] buffer) throws IOException;
+    }
 
+    public static String generateHash(Path filePath) {
         try (RandomAccessFile raf = new RandomAccessFile(filePath.toFile(), "r")) {
-            MessageDigest md5 = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[blockSize];
+            return generateHash(raf.length(), (position, buffer) -> {
+                raf.seek(position);
+                return raf.read(buffer);
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to compute partial MD5 hash for: " + filePath, e);
+        }
+    }
+
+    /**
+     * Computes the fingerprint from an already opened source so callers that parse the file anyway do not have to
+     * open it a second time.
+     */
+    public static String generateHash(long length, PositionalReader reader) throws IOException {
+        MessageDigest md5 = newDigest();
+        byte[] buffer = new byte[BLOCK_SIZE];
+
+        for (int i = -1; i <= 10; i++) {
+            long position = BASE << (2 * i);
+            if (position >= length) break;
+
+            int read = reader.read(position, buffer);
+            if (read > 0) {
+                md5.update(buffer, 0, read);
+            }
+        }
+        return toHex(md5.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
+    private static String toHex(byte[] hash) {
+        StringBuilder result = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            result.append(String.format("%02x", b));
+        }
+        return result.toString();
+    }
+
+    /**
+     * Computes the same fingerprint as {@link #generateHash(long, PositionalReader)} from bytes handed over in file
+     * order, for a file of known length that is being written, so the file need not be read back afterwards. Only the
+     * sampled blocks are buffered.
+     */
+    public static final class Incremental {
+
+        private final MessageDigest md5 = newDigest();
+        private final long length;
+        private final long[] starts;
+        private final byte[][] blocks;
+        private final int[] filled;
+        private int nextBlock;
+        private long position;
+
+        public Incremental(long length) {
+            this.length = length;
+            long[] positions = new long[12];
+            int count = 0;
             for (int i = -1; i <= 10; i++) {
-                long position = base << (2 * i);
-                if (position >= raf.length()) break;
+                long position = BASE << (2 * i);
+                if (position >= length) break;
+                positions[count++] = position;
+            }
+            this.starts = Arrays.copyOf(positions, count);
+            this.blocks = new byte[count][];
+            this.filled = new int[count];
+            for (int k = 0; k < count; k++) {
+                blocks[k] = new byte[(int) Math.min(BLOCK_SIZE, length - starts[k])];
+            }
+        }
 
-                raf.seek(position);
-                int read = raf.read(buffer);
-                if (read > 0) {
-                    md5.update(buffer, 0, read);
+        public long getLength() {
+            return length;
+        }
+
+        public long getPosition() {
+            return position;
+        }
+
+        public void update(byte[] data, int offset, int count) {
+            long chunkStart = position;
+            long chunkEnd = position + count;
+            for (int k = nextBlock; k < starts.length && starts[k] < chunkEnd; k++) {
+                long blockEnd = starts[k] + blocks[k].length;
+                long from = Math.max(starts[k] + filled[k], chunkStart);
+                long to = Math.min(blockEnd, chunkEnd);
+                if (to > from) {
+                    System.arraycopy(data, offset + (int) (from - chunkStart), blocks[k], (int) (from - starts[k]), (int) (to - from));
+                    filled[k] = (int) (to - starts[k]);
                 }
             }
-
-            byte[] hash = md5.digest();
-            StringBuilder result = new StringBuilder(hash.length * 2);
-            for (byte b : hash) {
-                result.append(String.format("%02x", b));
+            position = chunkEnd;
+            // Block ends only grow, so blocks complete, and are digested, in the order generateHash reads them.
+            while (nextBlock < starts.length && filled[nextBlock] == blocks[nextBlock].length) {
+                md5.update(blocks[nextBlock]);
+                blocks[nextBlock] = null;
+                nextBlock++;
             }
-            return result.toString();
+        }
 
-        } catch (IOException | NoSuchAlgorithmException e) {
-            throw new RuntimeException("Failed to compute partial MD5 hash for: " + filePath, e);
+        public String finish() {
+            if (position != length) {
+                throw new IllegalStateException("Fingerprint needs " + length + " bytes but only " + position + " were written");
+            }
+            return toHex(md5.digest());
         }
     }
 }
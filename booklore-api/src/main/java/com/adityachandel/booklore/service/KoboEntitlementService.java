@@ -1,44 +1,89 @@
 package com.adityachandel.booklore.service;
 
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.dto.kobo.*;
 import com.adityachandel.booklore.model.dto.settings.KoboSettings;
-import com.adityachandel.booklore.model.entity.AuthorEntity;
-import com.adityachandel.booklore.model.entity.BookEntity;
-import com.adityachandel.booklore.model.entity.BookMetadataEntity;
-import com.adityachandel.booklore.model.entity.CategoryEntity;
 import com.adityachandel.booklore.model.enums.BookFileType;
 import com.adityachandel.booklore.model.enums.KoboBookFormat;
 import com.adityachandel.booklore.model.enums.KoboReadStatus;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.util.kobo.KoboUrlBuilder;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
-@AllArgsConstructor
+/**
+ * Builds the entitlements a Kobo sync returns. Book data is read by projection for a whole page, and the metadata
+ * built for a book is kept per sync token together with an estimate of its serialized size, to be reused for as long
+ * as the book's data and the download format stay the same. Nothing is serialized here; the response is written once.
+ */
+@Slf4j
 @Service
 public class KoboEntitlementService {
 
+    // Rough serialized size of the entitlement and reading state sent alongside each book's metadata.
+    private static final int ENTITLEMENT_OVERHEAD_BYTES = 1024;
+    // Rough serialized size of the metadata's field names, ids and fixed values, before any book text.
+    private static final int METADATA_OVERHEAD_BYTES = 700;
+
     private final KoboUrlBuilder koboUrlBuilder;
     private final BookQueryService bookQueryService;
     private final AppSettingService appSettingService;
+    private final Map<MetadataKey, CachedMetadata> metadataCache;
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
 
-    public List<NewEntitlement> generateNewEntitlements(Set<Long> bookIds, String token, boolean removed) {
-        List<BookEntity> books = bookQueryService.findAllWithMetadataByIds(bookIds);
+    public KoboEntitlementService(KoboUrlBuilder koboUrlBuilder,
+                                  BookQueryService bookQueryService,
+                                  AppSettingService appSettingService,
+                                  AppProperties appProperties,
+                                  MeterRegistry meterRegistry) {
+        this.koboUrlBuilder = koboUrlBuilder;
+        this.bookQueryService = bookQueryService;
+        this.appSettingService = appSettingService;
+        AppProperties.Kobo settings = appProperties.getKobo();
+        // Never smaller than two full pages, so sizes are still cached when the sync asks for them.
+        int capacity = Math.max(settings.getMetadataCacheSize(), settings.getSyncPageMax() * 2);
+        this.metadataCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MetadataKey, CachedMetadata> eldest) {
+                return size() > capacity;
+            }
+        });
+
+        Gauge.builder("booklore.kobo.metadata.cache.size", metadataCache, Map::size)
+                .description("Kobo book metadata payloads kept for reuse")
+                .register(meterRegistry);
+        this.cacheHits = Counter.builder("booklore.kobo.metadata.cache")
+                .description("Kobo book metadata lookups, by whether a cached payload was reused")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.cacheMisses = Counter.builder("booklore.kobo.metadata.cache")
+                .description("Kobo book metadata lookups, by whether a cached payload was reused")
+                .tag("result", "miss")
+                .register(meterRegistry);
+    }
 
-        return books.stream()
-                .filter(bookEntity -> bookEntity.getBookType() == BookFileType.EPUB)
+    public List<NewEntitlement> generateNewEntitlements(Set<Long> bookIds, String token, boolean removed) {
+        KoboBookFormat bookFormat = currentBookFormat();
+        return bookQueryService.findKoboEntriesByIds(bookIds).stream()
+                .filter(book -> book.bookType() == BookFileType.EPUB)
                 .map(book -> NewEntitlement.builder()
                         .newEntitlement(BookEntitlementContainer.builder()
                                 .bookEntitlement(buildBookEntitlement(book, removed))
-                                .bookMetadata(mapToKoboMetadata(book, token))
+                                .bookMetadata(getCachedMetadata(book, token, bookFormat).metadata())
                                 .readingState(createInitialReadingState(book))
                                 .build())
                         .build())
@@ -46,22 +91,22 @@ public class KoboEntitlementService {
     }
 
     public List<ChangedEntitlement> generateChangedEntitlements(Set<Long> bookIds, String token, boolean removed) {
-        List<BookEntity> books = bookQueryService.findAllWithMetadataByIds(bookIds);
-        return books.stream()
-                .filter(bookEntity -> bookEntity.getBookType() == BookFileType.EPUB)
+        KoboBookFormat bookFormat = currentBookFormat();
+        return bookQueryService.findKoboEntriesByIds(bookIds).stream()
+                .filter(book -> book.bookType() == BookFileType.EPUB)
                 .map(book -> {
                     KoboBookMetadata metadata;
                     if (removed) {
                         metadata = KoboBookMetadata.builder()
-                                .coverImageId(String.valueOf(book.getId()))
-                                .crossRevisionId(String.valueOf(book.getId()))
-                                .entitlementId(String.valueOf(book.getId()))
-                                .revisionId(String.valueOf(book.getId()))
-                                .workId(String.valueOf(book.getId()))
-                                .title(String.valueOf(book.getId()))
+                                .coverImageId(String.valueOf(book.id()))
+                                .crossRevisionId(String.valueOf(book.id()))
+                                .entitlementId(String.valueOf(book.id()))
+                                .revisionId(String.valueOf(book.id()))
+                                .workId(String.valueOf(book.id()))
+                                .title(String.valueOf(book.id()))
                                 .build();
                     } else {
-                        metadata = mapToKoboMetadata(book, token);
+                        metadata = getCachedMetadata(book, token, bookFormat).metadata();
                     }
                     return ChangedEntitlement.builder()
                             .changedEntitlement(BookEntitlementContainer.builder()
@@ -73,12 +118,25 @@ public class KoboEntitlementService {
                 .collect(Collectors.toList());
     }
 
-    private KoboReadingState createInitialReadingState(BookEntity book) {
+    /**
+     * Estimates the response size of entitlements just generated, from the cached metadata sizes, without serializing
+     * them again.
+     */
+    public long estimatePayloadBytes(Collection<Long> addedBookIds, Collection<Long> removedBookIds, String token) {
+        long bytes = (long) removedBookIds.size() * ENTITLEMENT_OVERHEAD_BYTES;
+        for (Long bookId : addedBookIds) {
+            CachedMetadata cached = metadataCache.get(new MetadataKey(bookId, token));
+            bytes += ENTITLEMENT_OVERHEAD_BYTES + (cached != null ? cached.bytes() : 0);
+        }
+        return bytes;
+    }
+
+    private KoboReadingState createInitialReadingState(KoboBookEntry book) {
         OffsetDateTime now = getCurrentUtc();
         OffsetDateTime createdOn = getCreatedOn(book);
 
         return KoboReadingState.builder()
-                .entitlementId(String.valueOf(book.getId()))
+                .entitlementId(String.valueOf(book.id()))
                 .created(createdOn.toString())
                 .lastModified(now.toString())
                 .statusInfo(KoboReadingState.StatusInfo.builder()
@@ -96,7 +154,7 @@ public class KoboEntitlementService {
                 .build();
     }
 
-    private BookEntitlement buildBookEntitlement(BookEntity book, boolean removed) {
+    private BookEntitlement buildBookEntitlement(KoboBookEntry book, boolean removed) {
         OffsetDateTime now = getCurrentUtc();
         OffsetDateTime createdOn = getCreatedOn(book);
 
@@ -106,82 +164,125 @@ public class KoboEntitlementService {
                         .build())
                 .isRemoved(removed)
                 .status("Active")
-                .crossRevisionId(String.valueOf(book.getId()))
-                .revisionId(String.valueOf(book.getId()))
-                .id(String.valueOf(book.getId()))
+                .crossRevisionId(String.valueOf(book.id()))
+                .revisionId(String.valueOf(book.id()))
+                .id(String.valueOf(book.id()))
                 .created(createdOn.toString())
                 .lastModified(now.toString())
                 .build();
     }
 
     public KoboBookMetadata getMetadataForBook(long bookId, String token) {
-        List<BookEntity> books = bookQueryService.findAllWithMetadataByIds(Set.of(bookId))
+        List<KoboBookEntry> books = bookQueryService.findKoboEntriesByIds(Set.of(bookId))
                 .stream()
-                .filter(bookEntity -> bookEntity.getBookType() == BookFileType.EPUB)
+                .filter(book -> book.bookType() == BookFileType.EPUB)
                 .toList();
-        return mapToKoboMetadata(books.getFirst(), token);
+        return getCachedMetadata(books.getFirst(), token, currentBookFormat()).metadata();
+    }
+
+    private CachedMetadata getCachedMetadata(KoboBookEntry book, String token, KoboBookFormat bookFormat) {
+        MetadataKey key = new MetadataKey(book.id(), token);
+        CachedMetadata cached = metadataCache.get(key);
+        if (cached != null && cached.book().equals(book) && cached.bookFormat() == bookFormat) {
+            cacheHits.increment();
+            return cached;
+        }
+        cacheMisses.increment();
+        KoboBookMetadata metadata = mapToKoboMetadata(book, token, bookFormat);
+        CachedMetadata built = new CachedMetadata(book, bookFormat, metadata, estimateSize(metadata));
+        metadataCache.put(key, built);
+        return built;
+    }
+
+    /**
+     * Estimates the serialized size of the metadata from the lengths of its text, which is all that varies between
+     * books. Titles and publishers are counted twice, as they also fill the slug and imprint.
+     */
+    static int estimateSize(KoboBookMetadata metadata) {
+        int bytes = METADATA_OVERHEAD_BYTES
+                + 2 * length(metadata.getTitle())
+                + length(metadata.getDescription())
+                + length(metadata.getIsbn())
+                + length(metadata.getGenre())
+                + length(metadata.getPublicationDate());
+        if (metadata.getPublisher() != null) {
+            bytes += 2 * length(metadata.getPublisher().getName());
+        }
+        if (metadata.getSeries() != null) {
+            bytes += 2 * length(metadata.getSeries().getName());
+        }
+        if (metadata.getContributors() != null) {
+            for (String contributor : metadata.getContributors()) {
+                bytes += length(contributor) + 3;
+            }
+        }
+        if (metadata.getDownloadUrls() != null) {
+            for (KoboBookMetadata.DownloadUrl downloadUrl : metadata.getDownloadUrls()) {
+                bytes += length(downloadUrl.getUrl()) + 64;
+            }
+        }
+        return bytes;
+    }
+
+    private static int length(String value) {
+        // UTF-8 bytes, plus a little for escaping; exact enough to size a page.
+        return value != null ? value.length() + value.length() / 8 : 0;
     }
 
-    private KoboBookMetadata mapToKoboMetadata(BookEntity book, String token) {
-        BookMetadataEntity metadata = book.getMetadata();
+    private KoboBookFormat currentBookFormat() {
+        KoboSettings koboSettings = appSettingService.getAppSettings().getKoboSettings();
+        if (koboSettings != null && koboSettings.isConvertToKepub()) {
+            return KoboBookFormat.KEPUB;
+        }
+        return KoboBookFormat.EPUB3;
+    }
 
+    private KoboBookMetadata mapToKoboMetadata(KoboBookEntry book, String token, KoboBookFormat bookFormat) {
         KoboBookMetadata.Publisher publisher = KoboBookMetadata.Publisher.builder()
-                .name(metadata.getPublisher())
-                .imprint(metadata.getPublisher())
+                .name(book.publisher())
+                .imprint(book.publisher())
                 .build();
 
-        List<String> authors = Optional.ofNullable(metadata.getAuthors())
-                .map(list -> list.stream().map(AuthorEntity::getName).toList())
-                .orElse(Collections.emptyList());
-
-        List<String> categories = Optional.ofNullable(metadata.getCategories())
-                .map(list -> list.stream().map(CategoryEntity::getName).toList())
-                .orElse(Collections.emptyList());
+        List<String> categories = book.categories();
 
         KoboBookMetadata.Series series = null;
-        if (metadata.getSeriesName() != null) {
+        if (book.seriesName() != null) {
             series = KoboBookMetadata.Series.builder()
-                    .id("series_" + metadata.getSeriesName().hashCode())
-                    .name(metadata.getSeriesName())
-                    .number(metadata.getSeriesNumber() != null ? metadata.getSeriesNumber().toString() : "1")
-                    .numberFloat(metadata.getSeriesNumber() != null ? metadata.getSeriesNumber().doubleValue() : 1.0)
+                    .id("series_" + book.seriesName().hashCode())
+                    .name(book.seriesName())
+                    .number(book.seriesNumber() != null ? book.seriesNumber().toString() : "1")
+                    .numberFloat(book.seriesNumber() != null ? book.seriesNumber().doubleValue() : 1.0)
                     .build();
         }
 
-        String downloadUrl = koboUrlBuilder.downloadUrl(token, book.getId());
-
-        KoboBookFormat bookFormat = KoboBookFormat.EPUB3;
-        KoboSettings koboSettings = appSettingService.getAppSettings().getKoboSettings();
-        if (koboSettings != null && koboSettings.isConvertToKepub()) {
-            bookFormat = KoboBookFormat.KEPUB;
-        }
+        String downloadUrl = koboUrlBuilder.downloadUrl(token, book.id());
 
         return KoboBookMetadata.builder()
-                .crossRevisionId(String.valueOf(book.getId()))
-                .revisionId(String.valueOf(book.getId()))
+                .crossRevisionId(String.valueOf(book.id()))
+                .revisionId(String.valueOf(book.id()))
                 .publisher(publisher)
-                .publicationDate(metadata.getPublishedDate() != null
-                        ? metadata.getPublishedDate().atStartOfDay().atOffset(ZoneOffset.UTC).toString()
+                .publicationDate(book.publishedDate() != null
+                        ? book.publishedDate().atStartOfDay().atOffset(ZoneOffset.UTC).toString()
                         : null)
-                .isbn(metadata.getIsbn13() != null ? metadata.getIsbn13() : metadata.getIsbn10())
+                .isbn(book.isbn13() != null ? book.isbn13() : book.isbn10())
                 .genre(categories.isEmpty() ? null : categories.getFirst())
-                .slug(metadata.getTitle() != null
-                        ? metadata.getTitle().toLowerCase().replaceAll("[^a-z0-9]", "-")
+                .slug(book.title() != null
+                        ? book.title().toLowerCase().replaceAll("[^a-z0-9]", "-")
                         : null)
-                .coverImageId(String.valueOf(metadata.getBookId()))
-                .workId(String.valueOf(book.getId()))
+                .coverImageId(String.valueOf(book.id()))
+                .workId(String.valueOf(book.id()))
                 .isPreOrder(false)
                 .contributorRoles(Collections.emptyList())
-                .entitlementId(String.valueOf(book.getId()))
-                .title(metadata.getTitle())
-                .description(metadata.getDescription())
-                .contributors(authors)
+                .entitlementId(String.valueOf(book.id()))
+                .title(book.title())
+                .description(book.description())
+                .contributors(book.authors())
                 .series(series)
                 .downloadUrls(List.of(
                         KoboBookMetadata.DownloadUrl.builder()
                                 .url(downloadUrl)
                                 .format(bookFormat.toString())
-                                .size(book.getFileSizeKb() * 1024)
+                                .size(book.fileSizeKb() * 1024)
                                 .build()
                 ))
                 .build();
@@ -191,7 +292,13 @@ public class KoboEntitlementService {
         return OffsetDateTime.now(ZoneOffset.UTC);
     }
 
-    private OffsetDateTime getCreatedOn(BookEntity book) {
-        return book.getAddedOn() != null ? book.getAddedOn().atOffset(ZoneOffset.UTC) : getCurrentUtc();
+    private OffsetDateTime getCreatedOn(KoboBookEntry book) {
+        return book.addedOn() != null ? book.addedOn().atOffset(ZoneOffset.UTC) : getCurrentUtc();
+    }
+
+    private record MetadataKey(long bookId, String token) {
+    }
+
+    private record CachedMetadata(KoboBookEntry book, KoboBookFormat bookFormat, KoboBookMetadata metadata, int bytes) {
     }
 }
\ No newline at end of file
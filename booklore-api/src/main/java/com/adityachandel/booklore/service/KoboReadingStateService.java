@@ -1,29 +1,65 @@
 package com.adityachandel.booklore.service;
 
+import com.adityachandel.booklore.exception.ApiError;
 import com.adityachandel.booklore.mapper.KoboReadingStateMapper;
 import com.adityachandel.booklore.model.dto.kobo.KoboReadingState;
 import com.adityachandel.booklore.model.dto.kobo.KoboReadingStateWrapper;
 import com.adityachandel.booklore.model.dto.response.kobo.KoboReadingStateResponse;
 import com.adityachandel.booklore.model.entity.KoboReadingStateEntity;
 import com.adityachandel.booklore.repository.KoboReadingStateRepository;
-import lombok.RequiredArgsConstructor;
+import com.adityachandel.booklore.util.WriteBehindBuffer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
+/**
+ * Kobo devices push their full reading state for a book on every page turn batch. The latest state per entitlement
+ * is kept in memory and written in one batch every {@code app.progress.flush-interval-ms}, like
+ * {@link UserProgressService} does for the other readers. The device has already been told the state was saved, so a
+ * state that cannot be written is kept for the next flush and only given up on after {@value #MAX_FLUSH_ATTEMPTS}
+ * attempts.
+ */
+@Slf4j
 @Service
-@RequiredArgsConstructor
 public class KoboReadingStateService {
 
+    static final int MAX_FLUSH_ATTEMPTS = 5;
+
     private final KoboReadingStateRepository repository;
     private final KoboReadingStateMapper mapper;
+    private final TransactionTemplate transactionTemplate;
+
+    private final WriteBehindBuffer<String, KoboReadingState> buffer = new WriteBehindBuffer<>((older, newer) -> newer);
+    private final Object flushLock = new Object();
+    private final Map<String, Integer> failedAttempts = new HashMap<>();
+
+    public KoboReadingStateService(KoboReadingStateRepository repository, KoboReadingStateMapper mapper, PlatformTransactionManager transactionManager) {
+        this.repository = repository;
+        this.mapper = mapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     public KoboReadingStateResponse saveReadingState(List<KoboReadingState> readingStates) {
-        List<KoboReadingState> koboReadingStates = saveAll(readingStates);
+        for (KoboReadingState state : readingStates) {
+            String entitlementId = mapper.cleanString(state.getEntitlementId());
+            if (entitlementId == null || entitlementId.isBlank()) {
+                throw ApiError.GENERIC_BAD_REQUEST.createException("Reading state without entitlement id");
+            }
+            buffer.put(entitlementId, state);
+        }
 
-        List<KoboReadingStateResponse.UpdateResult> updateResults = koboReadingStates.stream()
+        List<KoboReadingStateResponse.UpdateResult> updateResults = readingStates.stream()
                 .map(state -> KoboReadingStateResponse.UpdateResult.builder()
                         .entitlementId(state.getEntitlementId())
                         .currentBookmarkResult(KoboReadingStateResponse.Result.success())
@@ -38,33 +74,83 @@ public class KoboReadingStateService {
                 .build();
     }
 
-    private List<KoboReadingState> saveAll(List<KoboReadingState> dtos) {
-        return dtos.stream()
-                .map(dto -> {
-                    KoboReadingStateEntity entity = repository.findByEntitlementId(dto.getEntitlementId())
-                            .map(existing -> {
-                                existing.setCurrentBookmarkJson(mapper.toJson(dto.getCurrentBookmark()));
-                                existing.setStatisticsJson(mapper.toJson(dto.getStatistics()));
-                                existing.setStatusInfoJson(mapper.toJson(dto.getStatusInfo()));
-                                existing.setLastModifiedString(mapper.cleanString(String.valueOf(dto.getLastModified())));
-                                return existing;
-                            })
-                            .orElseGet(() -> {
-                                KoboReadingStateEntity newEntity = mapper.toEntity(dto);
-                                newEntity.setCreated(mapper.cleanString(String.valueOf(dto.getCreated())));
-                                return newEntity;
-                            });
-
-                    return repository.save(entity);
-                })
-                .map(mapper::toDto)
-                .collect(Collectors.toList());
-    }
-
     public KoboReadingStateWrapper getReadingState(String entitlementId) {
-        Optional<KoboReadingState> readingState = repository.findByEntitlementId(entitlementId).map(mapper::toDto);
+        Optional<KoboReadingState> readingState = buffer.get(mapper.cleanString(entitlementId))
+                .or(() -> repository.findByEntitlementId(entitlementId).map(mapper::toDto));
         return readingState.map(state -> KoboReadingStateWrapper.builder()
                 .readingStates(List.of(state))
                 .build()).orElse(null);
     }
-}
\ No newline at end of file
+
+    @Scheduled(fixedDelayString = "${app.progress.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<String, KoboReadingState> batch = buffer.drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+                batch.keySet().forEach(failedAttempts::remove);
+            } catch (Exception e) {
+                log.warn("Batched Kobo reading state flush of {} entries failed, retrying one by one: {}", batch.size(), e.getMessage());
+                batch.forEach((entitlementId, state) -> {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> write(Map.of(entitlementId, state)));
+                        failedAttempts.remove(entitlementId);
+                    } catch (Exception single) {
+                        requeueOrDrop(entitlementId, state, single);
+                    }
+                });
+            } finally {
+                buffer.complete(batch);
+            }
+        }
+    }
+
+    /**
+     * Flushes until the buffer is empty, so states queued or requeued just before shutdown are not lost while the
+     * database is still reachable.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        for (int attempt = 0; attempt < MAX_FLUSH_ATTEMPTS && buffer.size() > 0; attempt++) {
+            flush();
+        }
+        if (buffer.size() > 0) {
+            log.error("Shutting down with {} unsaved Kobo reading states", buffer.size());
+        }
+    }
+
+    private void requeueOrDrop(String entitlementId, KoboReadingState state, Exception failure) {
+        int attempts = failedAttempts.merge(entitlementId, 1, Integer::sum);
+        if (attempts < MAX_FLUSH_ATTEMPTS) {
+            log.error("Could not save Kobo reading state for entitlement {} (attempt {} of {}), keeping it for the next flush",
+                    entitlementId, attempts, MAX_FLUSH_ATTEMPTS, failure);
+            buffer.requeue(entitlementId, state);
+        } else {
+            log.error("Dropping Kobo reading state for entitlement {} after {} failed attempts", entitlementId, attempts, failure);
+            failedAttempts.remove(entitlementId);
+        }
+    }
+
+    private void write(Map<String, KoboReadingState> batch) {
+        Map<String, KoboReadingStateEntity> existing = repository.findByEntitlementIdIn(batch.keySet()).stream()
+                .collect(Collectors.toMap(KoboReadingStateEntity::getEntitlementId, Function.identity()));
+        List<KoboReadingStateEntity> toSave = new ArrayList<>(batch.size());
+        batch.forEach((entitlementId, dto) -> {
+            KoboReadingStateEntity entity = existing.get(entitlementId);
+            if (entity != null) {
+                entity.setCurrentBookmarkJson(mapper.toJson(dto.getCurrentBookmark()));
+                entity.setStatisticsJson(mapper.toJson(dto.getStatistics()));
+                entity.setStatusInfoJson(mapper.toJson(dto.getStatusInfo()));
+                entity.setLastModifiedString(mapper.cleanString(String.valueOf(dto.getLastModified())));
+            } else {
+                entity = mapper.toEntity(dto);
+                entity.setCreated(mapper.cleanString(String.valueOf(dto.getCreated())));
+            }
+            toSave.add(entity);
+        });
+        repository.saveAll(toSave);
+    }
+}
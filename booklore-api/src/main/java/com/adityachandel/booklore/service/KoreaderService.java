@@ -15,23 +15,18 @@ import com.adityachandel.booklore.config.security.userdetails.KoreaderUserDetail
 import com.adityachandel.booklore.exception.ApiError;
 import com.adityachandel.booklore.model.dto.progress.KoreaderProgress;
 import com.adityachandel.booklore.model.entity.BookEntity;
-import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
 import com.adityachandel.booklore.model.entity.KoreaderUserEntity;
 import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
 import com.adityachandel.booklore.model.enums.ReadStatus;
-import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.repository.KoreaderUserRepository;
-import com.adityachandel.booklore.repository.UserBookProgressRepository;
-import com.adityachandel.booklore.repository.UserRepository;
 
 @Slf4j
 @AllArgsConstructor
 @Service
 public class KoreaderService {
 
-    private final UserBookProgressRepository progressRepository;
-    private final BookRepository bookRepository;
-    private final UserRepository userRepository;
+    private final UserProgressService userProgressService;
+    private final BookHashIndex bookHashIndex;
     private final KoreaderUserRepository koreaderUserRepository;
 
     private KoreaderUserDetails getAuthDetails() {
@@ -63,9 +58,9 @@ public class KoreaderService {
         KoreaderUserDetails details = getAuthDetails();
         ensureSyncEnabled(details);
         long userId = details.getBookLoreUserId();
-        BookEntity book = bookRepository.findByCurrentHash(bookHash)
+        BookEntity book = bookHashIndex.findBookByHash(bookHash)
                 .orElseThrow(() -> ApiError.GENERIC_NOT_FOUND.createException("Book not found for hash " + bookHash));
-        UserBookProgressEntity progress = progressRepository.findByUserIdAndBookId(userId, book.getId())
+        UserBookProgressEntity progress = userProgressService.findUserProgress(userId, book.getId())
                 .orElseThrow(() -> ApiError.GENERIC_NOT_FOUND.createException("No progress found for user and book"));
         log.info("getProgress: fetched progress='{}' percentage={} for userId={} bookHash={}", progress.getKoreaderProgress(), progress.getKoreaderProgressPercent(), userId, bookHash);
         return KoreaderProgress.builder()
@@ -81,26 +76,23 @@ public class KoreaderService {
         KoreaderUserDetails details = getAuthDetails();
         ensureSyncEnabled(details);
         long userId = details.getBookLoreUserId();
-        BookEntity book = bookRepository.findByCurrentHash(bookHash)
+        BookEntity book = bookHashIndex.findBookByHash(bookHash)
                 .orElseThrow(() -> ApiError.GENERIC_NOT_FOUND.createException("Book not found for hash " + bookHash));
-        BookLoreUserEntity user = userRepository.findById(userId)
-                .orElseThrow(() -> ApiError.GENERIC_NOT_FOUND.createException("User not found with id " + userId));
-        UserBookProgressEntity progress = progressRepository.findByUserIdAndBookId(userId, book.getId())
-                .orElseGet(() -> {
-                    UserBookProgressEntity p = new UserBookProgressEntity();
-                    p.setUser(user);
-                    p.setBook(book);
-                    return p;
-                });
-        progress.setKoreaderProgress(progressDto.getProgress());
-        progress.setKoreaderProgressPercent(progressDto.getPercentage());
-        progress.setKoreaderDevice(progressDto.getDevice());
-        progress.setKoreaderDeviceId(progressDto.getDevice_id());
-        progress.setKoreaderLastSyncTime(Instant.now());
-        if (progressDto.getPercentage() >= 0.5) progress.setReadStatus(ReadStatus.READING);
-        progress.setLastReadTime(Instant.now());
-        progressRepository.save(progress);
-        log.info("saveProgress: saved progress='{}' percentage={} for userId={} bookHash={}", progressDto.getProgress(), progressDto.getPercentage(), userId, bookHash);
+        Float percentage = progressDto.getPercentage();
+        if (percentage == null || percentage.isNaN() || percentage < 0 || percentage > 1) {
+            throw ApiError.GENERIC_BAD_REQUEST.createException("Progress percentage must be between 0 and 1");
+        }
+        Instant now = Instant.now();
+        userProgressService.updateProgress(userId, book.getId(), progress -> {
+            progress.setKoreaderProgress(progressDto.getProgress());
+            progress.setKoreaderProgressPercent(percentage);
+            progress.setKoreaderDevice(progressDto.getDevice());
+            progress.setKoreaderDeviceId(progressDto.getDevice_id());
+            progress.setKoreaderLastSyncTime(now);
+            if (percentage >= 0.5) progress.setReadStatus(ReadStatus.READING);
+            progress.setLastReadTime(now);
+        });
+        log.info("saveProgress: queued progress='{}' percentage={} for userId={} bookHash={}", progressDto.getProgress(), percentage, userId, bookHash);
     }
 
     private void ensureSyncEnabled(KoreaderUserDetails details) {
@@ -1,14 +1,24 @@
 package com.adityachandel.booklore.service;
 
 import com.adityachandel.booklore.config.security.service.AuthenticationService;
+import com.adityachandel.booklore.exception.ApiError;
+import com.adityachandel.booklore.model.dto.Book;
 import com.adityachandel.booklore.model.dto.MagicShelf;
 import com.adityachandel.booklore.model.entity.MagicShelfEntity;
 import com.adityachandel.booklore.repository.MagicShelfRepository;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
-import java.util.List;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @AllArgsConstructor
 @Service
@@ -16,6 +26,8 @@ public class MagicShelfService {
 
     private final MagicShelfRepository repository;
     private final AuthenticationService authenticationService;
+    private final MagicShelfBookService magicShelfBookService;
+    private final BookService bookService;
 
     public List<MagicShelf> getUserShelves() {
         Long userId = authenticationService.getAuthenticatedUser().getId();
@@ -28,14 +40,16 @@ public class MagicShelfService {
     public MagicShelf createOrUpdateShelf(MagicShelf dto) {
         Long userId = authenticationService.getAuthenticatedUser().getId();
         if (dto.getId() != null) {
-            MagicShelfEntity existing = repository.findById(dto.getId()).orElseThrow(() -> new IllegalArgumentException("Shelf not found"));
+            MagicShelfEntity existing = repository.findById(dto.getId()).orElseThrow(() -> ApiError.SHELF_NOT_FOUND.createException(dto.getId()));
             if (!existing.getUserId().equals(userId)) {
-                throw new SecurityException("You are not authorized to update this shelf");
+                throw ApiError.FORBIDDEN.createException("You are not authorized to update this shelf");
             }
             existing.setName(dto.getName());
             existing.setIcon(dto.getIcon());
             existing.setFilterJson(dto.getFilterJson());
-            return toDto(repository.save(existing));
+            MagicShelf saved = toDto(repository.save(existing));
+            evictAfterCommit(existing.getId());
+            return saved;
         }
         if (repository.existsByUserIdAndName(userId, dto.getName())) {
             throw new IllegalArgumentException("A shelf with the same name already exists for this user.");
@@ -46,11 +60,51 @@ public class MagicShelfService {
     @Transactional
     public void deleteShelf(Long id) {
         Long userId = authenticationService.getAuthenticatedUser().getId();
-        MagicShelfEntity shelf = repository.findById(id).orElseThrow(() -> new IllegalArgumentException("Shelf not found"));
+        MagicShelfEntity shelf = repository.findById(id).orElseThrow(() -> ApiError.SHELF_NOT_FOUND.createException(id));
         if (!shelf.getUserId().equals(userId)) {
-            throw new SecurityException("You are not authorized to delete this shelf");
+            throw ApiError.FORBIDDEN.createException("You are not authorized to delete this shelf");
         }
         repository.deleteById(id);
+        evictAfterCommit(id);
+    }
+
+    // Evicting before commit would let a concurrent read cache the old filter's results again.
+    private void evictAfterCommit(Long shelfId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            magicShelfBookService.evictShelf(shelfId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                magicShelfBookService.evictShelf(shelfId);
+            }
+        });
+    }
+
+    public Page<Book> getShelfBooks(Long id, Pageable pageable, boolean withDescription) {
+        Long userId = authenticationService.getAuthenticatedUser().getId();
+        Page<Long> bookIds = magicShelfBookService.getBookIds(id, userId, pageable);
+        if (bookIds.isEmpty()) {
+            return new PageImpl<>(List.of(), pageable, bookIds.getTotalElements());
+        }
+        Map<Long, Book> booksById = bookService.getBooksByIds(new HashSet<>(bookIds.getContent()), withDescription).stream()
+                .collect(Collectors.toMap(Book::getId, Function.identity()));
+        List<Book> ordered = bookIds.getContent().stream()
+                .map(booksById::get)
+                .filter(Objects::nonNull)
+                .toList();
+        return new PageImpl<>(ordered, pageable, bookIds.getTotalElements());
+    }
+
+    public List<Long> getShelfBookIds(Long id) {
+        Long userId = authenticationService.getAuthenticatedUser().getId();
+        return magicShelfBookService.getAllBookIds(id, userId);
+    }
+
+    public Map<Long, Long> getShelfBookCounts() {
+        Long userId = authenticationService.getAuthenticatedUser().getId();
+        return magicShelfBookService.countBooksForUser(userId);
     }
 
     private MagicShelf toDto(MagicShelfEntity entity) {
@@ -73,7 +127,7 @@ public class MagicShelfService {
     }
 
     public MagicShelf getShelf(Long id) {
-        MagicShelfEntity shelf = repository.findById(id).orElseThrow(() -> new IllegalArgumentException("Shelf not found"));
+        MagicShelfEntity shelf = repository.findById(id).orElseThrow(() -> ApiError.SHELF_NOT_FOUND.createException(id));
         return toDto(shelf);
     }
 }
\ No newline at end of file
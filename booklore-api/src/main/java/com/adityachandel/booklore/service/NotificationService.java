@@ -6,6 +6,8 @@ import com.adityachandel.booklore.model.entity.UserPermissionsEntity;
 import com.adityachandel.booklore.model.enums.PermissionType;
 import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.UserRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
@@ -25,6 +27,7 @@ public class NotificationService {
     private final SimpMessagingTemplate messagingTemplate;
     private final AuthenticationService authenticationService;
     private final UserRepository userRepository;
+    private final MeterRegistry meterRegistry;
 
     public void sendMessage(Topic topic, Object message) {
         try {
@@ -35,17 +38,31 @@ public class NotificationService {
             }
             String username = user.getUsername();
             messagingTemplate.convertAndSendToUser(username, topic.getPath(), message);
+            recordFanOut(topic, 1);
         } catch (Exception e) {
             log.error("Error sending message to topic {}: {}", topic, e.getMessage(), e);
         }
     }
 
+    /**
+     * Sends to a user by name, for work that finishes outside the request of the user who started it.
+     */
+    public void sendMessageToUser(String username, Topic topic, Object message) {
+        try {
+            messagingTemplate.convertAndSendToUser(username, topic.getPath(), message);
+            recordFanOut(topic, 1);
+        } catch (Exception e) {
+            log.error("Error sending message to user {} on topic {}: {}", username, topic, e.getMessage(), e);
+        }
+    }
+
     public void sendMessageToPermissions(Topic topic, Object message, Set<PermissionType> permissionTypes) {
         if (permissionTypes == null || permissionTypes.isEmpty()) return;
 
         Set<PermissionType> permissionSet = EnumSet.noneOf(PermissionType.class);
         permissionSet.addAll(permissionTypes);
 
+        int recipients = 0;
         try {
             List<BookLoreUserEntity> users = userRepository.findAll();
             for (BookLoreUserEntity user : users) {
@@ -54,6 +71,7 @@ public class NotificationService {
                     for (PermissionType p : permissionSet) {
                         if (hasPermission(perms, p)) {
                             messagingTemplate.convertAndSendToUser(user.getUsername(), topic.getPath(), message);
+                            recipients++;
                             break;
                         }
                     }
@@ -62,5 +80,14 @@ public class NotificationService {
         } catch (Exception e) {
             log.error("Error sending message to users with permissions {}: {}", permissionSet, e.getMessage(), e);
         }
+        recordFanOut(topic, recipients);
+    }
+
+    private void recordFanOut(Topic topic, int recipients) {
+        DistributionSummary.builder("booklore.websocket.fanout")
+                .description("Users a single WebSocket notification was delivered to")
+                .tag("topic", topic.name())
+                .register(meterRegistry)
+                .record(recipients);
     }
 }
\ No newline at end of file
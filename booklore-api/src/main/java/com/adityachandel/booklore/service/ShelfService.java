@@ -14,9 +14,11 @@ import com.adityachandel.booklore.model.enums.ShelfType;
 import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.repository.ShelfRepository;
 import com.adityachandel.booklore.repository.UserRepository;
+import com.adityachandel.booklore.service.kobo.KoboShelfChangeService;
 import lombok.AllArgsConstructor;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -31,6 +33,7 @@ public class ShelfService {
     private final BookMapper bookMapper;
     private final AuthenticationService authenticationService;
     private final UserRepository userRepository;
+    private final KoboShelfChangeService koboShelfChangeService;
 
     public Shelf createShelf(ShelfCreateRequest request) {
         Long userId = getAuthenticatedUserId();
@@ -63,7 +66,9 @@ public class ShelfService {
         return shelfMapper.toShelf(findShelfByIdOrThrow(shelfId));
     }
 
+    @Transactional
     public void deleteShelf(Long shelfId) {
+        shelfRepository.findById(shelfId).ifPresent(koboShelfChangeService::recordShelfDeleted);
         shelfRepository.deleteById(shelfId);
     }
 
@@ -1,22 +1,180 @@
 package com.adityachandel.booklore.service;
 
 import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.repository.UserBookProgressRepository;
-import lombok.RequiredArgsConstructor;
+import com.adityachandel.booklore.repository.UserRepository;
+import com.adityachandel.booklore.util.WriteBehindBuffer;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
-@RequiredArgsConstructor
+/**
+ * Single entry point for reading and writing {@code user_book_progress}.
+ * <p>
+ * Readers report progress every few seconds, so writes are buffered per user and book and flushed in one batch every
+ * {@code app.progress.flush-interval-ms} and at shutdown, instead of costing a lookup and a save per request. Reads
+ * go through the same buffer, so callers always see their latest update even before it is flushed. Changes must be
+ * absolute assignments, as they can be applied more than once. An entry that cannot be written is kept for the next
+ * flush and only given up on after {@value #MAX_FLUSH_ATTEMPTS} attempts.
+ */
+@Slf4j
 @Service
 public class UserProgressService {
 
+    static final int MAX_FLUSH_ATTEMPTS = 5;
+
     private final UserBookProgressRepository userBookProgressRepository;
+    private final UserRepository userRepository;
+    private final BookRepository bookRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Counter updatesCounter;
+    private final Counter flushedCounter;
+
+    private final WriteBehindBuffer<ProgressKey, List<Consumer<UserBookProgressEntity>>> buffer = new WriteBehindBuffer<>(UserProgressService::concat);
+    private final Object flushLock = new Object();
+    private final Map<ProgressKey, Integer> failedAttempts = new HashMap<>();
+
+    record ProgressKey(long userId, long bookId) {
+    }
+
+    public UserProgressService(UserBookProgressRepository userBookProgressRepository, UserRepository userRepository, BookRepository bookRepository,
+                               PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.userBookProgressRepository = userBookProgressRepository;
+        this.userRepository = userRepository;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.updatesCounter = meterRegistry.counter("booklore.progress.updates");
+        this.flushedCounter = meterRegistry.counter("booklore.progress.flushed");
+        meterRegistry.gauge("booklore.progress.pending", buffer, WriteBehindBuffer::size);
+    }
 
     public Map<Long, UserBookProgressEntity> fetchUserProgress(Long userId, Set<Long> bookIds) {
-        return userBookProgressRepository.findByUserIdAndBookIdIn(userId, bookIds).stream()
+        Map<Long, UserBookProgressEntity> progress = userBookProgressRepository.findByUserIdAndBookIdIn(userId, bookIds).stream()
                 .collect(Collectors.toMap(p -> p.getBook().getId(), p -> p));
+        if (buffer.size() == 0) {
+            return progress;
+        }
+        Map<Long, UserBookProgressEntity> merged = new HashMap<>(progress);
+        for (Long bookId : bookIds) {
+            buffer.get(new ProgressKey(userId, bookId))
+                    .ifPresent(changes -> merged.put(bookId, overlay(progress.get(bookId), changes)));
+        }
+        return merged;
+    }
+
+    public Optional<UserBookProgressEntity> findUserProgress(long userId, long bookId) {
+        Optional<UserBookProgressEntity> stored = userBookProgressRepository.findByUserIdAndBookId(userId, bookId);
+        return buffer.get(new ProgressKey(userId, bookId))
+                .map(changes -> overlay(stored.orElse(null), changes))
+                .or(() -> stored);
+    }
+
+    /**
+     * Queues a change to a user's progress on a book. It is visible to reads immediately and written with the next
+     * flush, creating the row if needed.
+     */
+    public void updateProgress(long userId, long bookId, Consumer<UserBookProgressEntity> change) {
+        buffer.put(new ProgressKey(userId, bookId), List.of(change));
+        updatesCounter.increment();
+    }
+
+    @Scheduled(fixedDelayString = "${app.progress.flush-interval-ms:2000}")
+    public void flush() {
+        synchronized (flushLock) {
+            Map<ProgressKey, List<Consumer<UserBookProgressEntity>>> batch = buffer.drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(batch));
+                flushedCounter.increment(batch.size());
+                batch.keySet().forEach(failedAttempts::remove);
+            } catch (Exception e) {
+                log.warn("Batched progress flush of {} entries failed, retrying one by one: {}", batch.size(), e.getMessage());
+                batch.forEach((key, changes) -> {
+                    try {
+                        transactionTemplate.executeWithoutResult(status -> write(Map.of(key, changes)));
+                        flushedCounter.increment();
+                        failedAttempts.remove(key);
+                    } catch (Exception single) {
+                        requeueOrDrop(key, changes, single);
+                    }
+                });
+            } finally {
+                buffer.complete(batch);
+            }
+        }
+    }
+
+    /**
+     * Flushes until the buffer is empty, so progress queued or requeued just before shutdown is not lost while the
+     * database is still reachable.
+     */
+    @PreDestroy
+    public void flushOnShutdown() {
+        for (int attempt = 0; attempt < MAX_FLUSH_ATTEMPTS && buffer.size() > 0; attempt++) {
+            flush();
+        }
+        if (buffer.size() > 0) {
+            log.error("Shutting down with {} unsaved progress updates", buffer.size());
+        }
+    }
+
+    private void requeueOrDrop(ProgressKey key, List<Consumer<UserBookProgressEntity>> changes, Exception failure) {
+        int attempts = failedAttempts.merge(key, 1, Integer::sum);
+        if (attempts < MAX_FLUSH_ATTEMPTS) {
+            log.error("Could not save progress of user {} for book {} (attempt {} of {}), keeping it for the next flush",
+                    key.userId(), key.bookId(), attempts, MAX_FLUSH_ATTEMPTS, failure);
+            buffer.requeue(key, changes);
+        } else {
+            log.error("Dropping progress of user {} for book {} after {} failed attempts", key.userId(), key.bookId(), attempts, failure);
+            failedAttempts.remove(key);
+        }
+    }
+
+    private void write(Map<ProgressKey, List<Consumer<UserBookProgressEntity>>> batch) {
+        Map<Long, List<ProgressKey>> keysByUser = batch.keySet().stream().collect(Collectors.groupingBy(ProgressKey::userId));
+        List<UserBookProgressEntity> toSave = new ArrayList<>(batch.size());
+        keysByUser.forEach((userId, keys) -> {
+            Set<Long> bookIds = keys.stream().map(ProgressKey::bookId).collect(Collectors.toSet());
+            Map<Long, UserBookProgressEntity> existing = userBookProgressRepository.findByUserIdAndBookIdIn(userId, bookIds).stream()
+                    .collect(Collectors.toMap(p -> p.getBook().getId(), p -> p));
+            for (ProgressKey key : keys) {
+                UserBookProgressEntity progress = existing.get(key.bookId());
+                if (progress == null) {
+                    progress = new UserBookProgressEntity();
+                    progress.setUser(userRepository.getReferenceById(userId));
+                    progress.setBook(bookRepository.getReferenceById(key.bookId()));
+                }
+                UserBookProgressEntity target = progress;
+                batch.get(key).forEach(change -> change.accept(target));
+                toSave.add(target);
+            }
+        });
+        userBookProgressRepository.saveAll(toSave);
+    }
+
+    // Applies queued changes to a detached copy, so a read inside a transaction never dirties the stored row.
+    private static UserBookProgressEntity overlay(UserBookProgressEntity stored, List<Consumer<UserBookProgressEntity>> changes) {
+        UserBookProgressEntity copy = stored != null ? stored.toBuilder().build() : new UserBookProgressEntity();
+        changes.forEach(change -> change.accept(copy));
+        return copy;
+    }
+
+    private static <T> List<T> concat(List<T> older, List<T> newer) {
+        List<T> combined = new ArrayList<>(older.size() + newer.size());
+        combined.addAll(older);
+        combined.addAll(newer);
+        return combined;
     }
 }
@@ -26,7 +26,7 @@ import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessor;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessorRegistry;
 import com.adityachandel.booklore.service.metadata.MetadataRefreshService;
-import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
 import com.adityachandel.booklore.util.FileUtils;
 import com.adityachandel.booklore.util.PathPatternResolver;
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -62,7 +62,7 @@ public class BookDropService {
     private final BookdropFileRepository bookdropFileRepository;
     private final LibraryRepository libraryRepository;
     private final BookRepository bookRepository;
-    private final MonitoringService monitoringService;
+    private final WatchSuppressionService watchSuppressionService;
     private final BookdropMonitoringService bookdropMonitoringService;
     private final NotificationService notificationService;
     private final MetadataRefreshService metadataRefreshService;
@@ -88,10 +88,24 @@ public class BookDropService {
     }
 
     public BookdropFinalizeResult finalizeImport(BookdropFinalizeRequest request) {
-        boolean monitoringWasActive = !monitoringService.isPaused();
-        if (monitoringWasActive) monitoringService.pauseMonitoring();
         bookdropMonitoringService.pauseMonitoring();
+        try (WatchSuppressionService.Suppression suppression = watchSuppressionService.suppress("bookdrop import")) {
+            return finalizeFiles(request, suppression);
+        } finally {
+            Thread.startVirtualThread(() -> {
+                try {
+                    Thread.sleep(5000);
+                    bookdropMonitoringService.resumeMonitoring();
+                    log.info("Bookdrop monitoring resumed after 5s delay following finalizeImport");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    log.warn("Interrupted while delaying resume of bookdrop monitoring after finalizeImport");
+                }
+            });
+        }
+    }
 
+    private BookdropFinalizeResult finalizeFiles(BookdropFinalizeRequest request, WatchSuppressionService.Suppression suppression) {
         BookdropFinalizeResult results = BookdropFinalizeResult.builder()
                 .processedAt(Instant.now())
                 .build();
@@ -133,7 +147,7 @@ public class BookDropService {
                         totalFilesProcessed.incrementAndGet();
                         continue;
                     }
-                    processFile(file, metadataById.get(id), defaultLibraryId, defaultPathId, results, failedCount);
+                    processFile(file, metadataById.get(id), defaultLibraryId, defaultPathId, results, failedCount, suppression);
                     totalFilesProcessed.incrementAndGet();
                 }
             }
@@ -164,7 +178,7 @@ public class BookDropService {
                         totalFilesProcessed.incrementAndGet();
                         continue;
                     }
-                    processFile(file, metadataById.get(id), defaultLibraryId, defaultPathId, results, failedCount);
+                    processFile(file, metadataById.get(id), defaultLibraryId, defaultPathId, results, failedCount, suppression);
                     totalFilesProcessed.incrementAndGet();
                 }
             }
@@ -179,20 +193,6 @@ public class BookDropService {
                 results.getFailed(),
                 results.getTotalFiles());
 
-        if (monitoringWasActive) {
-            Thread.startVirtualThread(() -> {
-                try {
-                    Thread.sleep(5000);
-                    monitoringService.resumeMonitoring();
-                    bookdropMonitoringService.resumeMonitoring();
-                    log.info("Monitoring resumed after 5s delay following finalizeImport");
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while delaying resume of monitoring after finalizeImport");
-                }
-            });
-        }
-
         return results;
     }
 
@@ -202,7 +202,8 @@ public class BookDropService {
             Long defaultLibraryId,
             Long defaultPathId,
             BookdropFinalizeResult results,
-            AtomicInteger failedCount
+            AtomicInteger failedCount,
+            WatchSuppressionService.Suppression suppression
     ) {
         try {
             Long libraryId;
@@ -229,7 +230,7 @@ public class BookDropService {
                 log.debug("Processing fileId={}, fileName={} with default metadata, libraryId={}, pathId={}", fileEntity.getId(), fileEntity.getFileName(), libraryId, pathId);
             }
 
-            BookdropFileResult result = moveFile(libraryId, pathId, metadata, fileEntity);
+            BookdropFileResult result = moveFile(libraryId, pathId, metadata, fileEntity, suppression);
 
             results.getResults().add(result);
             if (!result.isSuccess()) {
@@ -247,7 +248,8 @@ public class BookDropService {
         }
     }
 
-    private BookdropFileResult moveFile(long libraryId, long pathId, BookMetadata metadata, BookdropFileEntity bookdropFile) throws Exception {
+    private BookdropFileResult moveFile(long libraryId, long pathId, BookMetadata metadata, BookdropFileEntity bookdropFile,
+                                        WatchSuppressionService.Suppression suppression) throws Exception {
         LibraryEntity library = libraryRepository.findById(libraryId)
                 .orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
 
@@ -286,6 +288,7 @@ public class BookDropService {
         }
 
         try {
+            suppression.add(target);
             Files.createDirectories(target.getParent());
             Files.move(source, target);
 
@@ -1,5 +1,6 @@
 package com.adityachandel.booklore.service.bookdrop;
 
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.BookDropFileEvent;
 import com.adityachandel.booklore.model.entity.BookdropFileEntity;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
@@ -9,12 +10,14 @@ import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookdropFileRepository;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardWatchEventKinds;
@@ -22,141 +25,319 @@ import java.nio.file.WatchEvent;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Turns bookdrop folder events into pending bookdrop files in three stages.
+ * <p>
+ * A dispatcher thread drains the event queue, which skips events that are already queued, so a large drop is
+ * enqueued in linear time. Local work (creating the entry, extracting embedded metadata and the cover) runs on a
+ * pool sized to the CPU. Online metadata lookups run on a separate single thread, at most one every
+ * {@code app.bookdrop.enrichment-interval-ms}, so a big drop does not hammer the providers and does not hold up
+ * local extraction of the files behind it. Progress goes out as one summary every
+ * {@code app.bookdrop.progress-interval-ms} instead of several notifications per file.
+ * <p>
+ * Lookups still waiting at shutdown are dropped, but their files are already stored without fetched metadata, and
+ * the lookup is resumed when the startup scan finds them again.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class BookdropEventHandlerService {
 
+    private static final Set<PermissionType> NOTIFY_PERMISSIONS = Set.of(PermissionType.ADMIN, PermissionType.MANIPULATE_LIBRARY);
+
     private final BookdropFileRepository bookdropFileRepository;
     private final NotificationService notificationService;
     private final BookdropNotificationService bookdropNotificationService;
     private final AppSettingService appSettingService;
     private final BookdropMetadataService bookdropMetadataService;
+    private final AppProperties.Bookdrop settings;
 
     private final BlockingQueue<BookDropFileEvent> fileQueue = new LinkedBlockingQueue<>();
+    private final Set<BookDropFileEvent> queuedEvents = ConcurrentHashMap.newKeySet();
+    private final Set<String> filesInProgress = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger extracting = new AtomicInteger();
+    private final AtomicInteger enriching = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicBoolean progressChanged = new AtomicBoolean();
+
+    private final Object enrichmentPacing = new Object();
+    private long nextEnrichmentNanos;
+
     private volatile boolean running = true;
-    private Thread workerThread;
+    private Thread dispatcherThread;
+    private ExecutorService extractionPool;
+    private ExecutorService enrichmentPool;
+    private ScheduledExecutorService progressReporter;
+
+    public BookdropEventHandlerService(BookdropFileRepository bookdropFileRepository, NotificationService notificationService,
+                                       BookdropNotificationService bookdropNotificationService, AppSettingService appSettingService,
+                                       BookdropMetadataService bookdropMetadataService, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.bookdropFileRepository = bookdropFileRepository;
+        this.notificationService = notificationService;
+        this.bookdropNotificationService = bookdropNotificationService;
+        this.appSettingService = appSettingService;
+        this.bookdropMetadataService = bookdropMetadataService;
+        this.settings = appProperties.getBookdrop();
+
+        Gauge.builder("booklore.bookdrop.queued", fileQueue, BlockingQueue::size)
+                .description("Bookdrop events waiting for the dispatcher")
+                .register(meterRegistry);
+        Gauge.builder("booklore.bookdrop.in.progress", extracting, AtomicInteger::get)
+                .description("Bookdrop files handed to a pipeline stage and not finished yet")
+                .tag("stage", "extraction")
+                .register(meterRegistry);
+        Gauge.builder("booklore.bookdrop.in.progress", enriching, AtomicInteger::get)
+                .description("Bookdrop files handed to a pipeline stage and not finished yet")
+                .tag("stage", "enrichment")
+                .register(meterRegistry);
+    }
 
     @PostConstruct
     public void init() {
-        workerThread = new Thread(this::processQueue, "BookdropFileProcessor");
-        workerThread.start();
+        int extractionThreads = settings.getExtractionThreads() > 0
+                ? settings.getExtractionThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        extractionPool = Executors.newFixedThreadPool(extractionThreads, Thread.ofPlatform().name("bookdrop-extract-", 0).daemon().factory());
+        enrichmentPool = Executors.newSingleThreadExecutor(Thread.ofPlatform().name("bookdrop-enrich").daemon().factory());
+        progressReporter = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("bookdrop-progress").daemon().factory());
+        long progressIntervalMs = Math.max(250, settings.getProgressIntervalMs());
+        progressReporter.scheduleWithFixedDelay(this::reportProgress, progressIntervalMs, progressIntervalMs, TimeUnit.MILLISECONDS);
+
+        dispatcherThread = new Thread(this::dispatch, "BookdropFileProcessor");
+        dispatcherThread.start();
+        log.info("Bookdrop pipeline started with {} extraction threads", extractionThreads);
     }
 
     @PreDestroy
     public void shutdown() {
         running = false;
-        if (workerThread != null) {
-            workerThread.interrupt();
+        if (dispatcherThread != null) {
+            dispatcherThread.interrupt();
         }
+        extractionPool.shutdownNow();
+        List<Runnable> notEnriched = enrichmentPool.shutdownNow();
+        if (!notEnriched.isEmpty()) {
+            log.info("Stopping with {} bookdrop files waiting for metadata, the download resumes when they are scanned again", notEnriched.size());
+        }
+        progressReporter.shutdownNow();
     }
 
     public void enqueueFile(Path file, WatchEvent.Kind<?> kind) {
         BookDropFileEvent event = new BookDropFileEvent(file, kind);
-        if (!fileQueue.contains(event)) {
+        if (queuedEvents.add(event)) {
             fileQueue.offer(event);
         }
     }
 
-    private void processQueue() {
+    public void enqueueDeletesForMissingFiles() {
+        bookdropFileRepository.findAll().stream()
+                .map(entity -> Path.of(entity.getFilePath()))
+                .filter(Files::notExists)
+                .forEach(path -> enqueueFile(path, StandardWatchEventKinds.ENTRY_DELETE));
+    }
+
+    private void dispatch() {
         while (running) {
             try {
-                processFile(fileQueue.take());
+                BookDropFileEvent event = fileQueue.take();
+                queuedEvents.remove(event);
+                if (event.getKind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                    submitExtraction(event.getFile());
+                } else if (event.getKind() == StandardWatchEventKinds.ENTRY_DELETE) {
+                    handleDelete(event.getFile());
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
-                log.info("File processing thread interrupted, shutting down.");
+                log.info("Bookdrop dispatcher interrupted, shutting down.");
+                return;
+            } catch (Exception e) {
+                log.error("Error dispatching bookdrop event: {}", e.getMessage(), e);
             }
         }
     }
 
-    public void processFile(BookDropFileEvent event) {
-        Path file = event.getFile();
-        WatchEvent.Kind<?> kind = event.getKind();
-
-        if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
-            try {
-                if (!Files.exists(file)) {
-                    log.warn("File does not exist, ignoring: {}", file);
-                    return;
-                }
+    private void submitExtraction(Path file) {
+        String filePath = file.toAbsolutePath().toString();
+        if (!filesInProgress.add(filePath)) {
+            log.debug("Bookdrop file is already being processed, ignoring duplicate event: {}", filePath);
+            return;
+        }
+        extracting.incrementAndGet();
+        progressChanged.set(true);
+        try {
+            extractionPool.execute(() -> extract(file, filePath));
+        } catch (RejectedExecutionException e) {
+            extracting.decrementAndGet();
+            filesInProgress.remove(filePath);
+        }
+    }
 
-                if (Files.isDirectory(file)) {
-                    log.info("New folder detected in bookdrop, ignoring: {}", file);
-                    return;
+    private void extract(Path file, String filePath) {
+        boolean handedOver = false;
+        try {
+            if (!isSupportedFile(file)) {
+                skipped.incrementAndGet();
+                return;
+            }
+            boolean downloadMetadata = appSettingService.getAppSettings().isMetadataDownloadOnBookdrop();
+            BookdropFileEntity existing = bookdropFileRepository.findByFilePath(filePath).orElse(null);
+            Long bookdropFileId;
+            if (existing == null) {
+                bookdropFileId = createEntry(file, filePath);
+                bookdropMetadataService.attachInitialMetadata(bookdropFileId);
+                if (!downloadMetadata) {
+                    log.info("Metadata download is disabled. Only initial metadata extracted for file: {}", file.getFileName());
                 }
+            } else if (downloadMetadata && existing.getStatus() == BookdropFileEntity.Status.PENDING_REVIEW && existing.getFetchedMetadata() == null) {
+                // Its lookup was still queued or failed when the application last stopped.
+                log.info("Resuming metadata download for bookdrop file: {}", filePath);
+                bookdropFileId = existing.getId();
+            } else {
+                log.info("File already exists in Bookdrop and is pending review or acceptance: {}", filePath);
+                skipped.incrementAndGet();
+                return;
+            }
+            if (downloadMetadata) {
+                handedOver = submitEnrichment(bookdropFileId, file, filePath);
+            }
+            if (!handedOver) {
+                completed.incrementAndGet();
+            }
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.error("Error handling bookdrop file: {}", file, e);
+        } finally {
+            extracting.decrementAndGet();
+            if (!handedOver) {
+                finish(file, filePath);
+            }
+        }
+    }
 
-                String filePath = file.toAbsolutePath().toString();
-                String fileName = file.getFileName().toString();
-
-                if (BookFileExtension.fromFileName(fileName).isEmpty()) {
-                    log.info("Unsupported file type detected, ignoring file: {}", fileName);
-                    return;
-                }
+    private boolean isSupportedFile(Path file) {
+        if (!Files.exists(file)) {
+            log.warn("File does not exist, ignoring: {}", file);
+            return false;
+        }
+        if (Files.isDirectory(file)) {
+            log.info("New folder detected in bookdrop, ignoring: {}", file);
+            return false;
+        }
+        if (BookFileExtension.fromFileName(file.getFileName().toString()).isEmpty()) {
+            log.info("Unsupported file type detected, ignoring file: {}", file.getFileName());
+            return false;
+        }
+        return true;
+    }
 
-                if (bookdropFileRepository.findByFilePath(filePath).isPresent()) {
-                    log.info("File already exists in Bookdrop and is pending review or acceptance: {}", filePath);
-                    return;
-                }
+    private Long createEntry(Path file, String filePath) throws IOException {
+        log.info("Handling new bookdrop file: {}", file);
+        BookdropFileEntity bookdropFileEntity = BookdropFileEntity.builder()
+                .filePath(filePath)
+                .fileName(file.getFileName().toString())
+                .fileSize(Files.size(file))
+                .status(BookdropFileEntity.Status.PENDING_REVIEW)
+                .createdAt(Instant.now())
+                .updatedAt(Instant.now())
+                .build();
+        return bookdropFileRepository.save(bookdropFileEntity).getId();
+    }
 
-                log.info("Handling new bookdrop file: {}", file);
-
-                int queueSize = fileQueue.size();
-                notificationService.sendMessageToPermissions(
-                        Topic.LOG,
-                        new LogNotification("Processing bookdrop file: " + fileName + " (" + queueSize + " files remaining)"),
-                        Set.of(PermissionType.ADMIN, PermissionType.MANIPULATE_LIBRARY)
-                );
-
-                BookdropFileEntity bookdropFileEntity = BookdropFileEntity.builder()
-                        .filePath(filePath)
-                        .fileName(fileName)
-                        .fileSize(Files.size(file))
-                        .status(BookdropFileEntity.Status.PENDING_REVIEW)
-                        .createdAt(Instant.now())
-                        .updatedAt(Instant.now())
-                        .build();
-
-                bookdropFileEntity = bookdropFileRepository.save(bookdropFileEntity);
-
-                if (appSettingService.getAppSettings().isMetadataDownloadOnBookdrop()) {
-                    bookdropMetadataService.attachInitialMetadata(bookdropFileEntity.getId());
-                    bookdropMetadataService.attachFetchedMetadata(bookdropFileEntity.getId());
-                } else {
-                    bookdropMetadataService.attachInitialMetadata(bookdropFileEntity.getId());
-                    log.info("Metadata download is disabled. Only initial metadata extracted for file: {}", bookdropFileEntity.getFileName());
-                }
+    private boolean submitEnrichment(Long bookdropFileId, Path file, String filePath) {
+        enriching.incrementAndGet();
+        try {
+            enrichmentPool.execute(() -> enrich(bookdropFileId, file, filePath));
+            return true;
+        } catch (RejectedExecutionException e) {
+            enriching.decrementAndGet();
+            return false;
+        }
+    }
 
-                bookdropNotificationService.sendBookdropFileSummaryNotification();
-
-                if (fileQueue.isEmpty()) {
-                    notificationService.sendMessageToPermissions(
-                            Topic.LOG,
-                            new LogNotification("All bookdrop files have finished processing"),
-                            Set.of(PermissionType.ADMIN, PermissionType.MANIPULATE_LIBRARY)
-                    );
-                } else {
-                    notificationService.sendMessageToPermissions(
-                            Topic.LOG,
-                            new LogNotification("Finished processing bookdrop file: " + fileName + " (" + fileQueue.size() + " files remaining)"),
-                            Set.of(PermissionType.ADMIN, PermissionType.MANIPULATE_LIBRARY)
-                    );
-                }
+    private void enrich(Long bookdropFileId, Path file, String filePath) {
+        try {
+            awaitEnrichmentSlot();
+            bookdropMetadataService.attachFetchedMetadata(bookdropFileId);
+            completed.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            log.warn("Failed to fetch metadata for bookdrop file {}: {}", file, e.getMessage());
+        } finally {
+            enriching.decrementAndGet();
+            finish(file, filePath);
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Error handling bookdrop file: {}", file, e);
-            }
+    private void awaitEnrichmentSlot() throws InterruptedException {
+        long waitNanos;
+        synchronized (enrichmentPacing) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, nextEnrichmentNanos);
+            nextEnrichmentNanos = slot + TimeUnit.MILLISECONDS.toNanos(settings.getEnrichmentIntervalMs());
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
 
-        } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
-            String deletedPath = file.toAbsolutePath().toString();
-            log.info("Detected deletion event: {}", deletedPath);
+    private void finish(Path file, String filePath) {
+        // A delete event handled while the file was in flight found nothing to remove; clean up behind it.
+        if (Files.notExists(file)) {
+            bookdropFileRepository.deleteAllByFilePathStartingWith(filePath);
+        }
+        filesInProgress.remove(filePath);
+        progressChanged.set(true);
+    }
 
-            int deletedCount = bookdropFileRepository.deleteAllByFilePathStartingWith(deletedPath);
-            log.info("Deleted {} BookdropFile record(s) from database matching path: {}", deletedCount, deletedPath);
+    private void handleDelete(Path file) {
+        String deletedPath = file.toAbsolutePath().toString();
+        log.info("Detected deletion event: {}", deletedPath);
+        int deletedCount = bookdropFileRepository.deleteAllByFilePathStartingWith(deletedPath);
+        log.info("Deleted {} BookdropFile record(s) from database matching path: {}", deletedCount, deletedPath);
+        progressChanged.set(true);
+    }
 
+    private void reportProgress() {
+        try {
+            if (!progressChanged.getAndSet(false)) {
+                return;
+            }
             bookdropNotificationService.sendBookdropFileSummaryNotification();
+
+            int queued = fileQueue.size();
+            int inExtraction = extracting.get();
+            int inEnrichment = enriching.get();
+            int done = completed.get();
+            int ignored = skipped.get();
+            int errors = failed.get();
+            if (queued + inExtraction + inEnrichment > 0) {
+                sendLog("Processing bookdrop files: " + done + " done, " + inExtraction + " extracting, "
+                        + inEnrichment + " awaiting metadata, " + queued + " queued"
+                        + (ignored > 0 ? ", " + ignored + " skipped" : "") + (errors > 0 ? ", " + errors + " failed" : ""));
+            } else if (done + errors > 0) {
+                completed.addAndGet(-done);
+                skipped.addAndGet(-ignored);
+                failed.addAndGet(-errors);
+                sendLog("All bookdrop files have finished processing (" + done + " added"
+                        + (ignored > 0 ? ", " + ignored + " skipped" : "") + (errors > 0 ? ", " + errors + " failed" : "") + ")");
+            } else if (ignored > 0) {
+                // Nothing new among them, e.g. a rescan of files that are all pending review already.
+                skipped.addAndGet(-ignored);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to report bookdrop progress: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    private void sendLog(String message) {
+        notificationService.sendMessageToPermissions(Topic.LOG, new LogNotification(message), NOTIFY_PERMISSIONS);
+    }
+}
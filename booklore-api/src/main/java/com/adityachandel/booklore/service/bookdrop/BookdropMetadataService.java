@@ -10,6 +10,7 @@ import com.adityachandel.booklore.model.enums.BookFileExtension;
 import com.adityachandel.booklore.model.enums.MetadataProvider;
 import com.adityachandel.booklore.repository.BookdropFileRepository;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 import com.adityachandel.booklore.service.metadata.MetadataRefreshService;
 import com.adityachandel.booklore.service.metadata.extractor.CbxMetadataExtractor;
 import com.adityachandel.booklore.service.metadata.extractor.EpubMetadataExtractor;
@@ -22,12 +23,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ThreadLocalRandom;
 
 import static com.adityachandel.booklore.model.entity.BookdropFileEntity.Status.PENDING_REVIEW;
 
@@ -48,14 +48,21 @@ public class BookdropMetadataService {
     @Transactional
     public BookdropFileEntity attachInitialMetadata(Long bookdropFileId) throws JsonProcessingException {
         BookdropFileEntity entity = getOrThrow(bookdropFileId);
-        BookMetadata initial = extractInitialMetadata(entity);
-        extractAndSaveCover(entity);
+        BookMetadata initial;
+        try (BookFileSession session = BookFileSession.open(Path.of(entity.getFilePath()))) {
+            initial = extractInitialMetadata(session);
+            extractAndSaveCover(entity, session);
+        }
         String initialJson = objectMapper.writeValueAsString(initial);
         entity.setOriginalMetadata(initialJson);
         entity.setUpdatedAt(Instant.now());
         return bookdropFileRepository.save(entity);
     }
 
+    /**
+     * Looks the file up with the configured online providers. Callers are responsible for pacing these calls, see
+     * {@link BookdropEventHandlerService}.
+     */
     @Transactional
     public BookdropFileEntity attachFetchedMetadata(Long bookdropFileId) throws JsonProcessingException {
         BookdropFileEntity entity = getOrThrow(bookdropFileId);
@@ -73,14 +80,6 @@ public class BookdropMetadataService {
                 .metadata(initial)
                 .build();
 
-        if (providers.contains(MetadataProvider.GoodReads)) {
-            try {
-                Thread.sleep(ThreadLocalRandom.current().nextLong(250, 1250));
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            }
-        }
-
         Map<MetadataProvider, BookMetadata> metadataMap = metadataRefreshService.fetchMetadataForBook(providers, book);
         BookMetadata fetchedMetadata = metadataRefreshService.buildFetchMetadata(book.getId(), request, metadataMap);
         String fetchedJson = objectMapper.writeValueAsString(fetchedMetadata);
@@ -96,24 +95,22 @@ public class BookdropMetadataService {
         return bookdropFileRepository.findById(id).orElseThrow(() -> new IllegalArgumentException("Bookdrop file not found: " + id));
     }
 
-    private BookMetadata extractInitialMetadata(BookdropFileEntity entity) {
-        File file = new File(entity.getFilePath());
-        BookFileExtension fileExt = BookFileExtension.fromFileName(file.getName()).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
+    private BookMetadata extractInitialMetadata(BookFileSession session) {
+        BookFileExtension fileExt = BookFileExtension.fromFileName(session.getFile().getName()).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
         return switch (fileExt) {
-            case PDF -> pdfMetadataExtractor.extractMetadata(file);
-            case EPUB -> epubMetadataExtractor.extractMetadata(file);
-            case CBZ, CBR, CB7 -> cbxMetadataExtractor.extractMetadata(file);
+            case PDF -> pdfMetadataExtractor.extractMetadata(session);
+            case EPUB -> epubMetadataExtractor.extractMetadata(session);
+            case CBZ, CBR, CB7 -> cbxMetadataExtractor.extractMetadata(session);
         };
     }
 
-    private void extractAndSaveCover(BookdropFileEntity entity) {
-        File file = new File(entity.getFilePath());
-        BookFileExtension fileExt = BookFileExtension.fromFileName(file.getName()).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
+    private void extractAndSaveCover(BookdropFileEntity entity, BookFileSession session) {
+        BookFileExtension fileExt = BookFileExtension.fromFileName(session.getFile().getName()).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
         byte[] coverBytes;
         coverBytes = switch (fileExt) {
-            case EPUB -> epubMetadataExtractor.extractCover(file);
-            case PDF -> pdfMetadataExtractor.extractCover(file);
-            case CBZ, CBR, CB7 -> cbxMetadataExtractor.extractCover(file);
+            case EPUB -> epubMetadataExtractor.extractCover(session);
+            case PDF -> pdfMetadataExtractor.extractCover(session);
+            case CBZ, CBR, CB7 -> cbxMetadataExtractor.extractCover(session);
         };
         if (coverBytes != null) {
             try {
@@ -2,6 +2,7 @@ package com.adityachandel.booklore.service.bookdrop;
 
 import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
+import com.adityachandel.booklore.service.monitoring.OverflowResyncService;
 import com.adityachandel.booklore.util.FileService;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
@@ -19,6 +20,7 @@ public class BookdropMonitoringService {
 
     private final AppProperties appProperties;
     private final BookdropEventHandlerService eventHandler;
+    private final OverflowResyncService overflowResyncService;
 
     private Path bookdrop;
     private WatchService watchService;
@@ -27,9 +29,10 @@ public class BookdropMonitoringService {
     private WatchKey watchKey;
     private volatile boolean paused;
 
-    public BookdropMonitoringService(AppProperties appProperties, BookdropEventHandlerService eventHandler) {
+    public BookdropMonitoringService(AppProperties appProperties, BookdropEventHandlerService eventHandler, OverflowResyncService overflowResyncService) {
         this.appProperties = appProperties;
         this.eventHandler = eventHandler;
+        this.overflowResyncService = overflowResyncService;
     }
 
     @PostConstruct
@@ -134,7 +137,8 @@ public class BookdropMonitoringService {
                 WatchEvent.Kind<?> kind = event.kind();
 
                 if (kind == StandardWatchEventKinds.OVERFLOW) {
-                    log.warn("Overflow event detected");
+                    log.warn("Overflow event detected, scheduling bookdrop resync");
+                    overflowResyncService.scheduleBookdropResync(bookdrop, this::resyncAfterOverflow);
                     continue;
                 }
 
@@ -184,6 +188,11 @@ public class BookdropMonitoringService {
         scanExistingBookdropFiles();
     }
 
+    private void resyncAfterOverflow() {
+        scanExistingBookdropFiles();
+        eventHandler.enqueueDeletesForMissingFiles();
+    }
+
     private void scanExistingBookdropFiles() {
         try (Stream<Path> files = Files.walk(bookdrop)) {
             files.filter(Files::isRegularFile)
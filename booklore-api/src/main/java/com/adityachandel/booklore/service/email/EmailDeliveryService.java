@@ -0,0 +1,452 @@
+package com.adityachandel.booklore.service.email;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.EmailDeliveryEntity;
+import com.adityachandel.booklore.model.entity.EmailProviderEntity;
+import com.adityachandel.booklore.model.enums.EmailDeliveryStatus;
+import com.adityachandel.booklore.model.websocket.Topic;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.EmailDeliveryRepository;
+import com.adityachandel.booklore.repository.EmailProviderRepository;
+import com.adityachandel.booklore.service.NotificationService;
+import com.adityachandel.booklore.util.FileUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.File;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+
+import static com.adityachandel.booklore.model.websocket.LogNotification.createLogNotification;
+
+/**
+ * Sends queued book emails in the background.
+ * <p>
+ * Requests are stored as {@code email_delivery} rows and picked up by a single dispatcher, which hands all due rows of
+ * a provider to one worker. The worker opens one SMTP connection for them and, when {@code app.email.batch-max-books}
+ * is above one, packs books for the same recipient into shared messages up to the server's advertised size limit.
+ * Failed sends are retried with exponential backoff. Rows left {@code SENDING} by a restart are queued again at
+ * startup, so a message that went out just before the restart may be sent twice. Deleting a book removes its rows, so
+ * a worker can find the row it is updating gone and carries on with the rest of its batch.
+ */
+@Slf4j
+@Service
+public class EmailDeliveryService {
+
+    private static final int DISPATCH_PAGE_SIZE = 500;
+    private static final Duration MAX_RETRY_DELAY = Duration.ofHours(1);
+    private static final long MESSAGE_OVERHEAD_BYTES = 16 * 1024;
+    private static final long ATTACHMENT_OVERHEAD_BYTES = 1024;
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final EmailDeliveryRepository emailDeliveryRepository;
+    private final EmailProviderRepository emailProviderRepository;
+    private final BookRepository bookRepository;
+    private final NotificationService notificationService;
+    private final AppProperties.Email settings;
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService senders;
+    private final Set<Long> busyProviders = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+    private final Counter sentCounter;
+    private final Counter retriedCounter;
+    private final Counter failedCounter;
+
+    SmtpSessionOpener smtpSessionOpener = SmtpSession::open;
+
+    public EmailDeliveryService(EmailDeliveryRepository emailDeliveryRepository, EmailProviderRepository emailProviderRepository,
+                                BookRepository bookRepository, NotificationService notificationService,
+                                AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.emailDeliveryRepository = emailDeliveryRepository;
+        this.emailProviderRepository = emailProviderRepository;
+        this.bookRepository = bookRepository;
+        this.notificationService = notificationService;
+        this.settings = appProperties.getEmail();
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("email-dispatch").daemon().factory());
+        this.senders = Executors.newFixedThreadPool(Math.max(1, settings.getWorkerThreads()),
+                Thread.ofPlatform().name("email-send-", 0).daemon().factory());
+
+        this.sentCounter = deliveryCounter(meterRegistry, "sent");
+        this.retriedCounter = deliveryCounter(meterRegistry, "retried");
+        this.failedCounter = deliveryCounter(meterRegistry, "failed");
+    }
+
+    /**
+     * Queues one delivery per book and wakes the dispatcher. Returns once the rows are stored.
+     */
+    public void enqueue(Long providerId, String recipientEmail, Collection<Long> bookIds, String requestedBy) {
+        List<EmailDeliveryEntity> deliveries = bookIds.stream()
+                .distinct()
+                .map(bookId -> EmailDeliveryEntity.builder()
+                        .providerId(providerId)
+                        .bookId(bookId)
+                        .recipientEmail(recipientEmail)
+                        .requestedBy(requestedBy)
+                        .status(EmailDeliveryStatus.QUEUED)
+                        .build())
+                .toList();
+        emailDeliveryRepository.saveAll(deliveries);
+        wakeUp();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional
+    public void start() {
+        int requeued = emailDeliveryRepository.updateStatus(EmailDeliveryStatus.SENDING, EmailDeliveryStatus.QUEUED);
+        if (requeued > 0) {
+            log.warn("Queued {} email deliveries again that were interrupted by a restart", requeued);
+        }
+        long interval = Math.max(1000, settings.getPollIntervalMs());
+        dispatcher.scheduleWithFixedDelay(this::dispatch, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Scheduled(cron = "0 45 0 * * *")
+    @Transactional
+    public void pruneFinishedDeliveries() {
+        Instant cutoff = Instant.now().minus(Duration.ofDays(Math.max(1, settings.getRetentionDays())));
+        int deleted = emailDeliveryRepository.deleteByStatusInAndCreatedBefore(EnumSet.of(EmailDeliveryStatus.SENT, EmailDeliveryStatus.FAILED), cutoff);
+        if (deleted > 0) {
+            log.info("Pruned {} finished email deliveries older than {}", deleted, cutoff);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        senders.shutdown();
+        try {
+            if (!senders.awaitTermination(30, TimeUnit.SECONDS)) {
+                senders.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a dispatch pass soon. Wake-ups arriving before the pass starts are folded into it.
+     */
+    private void wakeUp() {
+        if (wakeUpPending.compareAndSet(false, true)) {
+            try {
+                dispatcher.execute(() -> {
+                    wakeUpPending.set(false);
+                    dispatch();
+                });
+            } catch (RejectedExecutionException e) {
+                wakeUpPending.set(false);
+            }
+        }
+    }
+
+    private void dispatch() {
+        try {
+            List<EmailDeliveryEntity> due = emailDeliveryRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(
+                    EmailDeliveryStatus.QUEUED, Instant.now(), PageRequest.of(0, DISPATCH_PAGE_SIZE));
+            Map<Long, List<EmailDeliveryEntity>> byProvider = due.stream()
+                    .collect(Collectors.groupingBy(EmailDeliveryEntity::getProviderId, LinkedHashMap::new, Collectors.toList()));
+
+            for (Map.Entry<Long, List<EmailDeliveryEntity>> entry : byProvider.entrySet()) {
+                Long providerId = entry.getKey();
+                // A provider already being worked on picks up its new rows on the pass that follows it.
+                if (!busyProviders.add(providerId)) {
+                    continue;
+                }
+                List<EmailDeliveryEntity> deliveries = entry.getValue();
+                deliveries.forEach(delivery -> delivery.setStatus(EmailDeliveryStatus.SENDING));
+                emailDeliveryRepository.saveAll(deliveries);
+                try {
+                    senders.execute(() -> {
+                        try {
+                            deliver(providerId, deliveries);
+                        } catch (Exception e) {
+                            log.error("Unexpected error delivering emails for provider {}", providerId, e);
+                            retryUnfinished(deliveries, "Unexpected error: " + e.getMessage());
+                        } finally {
+                            busyProviders.remove(providerId);
+                            wakeUp();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    busyProviders.remove(providerId);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("Email dispatch failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void deliver(Long providerId, List<EmailDeliveryEntity> deliveries) {
+        EmailProviderEntity provider = emailProviderRepository.findById(providerId).orElse(null);
+        if (provider == null) {
+            deliveries.forEach(delivery -> fail(delivery, null, "Email provider no longer exists"));
+            return;
+        }
+
+        Set<Long> bookIds = new HashSet<>();
+        deliveries.forEach(delivery -> bookIds.add(delivery.getBookId()));
+        Map<Long, BookEntity> books = bookRepository.findAllWithMetadataByIds(bookIds).stream()
+                .collect(Collectors.toMap(BookEntity::getId, book -> book));
+
+        Map<String, List<Attachment>> byRecipient = new LinkedHashMap<>();
+        for (EmailDeliveryEntity delivery : deliveries) {
+            BookEntity book = books.get(delivery.getBookId());
+            if (book == null) {
+                fail(delivery, null, "Book no longer exists");
+                continue;
+            }
+            File file = new File(FileUtils.getBookFullPath(book));
+            if (!file.isFile()) {
+                fail(delivery, book, "Book file not found: " + file.getPath());
+                continue;
+            }
+            byRecipient.computeIfAbsent(delivery.getRecipientEmail(), recipient -> new ArrayList<>())
+                    .add(new Attachment(delivery, book, file, estimateEncodedSize(file.length())));
+        }
+        if (byRecipient.isEmpty()) {
+            return;
+        }
+
+        try (SmtpSession session = smtpSessionOpener.open(provider)) {
+            long serverLimit = session.advertisedSizeLimit();
+            long configuredLimit = Math.max(1, settings.getMaxMessageMb()) * 1024L * 1024L;
+            long packLimit = serverLimit > 0 ? Math.min(serverLimit, configuredLimit) : configuredLimit;
+
+            for (Map.Entry<String, List<Attachment>> entry : byRecipient.entrySet()) {
+                List<Attachment> sendable = new ArrayList<>();
+                for (Attachment attachment : entry.getValue()) {
+                    if (serverLimit > 0 && attachment.encodedSize() + MESSAGE_OVERHEAD_BYTES > serverLimit) {
+                        fail(attachment.delivery(), attachment.book(), "Book is larger than the " + serverLimit + " byte message limit of " + provider.getHost());
+                    } else {
+                        sendable.add(attachment);
+                    }
+                }
+                for (List<Attachment> batch : pack(sendable, Attachment::encodedSize, settings.getBatchMaxBooks(), packLimit - MESSAGE_OVERHEAD_BYTES)) {
+                    send(session, provider, entry.getKey(), batch);
+                }
+            }
+        } catch (MessagingException e) {
+            String error = "Could not connect to " + provider.getHost() + ": " + e.getMessage();
+            byRecipient.values().forEach(attachments -> attachments.forEach(attachment -> retryOrFail(attachment.delivery(), attachment.book(), error)));
+        }
+    }
+
+    private void send(SmtpSession session, EmailProviderEntity provider, String recipientEmail, List<Attachment> batch) {
+        try {
+            MimeMessage message = session.createMimeMessage();
+            MimeMessageHelper helper = new MimeMessageHelper(message, true);
+            helper.setFrom(StringUtils.firstNonEmpty(provider.getFromAddress(), provider.getUsername()));
+            helper.setTo(recipientEmail);
+            List<String> titles = batch.stream().map(attachment -> title(attachment.book())).toList();
+            if (batch.size() == 1) {
+                helper.setSubject("Your Book from Booklore: " + titles.getFirst());
+                helper.setText(generateEmailBody(titles.getFirst()));
+            } else {
+                helper.setSubject("Your Books from Booklore (" + batch.size() + ")");
+                helper.setText(generateBatchEmailBody(titles));
+            }
+            for (Attachment attachment : batch) {
+                helper.addAttachment(attachment.file().getName(), attachment.file());
+            }
+            session.send(message);
+        } catch (Exception e) {
+            batch.forEach(attachment -> retryOrFail(attachment.delivery(), attachment.book(), e.getMessage()));
+            return;
+        }
+
+        Instant now = Instant.now();
+        for (Attachment attachment : batch) {
+            EmailDeliveryEntity delivery = attachment.delivery();
+            delivery.setStatus(EmailDeliveryStatus.SENT);
+            delivery.setAttempts(delivery.getAttempts() + 1);
+            delivery.setSentAt(now);
+            delivery.setLastError(null);
+            save(delivery);
+            sentCounter.increment();
+            String successMessage = "The book: " + title(attachment.book()) + " has been successfully sent to " + recipientEmail;
+            notify(delivery, successMessage);
+            log.info(successMessage);
+        }
+    }
+
+    /**
+     * Hands the deliveries a failed worker left {@code SENDING} back to the retry schedule, instead of leaving them
+     * stuck until the next startup.
+     */
+    private void retryUnfinished(List<EmailDeliveryEntity> deliveries, String error) {
+        for (EmailDeliveryEntity delivery : deliveries) {
+            if (delivery.getStatus() != EmailDeliveryStatus.SENDING) {
+                continue;
+            }
+            try {
+                retryOrFail(delivery, null, error);
+            } catch (Exception e) {
+                log.error("Could not reschedule email delivery {}: {}", delivery.getId(), e.getMessage(), e);
+            }
+        }
+    }
+
+    private void retryOrFail(EmailDeliveryEntity delivery, BookEntity book, String error) {
+        int attempts = delivery.getAttempts() + 1;
+        if (attempts >= Math.max(1, settings.getMaxAttempts())) {
+            delivery.setAttempts(attempts);
+            fail(delivery, book, error);
+            return;
+        }
+        long baseSeconds = Math.max(1, settings.getRetryBaseDelaySeconds());
+        long delaySeconds = Math.min(MAX_RETRY_DELAY.toSeconds(), baseSeconds << Math.min(attempts - 1, 20));
+        delivery.setAttempts(attempts);
+        delivery.setStatus(EmailDeliveryStatus.QUEUED);
+        delivery.setNextAttemptAt(Instant.now().plusSeconds(delaySeconds));
+        delivery.setLastError(StringUtils.abbreviate(error, MAX_ERROR_LENGTH));
+        if (!save(delivery)) {
+            return;
+        }
+        retriedCounter.increment();
+        log.warn("Sending book id {} to {} failed (attempt {}), retrying in {}s: {}",
+                delivery.getBookId(), delivery.getRecipientEmail(), attempts, delaySeconds, error);
+    }
+
+    private void fail(EmailDeliveryEntity delivery, BookEntity book, String error) {
+        delivery.setStatus(EmailDeliveryStatus.FAILED);
+        delivery.setLastError(StringUtils.abbreviate(error, MAX_ERROR_LENGTH));
+        save(delivery);
+        failedCounter.increment();
+        String bookName = book != null ? title(book) : "id " + delivery.getBookId();
+        String errorMessage = "An error occurred while sending the book: " + bookName + " to " + delivery.getRecipientEmail() + ". Error: " + error;
+        notify(delivery, errorMessage);
+        log.error(errorMessage);
+    }
+
+    /**
+     * Stores the new state of one delivery without letting a failure stop the rest of the batch. A row that fails to
+     * save is left {@code SENDING} and queued again at the next startup.
+     */
+    private boolean save(EmailDeliveryEntity delivery) {
+        try {
+            emailDeliveryRepository.save(delivery);
+            return true;
+        } catch (DataAccessException e) {
+            if (!emailDeliveryRepository.existsById(delivery.getId())) {
+                log.info("Email delivery {} was removed while it was being sent, book id {} was probably deleted", delivery.getId(), delivery.getBookId());
+            } else {
+                log.error("Could not store status {} of email delivery {}: {}", delivery.getStatus(), delivery.getId(), e.getMessage(), e);
+            }
+            return false;
+        }
+    }
+
+    private void notify(EmailDeliveryEntity delivery, String message) {
+        if (delivery.getRequestedBy() != null) {
+            notificationService.sendMessageToUser(delivery.getRequestedBy(), Topic.LOG, createLogNotification(message));
+        }
+    }
+
+    /**
+     * Greedily groups items, in order, into batches of at most {@code maxItems} whose sizes add up to at most
+     * {@code maxBytes}. An item larger than {@code maxBytes} on its own gets a batch to itself.
+     */
+    static <T> List<List<T>> pack(List<T> items, ToLongFunction<T> size, int maxItems, long maxBytes) {
+        int limit = Math.max(1, maxItems);
+        List<List<T>> batches = new ArrayList<>();
+        List<T> current = new ArrayList<>();
+        long currentBytes = 0;
+        for (T item : items) {
+            long itemBytes = size.applyAsLong(item);
+            if (!current.isEmpty() && (current.size() >= limit || currentBytes + itemBytes > maxBytes)) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentBytes = 0;
+            }
+            current.add(item);
+            currentBytes += itemBytes;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * Size of a file once base64 encoded into a MIME part: four bytes for every three, plus a line break every 76.
+     */
+    static long estimateEncodedSize(long fileBytes) {
+        long encoded = (fileBytes + 2) / 3 * 4;
+        return encoded + encoded / 76 * 2 + ATTACHMENT_OVERHEAD_BYTES;
+    }
+
+    private static String title(BookEntity book) {
+        return book.getMetadata() != null && book.getMetadata().getTitle() != null ? book.getMetadata().getTitle() : book.getFileName();
+    }
+
+    private static Counter deliveryCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("booklore.email.deliveries")
+                .description("Queued book emails by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private String generateEmailBody(String bookTitle) {
+        return String.format("""
+                Hello,
+
+                You have received a book from Booklore. Please find the attached file titled '%s' for your reading pleasure.
+
+                Thank you for using Booklore! We hope you enjoy your book.
+                """, bookTitle);
+    }
+
+    private String generateBatchEmailBody(List<String> bookTitles) {
+        String list = bookTitles.stream().map(title -> "  - " + title).collect(Collectors.joining("\n"));
+        return String.format("""
+                Hello,
+
+                You have received %d books from Booklore. Please find the attached files for your reading pleasure:
+
+                %s
+
+                Thank you for using Booklore! We hope you enjoy your books.
+                """, bookTitles.size(), list);
+    }
+
+    @FunctionalInterface
+    interface SmtpSessionOpener {
+        SmtpSession open(EmailProviderEntity provider) throws MessagingException;
+    }
+
+    private record Attachment(EmailDeliveryEntity delivery, BookEntity book, File file, long encodedSize) {
+    }
+}
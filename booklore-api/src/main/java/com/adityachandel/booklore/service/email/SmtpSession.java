@@ -0,0 +1,164 @@
+package com.adityachandel.booklore.service.email;
+
+import com.adityachandel.booklore.model.entity.EmailProviderEntity;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPTransport;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.util.Date;
+import java.util.Properties;
+
+/**
+ * One authenticated SMTP connection to a provider, kept open while a batch of deliveries is sent through it so that
+ * the TLS handshake and login happen once per batch instead of once per message. Not thread safe.
+ */
+@Slf4j
+final class SmtpSession implements AutoCloseable {
+
+    private final EmailProviderEntity provider;
+    private final JavaMailSenderImpl sender;
+    private final Transport transport;
+
+    private SmtpSession(EmailProviderEntity provider, JavaMailSenderImpl sender, Transport transport) {
+        this.provider = provider;
+        this.sender = sender;
+        this.transport = transport;
+    }
+
+    static SmtpSession open(EmailProviderEntity provider) throws MessagingException {
+        JavaMailSenderImpl sender = setupMailSender(provider);
+        Transport transport = sender.getSession().getTransport();
+        SmtpSession session = new SmtpSession(provider, sender, transport);
+        session.connect();
+        return session;
+    }
+
+    MimeMessage createMimeMessage() {
+        return sender.createMimeMessage();
+    }
+
+    /**
+     * Sends over the open connection, reconnecting first if the server dropped it since the last message.
+     */
+    void send(MimeMessage message) throws MessagingException {
+        if (!transport.isConnected()) {
+            log.info("SMTP connection to {} was closed, reconnecting", provider.getHost());
+            connect();
+        }
+        message.setSentDate(new Date());
+        message.saveChanges();
+        transport.sendMessage(message, message.getAllRecipients());
+    }
+
+    /**
+     * @return the message size limit the server advertised with the SIZE extension, or {@code 0} when it set none
+     */
+    long advertisedSizeLimit() {
+        if (transport instanceof SMTPTransport smtp) {
+            String size = smtp.getExtensionParameter("SIZE");
+            if (size != null) {
+                try {
+                    return Long.parseLong(size.trim());
+                } catch (NumberFormatException e) {
+                    log.debug("Ignoring unparseable SIZE '{}' from {}", size, provider.getHost());
+                }
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void close() {
+        try {
+            transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection to {}: {}", provider.getHost(), e.getMessage());
+        }
+    }
+
+    private void connect() throws MessagingException {
+        transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+    }
+
+    private static JavaMailSenderImpl setupMailSender(EmailProviderEntity emailProvider) {
+        JavaMailSenderImpl dynamicMailSender = new JavaMailSenderImpl();
+        dynamicMailSender.setHost(emailProvider.getHost());
+        dynamicMailSender.setPort(emailProvider.getPort());
+        dynamicMailSender.setUsername(emailProvider.getUsername());
+        dynamicMailSender.setPassword(emailProvider.getPassword());
+
+        Properties mailProps = dynamicMailSender.getJavaMailProperties();
+        mailProps.put("mail.smtp.auth", emailProvider.isAuth());
+
+        ConnectionType connectionType = determineConnectionType(emailProvider);
+        configureConnectionType(mailProps, connectionType, emailProvider);
+        configureTimeouts(mailProps);
+
+        String debugMode = System.getProperty("mail.debug", "false");
+        mailProps.put("mail.debug", debugMode);
+
+        log.info("Email configuration: Host={}, Port={}, Type={}, Timeouts=60s", emailProvider.getHost(), emailProvider.getPort(), connectionType);
+
+        return dynamicMailSender;
+    }
+
+    private static ConnectionType determineConnectionType(EmailProviderEntity emailProvider) {
+        if (emailProvider.getPort() == 465) {
+            return ConnectionType.SSL;
+        } else if (emailProvider.getPort() == 587 && emailProvider.isStartTls()) {
+            return ConnectionType.STARTTLS;
+        } else if (emailProvider.isStartTls()) {
+            return ConnectionType.STARTTLS;
+        } else {
+            return ConnectionType.PLAIN;
+        }
+    }
+
+    private static void configureConnectionType(Properties mailProps, ConnectionType connectionType, EmailProviderEntity emailProvider) {
+        switch (connectionType) {
+            case SSL -> {
+                mailProps.put("mail.transport.protocol", "smtps");
+                mailProps.put("mail.smtp.ssl.enable", "true");
+                mailProps.put("mail.smtp.ssl.trust", emailProvider.getHost());
+                mailProps.put("mail.smtp.starttls.enable", "false");
+                mailProps.put("mail.smtp.ssl.protocols", "TLSv1.2,TLSv1.3");
+                mailProps.put("mail.smtp.ssl.checkserveridentity", "false");
+                mailProps.put("mail.smtp.ssl.socketFactory.class", "javax.net.ssl.SSLSocketFactory");
+                mailProps.put("mail.smtp.ssl.socketFactory.fallback", "false");
+            }
+            case STARTTLS -> {
+                mailProps.put("mail.transport.protocol", "smtp");
+                mailProps.put("mail.smtp.starttls.enable", "true");
+                mailProps.put("mail.smtp.starttls.required", "true");
+                mailProps.put("mail.smtp.ssl.enable", "false");
+            }
+            case PLAIN -> {
+                mailProps.put("mail.transport.protocol", "smtp");
+                mailProps.put("mail.smtp.starttls.enable", "false");
+                mailProps.put("mail.smtp.ssl.enable", "false");
+            }
+        }
+    }
+
+    private static void configureTimeouts(Properties mailProps) {
+        String connectionTimeout = System.getProperty("mail.smtp.connectiontimeout", "60000");
+        String socketTimeout = System.getProperty("mail.smtp.timeout", "60000");
+        String writeTimeout = System.getProperty("mail.smtp.writetimeout", "60000");
+
+        mailProps.put("mail.smtp.connectiontimeout", connectionTimeout);
+        mailProps.put("mail.smtp.timeout", socketTimeout);
+        mailProps.put("mail.smtp.writetimeout", writeTimeout);
+
+        log.debug("Configured email timeouts: connection={}, socket={}, write={}",
+                connectionTimeout, socketTimeout, writeTimeout);
+    }
+
+    private enum ConnectionType {
+        SSL,
+        STARTTLS,
+        PLAIN
+    }
+}
@@ -0,0 +1,170 @@
+package com.adityachandel.booklore.service.file;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Write-ahead journal for bulk file moves, kept as one file per batch under {@code <path-config>/move-journal}.
+ * <p>
+ * The first line lists every planned move and is forced to disk before the first file is touched. Each following line
+ * is the index of a move that has completed. The file is deleted once the database reflects the batch, so any journal
+ * found at startup belongs to a batch that was interrupted and can be finished from it.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class FileMoveJournal {
+
+    private static final String DIRECTORY = "move-journal";
+    private static final String SUFFIX = ".journal";
+
+    private final AppProperties appProperties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * @param additionalFileId the moved additional file, or {@code null} when the book file itself moves
+     */
+    public record Entry(Long bookId, Long additionalFileId, String source, String target, String targetSubPath, String targetFileName) {
+    }
+
+    public Batch begin(List<Entry> entries) throws IOException {
+        Path directory = directory();
+        Files.createDirectories(directory);
+        Path file = directory.resolve(UUID.randomUUID() + SUFFIX);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        try {
+            write(channel, objectMapper.writeValueAsString(entries));
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new Batch(file, channel, entries, new BitSet(entries.size()));
+    }
+
+    /**
+     * @return the batches whose journal was never completed, ready to be resumed
+     */
+    public List<Batch> findInterrupted() {
+        Path directory = directory();
+        List<Batch> batches = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return batches;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    batches.add(read(file));
+                } catch (IOException | RuntimeException e) {
+                    log.error("Unreadable file move journal {}, leaving it for inspection: {}", file, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            log.error("Failed to list file move journals in {}: {}", directory, e.getMessage());
+        }
+        return batches;
+    }
+
+    private Batch read(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Journal is empty");
+        }
+        List<Entry> entries = objectMapper.readValue(lines.getFirst(), new TypeReference<>() {
+        });
+        BitSet done = new BitSet(entries.size());
+        for (String line : lines.subList(1, lines.size())) {
+            try {
+                done.set(Integer.parseInt(line.trim()));
+            } catch (NumberFormatException e) {
+                // The last line may have been cut short by the crash; the move it records is re-checked on disk.
+                log.debug("Ignoring torn line in file move journal {}", file);
+            }
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        return new Batch(file, channel, entries, done);
+    }
+
+    private Path directory() {
+        return Paths.get(appProperties.getPathConfig(), DIRECTORY);
+    }
+
+    private static void write(FileChannel channel, String line) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+    }
+
+    public static final class Batch implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final List<Entry> entries;
+        private final BitSet done;
+
+        private Batch(Path file, FileChannel channel, List<Entry> entries, BitSet done) {
+            this.file = file;
+            this.channel = channel;
+            this.entries = List.copyOf(entries);
+            this.done = done;
+        }
+
+        public List<Entry> getEntries() {
+            return entries;
+        }
+
+        public synchronized boolean isDone(int index) {
+            return done.get(index);
+        }
+
+        /**
+         * Records a move as completed. Called from every thread working on the batch.
+         */
+        public synchronized void markDone(int index) throws IOException {
+            write(channel, Integer.toString(index));
+            done.set(index);
+        }
+
+        /**
+         * Deletes the journal once the database has been updated for every completed move.
+         */
+        public synchronized void complete() throws IOException {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+
+        /**
+         * Closes the journal but keeps it, so the batch is resumed at the next startup.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            channel.close();
+        }
+
+        @Override
+        public String toString() {
+            return file.getFileName().toString();
+        }
+    }
+}
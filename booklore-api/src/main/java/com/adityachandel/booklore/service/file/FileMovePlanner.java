@@ -0,0 +1,214 @@
+package com.adityachandel.booklore.service.file;
+
+import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.util.PathPatternResolver;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Works out where every book in a move request, and each of its additional files, ends up before anything on disk is
+ * touched. The naming pattern is looked up once per library. A file is left where it is when its target is already
+ * claimed by another file in the batch, or is the current location of a book or additional file the library knows
+ * about, since moving onto it would overwrite that file.
+ */
+@Slf4j
+final class FileMovePlanner {
+
+    /**
+     * @param index          position of the move in the batch, and so in its journal
+     * @param additionalFile the additional file being moved, or {@code null} for the book file itself
+     */
+    record FileMove(int index, BookAdditionalFileEntity additionalFile, Path source, Path target, String targetSubPath, String targetFileName) {
+    }
+
+    /**
+     * A book file and the additional files that move with it. The additional files are only moved once the book file
+     * has been.
+     */
+    record BookMove(BookEntity book, Path libraryRoot, FileMove bookFile, List<FileMove> additionalFiles) {
+    }
+
+    record Plan(List<BookMove> moves, int fileCount, int skipped, int conflicts) {
+    }
+
+    private final String defaultPattern;
+    private final Set<Path> knownFiles;
+    private final Map<LibraryEntity, String> patterns = new IdentityHashMap<>();
+    private final Set<Path> claimedTargets = new HashSet<>();
+    private final List<BookMove> moves = new ArrayList<>();
+    private int fileCount;
+    private int skipped;
+    private int conflicts;
+
+    private FileMovePlanner(String defaultPattern, Set<Path> knownFiles) {
+        this.defaultPattern = defaultPattern;
+        this.knownFiles = knownFiles;
+    }
+
+    /**
+     * @param knownFiles absolute, normalized locations of the books and additional files in the affected library paths
+     */
+    static Plan plan(List<BookEntity> books, String defaultPattern, Set<Path> knownFiles) {
+        FileMovePlanner planner = new FileMovePlanner(defaultPattern, knownFiles);
+        for (BookEntity book : books) {
+            planner.planBook(book);
+        }
+        return new Plan(List.copyOf(planner.moves), planner.fileCount, planner.skipped, planner.conflicts);
+    }
+
+    private void planBook(BookEntity book) {
+        if (book.getMetadata() == null) {
+            skipped++;
+            return;
+        }
+        String pattern = getFileNamingPattern(book);
+        if (pattern == null || !hasRequiredPathComponents(book)) {
+            skipped++;
+            return;
+        }
+
+        Path source = book.getFullFilePath().toAbsolutePath().normalize();
+        if (!Files.exists(source)) {
+            log.warn("File does not exist for book id {}: {}", book.getId(), source);
+            skipped++;
+            return;
+        }
+
+        Path libraryRoot = Paths.get(book.getLibraryPath().getPath()).toAbsolutePath().normalize();
+        Path target = resolveTarget(libraryRoot, PathPatternResolver.resolvePattern(book, pattern));
+        if (source.equals(target)) {
+            log.info("Source and destination paths are identical for book id {}. Skipping.", book.getId());
+            skipped++;
+            return;
+        }
+        if (isTaken(target)) {
+            log.warn("Target {} for book id {} is already taken by another file. Skipping.", target, book.getId());
+            conflicts++;
+            return;
+        }
+        claimedTargets.add(target);
+        FileMove bookFile = fileMove(null, source, target, libraryRoot);
+
+        List<FileMove> additionalFiles = new ArrayList<>();
+        if (book.getAdditionalFiles() != null) {
+            Map<String, Integer> fileNameCounter = new HashMap<>();
+            for (BookAdditionalFileEntity additionalFile : book.getAdditionalFiles()) {
+                FileMove move = planAdditionalFile(book, additionalFile, pattern, libraryRoot, fileNameCounter);
+                if (move != null) {
+                    additionalFiles.add(move);
+                }
+            }
+        }
+        moves.add(new BookMove(book, libraryRoot, bookFile, List.copyOf(additionalFiles)));
+    }
+
+    private FileMove planAdditionalFile(BookEntity book, BookAdditionalFileEntity additionalFile, String pattern, Path libraryRoot,
+                                        Map<String, Integer> fileNameCounter) {
+        Path source = additionalFile.getFullFilePath().toAbsolutePath().normalize();
+        if (!Files.exists(source)) {
+            log.warn("Additional file does not exist for book id {}: {}", book.getId(), source);
+            return null;
+        }
+
+        Path target = resolveTarget(libraryRoot, PathPatternResolver.resolvePattern(book.getMetadata(), pattern, additionalFile.getFileName()));
+        // Check for filename uniqueness and add index if necessary
+        target = ensureUniqueFilePath(target, fileNameCounter);
+
+        if (source.equals(target)) {
+            log.debug("Source and destination paths are identical for additional file id {}. Skipping.", additionalFile.getId());
+            return null;
+        }
+        if (isTaken(target)) {
+            log.warn("Target {} for additional file id {} is already taken by another file. Skipping.", target, additionalFile.getId());
+            conflicts++;
+            return null;
+        }
+        claimedTargets.add(target);
+        return fileMove(additionalFile, source, target, libraryRoot);
+    }
+
+    private FileMove fileMove(BookAdditionalFileEntity additionalFile, Path source, Path target, Path libraryRoot) {
+        String targetSubPath = libraryRoot.relativize(target.getParent()).toString().replace('\\', '/');
+        return new FileMove(fileCount++, additionalFile, source, target, targetSubPath, target.getFileName().toString());
+    }
+
+    private boolean isTaken(Path target) {
+        return claimedTargets.contains(target) || knownFiles.contains(target);
+    }
+
+    private String getFileNamingPattern(BookEntity book) {
+        if (book.getLibraryPath() == null || book.getLibraryPath().getLibrary() == null) {
+            log.error("Book id {} has no library associated. Skipping.", book.getId());
+            return null;
+        }
+        LibraryEntity library = book.getLibraryPath().getLibrary();
+        String pattern = patterns.computeIfAbsent(library, this::resolveLibraryPattern);
+        if (pattern.isEmpty()) {
+            log.error("No file naming pattern available for book id {}. Skipping.", book.getId());
+            return null;
+        }
+        return pattern;
+    }
+
+    private String resolveLibraryPattern(LibraryEntity library) {
+        String pattern = library.getFileNamingPattern();
+        if (pattern == null || pattern.trim().isEmpty()) {
+            pattern = defaultPattern;
+            log.info("Using default pattern for library {} as no custom pattern is set", library.getName());
+        }
+        return pattern == null || pattern.trim().isEmpty() ? "" : pattern;
+    }
+
+    private static boolean hasRequiredPathComponents(BookEntity book) {
+        if (book.getLibraryPath().getPath() == null || book.getFileSubPath() == null || book.getFileName() == null) {
+            log.error("Missing required path components for book id {}. Skipping.", book.getId());
+            return false;
+        }
+        return true;
+    }
+
+    private static Path resolveTarget(Path libraryRoot, String relativePath) {
+        if (relativePath.startsWith("/") || relativePath.startsWith("\\")) {
+            relativePath = relativePath.substring(1);
+        }
+        return libraryRoot.resolve(relativePath).normalize();
+    }
+
+    private static Path ensureUniqueFilePath(Path filePath, Map<String, Integer> fileNameCounter) {
+        String fileName = filePath.getFileName().toString();
+        String baseName = fileName;
+        String extension = "";
+
+        int lastDot = fileName.lastIndexOf(".");
+        if (lastDot >= 0 && lastDot < fileName.length() - 1) {
+            baseName = fileName.substring(0, lastDot);
+            extension = fileName.substring(lastDot);
+        }
+
+        String fileKey = filePath.toString().toLowerCase();
+        Integer count = fileNameCounter.get(fileKey);
+
+        if (count == null) {
+            fileNameCounter.put(fileKey, 1);
+            return filePath;
+        } else {
+            // File name already exists, add index
+            count++;
+            fileNameCounter.put(fileKey, count);
+            String newFileName = baseName + "_" + count + extension;
+            return filePath.getParent().resolve(newFileName);
+        }
+    }
+}
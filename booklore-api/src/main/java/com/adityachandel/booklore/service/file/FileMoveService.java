@@ -1,44 +1,79 @@
 package com.adityachandel.booklore.service.file;
 
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.mapper.BookMapper;
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.FilePathEntry;
 import com.adityachandel.booklore.model.dto.request.FileMoveRequest;
 import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
 import com.adityachandel.booklore.model.entity.BookEntity;
-import com.adityachandel.booklore.model.entity.LibraryEntity;
 import com.adityachandel.booklore.model.entity.LibraryPathEntity;
-import com.adityachandel.booklore.model.entity.BookMetadataEntity;
 import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
 import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.service.BookQueryService;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
-import com.adityachandel.booklore.service.library.LibraryService;
-import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.file.FileMovePlanner.BookMove;
+import com.adityachandel.booklore.service.file.FileMovePlanner.FileMove;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
 import com.adityachandel.booklore.util.PathPatternResolver;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
-
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Moves books, and their additional files, to where the library's naming pattern says they belong.
+ * <p>
+ * A batch is planned in full first (see {@link FileMovePlanner}) and written to a {@link FileMoveJournal}. Files on
+ * the same filesystem as their target are renamed in place; the rest are copied on a small pool sized by
+ * {@code app.file-move.copy-threads}. The new locations are then saved in a single transaction, so the affected
+ * libraries need no rescan. A batch cut short by a crash is finished from its journal at the next startup.
+ */
 @Slf4j
 @Service
-@AllArgsConstructor
 public class FileMoveService {
 
+    private static final String COPY_SUFFIX = ".booklore-move";
+
     private final BookQueryService bookQueryService;
     private final BookRepository bookRepository;
     private final BookAdditionalFileRepository bookAdditionalFileRepository;
     private final BookMapper bookMapper;
     private final NotificationService notificationService;
-    private final LibraryService libraryService;
-    private final MonitoringService monitoringService;
+    private final WatchSuppressionService watchSuppressionService;
     private final AppSettingService appSettingService;
+    private final FileMoveJournal fileMoveJournal;
+    private final AppProperties appProperties;
+    private final TransactionTemplate transactionTemplate;
+
+    public FileMoveService(BookQueryService bookQueryService, BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository,
+                           BookMapper bookMapper, NotificationService notificationService, WatchSuppressionService watchSuppressionService,
+                           AppSettingService appSettingService, FileMoveJournal fileMoveJournal, AppProperties appProperties,
+                           PlatformTransactionManager transactionManager) {
+        this.bookQueryService = bookQueryService;
+        this.bookRepository = bookRepository;
+        this.bookAdditionalFileRepository = bookAdditionalFileRepository;
+        this.bookMapper = bookMapper;
+        this.notificationService = notificationService;
+        this.watchSuppressionService = watchSuppressionService;
+        this.appSettingService = appSettingService;
+        this.fileMoveJournal = fileMoveJournal;
+        this.appProperties = appProperties;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     public void moveFiles(FileMoveRequest request) {
         Set<Long> bookIds = request.getBookIds();
@@ -47,250 +82,379 @@ public class FileMoveService {
 
         log.info("Starting file move for {} books", books.size());
 
-        Set<Long> libraryIds = new HashSet<>();
-        List<Book> updatedBooks = new ArrayList<>();
-        boolean didPause = pauseMonitoringIfNeeded();
+        FileMovePlanner.Plan plan = FileMovePlanner.plan(books, defaultPattern, findKnownFiles(books));
+        if (plan.moves().isEmpty()) {
+            log.info("No files to move for {} books ({} skipped, {} conflicts)", books.size(), plan.skipped(), plan.conflicts());
+            return;
+        }
 
-        try {
-            for (BookEntity book : books) {
-                processBookMove(book, defaultPattern, updatedBooks, libraryIds);
+        List<BookMove> moved;
+        try (WatchSuppressionService.Suppression suppression = watchSuppressionService.suppress("file move")) {
+            for (BookMove move : plan.moves()) {
+                for (FileMove file : files(move)) {
+                    suppression.add(file.source()).add(file.target()).add(copyPath(file.target()));
+                }
             }
 
-            log.info("Completed file move for {} books.", books.size());
-            sendUpdateNotifications(updatedBooks);
-            rescanLibraries(libraryIds);
+            FileMoveJournal.Batch journal;
+            try {
+                journal = fileMoveJournal.begin(toJournalEntries(plan));
+            } catch (IOException e) {
+                log.error("Failed to write file move journal, no files were moved: {}", e.getMessage(), e);
+                return;
+            }
 
-        } finally {
-            resumeMonitoringWithDelay(didPause);
+            try {
+                moved = execute(plan, journal);
+            } catch (RuntimeException e) {
+                closeQuietly(journal);
+                throw e;
+            }
+            if (!saveNewPaths(moved, journal)) {
+                return;
+            }
         }
-    }
 
-    private boolean pauseMonitoringIfNeeded() {
-        if (!monitoringService.isPaused()) {
-            monitoringService.pauseMonitoring();
-            return true;
-        }
-        return false;
+        deleteEmptySourceDirectories(moved);
+        log.info("Completed file move for {} books: {} moved, {} skipped, {} conflicts", books.size(), moved.size(), plan.skipped(), plan.conflicts());
+        sendUpdateNotifications(moved.stream().map(move -> bookMapper.toBook(move.book())).toList());
     }
 
-    private void processBookMove(BookEntity book, String defaultPattern, List<Book> updatedBooks, Set<Long> libraryIds) {
-        if (book.getMetadata() == null) return;
-
-        String pattern = getFileNamingPattern(book, defaultPattern);
-        if (pattern == null) return;
-
-        if (!hasRequiredPathComponents(book)) return;
-
-        Path oldFilePath = book.getFullFilePath();
-        if (!Files.exists(oldFilePath)) {
-            log.warn("File does not exist for book id {}: {}", book.getId(), oldFilePath);
-            return;
-        }
-
-        log.info("Processing book id {}: '{}'", book.getId(), book.getMetadata().getTitle());
-
-        Path newFilePath = generateNewFilePath(book, pattern);
-        if (oldFilePath.equals(newFilePath)) {
-            log.info("Source and destination paths are identical for book id {}. Skipping.", book.getId());
-            return;
+    /**
+     * Finishes batches a crash or shutdown interrupted. Moves the journal does not record as done are checked on disk:
+     * a file still at its source is moved again, one already at its target is taken as moved. The database is then
+     * brought in line with every completed move.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedMoves() {
+        for (FileMoveJournal.Batch journal : fileMoveJournal.findInterrupted()) {
+            log.info("Resuming interrupted file move batch {}", journal);
+            try {
+                resume(journal);
+            } catch (RuntimeException e) {
+                log.error("Failed to resume file move batch {}: {}", journal, e.getMessage(), e);
+                closeQuietly(journal);
+            }
         }
+    }
 
-        try {
-            moveFileAndUpdateBook(book, oldFilePath, newFilePath, updatedBooks, libraryIds);
+    private void resume(FileMoveJournal.Batch journal) {
+        List<FileMoveJournal.Entry> entries = journal.getEntries();
+        try (WatchSuppressionService.Suppression suppression = watchSuppressionService.suppress("file move recovery")) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (journal.isDone(i)) {
+                    continue;
+                }
+                FileMoveJournal.Entry entry = entries.get(i);
+                Path source = Paths.get(entry.source());
+                Path target = Paths.get(entry.target());
+                suppression.add(source).add(target).add(copyPath(target));
+                try {
+                    Files.deleteIfExists(copyPath(target));
+                    if (Files.exists(source)) {
+                        transfer(source, target);
+                    } else if (!Files.exists(target)) {
+                        log.error("File for book id {} is neither at {} nor at {}", entry.bookId(), source, target);
+                        continue;
+                    }
+                    journal.markDone(i);
+                } catch (IOException e) {
+                    log.error("Failed to resume move of {} to {}: {}", source, target, e.getMessage(), e);
+                }
+            }
 
-            // Move additional files if present
-            if (book.getAdditionalFiles() != null && !book.getAdditionalFiles().isEmpty()) {
-                moveAdditionalFiles(book, pattern);
+            List<FileMoveJournal.Entry> done = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                if (journal.isDone(i)) {
+                    done.add(entries.get(i));
+                }
             }
+            transactionTemplate.executeWithoutResult(status -> applyJournalEntries(done));
+            journal.complete();
+            log.info("Resumed file move batch {}: {} of {} files in place", journal, done.size(), entries.size());
         } catch (IOException e) {
-            log.error("Failed to move file for book id {}: {}", book.getId(), e.getMessage(), e);
+            log.error("Failed to complete file move journal {}: {}", journal, e.getMessage(), e);
         }
     }
 
-    private String getFileNamingPattern(BookEntity book, String defaultPattern) {
-        if (book.getLibraryPath() == null || book.getLibraryPath().getLibrary() == null) {
-            log.error("Book id {} has no library associated. Skipping.", book.getId());
-            return null;
+    private void applyJournalEntries(List<FileMoveJournal.Entry> entries) {
+        Map<Long, FileMoveJournal.Entry> bookEntries = new HashMap<>();
+        Map<Long, FileMoveJournal.Entry> additionalFileEntries = new HashMap<>();
+        for (FileMoveJournal.Entry entry : entries) {
+            if (entry.additionalFileId() == null) {
+                bookEntries.put(entry.bookId(), entry);
+            } else {
+                additionalFileEntries.put(entry.additionalFileId(), entry);
+            }
         }
-        LibraryEntity library = book.getLibraryPath().getLibrary();
-        String pattern = library.getFileNamingPattern();
-        if (pattern == null || pattern.trim().isEmpty()) {
-            pattern = defaultPattern;
-            log.info("Using default pattern for library {} as no custom pattern is set", library.getName());
+        List<BookEntity> books = bookRepository.findAllById(bookEntries.keySet());
+        for (BookEntity book : books) {
+            FileMoveJournal.Entry entry = bookEntries.get(book.getId());
+            book.setFileSubPath(entry.targetSubPath());
+            book.setFileName(entry.targetFileName());
         }
-        if (pattern == null || pattern.trim().isEmpty()) {
-            log.error("No file naming pattern available for book id {}. Skipping.", book.getId());
-            return null;
+        List<BookAdditionalFileEntity> additionalFiles = bookAdditionalFileRepository.findAllById(additionalFileEntries.keySet());
+        for (BookAdditionalFileEntity additionalFile : additionalFiles) {
+            FileMoveJournal.Entry entry = additionalFileEntries.get(additionalFile.getId());
+            additionalFile.setFileSubPath(entry.targetSubPath());
+            additionalFile.setFileName(entry.targetFileName());
         }
-
-        return pattern;
+        bookRepository.saveAll(books);
+        bookAdditionalFileRepository.saveAll(additionalFiles);
     }
 
-    private boolean hasRequiredPathComponents(BookEntity book) {
-        if (book.getLibraryPath() == null || book.getLibraryPath().getPath() == null ||
-                book.getFileSubPath() == null || book.getFileName() == null) {
-            log.error("Missing required path components for book id {}. Skipping.", book.getId());
-            return false;
+    /**
+     * Locations of every book and additional file in the library paths the batch touches, read with two projection
+     * queries so the planner can refuse a target that would overwrite one of them.
+     */
+    private Set<Path> findKnownFiles(List<BookEntity> books) {
+        Map<Long, String> rootsById = new HashMap<>();
+        for (BookEntity book : books) {
+            LibraryPathEntity libraryPath = book.getLibraryPath();
+            if (libraryPath != null && libraryPath.getId() != null && libraryPath.getPath() != null) {
+                rootsById.put(libraryPath.getId(), libraryPath.getPath());
+            }
         }
-        return true;
+        Set<Path> knownFiles = new HashSet<>();
+        if (rootsById.isEmpty()) {
+            return knownFiles;
+        }
+        List<FilePathEntry> entries = new ArrayList<>(bookRepository.findFilePathsByLibraryPathIds(rootsById.keySet()));
+        entries.addAll(bookAdditionalFileRepository.findFilePathsByLibraryPathIds(rootsById.keySet()));
+        for (FilePathEntry entry : entries) {
+            String root = rootsById.get(entry.libraryPathId());
+            if (root != null && entry.fileSubPath() != null && entry.fileName() != null) {
+                knownFiles.add(Paths.get(root, entry.fileSubPath(), entry.fileName()).toAbsolutePath().normalize());
+            }
+        }
+        return knownFiles;
     }
 
-    private Path generateNewFilePath(BookEntity book, String pattern) {
-        String newRelativePathStr = generatePathFromPattern(book, pattern);
-        if (newRelativePathStr.startsWith("/") || newRelativePathStr.startsWith("\\")) {
-            newRelativePathStr = newRelativePathStr.substring(1);
+    private List<FileMoveJournal.Entry> toJournalEntries(FileMovePlanner.Plan plan) {
+        FileMoveJournal.Entry[] entries = new FileMoveJournal.Entry[plan.fileCount()];
+        for (BookMove move : plan.moves()) {
+            for (FileMove file : files(move)) {
+                Long additionalFileId = file.additionalFile() == null ? null : file.additionalFile().getId();
+                entries[file.index()] = new FileMoveJournal.Entry(move.book().getId(), additionalFileId,
+                        file.source().toString(), file.target().toString(), file.targetSubPath(), file.targetFileName());
+            }
         }
-
-        Path libraryRoot = Paths.get(book.getLibraryPath().getPath()).toAbsolutePath().normalize();
-        return libraryRoot.resolve(newRelativePathStr).normalize();
+        return Arrays.asList(entries);
     }
 
-    private void moveFileAndUpdateBook(BookEntity book, Path oldFilePath, Path newFilePath,
-                                       List<Book> updatedBooks, Set<Long> libraryIds) throws IOException {
-        if (newFilePath.getParent() != null) {
-            Files.createDirectories(newFilePath.getParent());
+    /**
+     * Renames every book that can be renamed, then copies the ones on another filesystem than their target in
+     * parallel.
+     *
+     * @return the books whose book file was moved
+     */
+    private List<BookMove> execute(FileMovePlanner.Plan plan, FileMoveJournal.Batch journal) {
+        List<BookMove> moved = new ArrayList<>();
+        List<BookMove> crossDevice = new ArrayList<>();
+        for (BookMove move : plan.moves()) {
+            FileMove bookFile = move.bookFile();
+            try {
+                log.info("Moving file from {} to {}", bookFile.source(), bookFile.target());
+                rename(bookFile.source(), bookFile.target());
+            } catch (AtomicMoveNotSupportedException e) {
+                crossDevice.add(move);
+                continue;
+            } catch (IOException e) {
+                log.error("Failed to move file for book id {}: {}", move.book().getId(), e.getMessage(), e);
+                continue;
+            }
+            if (recordMoved(bookFile, journal)) {
+                moveAdditionalFiles(move, journal);
+                moved.add(move);
+            }
         }
-
-        log.info("Moving file from {} to {}", oldFilePath, newFilePath);
-        Files.move(oldFilePath, newFilePath, StandardCopyOption.REPLACE_EXISTING);
-
-        updateBookPaths(book, newFilePath);
-        bookRepository.save(book);
-        updatedBooks.add(bookMapper.toBook(book));
-
-        log.info("Updated book id {} with new path", book.getId());
-
-        Path libraryRoot = Paths.get(book.getLibraryPath().getPath()).toAbsolutePath().normalize();
-        deleteEmptyParentDirsUpToLibraryFolders(oldFilePath.getParent(), Set.of(libraryRoot));
-
-        if (book.getLibraryPath().getLibrary().getId() != null) {
-            libraryIds.add(book.getLibraryPath().getLibrary().getId());
+        if (!crossDevice.isEmpty()) {
+            moved.addAll(copyAcrossDevices(crossDevice, journal));
         }
+        return moved;
     }
 
-    private void updateBookPaths(BookEntity book, Path newFilePath) {
-        String newFileName = newFilePath.getFileName().toString();
-        Path libraryRoot = Paths.get(book.getLibraryPath().getPath()).toAbsolutePath().normalize();
-        Path newRelativeSubPath = libraryRoot.relativize(newFilePath.getParent());
-        String newFileSubPath = newRelativeSubPath.toString().replace('\\', '/');
-
-        book.setFileSubPath(newFileSubPath);
-        book.setFileName(newFileName);
+    private List<BookMove> copyAcrossDevices(List<BookMove> moves, FileMoveJournal.Batch journal) {
+        int threads = Math.min(moves.size(), Math.max(1, appProperties.getFileMove().getCopyThreads()));
+        log.info("Copying {} books to another filesystem with {} threads", moves.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("file-move-copy-", 0).daemon().factory());
+        List<BookMove> moved = new ArrayList<>();
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (BookMove move : moves) {
+                results.add(executor.submit(() -> copyBook(move, journal)));
+            }
+            for (int i = 0; i < moves.size(); i++) {
+                try {
+                    if (results.get(i).get()) {
+                        moved.add(moves.get(i));
+                    }
+                } catch (ExecutionException e) {
+                    log.error("Failed to move file for book id {}: {}", moves.get(i).book().getId(), e.getCause().getMessage(), e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Interrupted while copying files; the batch is finished from its journal at the next startup");
+            executor.shutdownNow();
+            throw new IllegalStateException("File move interrupted", e);
+        } finally {
+            executor.shutdown();
+        }
+        return moved;
     }
 
-    private void sendUpdateNotifications(List<Book> updatedBooks) {
-        if (!updatedBooks.isEmpty()) {
-            notificationService.sendMessage(Topic.BOOK_METADATA_BATCH_UPDATE, updatedBooks);
+    private boolean copyBook(BookMove move, FileMoveJournal.Batch journal) throws IOException {
+        FileMove bookFile = move.bookFile();
+        transfer(bookFile.source(), bookFile.target());
+        if (!recordMoved(bookFile, journal)) {
+            return false;
         }
+        moveAdditionalFiles(move, journal);
+        return true;
     }
 
-    private void rescanLibraries(Set<Long> libraryIds) {
-        for (Long libraryId : libraryIds) {
+    private void moveAdditionalFiles(BookMove move, FileMoveJournal.Batch journal) {
+        for (FileMove file : move.additionalFiles()) {
             try {
-                libraryService.rescanLibrary(libraryId);
-                log.info("Rescanned library id {} after file move", libraryId);
-            } catch (Exception e) {
-                log.error("Failed to rescan library id {}: {}", libraryId, e.getMessage(), e);
+                log.info("Moving additional file from {} to {}", file.source(), file.target());
+                transfer(file.source(), file.target());
+                recordMoved(file, journal);
+            } catch (IOException e) {
+                log.error("Failed to move additional file id {} for book id {}: {}", file.additionalFile().getId(), move.book().getId(), e.getMessage(), e);
             }
         }
     }
 
-    private void resumeMonitoringWithDelay(boolean didPause) {
-        if (didPause && !monitoringService.isPaused()) {
-            log.info("Monitoring already resumed by another thread.");
-        } else if (didPause) {
-            Thread.startVirtualThread(() -> {
-                try {
-                    Thread.sleep(5_000);
-                    monitoringService.resumeMonitoring();
-                    log.info("Monitoring resumed after 5s delay");
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("Interrupted while delaying resume of monitoring");
-                }
-            });
+    private boolean recordMoved(FileMove file, FileMoveJournal.Batch journal) {
+        try {
+            journal.markDone(file.index());
+            return true;
+        } catch (IOException e) {
+            // The file has moved, but without a record of it the database must not be changed either.
+            log.error("Failed to record move of {} in the journal: {}", file.target(), e.getMessage(), e);
+            return false;
         }
     }
 
-    public String generatePathFromPattern(BookEntity book, String pattern) {
-        return PathPatternResolver.resolvePattern(book, pattern);
-    }
-
-    private void moveAdditionalFiles(BookEntity book, String pattern) throws IOException {
-        Map<String, Integer> fileNameCounter = new HashMap<>();
-
-        for (BookAdditionalFileEntity additionalFile : book.getAdditionalFiles()) {
-            Path oldAdditionalFilePath = additionalFile.getFullFilePath();
-            if (!Files.exists(oldAdditionalFilePath)) {
-                log.warn("Additional file does not exist for book id {}: {}", book.getId(), oldAdditionalFilePath);
-                continue;
+    /**
+     * Saves the new locations of everything that moved in one transaction and retires the journal.
+     *
+     * @return whether the database was updated; if not, the journal is kept so the next startup retries
+     */
+    private boolean saveNewPaths(List<BookMove> moved, FileMoveJournal.Batch journal) {
+        List<BookEntity> books = new ArrayList<>(moved.size());
+        List<BookAdditionalFileEntity> additionalFiles = new ArrayList<>();
+        for (BookMove move : moved) {
+            BookEntity book = move.book();
+            book.setFileSubPath(move.bookFile().targetSubPath());
+            book.setFileName(move.bookFile().targetFileName());
+            books.add(book);
+            for (FileMove file : move.additionalFiles()) {
+                if (journal.isDone(file.index())) {
+                    file.additionalFile().setFileSubPath(file.targetSubPath());
+                    file.additionalFile().setFileName(file.targetFileName());
+                    additionalFiles.add(file.additionalFile());
+                }
             }
-
-            String newRelativePathStr = PathPatternResolver.resolvePattern(book.getMetadata(), pattern, additionalFile.getFileName());
-            if (newRelativePathStr.startsWith("/") || newRelativePathStr.startsWith("\\")) {
-                newRelativePathStr = newRelativePathStr.substring(1);
+        }
+        try {
+            if (!books.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    bookRepository.saveAll(books);
+                    if (!additionalFiles.isEmpty()) {
+                        bookAdditionalFileRepository.saveAll(additionalFiles);
+                    }
+                });
+                log.info("Updated paths of {} books and {} additional files", books.size(), additionalFiles.size());
             }
+            journal.complete();
+            return true;
+        } catch (RuntimeException | IOException e) {
+            log.error("Failed to save new file locations, they are applied from journal {} at the next startup: {}", journal, e.getMessage(), e);
+            closeQuietly(journal);
+            return false;
+        }
+    }
 
-            Path libraryRoot = Paths.get(book.getLibraryPath().getPath()).toAbsolutePath().normalize();
-            Path newAdditionalFilePath = libraryRoot.resolve(newRelativePathStr).normalize();
-
-            // Check for filename uniqueness and add index if necessary
-            newAdditionalFilePath = ensureUniqueFilePath(newAdditionalFilePath, fileNameCounter);
-
-            if (oldAdditionalFilePath.equals(newAdditionalFilePath)) {
-                log.debug("Source and destination paths are identical for additional file id {}. Skipping.", additionalFile.getId());
+    private void deleteEmptySourceDirectories(List<BookMove> moved) {
+        Map<Path, Path> rootsByDirectory = new HashMap<>();
+        for (BookMove move : moved) {
+            for (FileMove file : files(move)) {
+                rootsByDirectory.putIfAbsent(file.source().getParent(), move.libraryRoot());
+            }
+        }
+        // Deepest first, so a directory emptied by its children is seen empty when its own turn comes.
+        List<Path> directories = rootsByDirectory.keySet().stream()
+                .sorted(Comparator.comparingInt(Path::getNameCount).reversed())
+                .toList();
+        for (Path directory : directories) {
+            if (!Files.isDirectory(directory)) {
                 continue;
             }
-
-            // Create parent directories if needed
-            if (newAdditionalFilePath.getParent() != null) {
-                Files.createDirectories(newAdditionalFilePath.getParent());
+            try {
+                deleteEmptyParentDirsUpToLibraryFolders(directory, Set.of(rootsByDirectory.get(directory)));
+            } catch (IOException e) {
+                log.warn("Failed to clean up empty directories above {}: {}", directory, e.getMessage());
             }
+        }
+    }
 
-            log.info("Moving additional file from {} to {}", oldAdditionalFilePath, newAdditionalFilePath);
-            Files.move(oldAdditionalFilePath, newAdditionalFilePath, StandardCopyOption.REPLACE_EXISTING);
-
-            // Update additional file paths
-            updateAdditionalFilePaths(additionalFile, newAdditionalFilePath, libraryRoot);
-            bookAdditionalFileRepository.save(additionalFile);
+    private static List<FileMove> files(BookMove move) {
+        List<FileMove> files = new ArrayList<>(move.additionalFiles().size() + 1);
+        files.add(move.bookFile());
+        files.addAll(move.additionalFiles());
+        return files;
+    }
 
-            log.info("Updated additional file id {} with new path", additionalFile.getId());
+    private static void rename(Path source, Path target) throws IOException {
+        if (target.getParent() != null) {
+            Files.createDirectories(target.getParent());
         }
+        Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
     }
 
-    private Path ensureUniqueFilePath(Path filePath, Map<String, Integer> fileNameCounter) {
-        String fileName = filePath.getFileName().toString();
-        String baseName = fileName;
-        String extension = "";
-
-        int lastDot = fileName.lastIndexOf(".");
-        if (lastDot >= 0 && lastDot < fileName.length() - 1) {
-            baseName = fileName.substring(0, lastDot);
-            extension = fileName.substring(lastDot);
+    /**
+     * Renames the file if it can; otherwise copies it beside the target and renames it into place, so the target only
+     * ever holds a complete file, then removes the source.
+     */
+    private static void transfer(Path source, Path target) throws IOException {
+        try {
+            rename(source, target);
+            return;
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("{} and {} are on different filesystems, copying", source, target);
         }
+        Path partial = copyPath(target);
+        try {
+            Files.copy(source, partial, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+        Files.delete(source);
+    }
 
-        String fileKey = filePath.toString().toLowerCase();
-        Integer count = fileNameCounter.get(fileKey);
+    private static Path copyPath(Path target) {
+        return target.resolveSibling("." + target.getFileName() + COPY_SUFFIX);
+    }
 
-        if (count == null) {
-            fileNameCounter.put(fileKey, 1);
-            return filePath;
-        } else {
-            // File name already exists, add index
-            count++;
-            fileNameCounter.put(fileKey, count);
-            String newFileName = baseName + "_" + count + extension;
-            return filePath.getParent().resolve(newFileName);
+    private static void closeQuietly(FileMoveJournal.Batch journal) {
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("Failed to close file move journal {}: {}", journal, e.getMessage());
         }
     }
 
-    private void updateAdditionalFilePaths(BookAdditionalFileEntity additionalFile, Path newFilePath, Path libraryRoot) {
-        String newFileName = newFilePath.getFileName().toString();
-        Path newRelativeSubPath = libraryRoot.relativize(newFilePath.getParent());
-        String newFileSubPath = newRelativeSubPath.toString().replace('\\', '/');
+    private void sendUpdateNotifications(List<Book> updatedBooks) {
+        if (!updatedBooks.isEmpty()) {
+            notificationService.sendMessage(Topic.BOOK_METADATA_BATCH_UPDATE, updatedBooks);
+        }
+    }
 
-        additionalFile.setFileSubPath(newFileSubPath);
-        additionalFile.setFileName(newFileName);
+    public String generatePathFromPattern(BookEntity book, String pattern) {
+        return PathPatternResolver.resolvePattern(book, pattern);
     }
 
     public void deleteEmptyParentDirsUpToLibraryFolders(Path currentDir, Set<Path> libraryRoots) throws IOException {
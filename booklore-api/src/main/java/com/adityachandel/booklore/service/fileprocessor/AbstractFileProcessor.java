@@ -7,15 +7,19 @@ import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
 import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.service.BookCreatorService;
-import com.adityachandel.booklore.service.FileFingerprint;
 import com.adityachandel.booklore.service.metadata.MetadataMatchService;
 import com.adityachandel.booklore.util.FileService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.nio.file.Path;
+import java.util.Locale;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @Slf4j
 public abstract class AbstractFileProcessor implements BookFileProcessor {
@@ -26,14 +30,16 @@ public abstract class AbstractFileProcessor implements BookFileProcessor {
     protected final BookMapper bookMapper;
     protected final MetadataMatchService metadataMatchService;
     protected final FileService fileService;
+    private final MeterRegistry meterRegistry;
 
-    protected AbstractFileProcessor(BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository, BookCreatorService bookCreatorService, BookMapper bookMapper, FileService fileService, MetadataMatchService metadataMatchService) {
+    protected AbstractFileProcessor(BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository, BookCreatorService bookCreatorService, BookMapper bookMapper, FileService fileService, MetadataMatchService metadataMatchService, MeterRegistry meterRegistry) {
         this.bookRepository = bookRepository;
         this.bookAdditionalFileRepository = bookAdditionalFileRepository;
         this.bookCreatorService = bookCreatorService;
         this.bookMapper = bookMapper;
         this.metadataMatchService = metadataMatchService;
         this.fileService = fileService;
+        this.meterRegistry = meterRegistry;
     }
 
     @Transactional(propagation = Propagation.REQUIRES_NEW)
@@ -41,16 +47,25 @@ public abstract class AbstractFileProcessor implements BookFileProcessor {
     public Book processFile(LibraryFile libraryFile) {
         Path path = libraryFile.getFullPath();
         String fileName = path.getFileName().toString();
-        String hash = FileFingerprint.generateHash(path);
-        Optional<Book> duplicate = fileService.checkForDuplicateAndUpdateMetadataIfNeeded(libraryFile, hash, bookRepository, bookAdditionalFileRepository, bookMapper);
-        if (duplicate.isPresent()) {
-            return handleDuplicate(duplicate.get(), libraryFile);
-        }
+        String format = libraryFile.getBookFileType() != null ? libraryFile.getBookFileType().name().toLowerCase(Locale.ROOT) : "unknown";
+        try (BookFileSession session = BookFileSession.open(path, libraryFile.getHash())) {
+            String hash = timeStage("fingerprint", format, session::getHash);
+            Optional<Book> duplicate = timeStage("dedup", format, () -> fileService.checkForDuplicateAndUpdateMetadataIfNeeded(libraryFile, hash, bookMapper));
+            if (duplicate.isPresent()) {
+                countProcessed(format, "duplicate");
+                return handleDuplicate(duplicate.get(), libraryFile);
+            }
 
-        Long libraryId = libraryFile.getLibraryEntity().getId();
-        return bookRepository.findBookByFileNameAndLibraryId(fileName, libraryId)
-                .map(bookMapper::toBook)
-                .orElseGet(() -> createAndMapBook(libraryFile, hash));
+            Long libraryId = libraryFile.getLibraryEntity().getId();
+            Optional<Book> existing = bookRepository.findBookByFileNameAndLibraryId(fileName, libraryId).map(bookMapper::toBook);
+            if (existing.isPresent()) {
+                countProcessed(format, "existing");
+                return existing.get();
+            }
+            Book created = timeStage("create", format, () -> createAndMapBook(libraryFile, session));
+            countProcessed(format, "created");
+            return created;
+        }
     }
 
     private Book handleDuplicate(Book bookDto, LibraryFile libraryFile) {
@@ -68,13 +83,35 @@ public abstract class AbstractFileProcessor implements BookFileProcessor {
         return bookDto;
     }
 
-    private Book createAndMapBook(LibraryFile libraryFile, String hash) {
-        BookEntity entity = processNewFile(libraryFile);
-        entity.setCurrentHash(hash);
+    private Book createAndMapBook(LibraryFile libraryFile, BookFileSession session) {
+        BookEntity entity = processNewFile(libraryFile, session);
+        entity.setCurrentHash(session.getHash());
         entity.setMetadataMatchScore(metadataMatchService.calculateMatchScore(entity));
         bookCreatorService.saveConnections(entity);
         return bookMapper.toBook(entity);
     }
 
-    protected abstract BookEntity processNewFile(LibraryFile libraryFile);
+    private <T> T timeStage(String stage, String format, Supplier<T> work) {
+        return Timer.builder("booklore.scan.file.stage")
+                .description("Time spent per stage of ingesting a single book file")
+                .tag("stage", stage)
+                .tag("format", format)
+                .register(meterRegistry)
+                .record(work);
+    }
+
+    private void countProcessed(String format, String outcome) {
+        Counter.builder("booklore.scan.files.processed")
+                .description("Book files handled by the ingest pipeline, by what was done with them")
+                .tag("format", format)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * Creates the book for a file not seen before. Implementations should read the file through {@code session} so it
+     * is opened and parsed only once.
+     */
+    protected abstract BookEntity processNewFile(LibraryFile libraryFile, BookFileSession session);
 }
@@ -0,0 +1,157 @@
+package com.adityachandel.booklore.service.fileprocessor;
+
+import com.adityachandel.booklore.model.enums.BookFileExtension;
+import com.adityachandel.booklore.service.FileFingerprint;
+import com.adityachandel.booklore.util.FileUtils;
+import com.adityachandel.booklore.util.epub.EpubContainer;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Everything the ingest pipeline needs from one book file, backed by a single open handle.
+ * <p>
+ * Fingerprinting, metadata extraction and cover extraction used to open and parse the same file independently. The
+ * session opens the file lazily on first use and hands the same parsed {@link PDDocument} or {@link EpubContainer}
+ * to every consumer, so a new book costs roughly one pass over its bytes. Nothing is read until a getter is called,
+ * and {@link #close()} releases whatever was opened.
+ */
+@Slf4j
+public final class BookFileSession implements Closeable {
+
+    @Getter
+    private final Path path;
+
+    private FileChannel channel;
+    private RandomAccessReadBufferedFile pdfSource;
+    private PDDocument pdf;
+    private EpubContainer epub;
+    private String hash;
+
+    private BookFileSession(Path path) {
+        this.path = path;
+    }
+
+    public static BookFileSession open(Path path) {
+        return new BookFileSession(path);
+    }
+
+    /**
+     * Opens a session for a file whose fingerprint is already known, such as one computed while it was uploaded.
+     */
+    public static BookFileSession open(Path path, String knownHash) {
+        BookFileSession session = new BookFileSession(path);
+        session.hash = knownHash;
+        return session;
+    }
+
+    public File getFile() {
+        return path.toFile();
+    }
+
+    public Long getFileSizeKb() {
+        try {
+            if (pdfSource != null) {
+                return pdfSource.length() / 1024;
+            }
+            if (channel != null) {
+                return channel.size() / 1024;
+            }
+        } catch (IOException e) {
+            log.debug("Falling back to stat for size of '{}': {}", path, e.getMessage());
+        }
+        return FileUtils.getFileSizeInKb(path);
+    }
+
+    public String getHash() {
+        if (hash == null) {
+            try {
+                if (isPdf()) {
+                    RandomAccessReadBufferedFile source = pdfSource();
+                    hash = FileFingerprint.generateHash(source.length(), (position, buffer) -> {
+                        source.seek(position);
+                        return source.read(buffer);
+                    });
+                } else {
+                    FileChannel ch = channel();
+                    hash = FileFingerprint.generateHash(ch.size(), (position, buffer) -> ch.read(ByteBuffer.wrap(buffer), position));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to compute partial MD5 hash for: " + path, e);
+            }
+        }
+        return hash;
+    }
+
+    public PDDocument getPdf() throws IOException {
+        if (pdf == null) {
+            // Fingerprint first: the sampled blocks are then already in the source's buffer and the parser starts from a
+            // clean position.
+            getHash();
+            RandomAccessReadBufferedFile source = pdfSource();
+            source.seek(0);
+            pdf = Loader.loadPDF(source);
+        }
+        return pdf;
+    }
+
+    public EpubContainer getEpub() throws IOException {
+        if (epub == null) {
+            epub = EpubContainer.open(channel(), path.getFileName().toString());
+        }
+        return epub;
+    }
+
+    @Override
+    public void close() {
+        closeQuietly(epub);
+        closeQuietly(pdf);
+        closeQuietly(pdfSource);
+        closeQuietly(channel);
+        epub = null;
+        pdf = null;
+        pdfSource = null;
+        channel = null;
+    }
+
+    private boolean isPdf() {
+        return pdfSource != null || BookFileExtension.fromFileName(path.getFileName().toString())
+                .map(extension -> extension == BookFileExtension.PDF)
+                .orElse(false);
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+        return channel;
+    }
+
+    private RandomAccessReadBufferedFile pdfSource() throws IOException {
+        if (pdfSource == null) {
+            pdfSource = new RandomAccessReadBufferedFile(path);
+        }
+        return pdfSource;
+    }
+
+    private void closeQuietly(AutoCloseable closeable) {
+        if (closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            log.debug("Failed to close resource for '{}': {}", path, e.getMessage());
+        }
+    }
+}
@@ -13,6 +13,7 @@ import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
 import com.github.junrar.Archive;
 import com.github.junrar.rarfile.FileHeader;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
 import org.apache.commons.compress.archivers.sevenz.SevenZFile;
@@ -40,14 +41,15 @@ public class CbxProcessor extends AbstractFileProcessor implements BookFileProce
                         BookMapper bookMapper,
                         FileService fileService,
                         BookMetadataRepository bookMetadataRepository,
-                        MetadataMatchService metadataMatchService) {
-        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService);
+                        MetadataMatchService metadataMatchService,
+                        MeterRegistry meterRegistry) {
+        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService, meterRegistry);
         this.bookMetadataRepository = bookMetadataRepository;
     }
 
     @Override
-    public BookEntity processNewFile(LibraryFile libraryFile) {
-        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.CBX);
+    public BookEntity processNewFile(LibraryFile libraryFile, BookFileSession session) {
+        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.CBX, session.getFileSizeKb());
         if (generateCover(bookEntity)) {
             fileService.setBookCoverPath(bookEntity.getMetadata());
         }
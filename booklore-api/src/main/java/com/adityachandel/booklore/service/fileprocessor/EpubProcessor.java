@@ -14,14 +14,15 @@ import com.adityachandel.booklore.service.metadata.MetadataMatchService;
 import com.adityachandel.booklore.service.metadata.extractor.EpubMetadataExtractor;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
-import io.documentnode.epub4j.domain.Resource;
-import io.documentnode.epub4j.epub.EpubReader;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
@@ -43,17 +44,18 @@ public class EpubProcessor extends AbstractFileProcessor implements BookFileProc
                          FileService fileService,
                          BookMetadataRepository bookMetadataRepository,
                          MetadataMatchService metadataMatchService,
-                         EpubMetadataExtractor epubMetadataExtractor) {
-        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService);
+                         EpubMetadataExtractor epubMetadataExtractor,
+                         MeterRegistry meterRegistry) {
+        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService, meterRegistry);
         this.epubMetadataExtractor = epubMetadataExtractor;
         this.bookMetadataRepository = bookMetadataRepository;
     }
 
     @Override
-    public BookEntity processNewFile(LibraryFile libraryFile) {
-        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.EPUB);
-        setBookMetadata(bookEntity);
-        if (generateCover(bookEntity)) {
+    public BookEntity processNewFile(LibraryFile libraryFile, BookFileSession session) {
+        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.EPUB, session.getFileSizeKb());
+        setBookMetadata(bookEntity, session);
+        if (generateCover(bookEntity, session)) {
             fileService.setBookCoverPath(bookEntity.getMetadata());
         }
         return bookEntity;
@@ -61,24 +63,14 @@ public class EpubProcessor extends AbstractFileProcessor implements BookFileProc
 
     @Override
     public boolean generateCover(BookEntity bookEntity) {
-        try {
-            File epubFile = new File(FileUtils.getBookFullPath(bookEntity));
-            io.documentnode.epub4j.domain.Book epub = new EpubReader().readEpub(new FileInputStream(epubFile));
-            Resource coverImage = epub.getCoverImage();
+        try (BookFileSession session = BookFileSession.open(Path.of(FileUtils.getBookFullPath(bookEntity)))) {
+            return generateCover(bookEntity, session);
+        }
+    }
 
-            if (coverImage == null) {
-                for (Resource res : epub.getResources().getAll()) {
-                    String id = res.getId();
-                    String href = res.getHref();
-                    if ((id != null && id.toLowerCase().contains("cover")) ||
-                            (href != null && href.toLowerCase().contains("cover"))) {
-                        if (res.getMediaType() != null && res.getMediaType().getName().startsWith("image")) {
-                            coverImage = res;
-                            break;
-                        }
-                    }
-                }
-            }
+    private boolean generateCover(BookEntity bookEntity, BookFileSession session) {
+        try {
+            byte[] coverImage = session.getEpub().readCover();
 
             if (coverImage == null) {
                 log.warn("No cover image found in EPUB '{}'", bookEntity.getFileName());
@@ -101,9 +93,8 @@ public class EpubProcessor extends AbstractFileProcessor implements BookFileProc
         return List.of(BookFileType.EPUB);
     }
 
-    private void setBookMetadata(BookEntity bookEntity) {
-        File bookFile = new File(bookEntity.getFullFilePath().toUri());
-        BookMetadata epubMetadata = epubMetadataExtractor.extractMetadata(bookFile);
+    private void setBookMetadata(BookEntity bookEntity, BookFileSession session) {
+        BookMetadata epubMetadata = epubMetadataExtractor.extractMetadata(session);
         if (epubMetadata == null) return;
 
         BookMetadataEntity metadata = bookEntity.getMetadata();
@@ -146,8 +137,8 @@ public class EpubProcessor extends AbstractFileProcessor implements BookFileProc
         }
     }
 
-    private boolean saveCoverImage(Resource coverImage, long bookId) throws IOException {
-        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(coverImage.getData()));
+    private boolean saveCoverImage(byte[] coverImage, long bookId) throws IOException {
+        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(coverImage));
         return fileService.saveCoverImages(originalImage, bookId);
     }
 }
\ No newline at end of file
@@ -13,17 +13,17 @@ import com.adityachandel.booklore.service.metadata.MetadataMatchService;
 import com.adityachandel.booklore.service.metadata.extractor.PdfMetadataExtractor;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.pdfbox.Loader;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
 import org.springframework.stereotype.Service;
 
 import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 
@@ -43,26 +43,33 @@ public class PdfProcessor extends AbstractFileProcessor implements BookFileProce
                         FileService fileService,
                         BookMetadataRepository bookMetadataRepository,
                         MetadataMatchService metadataMatchService,
-                        PdfMetadataExtractor pdfMetadataExtractor) {
-        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService);
+                        PdfMetadataExtractor pdfMetadataExtractor,
+                        MeterRegistry meterRegistry) {
+        super(bookRepository, bookAdditionalFileRepository, bookCreatorService, bookMapper, fileService, metadataMatchService, meterRegistry);
         this.pdfMetadataExtractor = pdfMetadataExtractor;
         this.bookMetadataRepository = bookMetadataRepository;
     }
 
     @Override
-    public BookEntity processNewFile(LibraryFile libraryFile) {
-        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.PDF);
-        if (generateCover(bookEntity)) {
+    public BookEntity processNewFile(LibraryFile libraryFile, BookFileSession session) {
+        BookEntity bookEntity = bookCreatorService.createShellBook(libraryFile, BookFileType.PDF, session.getFileSizeKb());
+        if (generateCover(bookEntity, session)) {
             fileService.setBookCoverPath(bookEntity.getMetadata());
         }
-        extractAndSetMetadata(bookEntity);
+        extractAndSetMetadata(bookEntity, session);
         return bookEntity;
     }
 
     @Override
     public boolean generateCover(BookEntity bookEntity) {
-        try (PDDocument pdf = Loader.loadPDF(new File(FileUtils.getBookFullPath(bookEntity)))) {
-            boolean saved = generateCoverImageAndSave(bookEntity.getId(), pdf);
+        try (BookFileSession session = BookFileSession.open(Path.of(FileUtils.getBookFullPath(bookEntity)))) {
+            return generateCover(bookEntity, session);
+        }
+    }
+
+    private boolean generateCover(BookEntity bookEntity, BookFileSession session) {
+        try {
+            boolean saved = generateCoverImageAndSave(bookEntity.getId(), session.getPdf());
             bookEntity.getMetadata().setCoverUpdatedOn(Instant.now());
             bookMetadataRepository.save(bookEntity.getMetadata());
             return saved;
@@ -77,9 +84,9 @@ public class PdfProcessor extends AbstractFileProcessor implements BookFileProce
         return List.of(BookFileType.PDF);
     }
 
-    private void extractAndSetMetadata(BookEntity bookEntity) {
+    private void extractAndSetMetadata(BookEntity bookEntity, BookFileSession session) {
         try {
-            BookMetadata extracted = pdfMetadataExtractor.extractMetadata(new File(FileUtils.getBookFullPath(bookEntity)));
+            BookMetadata extracted = pdfMetadataExtractor.extractMetadata(session);
 
             if (StringUtils.isNotBlank(extracted.getTitle())) {
                 bookEntity.getMetadata().setTitle(truncate(extracted.getTitle(), 1000));
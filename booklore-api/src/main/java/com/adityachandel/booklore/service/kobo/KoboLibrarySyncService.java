@@ -13,6 +13,9 @@ import com.adityachandel.booklore.util.RequestUtils;
 import com.adityachandel.booklore.util.kobo.BookloreSyncTokenGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
@@ -35,55 +38,39 @@ public class KoboLibrarySyncService {
     private final KoboEntitlementService entitlementService;
     private final KoboDeletedBookProgressRepository koboDeletedBookProgressRepository;
     private final KoboServerProxy koboServerProxy;
+    private final KoboSyncPageSizer pageSizer;
+    private final KoboShelfChangeService shelfChangeService;
     private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
 
     public ResponseEntity<?> syncLibrary(BookLoreUser user, String token) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            ResponseEntity<?> response = sync(user, token);
+            outcome = "continue".equals(response.getHeaders().getFirst(KoboHeaders.X_KOBO_SYNC)) ? "continue" : "complete";
+            return response;
+        } finally {
+            sample.stop(Timer.builder("booklore.kobo.sync")
+                    .description("Time spent answering one Kobo library sync request")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private ResponseEntity<?> sync(BookLoreUser user, String token) {
         HttpServletRequest request = RequestUtils.getCurrentRequest();
         BookloreSyncToken syncToken = Optional.ofNullable(tokenGenerator.fromRequestHeaders(request)).orElse(new BookloreSyncToken());
 
-        KoboLibrarySnapshotEntity currSnapshot = koboLibrarySnapshotService.findByIdAndUserId(syncToken.getOngoingSyncPointId(), user.getId()).orElseGet(() -> koboLibrarySnapshotService.create(user.getId()));
-        Optional<KoboLibrarySnapshotEntity> prevSnapshot = koboLibrarySnapshotService.findByIdAndUserId(syncToken.getLastSuccessfulSyncPointId(), user.getId());
+        String deviceKey = user.getId() + ":" + Optional.ofNullable(request.getHeader(KoboHeaders.X_KOBO_DEVICEID)).orElse("");
+        int pageSize = pageSizer.pageSize(deviceKey);
 
         List<Entitlement> entitlements = new ArrayList<>();
-        boolean shouldContinueSync = false;
-
-        if (prevSnapshot.isPresent()) {
-            int maxRemaining = 5;
-            List<KoboSnapshotBookEntity> addedAll = new ArrayList<>();
-            List<KoboSnapshotBookEntity> removedAll = new ArrayList<>();
-
-            koboLibrarySnapshotService.updateSyncedStatusForExistingBooks(prevSnapshot.get().getId(), currSnapshot.getId());
-
-            Page<KoboSnapshotBookEntity> addedPage = koboLibrarySnapshotService.getNewlyAddedBooks(prevSnapshot.get().getId(), currSnapshot.getId(), PageRequest.of(0, maxRemaining), user.getId());
-            addedAll.addAll(addedPage.getContent());
-            maxRemaining -= addedPage.getNumberOfElements();
-            shouldContinueSync = addedPage.hasNext();
-
-            Page<KoboSnapshotBookEntity> removedPage = Page.empty();
-            if (addedPage.isLast() && maxRemaining > 0) {
-                removedPage = koboLibrarySnapshotService.getRemovedBooks(prevSnapshot.get().getId(), currSnapshot.getId(), user.getId(), PageRequest.of(0, maxRemaining));
-                removedAll.addAll(removedPage.getContent());
-                shouldContinueSync = shouldContinueSync || removedPage.hasNext();
-            }
-
-            Set<Long> addedIds = addedAll.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
-            Set<Long> removedIds = removedAll.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
-
-            entitlements.addAll(entitlementService.generateNewEntitlements(addedIds, token, false));
-            entitlements.addAll(entitlementService.generateChangedEntitlements(removedIds, token, true));
-        } else {
-            int maxRemaining = 5;
-            List<KoboSnapshotBookEntity> all = new ArrayList<>();
-            while (maxRemaining > 0) {
-                var page = koboLibrarySnapshotService.getUnsyncedBooks(currSnapshot.getId(), PageRequest.of(0, maxRemaining));
-                all.addAll(page.getContent());
-                maxRemaining -= page.getNumberOfElements();
-                shouldContinueSync = page.hasNext();
-                if (!shouldContinueSync || page.getNumberOfElements() == 0) break;
-            }
-            Set<Long> ids = all.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
-            entitlements.addAll(entitlementService.generateNewEntitlements(ids, token, false));
-        }
+        String previousSnapshotId = syncToken.getLastSuccessfulSyncPointId();
+        boolean shouldContinueSync = shelfChangeService.canSyncIncrementally(syncToken)
+                ? syncChanges(user, token, syncToken, deviceKey, pageSize, entitlements)
+                : syncSnapshot(user, token, syncToken, deviceKey, pageSize, entitlements);
+        String snapshotId = syncToken.getOngoingSyncPointId();
 
         if (!shouldContinueSync) {
             ResponseEntity<JsonNode> koboStoreResponse = koboServerProxy.proxyCurrentRequest(null, true);
@@ -117,21 +104,114 @@ public class KoboLibrarySyncService {
             );
 
             String koboSyncTokenHeader = koboStoreResponse.getHeaders().getFirst(KoboHeaders.X_KOBO_SYNCTOKEN);
-            syncToken = koboSyncTokenHeader != null ? tokenGenerator.fromBase64(koboSyncTokenHeader) : syncToken;
+            if (koboSyncTokenHeader != null) {
+                BookloreSyncToken koboSyncToken = tokenGenerator.fromBase64(koboSyncTokenHeader);
+                koboSyncToken.setChangeLogOffset(syncToken.getChangeLogOffset());
+                koboSyncToken.setChangeLogTime(syncToken.getChangeLogTime());
+                syncToken = koboSyncToken;
+            }
         }
 
         if (shouldContinueSync) {
-            syncToken.setOngoingSyncPointId(currSnapshot.getId());
+            syncToken.setOngoingSyncPointId(snapshotId);
+            syncToken.setLastSuccessfulSyncPointId(previousSnapshotId);
         } else {
-            prevSnapshot.ifPresent(sp -> koboLibrarySnapshotService.deleteById(sp.getId()));
-            koboDeletedBookProgressRepository.deleteBySnapshotIdAndUserId(syncToken.getOngoingSyncPointId(), user.getId());
+            // Snapshots only carry a first sync; from here on the device follows the shelf change log.
+            if (snapshotId != null) {
+                koboDeletedBookProgressRepository.deleteBySnapshotIdAndUserId(snapshotId, user.getId());
+                koboLibrarySnapshotService.deleteById(snapshotId);
+            }
+            if (previousSnapshotId != null) {
+                koboLibrarySnapshotService.findByIdAndUserId(previousSnapshotId, user.getId())
+                        .ifPresent(sp -> koboLibrarySnapshotService.deleteById(sp.getId()));
+            }
             syncToken.setOngoingSyncPointId(null);
-            syncToken.setLastSuccessfulSyncPointId(currSnapshot.getId());
+            syncToken.setLastSuccessfulSyncPointId(null);
         }
 
+        DistributionSummary.builder("booklore.kobo.sync.entitlements")
+                .description("Entitlements returned by one Kobo library sync request")
+                .register(meterRegistry)
+                .record(entitlements.size());
+
         return ResponseEntity.ok()
                 .header(KoboHeaders.X_KOBO_SYNC, shouldContinueSync ? "continue" : "")
                 .header(KoboHeaders.X_KOBO_SYNCTOKEN, tokenGenerator.toBase64(syncToken))
                 .body(entitlements);
     }
-}
\ No newline at end of file
+
+    private boolean syncChanges(BookLoreUser user, String token, BookloreSyncToken syncToken, String deviceKey, int pageSize, List<Entitlement> entitlements) {
+        KoboShelfChanges changes = shelfChangeService.getChanges(user.getId(), syncToken.getChangeLogOffset(), pageSize);
+
+        entitlements.addAll(entitlementService.generateNewEntitlements(changes.added(), token, false));
+        entitlements.addAll(entitlementService.generateChangedEntitlements(changes.updated(), token, false));
+        entitlements.addAll(entitlementService.generateChangedEntitlements(changes.removed(), token, true));
+
+        Set<Long> sentIds = new HashSet<>(changes.added());
+        sentIds.addAll(changes.updated());
+        pageSizer.record(deviceKey, changes.size(), entitlementService.estimatePayloadBytes(sentIds, changes.removed(), token));
+
+        // Nothing after the old offset had been pruned, so nothing after the new one has been either.
+        syncToken.setChangeLogOffset(changes.offset());
+        syncToken.setChangeLogTime(System.currentTimeMillis());
+        return changes.hasMore();
+    }
+
+    /**
+     * Full sync for a device without a usable change log offset: the shelf is copied into a snapshot once and sent page
+     * by page. Tokens issued before the change log existed still carry their last snapshot, which is diffed against.
+     */
+    private boolean syncSnapshot(BookLoreUser user, String token, BookloreSyncToken syncToken, String deviceKey, int pageSize, List<Entitlement> entitlements) {
+        Optional<KoboLibrarySnapshotEntity> ongoingSnapshot = koboLibrarySnapshotService.findByIdAndUserId(syncToken.getOngoingSyncPointId(), user.getId());
+        if (ongoingSnapshot.isEmpty() || syncToken.getChangeLogOffset() == null) {
+            // Taken before the shelf is read, so changes made while the snapshot is sent are replayed rather than lost.
+            syncToken.setChangeLogOffset(shelfChangeService.currentOffset());
+            syncToken.setChangeLogTime(System.currentTimeMillis());
+        }
+        KoboLibrarySnapshotEntity currSnapshot = ongoingSnapshot.orElseGet(() -> koboLibrarySnapshotService.create(user.getId()));
+        Optional<KoboLibrarySnapshotEntity> prevSnapshot = koboLibrarySnapshotService.findByIdAndUserId(syncToken.getLastSuccessfulSyncPointId(), user.getId());
+        syncToken.setOngoingSyncPointId(currSnapshot.getId());
+
+        boolean shouldContinueSync = false;
+        if (prevSnapshot.isPresent()) {
+            int maxRemaining = pageSize;
+            List<KoboSnapshotBookEntity> addedAll = new ArrayList<>();
+            List<KoboSnapshotBookEntity> removedAll = new ArrayList<>();
+
+            koboLibrarySnapshotService.updateSyncedStatusForExistingBooks(prevSnapshot.get().getId(), currSnapshot.getId());
+
+            Page<KoboSnapshotBookEntity> addedPage = koboLibrarySnapshotService.getNewlyAddedBooks(prevSnapshot.get().getId(), currSnapshot.getId(), PageRequest.of(0, maxRemaining), user.getId());
+            addedAll.addAll(addedPage.getContent());
+            maxRemaining -= addedPage.getNumberOfElements();
+            shouldContinueSync = addedPage.hasNext();
+
+            Page<KoboSnapshotBookEntity> removedPage = Page.empty();
+            if (addedPage.isLast() && maxRemaining > 0) {
+                removedPage = koboLibrarySnapshotService.getRemovedBooks(prevSnapshot.get().getId(), currSnapshot.getId(), user.getId(), PageRequest.of(0, maxRemaining));
+                removedAll.addAll(removedPage.getContent());
+                shouldContinueSync = shouldContinueSync || removedPage.hasNext();
+            }
+
+            Set<Long> addedIds = addedAll.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
+            Set<Long> removedIds = removedAll.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
+
+            entitlements.addAll(entitlementService.generateNewEntitlements(addedIds, token, false));
+            entitlements.addAll(entitlementService.generateChangedEntitlements(removedIds, token, true));
+            pageSizer.record(deviceKey, addedIds.size() + removedIds.size(), entitlementService.estimatePayloadBytes(addedIds, removedIds, token));
+        } else {
+            int maxRemaining = pageSize;
+            List<KoboSnapshotBookEntity> all = new ArrayList<>();
+            while (maxRemaining > 0) {
+                var page = koboLibrarySnapshotService.getUnsyncedBooks(currSnapshot.getId(), PageRequest.of(0, maxRemaining));
+                all.addAll(page.getContent());
+                maxRemaining -= page.getNumberOfElements();
+                shouldContinueSync = page.hasNext();
+                if (!shouldContinueSync || page.getNumberOfElements() == 0) break;
+            }
+            Set<Long> ids = all.stream().map(KoboSnapshotBookEntity::getBookId).collect(Collectors.toSet());
+            entitlements.addAll(entitlementService.generateNewEntitlements(ids, token, false));
+            pageSizer.record(deviceKey, ids.size(), entitlementService.estimatePayloadBytes(ids, Set.of(), token));
+        }
+        return shouldContinueSync;
+    }
+}
@@ -0,0 +1,110 @@
+package com.adityachandel.booklore.service.kobo;
+
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.KoboShelfChangeEntity;
+import com.adityachandel.booklore.model.entity.ShelfEntity;
+import com.adityachandel.booklore.model.enums.KoboShelfChangeType;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PreRemove;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * JPA entity listener that feeds the Kobo shelf change log from metadata updates and book deletions. Changes are
+ * gathered per transaction and logged once it commits, so a rolled back edit is never sent to a device. Shelves of a
+ * deleted book are read before removal, while the mapping rows still exist.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KoboShelfChangeListener {
+
+    private static final Object PENDING_KEY = new Object();
+
+    // Resolved lazily: entity listeners are created while the EntityManagerFactory itself is being built.
+    private final ObjectProvider<KoboShelfChangeService> koboShelfChangeService;
+
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        if (entity instanceof BookMetadataEntity metadata && metadata.getBookId() != null) {
+            record(pending -> pending.updatedBookIds.add(metadata.getBookId()));
+        }
+    }
+
+    @PreRemove
+    public void onRemove(Object entity) {
+        if (!(entity instanceof BookEntity book) || book.getId() == null || book.getShelves() == null) {
+            return;
+        }
+        List<KoboShelfChangeEntity> removals = new ArrayList<>();
+        for (ShelfEntity shelf : book.getShelves()) {
+            if (KoboShelfChangeService.isKoboShelf(shelf)) {
+                removals.add(KoboShelfChangeService.change(shelf.getUser().getId(), book.getId(), KoboShelfChangeType.REMOVED));
+            }
+        }
+        if (!removals.isEmpty()) {
+            record(pending -> pending.removals.addAll(removals));
+        }
+    }
+
+    private void record(Consumer<Pending> change) {
+        KoboShelfChangeService service = koboShelfChangeService.getIfAvailable();
+        if (service == null) {
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Pending pending = new Pending(service);
+            change.accept(pending);
+            pending.flush();
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending == null) {
+            pending = new Pending(service);
+            TransactionSynchronizationManager.bindResource(PENDING_KEY, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        change.accept(pending);
+    }
+
+    private static final class Pending implements TransactionSynchronization {
+
+        private final KoboShelfChangeService service;
+        private final Set<Long> updatedBookIds = new HashSet<>();
+        private final List<KoboShelfChangeEntity> removals = new ArrayList<>();
+
+        private Pending(KoboShelfChangeService service) {
+            this.service = service;
+        }
+
+        @Override
+        public void afterCommit() {
+            flush();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+        }
+
+        private void flush() {
+            try {
+                service.recordBookUpdates(Set.copyOf(updatedBookIds));
+                service.recordChanges(List.copyOf(removals));
+            } catch (Exception e) {
+                log.warn("Failed to log Kobo shelf changes: {}", e.getMessage());
+            }
+        }
+    }
+}
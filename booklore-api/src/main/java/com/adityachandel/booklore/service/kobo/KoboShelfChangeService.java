@@ -0,0 +1,204 @@
+package com.adityachandel.booklore.service.kobo;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.BookloreSyncToken;
+import com.adityachandel.booklore.model.dto.kobo.KoboShelfChanges;
+import com.adityachandel.booklore.model.entity.KoboShelfChangeEntity;
+import com.adityachandel.booklore.model.entity.ShelfEntity;
+import com.adityachandel.booklore.model.enums.KoboShelfChangeType;
+import com.adityachandel.booklore.model.enums.ShelfType;
+import com.adityachandel.booklore.repository.KoboShelfChangeRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Append-only log of books added to, updated on, or removed from each user's Kobo shelf. A device that has finished
+ * its first sync keeps an offset into the log in its sync token and is sent only what was logged after it, so
+ * incremental syncs no longer copy the whole shelf into a snapshot. Entries older than
+ * {@code app.kobo.change-log-retention-days} are pruned; a token older than that falls back to a full sync.
+ * <p>
+ * Offsets are AUTO_INCREMENT ids, which are allocated at insert but become visible at commit. If two transactions
+ * could write the log at once, a sync running between their commits could move a device past an id that only shows
+ * up later, and that change would never reach the device. Entries are therefore appended only after the changing
+ * transaction has committed, one append at a time, each in its own transaction. The committed entries are then
+ * always a prefix of the ids handed out.
+ */
+@Slf4j
+@Service
+public class KoboShelfChangeService {
+
+    private final KoboShelfChangeRepository koboShelfChangeRepository;
+    private final AppProperties appProperties;
+    private final TransactionTemplate appendTransaction;
+    private final Object appendLock = new Object();
+
+    public KoboShelfChangeService(KoboShelfChangeRepository koboShelfChangeRepository, AppProperties appProperties,
+                                  PlatformTransactionManager transactionManager) {
+        this.koboShelfChangeRepository = koboShelfChangeRepository;
+        this.appProperties = appProperties;
+        this.appendTransaction = new TransactionTemplate(transactionManager);
+        this.appendTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public static boolean isKoboShelf(ShelfEntity shelf) {
+        return shelf != null && ShelfType.KOBO.getName().equals(shelf.getName());
+    }
+
+    /**
+     * @return the offset a first sync starting now should continue from; anything logged later is replayed to it
+     */
+    @Transactional(readOnly = true)
+    public long currentOffset() {
+        return koboShelfChangeRepository.findLatestId();
+    }
+
+    /**
+     * @return whether the token's offset is recent enough that none of the entries after it have been pruned
+     */
+    public boolean canSyncIncrementally(BookloreSyncToken token) {
+        return token.getChangeLogOffset() != null
+                && token.getChangeLogTime() != null
+                && token.getOngoingSyncPointId() == null
+                && token.getChangeLogTime() > System.currentTimeMillis() - retention().toMillis();
+    }
+
+    /**
+     * Logs books added to or removed from a Kobo shelf once the current transaction commits.
+     */
+    public void recordShelfChanges(ShelfEntity shelf, Collection<Long> addedBookIds, Collection<Long> removedBookIds) {
+        if (!isKoboShelf(shelf) || (addedBookIds.isEmpty() && removedBookIds.isEmpty())) {
+            return;
+        }
+        Long userId = shelf.getUser().getId();
+        List<KoboShelfChangeEntity> changes = new ArrayList<>(addedBookIds.size() + removedBookIds.size());
+        removedBookIds.forEach(bookId -> changes.add(change(userId, bookId, KoboShelfChangeType.REMOVED)));
+        addedBookIds.forEach(bookId -> changes.add(change(userId, bookId, KoboShelfChangeType.ADDED)));
+        appendAfterCommit(() -> koboShelfChangeRepository.saveAll(changes));
+    }
+
+    /**
+     * Logs every book of a Kobo shelf as removed once the current transaction commits. Call before the shelf itself is
+     * deleted, while its books can still be read.
+     */
+    public void recordShelfDeleted(ShelfEntity shelf) {
+        if (!isKoboShelf(shelf) || shelf.getBookEntities() == null || shelf.getBookEntities().isEmpty()) {
+            return;
+        }
+        Long userId = shelf.getUser().getId();
+        List<KoboShelfChangeEntity> changes = shelf.getBookEntities().stream()
+                .map(book -> change(userId, book.getId(), KoboShelfChangeType.REMOVED))
+                .toList();
+        appendAfterCommit(() -> koboShelfChangeRepository.saveAll(changes));
+    }
+
+    /**
+     * Logs an update for each of the books that sits on a Kobo shelf. Called after the changing transaction commits.
+     */
+    public void recordBookUpdates(Collection<Long> bookIds) {
+        if (!bookIds.isEmpty()) {
+            append(() -> koboShelfChangeRepository.insertForShelvedBooks(ShelfType.KOBO.getName(), bookIds, KoboShelfChangeType.UPDATED.name()));
+        }
+    }
+
+    /**
+     * Logs prepared changes. Called after the changing transaction commits.
+     */
+    public void recordChanges(List<KoboShelfChangeEntity> changes) {
+        if (!changes.isEmpty()) {
+            append(() -> koboShelfChangeRepository.saveAll(changes));
+        }
+    }
+
+    private void appendAfterCommit(Runnable write) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            append(write);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                append(write);
+            }
+        });
+    }
+
+    private void append(Runnable write) {
+        synchronized (appendLock) {
+            try {
+                appendTransaction.executeWithoutResult(status -> write.run());
+            } catch (Exception e) {
+                log.warn("Failed to log Kobo shelf changes: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads up to {@code limit} log entries after the offset and collapses them to one change per book: the latest
+     * one wins, except that an update following an add is still sent as an add.
+     */
+    @Transactional(readOnly = true)
+    public KoboShelfChanges getChanges(Long userId, long afterOffset, int limit) {
+        List<KoboShelfChangeEntity> entries = koboShelfChangeRepository.findByUserIdAndIdGreaterThanOrderByIdAsc(userId, afterOffset, PageRequest.of(0, limit + 1));
+        boolean hasMore = entries.size() > limit;
+        if (hasMore) {
+            entries = entries.subList(0, limit);
+        }
+
+        Map<Long, KoboShelfChangeType> latest = new LinkedHashMap<>();
+        for (KoboShelfChangeEntity entry : entries) {
+            latest.merge(entry.getBookId(), entry.getChangeType(), (previous, next) ->
+                    previous == KoboShelfChangeType.ADDED && next == KoboShelfChangeType.UPDATED ? previous : next);
+        }
+
+        Set<Long> added = new LinkedHashSet<>();
+        Set<Long> updated = new LinkedHashSet<>();
+        Set<Long> removed = new LinkedHashSet<>();
+        latest.forEach((bookId, type) -> {
+            switch (type) {
+                case ADDED -> added.add(bookId);
+                case UPDATED -> updated.add(bookId);
+                case REMOVED -> removed.add(bookId);
+            }
+        });
+        long offset = entries.isEmpty() ? afterOffset : entries.getLast().getId();
+        return new KoboShelfChanges(added, updated, removed, offset, hasMore);
+    }
+
+    @Scheduled(cron = "0 15 0 * * *")  // At 00:15 every day
+    @Transactional
+    public void pruneChangeLog() {
+        Instant cutoff = Instant.now().minus(retention());
+        int deleted = koboShelfChangeRepository.deleteAllCreatedBefore(cutoff);
+        log.info("KoboShelfChangeService: Removed {} Kobo shelf changes older than {}", deleted, cutoff);
+    }
+
+    public static KoboShelfChangeEntity change(Long userId, Long bookId, KoboShelfChangeType type) {
+        return KoboShelfChangeEntity.builder()
+                .userId(userId)
+                .bookId(bookId)
+                .changeType(type)
+                .build();
+    }
+
+    private Duration retention() {
+        return Duration.ofDays(Math.max(1, appProperties.getKobo().getChangeLogRetentionDays()));
+    }
+}
@@ -0,0 +1,54 @@
+package com.adityachandel.booklore.service.kobo;
+
+import com.adityachandel.booklore.config.AppProperties;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Chooses how many books a Kobo sync response carries. Each device keeps a moving average of the bytes one book adds
+ * to its responses, and a page is as many books as fit in {@code app.kobo.sync-payload-budget-bytes}, bounded by
+ * {@code app.kobo.sync-page-min} and {@code app.kobo.sync-page-max}. Libraries with short descriptions sync in few
+ * large pages while ones with long descriptions keep each response small enough for the device.
+ */
+@Service
+public class KoboSyncPageSizer {
+
+    // Used until a device has reported a page: metadata with a typical description plus its entitlement.
+    private static final double INITIAL_BYTES_PER_BOOK = 4096;
+    private static final double SMOOTHING = 0.3;
+
+    private final int minPageSize;
+    private final int maxPageSize;
+    private final long budgetBytes;
+    private final Map<String, Double> bytesPerBook = new ConcurrentHashMap<>();
+    private final DistributionSummary pageSizes;
+
+    public KoboSyncPageSizer(AppProperties appProperties, MeterRegistry meterRegistry) {
+        AppProperties.Kobo settings = appProperties.getKobo();
+        this.minPageSize = Math.max(1, settings.getSyncPageMin());
+        this.maxPageSize = Math.max(minPageSize, settings.getSyncPageMax());
+        this.budgetBytes = Math.max(1, settings.getSyncPayloadBudgetBytes());
+        this.pageSizes = DistributionSummary.builder("booklore.kobo.sync.page.size")
+                .description("Books a Kobo sync request was allowed to return")
+                .register(meterRegistry);
+    }
+
+    public int pageSize(String deviceKey) {
+        double perBook = bytesPerBook.getOrDefault(deviceKey, INITIAL_BYTES_PER_BOOK);
+        int pageSize = Math.clamp((long) (budgetBytes / Math.max(1, perBook)), minPageSize, maxPageSize);
+        pageSizes.record(pageSize);
+        return pageSize;
+    }
+
+    public void record(String deviceKey, int books, long payloadBytes) {
+        if (books <= 0) {
+            return;
+        }
+        double sample = (double) payloadBytes / books;
+        bytesPerBook.merge(deviceKey, sample, (previous, latest) -> previous + SMOOTHING * (latest - previous));
+    }
+}
@@ -5,7 +5,6 @@ import com.adityachandel.booklore.model.dto.settings.LibraryFile;
 import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
 import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.LibraryEntity;
-import com.adityachandel.booklore.model.entity.LibraryPathEntity;
 import com.adityachandel.booklore.model.enums.AdditionalFileType;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
 import com.adityachandel.booklore.model.enums.BookFileType;
@@ -23,6 +22,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
@@ -60,6 +60,8 @@ public class FolderAsBookFileProcessor implements LibraryFileProcessor {
         log.info("Processing {} directories with {} total files for library: {}",
                 filesByDirectory.size(), libraryFiles.size(), libraryEntity.getName());
 
+        FolderBookIndex folderBookIndex = FolderBookIndex.load(bookRepository, bookAdditionalFileRepository, libraryEntity);
+
         // Process each directory
         var sortedDirectories = filesByDirectory.entrySet()
                 .stream()
@@ -70,92 +72,56 @@ public class FolderAsBookFileProcessor implements LibraryFileProcessor {
             List<LibraryFile> filesInDirectory = entry.getValue();
 
             log.debug("Processing directory: {} with {} files", directoryPath, filesInDirectory.size());
-            processDirectory(directoryPath, filesInDirectory, libraryEntity);
+            processDirectory(directoryPath, filesInDirectory, libraryEntity, folderBookIndex);
         }
     }
 
-    private void processDirectory(Path directoryPath, List<LibraryFile> filesInDirectory, LibraryEntity libraryEntity) {
-        var bookCreationResult = getOrCreateBookInDirectory(directoryPath, filesInDirectory, libraryEntity);
+    private void processDirectory(Path directoryPath, List<LibraryFile> filesInDirectory, LibraryEntity libraryEntity, FolderBookIndex folderBookIndex) {
+        var bookCreationResult = getOrCreateBookInDirectory(directoryPath, filesInDirectory, libraryEntity, folderBookIndex);
         if (bookCreationResult.bookEntity.isEmpty()) {
             log.warn("No book created for directory: {}", directoryPath);
             return;
         }
 
-        processAdditionalFiles(bookCreationResult.bookEntity.get(), bookCreationResult.remainingFiles);
+        processAdditionalFiles(bookCreationResult.bookEntity.get(), bookCreationResult.remainingFiles, folderBookIndex);
     }
 
-    private GetOrCreateBookResult getOrCreateBookInDirectory(Path directoryPath, List<LibraryFile> filesInDirectory, LibraryEntity libraryEntity) {
-        var existingBook = findExistingBookInDirectory(directoryPath, libraryEntity);
-        if (existingBook.isPresent()) {
-            log.debug("Found existing book in directory {}: {}", directoryPath, existingBook.get().getFileName());
-            return new GetOrCreateBookResult(existingBook, filesInDirectory);
+    private GetOrCreateBookResult getOrCreateBookInDirectory(Path directoryPath, List<LibraryFile> filesInDirectory, LibraryEntity libraryEntity,
+                                                             FolderBookIndex folderBookIndex) {
+        // All files of a directory share its library path and sub path
+        LibraryFile anyFile = filesInDirectory.getFirst();
+        long libraryPathId = anyFile.getLibraryPathEntity().getId();
+        String fileSubPath = anyFile.getFileSubPath();
+
+        Optional<Long> existingBookId = folderBookIndex.findBookInFolder(libraryPathId, fileSubPath);
+        if (existingBookId.isPresent()) {
+            log.debug("Found existing book {} in directory {}", existingBookId.get(), directoryPath);
+            return new GetOrCreateBookResult(existingBookId.map(bookRepository::getReferenceById), filesInDirectory);
         }
 
         // No existing book, check parent directories
-        Optional<BookEntity> parentBook = findBookInParentDirectories(directoryPath, libraryEntity);
-        if (parentBook.isPresent()) {
-            log.debug("Found parent book for directory {}: {}", directoryPath, parentBook.get().getFileName());
-            return new GetOrCreateBookResult(parentBook, filesInDirectory);
+        Optional<Long> parentBookId = folderBookIndex.findBookInParentFolders(libraryPathId, fileSubPath);
+        if (parentBookId.isPresent()) {
+            log.debug("Found parent book {} for directory {}", parentBookId.get(), directoryPath);
+            return new GetOrCreateBookResult(parentBookId.map(bookRepository::getReferenceById), filesInDirectory);
         }
 
         log.debug("No existing book found, creating new book from directory: {}", directoryPath);
         Optional<CreateBookResult> newBook = createNewBookFromDirectory(directoryPath, filesInDirectory, libraryEntity);
         if (newBook.isPresent()) {
-            log.info("Created new book: {}", newBook.get().bookEntity.getFileName());
+            BookEntity bookEntity = newBook.get().bookEntity;
+            log.info("Created new book: {}", bookEntity.getFileName());
+            folderBookIndex.addBook(bookEntity.getLibraryPath().getId(), bookEntity.getFileSubPath(), bookEntity.getId());
             var remainingFiles = filesInDirectory.stream()
                     .filter(file -> !file.equals(newBook.get().libraryFile))
                     .toList();
-            return new GetOrCreateBookResult(Optional.of(newBook.get().bookEntity), remainingFiles);
+            return new GetOrCreateBookResult(Optional.of(bookEntity), remainingFiles);
         } else {
             log.warn("Failed to create book from directory: {}", directoryPath);
             return new GetOrCreateBookResult(Optional.empty(), filesInDirectory);
         }
     }
 
-    private Optional<BookEntity> findExistingBookInDirectory(Path directoryPath, LibraryEntity libraryEntity) {
-        // Find books in all library paths for this library
-        return libraryEntity.getLibraryPaths().stream()
-                .flatMap(libPath -> {
-                    String filesSearchPath = Path.of(libPath.getPath())
-                            .relativize(directoryPath)
-                            .toString()
-                            .replace("\\", "/");
-                    return bookRepository
-                            .findAllByLibraryPathIdAndFileSubPathStartingWith(libPath.getId(), filesSearchPath)
-                            .stream();
-                })
-                .filter(book -> book.getFullFilePath().getParent().equals(directoryPath))
-                .findFirst();
-    }
-
-    private Optional<BookEntity> findBookInParentDirectories(Path directoryPath, LibraryEntity libraryEntity) {
-        Path parent = directoryPath.getParent();
-        LibraryPathEntity directoryLibraryPathEntity = libraryEntity.getLibraryPaths().stream()
-                .filter(libPath -> directoryPath.startsWith(libPath.getPath()))
-                .findFirst()
-                .orElseThrow(() -> new IllegalStateException("No library path found for directory: " + directoryPath));
-        Path directoryLibraryPath = Path.of(directoryLibraryPathEntity.getPath());
-
-        while (parent != null) {
-            final String parentPath = directoryLibraryPath
-                    .relativize(parent)
-                    .toString()
-                    .replace("\\", "/");
-
-            Optional<BookEntity> parentBook =
-                    bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(
-                                    directoryLibraryPathEntity.getId(), parentPath).stream()
-                            .filter(book -> book.getFileSubPath().equals(parentPath))
-                            .findFirst();
-            if (parentBook.isPresent()) {
-                return parentBook;
-            }
-            parent = parent.getParent();
-        }
-
-        return Optional.empty();
-    }
-
     private Optional<CreateBookResult> createNewBookFromDirectory(Path directoryPath, List<LibraryFile> filesInDirectory, LibraryEntity libraryEntity) {
         // Find the best candidate for the main book file
         Optional<LibraryFile> mainBookFile = findBestMainBookFile(filesInDirectory, libraryEntity);
@@ -211,30 +177,41 @@ public class FolderAsBookFileProcessor implements LibraryFileProcessor {
                 }));
     }
 
-    private void processAdditionalFiles(BookEntity existingBook, List<LibraryFile> filesInDirectory) {
+    private void processAdditionalFiles(BookEntity bookEntity, List<LibraryFile> filesInDirectory, FolderBookIndex folderBookIndex) {
+        if (filesInDirectory.isEmpty()) {
+            return;
+        }
+        long libraryPathId = filesInDirectory.getFirst().getLibraryPathEntity().getId();
+        List<BookAdditionalFileEntity> newFiles = new ArrayList<>();
         for (LibraryFile file : filesInDirectory) {
+            if (folderBookIndex.hasAdditionalFile(libraryPathId, file.getFileSubPath(), file.getFileName())) {
+                log.debug("Additional file already exists: {}", file.getFileName());
+                continue;
+            }
             Optional<BookFileExtension> extension = BookFileExtension.fromFileName(file.getFileName());
             AdditionalFileType fileType = extension.isPresent() ?
                     AdditionalFileType.ALTERNATIVE_FORMAT : AdditionalFileType.SUPPLEMENTARY;
 
-            createAdditionalFileIfNotExists(existingBook, file, fileType);
+            newFiles.add(createAdditionalFile(bookEntity, file, fileType));
         }
-    }
-
-    private void createAdditionalFileIfNotExists(BookEntity bookEntity, LibraryFile file, AdditionalFileType fileType) {
-        // Check if an additional file already exists
-        Optional<BookAdditionalFileEntity> existingFile = bookAdditionalFileRepository
-                .findByLibraryPath_IdAndFileSubPathAndFileName(
-                        file.getLibraryPathEntity().getId(), file.getFileSubPath(), file.getFileName());
-
-        if (existingFile.isPresent()) {
-            log.debug("Additional file already exists: {}", file.getFileName());
+        if (newFiles.isEmpty()) {
             return;
         }
 
-        // Create a new additional file
+        try {
+            log.debug("Creating {} additional files for book {}", newFiles.size(), bookEntity.getId());
+            bookAdditionalFileRepository.saveAll(newFiles);
+            newFiles.forEach(additionalFile -> folderBookIndex.addAdditionalFile(libraryPathId, additionalFile.getFileSubPath(), additionalFile.getFileName()));
+        } catch (Exception e) {
+            // One file, typically an alternative format whose hash is already taken, fails the whole batch
+            log.debug("Batch of {} additional files failed, saving individually: {}", newFiles.size(), e.getMessage());
+            newFiles.forEach(additionalFile -> saveAdditionalFile(bookEntity, additionalFile, libraryPathId, folderBookIndex));
+        }
+    }
+
+    private BookAdditionalFileEntity createAdditionalFile(BookEntity bookEntity, LibraryFile file, AdditionalFileType fileType) {
         String hash = FileFingerprint.generateHash(file.getFullPath());
-        BookAdditionalFileEntity additionalFile = BookAdditionalFileEntity.builder()
+        return BookAdditionalFileEntity.builder()
                 .book(bookEntity)
                 .fileName(file.getFileName())
                 .fileSubPath(file.getFileSubPath())
@@ -244,17 +221,20 @@ public class FolderAsBookFileProcessor implements LibraryFileProcessor {
                 .currentHash(hash)
                 .addedOn(java.time.Instant.now())
                 .build();
+    }
 
+    private void saveAdditionalFile(BookEntity bookEntity, BookAdditionalFileEntity additionalFile, long libraryPathId, FolderBookIndex folderBookIndex) {
         try {
-            log.debug("Creating additional file: {} (type: {})", file.getFileName(), fileType);
+            log.debug("Creating additional file: {} (type: {})", additionalFile.getFileName(), additionalFile.getAdditionalFileType());
             bookAdditionalFileRepository.save(additionalFile);
+            folderBookIndex.addAdditionalFile(libraryPathId, additionalFile.getFileSubPath(), additionalFile.getFileName());
 
-            log.debug("Successfully created additional file: {}", file.getFileName());
+            log.debug("Successfully created additional file: {}", additionalFile.getFileName());
         } catch (Exception e) {
             // Remove an additional file from the book entity if its creation fails
             bookEntity.getAdditionalFiles().removeIf(a -> a.equals(additionalFile));
 
-            log.error("Error creating additional file {}: {}", file.getFileName(), e.getMessage(), e);
+            log.error("Error creating additional file {}: {}", additionalFile.getFileName(), e.getMessage(), e);
         }
     }
 
@@ -0,0 +1,102 @@
+package com.adityachandel.booklore.service.library;
+
+import com.adityachandel.booklore.model.dto.FilePathEntry;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
+import com.adityachandel.booklore.repository.BookRepository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Snapshot of which book owns each folder of a folder-as-book library, taken once per scan with two projection
+ * queries so that resolving a folder, or one of its parents, is a map lookup rather than a prefix query. Books and
+ * additional files created during the scan are added as they are saved. Not thread safe; one scan owns it.
+ */
+final class FolderBookIndex {
+
+    private final Map<Long, Map<String, Long>> booksByFolder = new HashMap<>();
+    private final Set<String> additionalFiles = new HashSet<>();
+
+    static FolderBookIndex load(BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository, LibraryEntity libraryEntity) {
+        List<Long> libraryPathIds = libraryEntity.getLibraryPaths().stream()
+                .map(LibraryPathEntity::getId)
+                .toList();
+        FolderBookIndex index = new FolderBookIndex();
+        if (libraryPathIds.isEmpty()) {
+            return index;
+        }
+        // Ordered by id, so the oldest book wins when a folder somehow holds several.
+        for (FilePathEntry book : bookRepository.findFilePathsByLibraryPathIds(libraryPathIds)) {
+            index.booksByFolder.computeIfAbsent(book.libraryPathId(), id -> new HashMap<>())
+                    .putIfAbsent(normalize(book.fileSubPath()), book.id());
+        }
+        for (FilePathEntry file : bookAdditionalFileRepository.findFilePathsByLibraryPathIds(libraryPathIds)) {
+            index.additionalFiles.add(fileKey(file.libraryPathId(), file.fileSubPath(), file.fileName()));
+        }
+        return index;
+    }
+
+    Optional<Long> findBookInFolder(long libraryPathId, String fileSubPath) {
+        Map<String, Long> folders = booksByFolder.get(libraryPathId);
+        return folders == null ? Optional.empty() : Optional.ofNullable(folders.get(normalize(fileSubPath)));
+    }
+
+    /**
+     * Walks up from the folder's parent to the library path root, returning the book of the closest folder that has one.
+     */
+    Optional<Long> findBookInParentFolders(long libraryPathId, String fileSubPath) {
+        Map<String, Long> folders = booksByFolder.get(libraryPathId);
+        if (folders == null) {
+            return Optional.empty();
+        }
+        String folder = normalize(fileSubPath);
+        while (!folder.isEmpty()) {
+            int separator = folder.lastIndexOf('/');
+            folder = separator < 0 ? "" : folder.substring(0, separator);
+            Long bookId = folders.get(folder);
+            if (bookId != null) {
+                return Optional.of(bookId);
+            }
+        }
+        return Optional.empty();
+    }
+
+    void addBook(long libraryPathId, String fileSubPath, long bookId) {
+        booksByFolder.computeIfAbsent(libraryPathId, id -> new HashMap<>())
+                .putIfAbsent(normalize(fileSubPath), bookId);
+    }
+
+    boolean hasAdditionalFile(long libraryPathId, String fileSubPath, String fileName) {
+        return additionalFiles.contains(fileKey(libraryPathId, fileSubPath, fileName));
+    }
+
+    void addAdditionalFile(long libraryPathId, String fileSubPath, String fileName) {
+        additionalFiles.add(fileKey(libraryPathId, fileSubPath, fileName));
+    }
+
+    private static String fileKey(Long libraryPathId, String fileSubPath, String fileName) {
+        return libraryPathId + ":" + normalize(fileSubPath) + "/" + fileName;
+    }
+
+    private static String normalize(String fileSubPath) {
+        if (fileSubPath == null) {
+            return "";
+        }
+        String normalized = fileSubPath.replace('\\', '/');
+        int start = 0;
+        int end = normalized.length();
+        while (start < end && normalized.charAt(start) == '/') {
+            start++;
+        }
+        while (end > start && normalized.charAt(end - 1) == '/') {
+            end--;
+        }
+        return normalized.substring(start, end);
+    }
+}
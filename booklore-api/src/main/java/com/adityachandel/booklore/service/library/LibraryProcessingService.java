@@ -16,6 +16,8 @@ import com.adityachandel.booklore.repository.LibraryRepository;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -44,6 +46,7 @@ public class LibraryProcessingService {
     private final FileService fileService;
     private final BookMapper bookMapper;
     private final LibraryFileProcessorRegistry fileProcessorRegistry;
+    private final MeterRegistry meterRegistry;
 
     @Transactional
     public void processLibrary(long libraryId) throws IOException {
@@ -66,17 +69,105 @@ public class LibraryProcessingService {
             log.info("Detected {} removed additional files in library: {}", additionalFileIds.size(), libraryEntity.getName());
             deleteRemovedAdditionalFiles(additionalFileIds);
         }
-        List<Long> bookIds = detectDeletedBookIds(libraryFiles, libraryEntity);
+        List<Long> bookIds = detectDeletedBookIds(libraryFiles, libraryEntity.getBookEntities());
         if (!bookIds.isEmpty()) {
             log.info("Detected {} removed books in library: {}", bookIds.size(), libraryEntity.getName());
             processDeletedLibraryFiles(bookIds, libraryFiles);
         }
-        restoreDeletedBooks(libraryFiles);
-        processor.processLibraryFiles(detectNewBookPaths(libraryFiles, libraryEntity), libraryEntity);
+        restoreDeletedBooks(libraryFiles, libraryEntity.getBookEntities());
+        processor.processLibraryFiles(detectNewBookPaths(libraryFiles, libraryEntity.getBookEntities(),
+                bookAdditionalFileRepository.findByLibraryId(libraryEntity.getId())), libraryEntity);
         notificationService.sendMessage(Topic.LOG, createLogNotification("Finished refreshing library: " + libraryEntity.getName()));
     }
 
-    private void restoreDeletedBooks(List<LibraryFile> libraryFiles) {
+    /**
+     * Runs the rescan diff over several parts of a library in one transaction, so a library can be rescanned in
+     * slices. Only the books and additional files stored under the given roots are loaded, and books outside them are
+     * left alone; removed additional files are left to {@link #pruneMissingFiles(long)} or the full rescan.
+     */
+    @Transactional
+    public void rescanLibrarySubtrees(long libraryId, List<LibraryScanRoot> roots) throws IOException {
+        LibraryEntity libraryEntity = libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
+        LibraryFileProcessor processor = fileProcessorRegistry.getProcessor(libraryEntity);
+
+        List<LibraryFile> libraryFiles = new ArrayList<>();
+        Map<Long, BookEntity> booksInScope = new LinkedHashMap<>();
+        Map<Long, BookAdditionalFileEntity> additionalFilesInScope = new LinkedHashMap<>();
+        for (LibraryScanRoot root : LibraryScanRoot.withoutOverlaps(roots)) {
+            LibraryPathEntity pathEntity = findLibraryPath(libraryEntity, root.path());
+            if (Files.isDirectory(root.path())) {
+                libraryFiles.addAll(findLibraryFiles(pathEntity, root.path(), root.maxDepth(), libraryEntity, processor));
+            }
+            // A prefix also matches sibling folders sharing it ("Author" and "Authors"), which covers() filters out.
+            String subPath = subPathOf(pathEntity, root.path());
+            boolean filesOnly = root.maxDepth() == 1;
+            List<BookEntity> books = filesOnly
+                    ? bookRepository.findAllByLibraryPathIdAndFileSubPath(pathEntity.getId(), subPath)
+                    : bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(pathEntity.getId(), subPath);
+            books.stream()
+                    .filter(book -> root.covers(book.getFullFilePath()))
+                    .forEach(book -> booksInScope.putIfAbsent(book.getId(), book));
+            List<BookAdditionalFileEntity> additionalFiles = filesOnly
+                    ? bookAdditionalFileRepository.findAllByBook_LibraryPath_IdAndFileSubPath(pathEntity.getId(), subPath)
+                    : bookAdditionalFileRepository.findAllByBook_LibraryPath_IdAndFileSubPathStartingWith(pathEntity.getId(), subPath);
+            additionalFiles.stream()
+                    .filter(file -> root.covers(file.getFullFilePath()))
+                    .forEach(file -> additionalFilesInScope.putIfAbsent(file.getId(), file));
+        }
+
+        List<Long> bookIds = detectDeletedBookIds(libraryFiles, booksInScope.values());
+        if (!bookIds.isEmpty()) {
+            log.info("Detected {} removed books under {} scan roots in library: {}", bookIds.size(), roots.size(), libraryEntity.getName());
+            processDeletedLibraryFiles(bookIds, libraryFiles);
+        }
+        restoreDeletedBooks(libraryFiles, booksInScope.values());
+        processor.processLibraryFiles(detectNewBookPaths(libraryFiles, booksInScope.values(), additionalFilesInScope.values()), libraryEntity);
+    }
+
+    private static String subPathOf(LibraryPathEntity pathEntity, Path directory) {
+        Path relative = Path.of(pathEntity.getPath()).toAbsolutePath().normalize().relativize(directory);
+        return relative.toString().replace("\\", "/");
+    }
+
+    /**
+     * Removes books and additional files whose file no longer exists, by checking each one on disk instead of walking
+     * the library. Completes a rescan done in slices, which cannot see folders that disappeared entirely. Books under
+     * a library path that is currently unreachable are kept, so an unmounted share does not empty the library.
+     */
+    @Transactional
+    public void pruneMissingFiles(long libraryId) {
+        LibraryEntity libraryEntity = libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
+
+        List<Long> additionalFileIds = bookAdditionalFileRepository.findByLibraryId(libraryId).stream()
+                .filter(file -> Files.isDirectory(Path.of(file.getBook().getLibraryPath().getPath())))
+                .filter(file -> !Files.exists(file.getFullFilePath()))
+                .map(BookAdditionalFileEntity::getId)
+                .toList();
+        if (!additionalFileIds.isEmpty()) {
+            log.info("Detected {} removed additional files in library: {}", additionalFileIds.size(), libraryEntity.getName());
+            deleteRemovedAdditionalFiles(additionalFileIds);
+        }
+
+        List<Long> bookIds = libraryEntity.getBookEntities().stream()
+                .filter(book -> book.getDeleted() == null || !book.getDeleted())
+                .filter(book -> Files.isDirectory(Path.of(book.getLibraryPath().getPath())))
+                .filter(book -> !Files.exists(book.getFullFilePath()))
+                .map(BookEntity::getId)
+                .toList();
+        if (!bookIds.isEmpty()) {
+            log.info("Detected {} removed books in library: {}", bookIds.size(), libraryEntity.getName());
+            processDeletedLibraryFiles(bookIds, List.of());
+        }
+    }
+
+    private LibraryPathEntity findLibraryPath(LibraryEntity libraryEntity, Path path) {
+        return libraryEntity.getLibraryPaths().stream()
+                .filter(lp -> path.startsWith(Path.of(lp.getPath()).toAbsolutePath().normalize()))
+                .max(Comparator.comparingInt(lp -> Path.of(lp.getPath()).getNameCount()))
+                .orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException("No matching libraryPath for: " + path));
+    }
+
+    private void restoreDeletedBooks(List<LibraryFile> libraryFiles, Collection<BookEntity> books) {
         if (libraryFiles.isEmpty()) return;
 
         LibraryEntity libraryEntity = libraryFiles.get(0).getLibraryEntity();
@@ -84,7 +175,7 @@ public class LibraryProcessingService {
                 .map(LibraryFile::getFullPath)
                 .collect(Collectors.toSet());
 
-        List<BookEntity> toRestore = libraryEntity.getBookEntities().stream()
+        List<BookEntity> toRestore = books.stream()
                 .filter(book -> Boolean.TRUE.equals(book.getDeleted()))
                 .filter(book -> currentPaths.contains(book.getFullFilePath()))
                 .collect(Collectors.toList());
@@ -111,25 +202,25 @@ public class LibraryProcessingService {
         processor.processLibraryFiles(libraryFiles, libraryEntity);
     }
 
-    protected static List<Long> detectDeletedBookIds(List<LibraryFile> libraryFiles, LibraryEntity libraryEntity) {
+    protected static List<Long> detectDeletedBookIds(List<LibraryFile> libraryFiles, Collection<BookEntity> books) {
         Set<Path> currentFullPaths = libraryFiles.stream()
                 .map(LibraryFile::getFullPath)
                 .collect(Collectors.toSet());
 
-        return libraryEntity.getBookEntities().stream()
+        return books.stream()
                 .filter(book -> (book.getDeleted() == null || !book.getDeleted()))
                 .filter(book -> !currentFullPaths.contains(book.getFullFilePath()))
                 .map(BookEntity::getId)
                 .collect(Collectors.toList());
     }
 
-    protected List<LibraryFile> detectNewBookPaths(List<LibraryFile> libraryFiles, LibraryEntity libraryEntity) {
-        Set<Path> existingFullPaths = libraryEntity.getBookEntities().stream()
+    protected static List<LibraryFile> detectNewBookPaths(List<LibraryFile> libraryFiles, Collection<BookEntity> books, Collection<BookAdditionalFileEntity> additionalFiles) {
+        Set<Path> existingFullPaths = books.stream()
                 .map(BookEntity::getFullFilePath)
                 .collect(Collectors.toSet());
 
-        // Also collect paths from additional files using repository method
-        Set<Path> additionalFilePaths = bookAdditionalFileRepository.findByLibraryId(libraryEntity.getId()).stream()
+        // Also collect paths from additional files
+        Set<Path> additionalFilePaths = additionalFiles.stream()
                 .map(BookAdditionalFileEntity::getFullFilePath)
                 .collect(Collectors.toSet());
 
@@ -274,26 +365,32 @@ public class LibraryProcessingService {
     private List<LibraryFile> getLibraryFiles(LibraryEntity libraryEntity, LibraryFileProcessor processor) throws IOException {
         List<LibraryFile> allFiles = new ArrayList<>();
         for (LibraryPathEntity pathEntity : libraryEntity.getLibraryPaths()) {
-            allFiles.addAll(findLibraryFiles(pathEntity, libraryEntity, processor));
+            allFiles.addAll(findLibraryFiles(pathEntity, Path.of(pathEntity.getPath()), Integer.MAX_VALUE, libraryEntity, processor));
         }
         return allFiles;
     }
 
-    private List<LibraryFile> findLibraryFiles(LibraryPathEntity pathEntity, LibraryEntity libraryEntity, LibraryFileProcessor processor) throws IOException {
-        Path libraryPath = Path.of(pathEntity.getPath());
+    private List<LibraryFile> findLibraryFiles(LibraryPathEntity pathEntity, Path walkRoot, int maxDepth, LibraryEntity libraryEntity, LibraryFileProcessor processor) throws IOException {
         boolean supportsSupplementaryFiles = processor.supportsSupplementaryFiles();
 
-        try (Stream<Path> stream = Files.walk(libraryPath, FileVisitOption.FOLLOW_LINKS)) {
+        try (Stream<Path> stream = Files.walk(walkRoot, maxDepth, FileVisitOption.FOLLOW_LINKS)) {
             return stream.filter(Files::isRegularFile)
                     .map(fullPath -> {
                         String fileName = fullPath.getFileName().toString();
                         Optional<BookFileExtension> bookExtension = BookFileExtension.fromFileName(fileName);
+                        String format = bookExtension.map(extension -> extension.getType().name().toLowerCase(Locale.ROOT)).orElse("other");
 
                         if (bookExtension.isEmpty() && !supportsSupplementaryFiles) {
                             // Skip files that are not recognized book files and supplementary files are not supported
+                            countDiscovered(format, "ignored");
+                            return null;
+                        }
+                        if (fileName.startsWith(".")) {
+                            countDiscovered(format, "hidden");
                             return null;
                         }
 
+                        countDiscovered(format, bookExtension.isPresent() ? "book" : "supplementary");
                         return LibraryFile.builder()
                                 .libraryEntity(libraryEntity)
                                 .libraryPathEntity(pathEntity)
@@ -303,8 +400,16 @@ public class LibraryProcessingService {
                                 .build();
                     })
                     .filter(Objects::nonNull)
-                    .filter(file -> !file.getFileName().startsWith("."))
                     .toList();
         }
     }
+
+    private void countDiscovered(String format, String outcome) {
+        Counter.builder("booklore.scan.files.discovered")
+                .description("Files found while walking library folders, by format and whether they were picked up")
+                .tag("format", format)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
 }
@@ -0,0 +1,271 @@
+package com.adityachandel.booklore.service.library;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.quartz.JobSchedulerService;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * Runs the scheduled rescan of every library concurrently without letting libraries on the same disk or share
+ * compete for it.
+ * <p>
+ * Each library is mapped to the {@link FileStore}s its paths live on, and at most
+ * {@code app.rescan.max-concurrent-per-file-store} rescans touch a store at once, so a slow network share only holds
+ * up the libraries that live on it. Libraries start in {@code app.rescan.library-priority} order, at least
+ * {@code stagger-seconds} apart, and fewer run while a metadata refresh job is busy.
+ * <p>
+ * With a time budget, a library is rescanned in slices of its top-level folders. The last finished folder is stored
+ * as the library's checkpoint after every slice; once the budget is spent the library stops and the next run resumes
+ * after the checkpoint, so a huge library finishes over several nights while the others still complete each night.
+ */
+@Slf4j
+@Service
+public class LibraryRescanOrchestrator {
+
+    private static final long DISPATCH_POLL_MS = 5000;
+
+    private final LibraryRepository libraryRepository;
+    private final LibraryProcessingService libraryProcessingService;
+    private final JobSchedulerService jobSchedulerService;
+    private final MeterRegistry meterRegistry;
+    private final AppProperties.Rescan settings;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final Object dispatchLock = new Object();
+    private final Map<String, Integer> activePerStore = new HashMap<>();
+    private int activeRescans;
+
+    enum Outcome {COMPLETE, PARTIAL, FAILED}
+
+    record PlannedRescan(LibraryEntity library, int priority, Set<String> fileStores) {
+    }
+
+    public LibraryRescanOrchestrator(LibraryRepository libraryRepository, LibraryProcessingService libraryProcessingService,
+                                     JobSchedulerService jobSchedulerService, MeterRegistry meterRegistry, AppProperties appProperties) {
+        this.libraryRepository = libraryRepository;
+        this.libraryProcessingService = libraryProcessingService;
+        this.jobSchedulerService = jobSchedulerService;
+        this.meterRegistry = meterRegistry;
+        this.settings = appProperties.getRescan();
+    }
+
+    /**
+     * Starts a rescan of all libraries in the background.
+     *
+     * @return {@code false} if the previous run is still going and nothing was started
+     */
+    public boolean rescanAllLibraries() {
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Previous scheduled library rescan is still running, skipping this one");
+            return false;
+        }
+        Thread.ofPlatform().name("library-rescan-dispatch").daemon().start(() -> {
+            try {
+                dispatch(plan(libraryRepository.findAll()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Scheduled library rescan interrupted");
+            } catch (Exception e) {
+                log.error("Scheduled library rescan failed: {}", e.getMessage(), e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    List<PlannedRescan> plan(List<LibraryEntity> libraries) {
+        Map<Long, Integer> priorities = settings.getLibraryPriority();
+        return libraries.stream()
+                .map(library -> new PlannedRescan(library, priorities.getOrDefault(library.getId(), 0), fileStores(library)))
+                .sorted(Comparator.comparingInt(PlannedRescan::priority).reversed()
+                        .thenComparing(planned -> planned.library().getId()))
+                .toList();
+    }
+
+    private void dispatch(List<PlannedRescan> planned) throws InterruptedException {
+        log.info("Starting scheduled rescan of {} libraries", planned.size());
+        long startNanos = System.nanoTime();
+        long staggerNanos = TimeUnit.SECONDS.toNanos(settings.getStaggerSeconds());
+        int poolSize = Math.max(1, settings.getMaxConcurrentLibraries());
+        ExecutorService executor = Executors.newFixedThreadPool(poolSize, Thread.ofPlatform().name("library-rescan-", 0).daemon().factory());
+        List<PlannedRescan> pending = new ArrayList<>(planned);
+        Long lastStartNanos = null;
+        try {
+            synchronized (dispatchLock) {
+                while (!pending.isEmpty()) {
+                    Optional<PlannedRescan> next = pending.stream().filter(this::canStart).findFirst();
+                    if (next.isEmpty()) {
+                        dispatchLock.wait(DISPATCH_POLL_MS);
+                        continue;
+                    }
+                    if (lastStartNanos != null) {
+                        long waitNanos = lastStartNanos + staggerNanos - System.nanoTime();
+                        if (waitNanos > 0) {
+                            // Re-evaluate afterwards: a finished rescan may have freed a higher-priority slot.
+                            TimeUnit.NANOSECONDS.timedWait(dispatchLock, waitNanos);
+                            continue;
+                        }
+                    }
+                    PlannedRescan rescan = next.get();
+                    pending.remove(rescan);
+                    claim(rescan);
+                    lastStartNanos = System.nanoTime();
+                    executor.execute(() -> {
+                        try {
+                            run(rescan);
+                        } finally {
+                            synchronized (dispatchLock) {
+                                release(rescan);
+                                dispatchLock.notifyAll();
+                            }
+                        }
+                    });
+                }
+                while (activeRescans > 0) {
+                    dispatchLock.wait();
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+        log.info("Completed scheduled rescan of {} libraries in {} s", planned.size(), TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos));
+    }
+
+    private boolean canStart(PlannedRescan rescan) {
+        int limit = Math.max(1, settings.getMaxConcurrentLibraries());
+        if (jobSchedulerService.isMetadataRefreshRunning()) {
+            limit = Math.min(limit, Math.max(1, settings.getMaxConcurrentDuringMetadataRefresh()));
+        }
+        if (activeRescans >= limit) {
+            return false;
+        }
+        int perStore = Math.max(1, settings.getMaxConcurrentPerFileStore());
+        return rescan.fileStores().stream().allMatch(store -> activePerStore.getOrDefault(store, 0) < perStore);
+    }
+
+    private void claim(PlannedRescan rescan) {
+        activeRescans++;
+        rescan.fileStores().forEach(store -> activePerStore.merge(store, 1, Integer::sum));
+    }
+
+    private void release(PlannedRescan rescan) {
+        activeRescans--;
+        rescan.fileStores().forEach(store -> activePerStore.computeIfPresent(store, (key, count) -> count > 1 ? count - 1 : null));
+    }
+
+    private void run(PlannedRescan rescan) {
+        LibraryEntity library = rescan.library();
+        Timer.Sample sample = Timer.start(meterRegistry);
+        Outcome outcome;
+        try {
+            log.info("Rescanning library '{}' on {}", library.getName(), rescan.fileStores());
+            outcome = settings.getTimeBudgetMinutes() > 0 ? rescanInSlices(library) : rescanFully(library);
+        } catch (Exception e) {
+            outcome = Outcome.FAILED;
+            log.error("Failed to rescan library '{}': {}", library.getName(), e.getMessage(), e);
+        }
+        long nanos = sample.stop(meterRegistry.timer("booklore.library.rescan", "outcome", outcome.name().toLowerCase(Locale.ROOT)));
+        log.info("Rescan of library '{}' finished as {} after {} s", library.getName(), outcome, TimeUnit.NANOSECONDS.toSeconds(nanos));
+    }
+
+    private Outcome rescanFully(LibraryEntity library) throws IOException {
+        libraryProcessingService.rescanLibrary(library.getId());
+        if (library.getRescanCheckpoint() != null) {
+            libraryRepository.updateRescanCheckpoint(library.getId(), null);
+        }
+        return Outcome.COMPLETE;
+    }
+
+    private Outcome rescanInSlices(LibraryEntity library) throws IOException {
+        return rescanInSlices(library, System.nanoTime() + TimeUnit.MINUTES.toNanos(settings.getTimeBudgetMinutes()));
+    }
+
+    Outcome rescanInSlices(LibraryEntity library, long deadlineNanos) throws IOException {
+        List<LibraryScanRoot> units = listScanUnits(library);
+        String checkpoint = library.getRescanCheckpoint();
+        List<LibraryScanRoot> remaining = checkpoint == null ? units : units.stream()
+                .filter(unit -> unitKey(unit).compareTo(checkpoint) > 0)
+                .toList();
+        if (remaining.isEmpty()) {
+            remaining = units;
+        } else if (checkpoint != null) {
+            log.info("Resuming rescan of library '{}' after '{}' ({} of {} folders left)", library.getName(), checkpoint, remaining.size(), units.size());
+        }
+
+        int sliceSize = Math.max(1, Math.ceilDiv(units.size(), Math.max(1, settings.getSlicesPerLibrary())));
+        for (int from = 0; from < remaining.size(); from += sliceSize) {
+            // Always finish at least one slice so an over-budget library still makes progress every night.
+            if (from > 0 && System.nanoTime() - deadlineNanos > 0) {
+                log.info("Time budget of {} min spent on library '{}', {} folders left for the next run",
+                        settings.getTimeBudgetMinutes(), library.getName(), remaining.size() - from);
+                return Outcome.PARTIAL;
+            }
+            List<LibraryScanRoot> slice = remaining.subList(from, Math.min(remaining.size(), from + sliceSize));
+            libraryProcessingService.rescanLibrarySubtrees(library.getId(), slice);
+            libraryRepository.updateRescanCheckpoint(library.getId(), unitKey(slice.getLast()));
+        }
+
+        libraryProcessingService.pruneMissingFiles(library.getId());
+        libraryRepository.updateRescanCheckpoint(library.getId(), null);
+        return Outcome.COMPLETE;
+    }
+
+    /**
+     * Splits a library into the files directly inside each library path plus one unit per top-level folder, ordered
+     * by path so a checkpoint keeps its meaning when folders are added or removed between runs.
+     */
+    private List<LibraryScanRoot> listScanUnits(LibraryEntity library) throws IOException {
+        List<LibraryScanRoot> units = new ArrayList<>();
+        for (LibraryPathEntity libraryPath : library.getLibraryPaths()) {
+            Path root = Path.of(libraryPath.getPath()).toAbsolutePath().normalize();
+            if (!Files.isDirectory(root)) {
+                log.warn("Library path '{}' of library '{}' is not reachable, skipping it", root, library.getName());
+                continue;
+            }
+            units.add(LibraryScanRoot.filesOnly(root));
+            try (Stream<Path> children = Files.list(root)) {
+                children.filter(Files::isDirectory).map(LibraryScanRoot::recursive).forEach(units::add);
+            }
+        }
+        units.sort(Comparator.comparing(LibraryRescanOrchestrator::unitKey));
+        return units;
+    }
+
+    private static String unitKey(LibraryScanRoot unit) {
+        return unit.path().toString();
+    }
+
+    private static Set<String> fileStores(LibraryEntity library) {
+        Set<String> stores = new TreeSet<>();
+        for (LibraryPathEntity libraryPath : library.getLibraryPaths()) {
+            try {
+                FileStore store = Files.getFileStore(Path.of(libraryPath.getPath()));
+                stores.add(store.name() + " (" + store.type() + ")");
+            } catch (IOException e) {
+                stores.add("unreachable:" + libraryPath.getPath());
+            }
+        }
+        return stores;
+    }
+}
@@ -0,0 +1,54 @@
+package com.adityachandel.booklore.service.library;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A directory to rescan and how deep to walk below it, with the same meaning as the depth argument of
+ * {@link Files#walk(Path, int, java.nio.file.FileVisitOption...)}: a depth of 1 covers only the files directly inside it.
+ */
+public record LibraryScanRoot(Path path, int maxDepth) {
+
+    public LibraryScanRoot {
+        path = path.toAbsolutePath().normalize();
+    }
+
+    public static LibraryScanRoot recursive(Path path) {
+        return new LibraryScanRoot(path, Integer.MAX_VALUE);
+    }
+
+    public static LibraryScanRoot filesOnly(Path path) {
+        return new LibraryScanRoot(path, 1);
+    }
+
+    public boolean covers(Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        return normalized.startsWith(path) && path.relativize(normalized).getNameCount() <= maxDepth;
+    }
+
+    /**
+     * Whether every file under {@code other} is also under this root.
+     */
+    public boolean contains(LibraryScanRoot other) {
+        if (!other.path.startsWith(path)) {
+            return false;
+        }
+        if (maxDepth == Integer.MAX_VALUE) {
+            return true;
+        }
+        int distance = other.path.equals(path) ? 0 : path.relativize(other.path).getNameCount();
+        return other.maxDepth != Integer.MAX_VALUE && distance + other.maxDepth <= maxDepth;
+    }
+
+    /**
+     * Drops the roots contained in another one, so no file is walked twice.
+     */
+    public static List<LibraryScanRoot> withoutOverlaps(Collection<LibraryScanRoot> roots) {
+        List<LibraryScanRoot> distinct = roots.stream().distinct().toList();
+        return distinct.stream()
+                .filter(root -> distinct.stream().noneMatch(other -> !other.equals(root) && other.contains(root)))
+                .toList();
+    }
+}
@@ -13,6 +13,7 @@ import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
 import com.adityachandel.booklore.model.entity.LibraryEntity;
 import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
 import com.adityachandel.booklore.model.enums.LibraryScanMode;
 import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookRepository;
@@ -23,10 +24,11 @@ import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.monitoring.MonitoringService;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.SecurityContextVirtualThread;
-import jakarta.annotation.PostConstruct;
 import jakarta.transaction.Transactional;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
@@ -37,6 +39,7 @@ import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -57,11 +60,13 @@ public class LibraryService {
     private final UserRepository userRepository;
 
     @Transactional
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void initializeMonitoring() {
+        long start = System.nanoTime();
         List<Library> libraries = libraryRepository.findAll().stream().map(libraryMapper::toLibrary).collect(Collectors.toList());
-        monitoringService.registerLibraries(libraries);
-        log.info("Monitoring initialized with {} libraries", libraries.size());
+        log.info("Loaded {} libraries for monitoring in {} ms, registering watchers in the background",
+                libraries.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        monitoringService.registerLibrariesAsync(libraries);
     }
 
     public Library updateLibrary(CreateLibraryRequest request, Long libraryId) {
@@ -71,6 +76,9 @@ public class LibraryService {
         library.setName(request.getName());
         library.setIcon(request.getIcon());
         library.setWatch(request.isWatch());
+        if (request.getMonitorMode() != null) {
+            library.setMonitorMode(request.getMonitorMode());
+        }
         if (request.getScanMode() != null) {
             library.setScanMode(request.getScanMode());
         }
@@ -117,10 +125,10 @@ public class LibraryService {
 
         LibraryEntity savedLibrary = libraryRepository.save(library);
 
+        // Re-register from scratch so a change of monitor mode drops the previous watch keys or poller.
+        monitoringService.unregisterLibrary(libraryId);
         if (request.isWatch()) {
             monitoringService.registerLibraries(List.of(libraryMapper.toLibrary(savedLibrary)));
-        } else {
-            monitoringService.unregisterLibrary(libraryId);
         }
 
         if (!newPaths.isEmpty()) {
@@ -151,6 +159,7 @@ public class LibraryService {
                 )
                 .icon(request.getIcon())
                 .watch(request.isWatch())
+                .monitorMode(request.getMonitorMode() != null ? request.getMonitorMode() : LibraryMonitorMode.NATIVE)
                 .scanMode(request.getScanMode() != null ? request.getScanMode() : LibraryScanMode.FILE_AS_BOOK)
                 .defaultBookFormat(request.getDefaultBookFormat())
                 .build();
@@ -159,10 +168,7 @@ public class LibraryService {
         Long libraryId = libraryEntity.getId();
 
         if (request.isWatch()) {
-            for (LibraryPathEntity pathEntity : libraryEntity.getLibraryPaths()) {
-                Path path = Paths.get(pathEntity.getPath());
-                monitoringService.registerPath(path, libraryId);
-            }
+            monitoringService.registerLibrary(libraryMapper.toLibrary(libraryEntity));
         }
 
         SecurityContextVirtualThread.runWithSecurityContext(() -> {
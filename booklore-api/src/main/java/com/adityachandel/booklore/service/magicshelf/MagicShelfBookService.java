@@ -0,0 +1,171 @@
+package com.adityachandel.booklore.service.magicshelf;
+
+import com.adityachandel.booklore.exception.ApiError;
+import com.adityachandel.booklore.model.dto.MagicShelfRule;
+import com.adityachandel.booklore.model.entity.*;
+import com.adityachandel.booklore.repository.MagicShelfRepository;
+import com.adityachandel.booklore.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Evaluates magic shelves on the server. Filters are compiled into a single id query per shelf and the ordered id
+ * list is cached until the owner's reading progress changes. Book and metadata changes invalidate every shelf, but a
+ * result younger than {@link #BOOK_CHANGE_DEBOUNCE} is still served, so a scan recomputes each shelf at most that
+ * often instead of after every book.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MagicShelfBookService {
+
+    private static final Duration CACHE_TTL = Duration.ofMinutes(10);
+    static final Duration BOOK_CHANGE_DEBOUNCE = Duration.ofSeconds(5);
+
+    private final MagicShelfRepository magicShelfRepository;
+    private final UserRepository userRepository;
+    private final MagicShelfRuleCompiler ruleCompiler;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+
+    private final Map<Long, CachedShelf> cache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong bookChanges = new AtomicLong();
+    Duration bookChangeDebounce = BOOK_CHANGE_DEBOUNCE;
+
+    /**
+     * @param bookChanges value of the book change counter when the query started
+     */
+    private record CachedShelf(Long userId, List<Long> bookIds, Instant createdAt, long bookChanges) {
+        boolean isExpired() {
+            return createdAt.plus(CACHE_TTL).isBefore(Instant.now());
+        }
+    }
+
+    public List<MagicShelfEntity> getShelvesForUser(Long userId) {
+        return magicShelfRepository.findAllByUserId(userId);
+    }
+
+    public Page<Long> getBookIds(Long shelfId, Long userId, Pageable pageable) {
+        List<Long> ids = getAllBookIds(shelfId, userId);
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(ids.subList(from, to), pageable, ids.size());
+    }
+
+    public long countBooks(Long shelfId, Long userId) {
+        return getAllBookIds(shelfId, userId).size();
+    }
+
+    public Map<Long, Long> countBooksForUser(Long userId) {
+        return magicShelfRepository.findAllByUserId(userId).stream()
+                .collect(Collectors.toMap(MagicShelfEntity::getId, shelf -> (long) resolve(shelf).size()));
+    }
+
+    public List<Long> getAllBookIds(Long shelfId, Long userId) {
+        MagicShelfEntity shelf = magicShelfRepository.findById(shelfId)
+                .orElseThrow(() -> ApiError.SHELF_NOT_FOUND.createException(shelfId));
+        if (!shelf.getUserId().equals(userId)) {
+            throw ApiError.FORBIDDEN.createException("You are not authorized to access this shelf");
+        }
+        return resolve(shelf);
+    }
+
+    private List<Long> resolve(MagicShelfEntity shelf) {
+        CachedShelf cached = cache.get(shelf.getId());
+        if (cached != null && isFresh(cached)) {
+            return cached.bookIds();
+        }
+        long startGeneration = generation.get();
+        long startBookChanges = bookChanges.get();
+        Instant startedAt = Instant.now();
+        List<Long> ids = queryBookIds(shelf);
+        // Skip caching if an eviction raced with the query; the result may already be stale.
+        if (generation.get() == startGeneration) {
+            cache.put(shelf.getId(), new CachedShelf(shelf.getUserId(), ids, startedAt, startBookChanges));
+        }
+        return ids;
+    }
+
+    private boolean isFresh(CachedShelf cached) {
+        if (cached.isExpired()) {
+            return false;
+        }
+        return cached.bookChanges() == bookChanges.get() || cached.createdAt().plus(bookChangeDebounce).isAfter(Instant.now());
+    }
+
+    private List<Long> queryBookIds(MagicShelfEntity shelf) {
+        MagicShelfRule rule;
+        try {
+            rule = objectMapper.readValue(shelf.getFilterJson(), MagicShelfRule.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Magic shelf {} has an unreadable filter: {}", shelf.getId(), e.getMessage());
+            return List.of();
+        }
+
+        BookLoreUserEntity user = userRepository.findById(shelf.getUserId())
+                .orElseThrow(() -> new AccessDeniedException("User not found"));
+        Specification<BookEntity> spec = ruleCompiler.compile(rule, user.getId()).and(notDeleted());
+        if (user.getPermissions() == null || !user.getPermissions().isPermissionAdmin()) {
+            Set<Long> libraryIds = user.getLibraries() == null ? Set.of() : user.getLibraries().stream()
+                    .map(LibraryEntity::getId)
+                    .collect(Collectors.toSet());
+            if (libraryIds.isEmpty()) {
+                return List.of();
+            }
+            spec = spec.and((root, query, cb) -> root.get("library").get("id").in(libraryIds));
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<BookEntity> root = query.from(BookEntity.class);
+        Join<BookEntity, BookMetadataEntity> metadata = root.join("metadata", JoinType.LEFT);
+        query.select(root.get("id"))
+                .where(spec.toPredicate(root, query, cb))
+                .orderBy(cb.asc(metadata.get("title")), cb.asc(root.get("id")));
+        return List.copyOf(entityManager.createQuery(query).getResultList());
+    }
+
+    private static Specification<BookEntity> notDeleted() {
+        return (root, query, cb) -> cb.or(cb.isNull(root.get("deleted")), cb.isFalse(root.get("deleted")));
+    }
+
+    public void evictShelf(Long shelfId) {
+        generation.incrementAndGet();
+        cache.remove(shelfId);
+    }
+
+    public void evictUser(Long userId) {
+        generation.incrementAndGet();
+        cache.values().removeIf(entry -> Objects.equals(entry.userId(), userId));
+    }
+
+    /**
+     * Invalidates every shelf after books or their metadata changed, subject to {@link #BOOK_CHANGE_DEBOUNCE}.
+     */
+    public void markBooksChanged() {
+        bookChanges.incrementAndGet();
+    }
+
+    public void evictAll() {
+        generation.incrementAndGet();
+        cache.clear();
+    }
+}
@@ -0,0 +1,92 @@
+package com.adityachandel.booklore.service.magicshelf;
+
+import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * JPA entity listener that invalidates cached magic shelf results when books, their metadata or reading progress
+ * change. Changes are gathered per transaction and applied once after commit: progress evicts only its owner's
+ * shelves, while book and metadata changes go through {@link MagicShelfBookService#markBooksChanged()}, which is
+ * debounced so a scan does not empty the cache on every book.
+ */
+@Component
+@RequiredArgsConstructor
+public class MagicShelfCacheInvalidationListener {
+
+    private static final Object PENDING_KEY = new Object();
+
+    // Resolved lazily: entity listeners are created while the EntityManagerFactory itself is being built.
+    private final ObjectProvider<MagicShelfBookService> magicShelfBookService;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        MagicShelfBookService service = magicShelfBookService.getIfAvailable();
+        if (service == null) {
+            return;
+        }
+        Pending pending = pending(service);
+        if (entity instanceof UserBookProgressEntity progress) {
+            if (progress.getUser() != null) {
+                pending.userIds.add(progress.getUser().getId());
+            }
+        } else {
+            pending.booksChanged = true;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            pending.apply();
+        }
+    }
+
+    private Pending pending(MagicShelfBookService service) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Pending(service);
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(PENDING_KEY);
+        if (pending == null) {
+            pending = new Pending(service);
+            TransactionSynchronizationManager.bindResource(PENDING_KEY, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    private static final class Pending implements TransactionSynchronization {
+
+        private final MagicShelfBookService service;
+        private final Set<Long> userIds = new HashSet<>();
+        private boolean booksChanged;
+
+        private Pending(MagicShelfBookService service) {
+            this.service = service;
+        }
+
+        @Override
+        public void afterCommit() {
+            apply();
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(PENDING_KEY);
+        }
+
+        private void apply() {
+            if (booksChanged) {
+                service.markBooksChanged();
+            }
+            userIds.forEach(service::evictUser);
+        }
+    }
+}
@@ -0,0 +1,372 @@
+package com.adityachandel.booklore.service.magicshelf;
+
+import com.adityachandel.booklore.model.dto.MagicShelfRule;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import com.adityachandel.booklore.model.enums.ReadStatus;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.persistence.criteria.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Compiles a magic shelf filter tree into a JPA {@link Specification}. Semantics follow the web client's
+ * rule evaluator; rules the database cannot express (e.g. numeric operators on text fields) never match.
+ */
+@Slf4j
+@Component
+public class MagicShelfRuleCompiler {
+
+    private static final Map<String, String> METADATA_TEXT_FIELDS = Map.of(
+            "title", "title",
+            "subtitle", "subtitle",
+            "publisher", "publisher",
+            "seriesName", "seriesName",
+            "language", "language");
+
+    private static final Set<String> METADATA_NUMBER_FIELDS = Set.of(
+            "seriesNumber", "seriesTotal", "pageCount", "personalRating",
+            "amazonRating", "amazonReviewCount", "goodreadsRating", "goodreadsReviewCount",
+            "hardcoverRating", "hardcoverReviewCount");
+
+    private static final Map<String, String> BOOK_NUMBER_FIELDS = Map.of(
+            "fileSize", "fileSizeKb",
+            "metadataScore", "metadataMatchScore");
+
+    private static final Map<String, String> COLLECTION_FIELDS = Map.of(
+            "authors", "authors",
+            "categories", "categories");
+
+    public Specification<BookEntity> compile(MagicShelfRule rule, Long userId) {
+        return (root, query, cb) -> new RuleContext(root, query, cb, userId).toPredicate(rule);
+    }
+
+    private static final class RuleContext {
+
+        private final Root<BookEntity> root;
+        private final CriteriaQuery<?> query;
+        private final CriteriaBuilder cb;
+        private final Long userId;
+        private Join<BookEntity, BookMetadataEntity> metadata;
+
+        private RuleContext(Root<BookEntity> root, CriteriaQuery<?> query, CriteriaBuilder cb, Long userId) {
+            this.root = root;
+            this.query = query;
+            this.cb = cb;
+            this.userId = userId;
+        }
+
+        Predicate toPredicate(MagicShelfRule rule) {
+            if (rule == null) {
+                return cb.disjunction();
+            }
+            if (rule.isGroup()) {
+                List<MagicShelfRule> children = rule.getRules() != null ? rule.getRules() : List.of();
+                Predicate[] predicates = children.stream().map(this::toPredicate).toArray(Predicate[]::new);
+                if (predicates.length == 0) {
+                    return "or".equalsIgnoreCase(rule.getJoin()) ? cb.disjunction() : cb.conjunction();
+                }
+                return "or".equalsIgnoreCase(rule.getJoin()) ? cb.or(predicates) : cb.and(predicates);
+            }
+            try {
+                return compileRule(rule);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                log.debug("Ignoring magic shelf rule {} {}: {}", rule.getField(), rule.getOperator(), e.getMessage());
+                return cb.disjunction();
+            }
+        }
+
+        private Predicate compileRule(MagicShelfRule rule) {
+            String field = Objects.requireNonNullElse(rule.getField(), "");
+            String operator = Objects.requireNonNullElse(rule.getOperator(), "");
+
+            if (METADATA_TEXT_FIELDS.containsKey(field)) {
+                return text(metadata().get(METADATA_TEXT_FIELDS.get(field)), rule, operator);
+            }
+            if (METADATA_NUMBER_FIELDS.contains(field)) {
+                return number(metadata().get(field), rule, operator);
+            }
+            if (BOOK_NUMBER_FIELDS.containsKey(field)) {
+                return number(root.get(BOOK_NUMBER_FIELDS.get(field)), rule, operator);
+            }
+            if (COLLECTION_FIELDS.containsKey(field)) {
+                return collection(COLLECTION_FIELDS.get(field), rule, operator);
+            }
+            return switch (field) {
+                case "library" -> library(rule, operator);
+                case "publishedDate" -> publishedDate(rule, operator);
+                case "dateFinished" -> dateFinished(rule, operator);
+                case "readStatus" -> readStatus(rule, operator);
+                case "fileType" -> fileType(rule, operator);
+                default -> throw new IllegalArgumentException("Unknown field");
+            };
+        }
+
+        private Join<BookEntity, BookMetadataEntity> metadata() {
+            if (metadata == null) {
+                metadata = root.join("metadata", JoinType.LEFT);
+            }
+            return metadata;
+        }
+
+        private Predicate text(Path<String> path, MagicShelfRule rule, String operator) {
+            Expression<String> value = cb.lower(path);
+            String single = scalar(rule.getValue());
+            List<String> list = values(rule.getValue());
+            return switch (operator) {
+                case "equals" -> list.size() > 1 ? value.in(list) : cb.equal(value, required(single));
+                case "not_equals" -> cb.or(cb.isNull(path), list.size() > 1 ? cb.not(value.in(list)) : cb.notEqual(value, required(single)));
+                case "contains" -> cb.like(value, "%" + escapeLike(single) + "%", '\\');
+                case "does_not_contain" -> cb.or(cb.isNull(path), cb.notLike(value, "%" + escapeLike(single) + "%", '\\'));
+                case "starts_with" -> cb.like(value, escapeLike(single) + "%", '\\');
+                case "ends_with" -> cb.like(value, "%" + escapeLike(single), '\\');
+                case "is_empty" -> cb.or(cb.isNull(path), cb.equal(cb.trim(path), ""));
+                case "is_not_empty" -> cb.and(cb.isNotNull(path), cb.notEqual(cb.trim(path), ""));
+                case "includes_any" -> list.isEmpty() ? cb.disjunction() : value.in(list);
+                case "excludes_all" -> list.isEmpty() ? cb.conjunction() : cb.or(cb.isNull(path), cb.not(value.in(list)));
+                case "includes_all" -> cb.and(list.stream().map(v -> cb.equal(value, v)).toArray(Predicate[]::new));
+                default -> throw new IllegalArgumentException("Unsupported text operator");
+            };
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private Predicate number(Path<? extends Number> path, MagicShelfRule rule, String operator) {
+            Class<?> type = path.getJavaType();
+            Expression<Comparable> expression = (Expression<Comparable>) (Expression<?>) path;
+            return switch (operator) {
+                case "is_empty" -> cb.isNull(path);
+                case "is_not_empty" -> cb.isNotNull(path);
+                case "includes_any" -> path.in(values(rule.getValue()).stream().map(v -> toNumber(v, type)).toList());
+                case "excludes_all" -> cb.or(cb.isNull(path), cb.not(path.in(values(rule.getValue()).stream().map(v -> toNumber(v, type)).toList())));
+                default -> compare(expression, operator,
+                        (Comparable) toNumber(scalar(rule.getValue()), type),
+                        (Comparable) toNumber(scalar(rule.getValueStart()), type),
+                        (Comparable) toNumber(scalar(rule.getValueEnd()), type));
+            };
+        }
+
+        private Predicate library(MagicShelfRule rule, String operator) {
+            Path<Long> libraryId = root.get("library").get("id");
+            List<Long> ids = values(rule.getValue()).stream().map(Long::valueOf).toList();
+            if (ids.isEmpty()) {
+                throw new IllegalArgumentException("Missing library value");
+            }
+            return switch (operator) {
+                case "equals", "includes_any" -> libraryId.in(ids);
+                case "not_equals", "excludes_all" -> cb.not(libraryId.in(ids));
+                case "includes_all" -> ids.stream().distinct().count() == 1 ? cb.equal(libraryId, ids.getFirst()) : cb.disjunction();
+                default -> throw new IllegalArgumentException("Unsupported library operator");
+            };
+        }
+
+        private Predicate publishedDate(MagicShelfRule rule, String operator) {
+            Path<LocalDate> path = metadata().get("publishedDate");
+            return switch (operator) {
+                case "is_empty" -> cb.isNull(path);
+                case "is_not_empty" -> cb.isNotNull(path);
+                default -> compare(path, operator,
+                        toLocalDate(scalar(rule.getValue())),
+                        toLocalDate(scalar(rule.getValueStart())),
+                        toLocalDate(scalar(rule.getValueEnd())));
+            };
+        }
+
+        private Predicate dateFinished(MagicShelfRule rule, String operator) {
+            return switch (operator) {
+                case "is_empty" -> cb.not(progressExists((p, sub) -> cb.isNotNull(p.get("dateFinished"))));
+                case "is_not_empty" -> progressExists((p, sub) -> cb.isNotNull(p.get("dateFinished")));
+                case "equals" -> progressExists((p, sub) -> sameDay(p.get("dateFinished"), scalar(rule.getValue())));
+                case "not_equals" -> cb.not(progressExists((p, sub) -> sameDay(p.get("dateFinished"), scalar(rule.getValue()))));
+                default -> {
+                    Instant value = toInstant(scalar(rule.getValue()));
+                    Instant start = toInstant(scalar(rule.getValueStart()));
+                    Instant end = toInstant(scalar(rule.getValueEnd()));
+                    yield progressExists((p, sub) -> compare(p.get("dateFinished"), operator, value, start, end));
+                }
+            };
+        }
+
+        private Predicate sameDay(Path<Instant> path, String value) {
+            LocalDate day = toLocalDate(value);
+            if (day == null) {
+                throw new IllegalArgumentException("Missing date value");
+            }
+            Instant start = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+            return cb.and(cb.greaterThanOrEqualTo(path, start), cb.lessThan(path, start.plusSeconds(86_400)));
+        }
+
+        private Predicate readStatus(MagicShelfRule rule, String operator) {
+            List<ReadStatus> statuses = values(rule.getValue()).stream()
+                    .map(v -> ReadStatus.valueOf(v.toUpperCase(Locale.ROOT)))
+                    .distinct()
+                    .toList();
+            return switch (operator) {
+                case "equals", "includes_any" -> hasReadStatus(statuses);
+                case "not_equals", "excludes_all" -> cb.not(hasReadStatus(statuses));
+                case "includes_all" -> statuses.size() == 1 ? hasReadStatus(statuses) : cb.disjunction();
+                case "is_empty" -> cb.not(progressExists((p, sub) -> cb.isNotNull(p.get("readStatus"))));
+                case "is_not_empty" -> progressExists((p, sub) -> cb.isNotNull(p.get("readStatus")));
+                default -> throw new IllegalArgumentException("Unsupported read status operator");
+            };
+        }
+
+        /**
+         * Books without a progress row, or with a {@code null} status, count as {@link ReadStatus#UNREAD}.
+         */
+        private Predicate hasReadStatus(List<ReadStatus> statuses) {
+            if (statuses.isEmpty()) {
+                return cb.disjunction();
+            }
+            Predicate stored = progressExists((p, sub) -> p.get("readStatus").in(statuses));
+            if (!statuses.contains(ReadStatus.UNREAD)) {
+                return stored;
+            }
+            return cb.or(stored, cb.not(progressExists((p, sub) -> cb.isNotNull(p.get("readStatus")))));
+        }
+
+        private Predicate fileType(MagicShelfRule rule, String operator) {
+            Expression<String> fileName = cb.lower(root.get("fileName"));
+            List<Predicate> matches = values(rule.getValue()).stream()
+                    .map(ext -> cb.like(fileName, "%." + escapeLike(ext), '\\'))
+                    .toList();
+            if (matches.isEmpty()) {
+                throw new IllegalArgumentException("Missing file type value");
+            }
+            Predicate any = cb.or(matches.toArray(Predicate[]::new));
+            return switch (operator) {
+                case "equals", "includes_any" -> any;
+                case "not_equals", "excludes_all" -> cb.not(any);
+                case "includes_all" -> matches.size() == 1 ? any : cb.disjunction();
+                default -> throw new IllegalArgumentException("Unsupported file type operator");
+            };
+        }
+
+        private Predicate collection(String attribute, MagicShelfRule rule, String operator) {
+            List<String> list = values(rule.getValue());
+            String single = scalar(rule.getValue());
+            return switch (operator) {
+                case "equals", "includes_any" -> list.isEmpty() ? cb.disjunction() : collectionExists(attribute, name -> name.in(list));
+                case "not_equals", "excludes_all" -> list.isEmpty() ? cb.conjunction() : cb.not(collectionExists(attribute, name -> name.in(list)));
+                case "includes_all" -> cb.and(list.stream()
+                        .map(v -> collectionExists(attribute, name -> cb.equal(name, v)))
+                        .toArray(Predicate[]::new));
+                case "contains" -> collectionExists(attribute, name -> cb.like(name, "%" + escapeLike(single) + "%", '\\'));
+                case "does_not_contain" -> cb.not(collectionExists(attribute, name -> cb.like(name, "%" + escapeLike(single) + "%", '\\')));
+                case "starts_with" -> collectionExists(attribute, name -> cb.like(name, escapeLike(single) + "%", '\\'));
+                case "ends_with" -> collectionExists(attribute, name -> cb.like(name, "%" + escapeLike(single), '\\'));
+                case "is_empty" -> cb.not(collectionExists(attribute, name -> cb.conjunction()));
+                case "is_not_empty" -> collectionExists(attribute, name -> cb.conjunction());
+                default -> throw new IllegalArgumentException("Unsupported collection operator");
+            };
+        }
+
+        private Predicate collectionExists(String attribute, Function<Expression<String>, Predicate> condition) {
+            Subquery<Long> sub = query.subquery(Long.class);
+            Root<BookMetadataEntity> m = sub.from(BookMetadataEntity.class);
+            Join<Object, Object> item = m.join(attribute);
+            sub.select(m.get("bookId"))
+                    .where(cb.equal(m.get("bookId"), root.get("id")), condition.apply(cb.lower(item.get("name"))));
+            return cb.exists(sub);
+        }
+
+        private Predicate progressExists(BiFunction<Root<UserBookProgressEntity>, Subquery<Long>, Predicate> condition) {
+            Subquery<Long> sub = query.subquery(Long.class);
+            Root<UserBookProgressEntity> p = sub.from(UserBookProgressEntity.class);
+            sub.select(p.get("id"))
+                    .where(cb.equal(p.get("book").get("id"), root.get("id")),
+                            cb.equal(p.get("user").get("id"), userId),
+                            condition.apply(p, sub));
+            return cb.exists(sub);
+        }
+
+        private <T extends Comparable<? super T>> Predicate compare(Expression<T> expression, String operator, T value, T start, T end) {
+            return switch (operator) {
+                case "equals" -> cb.equal(expression, required(value));
+                case "not_equals" -> cb.or(cb.isNull(expression), cb.notEqual(expression, required(value)));
+                case "greater_than" -> cb.greaterThan(expression, required(value));
+                case "greater_than_equal_to" -> cb.greaterThanOrEqualTo(expression, required(value));
+                case "less_than" -> cb.lessThan(expression, required(value));
+                case "less_than_equal_to" -> cb.lessThanOrEqualTo(expression, required(value));
+                case "in_between" -> cb.between(expression, required(start), required(end));
+                default -> throw new IllegalArgumentException("Unsupported comparison operator");
+            };
+        }
+
+        private static <T> T required(T value) {
+            if (value == null) {
+                throw new IllegalArgumentException("Missing value");
+            }
+            return value;
+        }
+    }
+
+    static String scalar(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.isArray()) {
+            return node.isEmpty() ? null : scalar(node.get(0));
+        }
+        return node.asText().toLowerCase(Locale.ROOT);
+    }
+
+    static List<String> values(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return List.of();
+        }
+        List<String> values = new ArrayList<>();
+        if (node.isArray()) {
+            node.forEach(n -> {
+                if (!n.isNull()) values.add(n.asText().toLowerCase(Locale.ROOT));
+            });
+        } else if (!node.asText().isEmpty()) {
+            values.add(node.asText().toLowerCase(Locale.ROOT));
+        }
+        return values;
+    }
+
+    private static Number toNumber(String value, Class<?> type) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        double parsed = Double.parseDouble(value);
+        if (type == Integer.class) return (int) parsed;
+        if (type == Long.class) return (long) parsed;
+        if (type == Float.class) return (float) parsed;
+        return parsed;
+    }
+
+    private static LocalDate toLocalDate(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        return LocalDate.parse(value.length() > 10 ? value.substring(0, 10) : value);
+    }
+
+    private static Instant toInstant(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        if (value.length() > 10) {
+            return Instant.parse(value.toUpperCase(Locale.ROOT));
+        }
+        return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    private static String escapeLike(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing value");
+        }
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
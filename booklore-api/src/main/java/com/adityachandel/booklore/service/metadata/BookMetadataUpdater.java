@@ -95,6 +95,8 @@ public class BookMetadataUpdater {
         updateCategoriesIfNeeded(newMetadata, metadata, clearFlags, mergeCategories);
         bookReviewUpdateService.updateBookReviews(newMetadata, metadata, clearFlags, mergeCategories);
         updateThumbnailIfNeeded(bookId, newMetadata, metadata, setThumbnail);
+        // Set explicitly, as author and category changes alone do not make the row dirty.
+        metadata.setUpdatedOn(Instant.now());
 
         try {
             Float score = metadataMatchService.calculateMatchScore(bookEntity);
@@ -1,30 +1,81 @@
 package com.adityachandel.booklore.service.metadata;
 
+import com.adityachandel.booklore.model.dto.MetadataPresence;
 import com.adityachandel.booklore.model.dto.settings.AppSettings;
 import com.adityachandel.booklore.model.dto.settings.MetadataMatchWeights;
 import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
-import com.adityachandel.booklore.service.BookQueryService;
+import com.adityachandel.booklore.model.websocket.Topic;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import static com.adityachandel.booklore.model.websocket.LogNotification.createLogNotification;
+
+@Slf4j
 @RequiredArgsConstructor
 @Service
 public class MetadataMatchService {
 
+    private static final int RECALCULATION_CHUNK_SIZE = 1000;
+
     private final AppSettingService appSettingsService;
-    private final BookQueryService bookQueryService;
+    private final BookRepository bookRepository;
+    private final NotificationService notificationService;
+    private final MagicShelfBookService magicShelfBookService;
 
+    /**
+     * Recomputes the match score of every book after the weights changed. Books are read in id order as a narrow
+     * projection of presence flags, never as entities, and the scores of each chunk are written back with one
+     * {@code UPDATE} per distinct score, skipping books whose score did not change. Those updates bypass the entity
+     * listeners, so magic shelves are evicted here once the scores have been written.
+     */
     public void recalculateAllMatchScores() {
-        List<BookEntity> allBooks = bookQueryService.getAllFullBookEntities();
-        for (BookEntity book : allBooks) {
-            Float score = calculateMatchScore(book);
-            book.setMetadataMatchScore(score);
+        MetadataMatchWeights weights = currentWeights();
+        long total = bookRepository.countActiveBooks();
+        notificationService.sendMessage(Topic.LOG, createLogNotification("Started recalculating match scores for " + total + " books"));
+
+        long processed = 0;
+        long updated = 0;
+        long lastReportedDecile = 0;
+        long afterId = 0;
+        List<MetadataPresence> chunk;
+        while (!(chunk = bookRepository.findMetadataPresenceAfter(afterId, PageRequest.of(0, RECALCULATION_CHUNK_SIZE))).isEmpty()) {
+            Map<Float, List<Long>> bookIdsByScore = new HashMap<>();
+            for (MetadataPresence presence : chunk) {
+                Float score = calculateMatchScore(presence, weights);
+                if (!score.equals(presence.currentScore())) {
+                    bookIdsByScore.computeIfAbsent(score, key -> new ArrayList<>()).add(presence.bookId());
+                }
+            }
+            for (Map.Entry<Float, List<Long>> entry : bookIdsByScore.entrySet()) {
+                updated += bookRepository.updateMetadataMatchScore(entry.getValue(), entry.getKey());
+            }
+
+            processed += chunk.size();
+            afterId = chunk.getLast().bookId();
+            long decile = total == 0 ? 10 : Math.min(10, processed * 10 / total);
+            if (decile > lastReportedDecile) {
+                lastReportedDecile = decile;
+                notificationService.sendMessage(Topic.LOG, createLogNotification("Recalculating match scores (" + processed + "/" + total + ")"));
+            }
         }
-        bookQueryService.saveAll(allBooks);
+
+        if (updated > 0) {
+            magicShelfBookService.evictAll();
+        }
+        log.info("Recalculated match scores for {} books, {} changed", processed, updated);
+        notificationService.sendMessage(Topic.LOG, createLogNotification("Finished recalculating match scores, " + updated + " books changed"));
     }
 
     public Float calculateMatchScore(BookEntity book) {
@@ -32,41 +83,74 @@ public class MetadataMatchService {
 
         BookMetadataEntity metadata = book.getMetadata();
 
-        AppSettings appSettings = appSettingsService.getAppSettings();
-        if (appSettings == null || appSettings.getMetadataMatchWeights() == null) return 0f;
+        MetadataMatchWeights weights = currentWeights();
+        if (weights == null) return 0f;
+
+        return calculateMatchScore(new MetadataPresence(
+                book.getId(),
+                book.getMetadataMatchScore(),
+                isPresent(metadata.getTitle()),
+                isPresent(metadata.getSubtitle()),
+                isPresent(metadata.getDescription()),
+                hasContent(metadata.getAuthors()),
+                isPresent(metadata.getPublisher()),
+                metadata.getPublishedDate() != null,
+                isPresent(metadata.getSeriesName()),
+                isPositive(metadata.getSeriesNumber()),
+                isPositive(metadata.getSeriesTotal()),
+                isPresent(metadata.getIsbn13()),
+                isPresent(metadata.getIsbn10()),
+                isPresent(metadata.getLanguage()),
+                isPositive(metadata.getPageCount()),
+                hasContent(metadata.getCategories()),
+                isPositive(metadata.getAmazonRating()),
+                isPositive(metadata.getAmazonReviewCount()),
+                isPositive(metadata.getGoodreadsRating()),
+                isPositive(metadata.getGoodreadsReviewCount()),
+                isPositive(metadata.getHardcoverRating()),
+                isPositive(metadata.getHardcoverReviewCount())), weights);
+    }
+
+    Float calculateMatchScore(MetadataPresence presence, MetadataMatchWeights weights) {
+        if (weights == null) return 0f;
 
-        MetadataMatchWeights weights = appSettings.getMetadataMatchWeights();
         float totalWeight = weights.totalWeight();
         if (totalWeight == 0) return 0f;
 
         float score = 0f;
 
-        if (isPresent(metadata.getTitle())) score += weights.getTitle();
-        if (isPresent(metadata.getSubtitle())) score += weights.getSubtitle();
-        if (isPresent(metadata.getDescription())) score += weights.getDescription();
-        if (hasContent(metadata.getAuthors())) score += weights.getAuthors();
-        if (isPresent(metadata.getPublisher())) score += weights.getPublisher();
-        if (metadata.getPublishedDate() != null) score += weights.getPublishedDate();
-        if (isPresent(metadata.getSeriesName())) score += weights.getSeriesName();
-        if (metadata.getSeriesNumber() != null && metadata.getSeriesNumber() > 0) score += weights.getSeriesNumber();
-        if (metadata.getSeriesTotal() != null && metadata.getSeriesTotal() > 0) score += weights.getSeriesTotal();
-        if (isPresent(metadata.getIsbn13())) score += weights.getIsbn13();
-        if (isPresent(metadata.getIsbn10())) score += weights.getIsbn10();
-        if (isPresent(metadata.getLanguage())) score += weights.getLanguage();
-        if (metadata.getPageCount() != null && metadata.getPageCount() > 0) score += weights.getPageCount();
-        if (hasContent(metadata.getCategories())) score += weights.getCategories();
-        if (isPositive(metadata.getAmazonRating())) score += weights.getAmazonRating();
-        if (isPositive(metadata.getAmazonReviewCount())) score += weights.getAmazonReviewCount();
-        if (isPositive(metadata.getGoodreadsRating())) score += weights.getGoodreadsRating();
-        if (isPositive(metadata.getGoodreadsReviewCount())) score += weights.getGoodreadsReviewCount();
-        if (isPositive(metadata.getHardcoverRating())) score += weights.getHardcoverRating();
-        if (isPositive(metadata.getHardcoverReviewCount())) score += weights.getHardcoverReviewCount();
+        if (presence.title()) score += weights.getTitle();
+        if (presence.subtitle()) score += weights.getSubtitle();
+        if (presence.description()) score += weights.getDescription();
+        if (presence.authors()) score += weights.getAuthors();
+        if (presence.publisher()) score += weights.getPublisher();
+        if (presence.publishedDate()) score += weights.getPublishedDate();
+        if (presence.seriesName()) score += weights.getSeriesName();
+        if (presence.seriesNumber()) score += weights.getSeriesNumber();
+        if (presence.seriesTotal()) score += weights.getSeriesTotal();
+        if (presence.isbn13()) score += weights.getIsbn13();
+        if (presence.isbn10()) score += weights.getIsbn10();
+        if (presence.language()) score += weights.getLanguage();
+        if (presence.pageCount()) score += weights.getPageCount();
+        if (presence.categories()) score += weights.getCategories();
+        if (presence.amazonRating()) score += weights.getAmazonRating();
+        if (presence.amazonReviewCount()) score += weights.getAmazonReviewCount();
+        if (presence.goodreadsRating()) score += weights.getGoodreadsRating();
+        if (presence.goodreadsReviewCount()) score += weights.getGoodreadsReviewCount();
+        if (presence.hardcoverRating()) score += weights.getHardcoverRating();
+        if (presence.hardcoverReviewCount()) score += weights.getHardcoverReviewCount();
 
         return (score / totalWeight) * 100f;
     }
 
-    private boolean isPresent(String value) {
-        return value != null && !value.isBlank();
+    private MetadataMatchWeights currentWeights() {
+        AppSettings appSettings = appSettingsService.getAppSettings();
+        return appSettings == null ? null : appSettings.getMetadataMatchWeights();
+    }
+
+    // Mirrors TRIM(x) <> '' in the bulk query: TRIM only strips spaces, so a value made of tabs or newlines counts.
+    static boolean isPresent(String value) {
+        return value != null && value.chars().anyMatch(c -> c != ' ');
     }
 
     private boolean hasContent(Iterable<?> iterable) {
@@ -6,18 +6,14 @@ import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
 import com.adityachandel.booklore.model.enums.BookFileType;
 import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 import com.adityachandel.booklore.service.metadata.extractor.FileMetadataExtractor;
 import com.adityachandel.booklore.util.FileService;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import io.documentnode.epub4j.domain.Book;
-import io.documentnode.epub4j.domain.Resource;
-import io.documentnode.epub4j.epub.EpubReader;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.io.FileSystemResource;
 import org.springframework.stereotype.Service;
 
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -37,27 +33,23 @@ public class EpubMetadataBackupRestoreService extends AbstractMetadataBackupRest
 
     @Override
     public void backupEmbeddedMetadataIfNotExists(BookEntity bookEntity, boolean backupCover) {
-        File bookFile = new File(bookEntity.getFullFilePath().toUri());
         Path backupDir = resolveBackupDir(bookEntity);
         Path metadataFile = backupDir.resolve("metadata.json");
         Path coverFile = backupDir.resolve("cover.jpg");
 
         if (Files.exists(metadataFile)) return;
 
-        try {
+        try (BookFileSession session = BookFileSession.open(bookEntity.getFullFilePath())) {
             Files.createDirectories(backupDir);
-            BookMetadata metadata = epubMetadataExtractor.extractMetadata(bookFile);
+            BookMetadata metadata = epubMetadataExtractor.extractMetadata(session);
             writeMetadata(bookEntity, metadata, backupDir);
             if (backupCover) {
-                try (FileInputStream fis = new FileInputStream(bookFile)) {
-                    Book epubBook = new EpubReader().readEpub(fis);
-                    Resource coverImage = epubBook.getCoverImage();
-                    if (coverImage != null) {
-                        Files.write(coverFile, coverImage.getData(), StandardOpenOption.CREATE_NEW);
-                        log.info("Backup cover image saved for book ID {} at {}", bookEntity.getId(), coverFile);
-                    } else {
-                        log.warn("No cover image found in EPUB for book ID {}", bookEntity.getId());
-                    }
+                byte[] coverImage = epubMetadataExtractor.extractCover(session);
+                if (coverImage != null) {
+                    Files.write(coverFile, coverImage, StandardOpenOption.CREATE_NEW);
+                    log.info("Backup cover image saved for book ID {} at {}", bookEntity.getId(), coverFile);
+                } else {
+                    log.warn("No cover image found in EPUB for book ID {}", bookEntity.getId());
                 }
             }
             log.info("Created EPUB metadata backup for book ID {} at {}", bookEntity.getId(), backupDir);
@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.service.metadata.extractor;
 
 import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 
 import java.io.File;
 
@@ -9,4 +10,16 @@ public interface FileMetadataExtractor {
     BookMetadata extractMetadata(File file);
 
     byte[] extractCover(File file);
+
+    /**
+     * Extracts metadata reusing whatever the session has already opened or parsed. Formats without a shared
+     * representation fall back to reading the file on their own.
+     */
+    default BookMetadata extractMetadata(BookFileSession session) {
+        return extractMetadata(session.getFile());
+    }
+
+    default byte[] extractCover(BookFileSession session) {
+        return extractCover(session.getFile());
+    }
 }
@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.service.metadata.extractor;
 
 import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 import com.adityachandel.booklore.util.FileUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
@@ -27,6 +28,7 @@ import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.Instant;
@@ -43,16 +45,30 @@ public class PdfMetadataExtractor implements FileMetadataExtractor {
     @Override
     public byte[] extractCover(File file) {
         try (PDDocument pdf = Loader.loadPDF(file)) {
-            BufferedImage coverImage = new PDFRenderer(pdf).renderImageWithDPI(0, 300, ImageType.RGB);
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(coverImage, "jpg", baos);
-            return baos.toByteArray();
+            return renderCover(pdf);
         } catch (Exception e) {
             log.warn("Failed to extract cover from PDF: {}", file.getAbsolutePath(), e);
             return null;
         }
     }
 
+    @Override
+    public byte[] extractCover(BookFileSession session) {
+        try {
+            return renderCover(session.getPdf());
+        } catch (Exception e) {
+            log.warn("Failed to extract cover from PDF: {}", session.getFile().getAbsolutePath(), e);
+            return null;
+        }
+    }
+
+    private byte[] renderCover(PDDocument pdf) throws IOException {
+        BufferedImage coverImage = new PDFRenderer(pdf).renderImageWithDPI(0, 300, ImageType.RGB);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ImageIO.write(coverImage, "jpg", baos);
+        return baos.toByteArray();
+    }
+
     @Override
     public BookMetadata extractMetadata(File file) {
         if (!file.exists() || !file.isFile()) {
@@ -60,16 +76,35 @@ public class PdfMetadataExtractor implements FileMetadataExtractor {
             return BookMetadata.builder().build();
         }
 
+        try (PDDocument pdf = Loader.loadPDF(file)) {
+            return extractMetadata(pdf, file.getName());
+        } catch (Exception e) {
+            log.error("Failed to load PDF file: {}", file.getPath(), e);
+            return BookMetadata.builder().build();
+        }
+    }
+
+    @Override
+    public BookMetadata extractMetadata(BookFileSession session) {
+        try {
+            return extractMetadata(session.getPdf(), session.getFile().getName());
+        } catch (Exception e) {
+            log.error("Failed to load PDF file: {}", session.getFile().getPath(), e);
+            return BookMetadata.builder().build();
+        }
+    }
+
+    private BookMetadata extractMetadata(PDDocument pdf, String fileName) {
         BookMetadata.BookMetadataBuilder metadataBuilder = BookMetadata.builder();
 
-        try (PDDocument pdf = Loader.loadPDF(file)) {
+        try {
             PDDocumentInformation info = pdf.getDocumentInformation();
 
             if (info != null) {
                 if (StringUtils.isNotBlank(info.getTitle())) {
                     metadataBuilder.title(info.getTitle());
                 } else {
-                    metadataBuilder.title(file.getName());
+                    metadataBuilder.title(fileName);
                 }
 
                 if (StringUtils.isNotBlank(info.getAuthor())) {
@@ -183,7 +218,7 @@ public class PdfMetadataExtractor implements FileMetadataExtractor {
             }
 
         } catch (Exception e) {
-            log.error("Failed to load PDF file: {}", file.getPath(), e);
+            log.error("Failed to read metadata from PDF file: {}", fileName, e);
         }
 
         return metadataBuilder.build();
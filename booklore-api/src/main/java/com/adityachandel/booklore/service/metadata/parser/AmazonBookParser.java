@@ -35,6 +35,7 @@ public class AmazonBookParser implements BookParser {
     private static final int COUNT_DETAILED_METADATA_TO_GET = 3;
     private static final String BASE_BOOK_URL = "https://www.amazon.com/dp/";
     private final AppSettingService appSettingService;
+    private final MetadataProviderMetrics metadataProviderMetrics;
 
     @Override
     public BookMetadata fetchTopMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
@@ -654,6 +655,7 @@ public class AmazonBookParser implements BookParser {
             Connection.Response response = connection.execute();
             return response.parse();
         } catch (IOException e) {
+            metadataProviderMetrics.recordFetchFailure(MetadataProvider.Amazon, e);
             log.error("Error parsing url: {}", url, e);
             throw new RuntimeException(e);
         }
@@ -36,6 +36,7 @@ public class ComicvineBookParser implements BookParser {
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
 
     private final ObjectMapper objectMapper;
+    private final MetadataProviderMetrics metadataProviderMetrics;
     private final AppSettingService appSettingService;
     private final HttpClient httpClient = HttpClient.newHttpClient();
 
@@ -86,6 +87,7 @@ public class ComicvineBookParser implements BookParser {
             if (response.statusCode() == 200) {
                 return parseComicvineApiResponse(response.body());
             } else {
+                metadataProviderMetrics.recordHttpFailure(MetadataProvider.Comicvine, response.statusCode());
                 log.error("Comicvine Search API returned status code {}", response.statusCode());
             }
         } catch (IOException | InterruptedException e) {
@@ -191,6 +193,7 @@ public class ComicvineBookParser implements BookParser {
                         .collect(Collectors.toSet());
 
             } else {
+                metadataProviderMetrics.recordHttpFailure(MetadataProvider.Comicvine, response.statusCode());
                 log.error("Comicvine Issue API returned status code {}", response.statusCode());
             }
         } catch (IOException | InterruptedException e) {
@@ -39,6 +39,7 @@ public class DoubanBookParser implements BookParser {
     private static final int COUNT_DETAILED_METADATA_TO_GET = 3;
     private static final String BASE_BOOK_URL = "https://book.douban.com/subject/";
     private final AppSettingService appSettingService;
+    private final MetadataProviderMetrics metadataProviderMetrics;
 
     @Override
     public BookMetadata fetchTopMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
@@ -703,6 +704,7 @@ public class DoubanBookParser implements BookParser {
             String html = response.body();
             return Jsoup.parse(html, response.url().toString());
         } catch (IOException e) {
+            metadataProviderMetrics.recordFetchFailure(MetadataProvider.Douban, e);
             log.error("Error parsing url: {}", url, e);
             throw new RuntimeException(e);
         }
@@ -40,6 +40,7 @@ public class GoodReadsParser implements BookParser {
     private static final String BASE_ISBN_URL = "https://www.goodreads.com/book/isbn/";
     private static final int COUNT_DETAILED_METADATA_TO_GET = 3;
     private final AppSettingService appSettingService;
+    private final MetadataProviderMetrics metadataProviderMetrics;
 
     @Override
     public BookMetadata fetchTopMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
@@ -549,6 +550,7 @@ public class GoodReadsParser implements BookParser {
                     .execute();
             return response.parse();
         } catch (IOException e) {
+            metadataProviderMetrics.recordFetchFailure(MetadataProvider.GoodReads, e);
             log.error("Error parsing url: {}", url, e);
             throw new RuntimeException(e);
         }
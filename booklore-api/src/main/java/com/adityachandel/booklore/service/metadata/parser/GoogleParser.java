@@ -31,6 +31,7 @@ import java.util.stream.Collectors;
 public class GoogleParser implements BookParser {
 
     private final ObjectMapper objectMapper;
+    private final MetadataProviderMetrics metadataProviderMetrics;
     private static final String GOOGLE_BOOKS_API_URL = "https://www.googleapis.com/books/v1/volumes";
 
     @Override
@@ -71,6 +72,7 @@ public class GoogleParser implements BookParser {
             if (response.statusCode() == 200) {
                 return parseGoogleBooksApiResponse(response.body());
             } else {
+                metadataProviderMetrics.recordHttpFailure(MetadataProvider.Google, response.statusCode());
                 log.error("Failed to fetch metadata from Google Books API with ISBN. Status: {}, Response: {}",
                         response.statusCode(), response.body());
                 return List.of();
@@ -101,6 +103,7 @@ public class GoogleParser implements BookParser {
             if (response.statusCode() == 200) {
                 return parseGoogleBooksApiResponse(response.body());
             } else {
+                metadataProviderMetrics.recordHttpFailure(MetadataProvider.Google, response.statusCode());
                 log.error("Failed to fetch metadata from Google Books API. Status: {}, Response: {}", response.statusCode(), response.body());
                 return List.of();
             }
@@ -0,0 +1,106 @@
+package com.adityachandel.booklore.service.metadata.parser;
+
+import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.model.dto.request.FetchMetadataRequest;
+import com.adityachandel.booklore.model.enums.MetadataProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.jsoup.HttpStatusException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Records latency, outcome and failures of metadata provider calls, tagged by {@link MetadataProvider}. Parsers log
+ * and swallow most failures, so {@link #instrument} sees them as empty results; every parser therefore also reports
+ * failed requests where it makes them, through {@link #recordHttpFailure} or {@link #recordFetchFailure}, which count
+ * 429s as throttling. An I/O failure that still reaches {@link #instrument} has been counted that way already.
+ */
+@Component
+@RequiredArgsConstructor
+public class MetadataProviderMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public BookParser instrument(MetadataProvider provider, BookParser parser) {
+        return new BookParser() {
+            @Override
+            public List<BookMetadata> fetchMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
+                return record(provider, "search", () -> parser.fetchMetadata(book, fetchMetadataRequest),
+                        results -> results != null && !results.isEmpty());
+            }
+
+            @Override
+            public BookMetadata fetchTopMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
+                return record(provider, "top", () -> parser.fetchTopMetadata(book, fetchMetadataRequest), result -> result != null);
+            }
+        };
+    }
+
+    public void recordHttpFailure(MetadataProvider provider, int statusCode) {
+        String reason = statusCode == 429 ? "throttled" : "http_" + (statusCode / 100) + "xx";
+        countError(provider, reason);
+    }
+
+    /**
+     * Records a request that failed with an exception: an HTTP error status from Jsoup or Spring's RestClient by its
+     * status, anything else, such as a timeout or refused connection, as {@code reason=io}.
+     */
+    public void recordFetchFailure(MetadataProvider provider, Exception failure) {
+        if (failure instanceof HttpStatusException statusException) {
+            recordHttpFailure(provider, statusException.getStatusCode());
+        } else if (failure instanceof RestClientResponseException responseException) {
+            recordHttpFailure(provider, responseException.getStatusCode().value());
+        } else {
+            countError(provider, "io");
+        }
+    }
+
+    private <T> T record(MetadataProvider provider, String operation, Supplier<T> call, Predicate<T> found) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = call.get();
+            outcome = found.test(result) ? "found" : "empty";
+            return result;
+        } catch (RuntimeException e) {
+            if (!causedByIo(e)) {
+                countError(provider, "exception");
+            }
+            throw e;
+        } finally {
+            sample.stop(Timer.builder("booklore.metadata.provider.requests")
+                    .description("Metadata provider lookups, by provider, operation and outcome")
+                    .tag("provider", provider.name())
+                    .tag("operation", operation)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    private static boolean causedByIo(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException || cause instanceof RestClientException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void countError(MetadataProvider provider, String reason) {
+        Counter.builder("booklore.metadata.provider.errors")
+                .description("Failed metadata provider calls; reason=throttled counts rate limit responses")
+                .tag("provider", provider.name())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+}
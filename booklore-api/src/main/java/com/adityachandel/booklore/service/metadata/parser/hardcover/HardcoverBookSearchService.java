@@ -1,6 +1,8 @@
 package com.adityachandel.booklore.service.metadata.parser.hardcover;
 
+import com.adityachandel.booklore.model.enums.MetadataProvider;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.metadata.parser.MetadataProviderMetrics;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -18,10 +20,12 @@ public class HardcoverBookSearchService {
 
     private final RestClient restClient;
     private final AppSettingService appSettingService;
+    private final MetadataProviderMetrics metadataProviderMetrics;
 
     @Autowired
-    public HardcoverBookSearchService(AppSettingService appSettingService) {
+    public HardcoverBookSearchService(AppSettingService appSettingService, MetadataProviderMetrics metadataProviderMetrics) {
         this.appSettingService = appSettingService;
+        this.metadataProviderMetrics = metadataProviderMetrics;
         String apiUrl = "https://api.hardcover.app/v1/graphql";
         this.restClient = RestClient.builder()
                 .baseUrl(apiUrl)
@@ -69,6 +73,7 @@ public class HardcoverBookSearchService {
             return response.getData().getSearch().getResults().getHits();
 
         } catch (RestClientException e) {
+            metadataProviderMetrics.recordFetchFailure(MetadataProvider.Hardcover, e);
             log.error("Failed to fetch data from Hardcover API, Error: {}", e.getMessage());
             return Collections.emptyList();
         }
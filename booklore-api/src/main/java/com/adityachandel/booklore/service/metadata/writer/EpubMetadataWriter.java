@@ -4,37 +4,34 @@ import com.adityachandel.booklore.model.MetadataClearFlags;
 import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
 import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.util.epub.EpubContainer;
+import com.adityachandel.booklore.util.epub.EpubRewriter;
 import lombok.extern.slf4j.Slf4j;
-import net.lingala.zip4j.ZipFile;
-import net.lingala.zip4j.model.ZipParameters;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.web.multipart.MultipartFile;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
-import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
 
 @Slf4j
 @Component
@@ -44,29 +41,9 @@ public class EpubMetadataWriter implements MetadataWriter {
 
     @Override
     public void writeMetadataToFile(File epubFile, BookMetadataEntity metadata, String thumbnailUrl, boolean restoreMode, MetadataClearFlags clear) {
-        File backupFile = new File(epubFile.getParentFile(), epubFile.getName() + ".bak");
         try {
-            Files.copy(epubFile.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-        } catch (IOException ex) {
-            log.warn("Failed to create backup of EPUB {}: {}", epubFile.getName(), ex.getMessage());
-            return;
-        }
-        Path tempDir;
-        try {
-            tempDir = Files.createTempDirectory("epub_edit_" + UUID.randomUUID());
-            ZipFile zipFile = new ZipFile(epubFile);
-            zipFile.extractAll(tempDir.toString());
-
-            File opfFile = findOpfFile(tempDir.toFile());
-            if (opfFile == null) {
-                log.warn("Could not locate OPF file in EPUB");
-                return;
-            }
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder builder = dbf.newDocumentBuilder();
-            Document opfDoc = builder.parse(opfFile);
+            OpfDocument opf = readOpf(epubFile);
+            Document opfDoc = opf.document();
 
             NodeList metadataList = opfDoc.getElementsByTagNameNS(OPF_NS, "metadata");
             Element metadataElement = (Element) metadataList.item(0);
@@ -155,48 +132,24 @@ public class EpubMetadataWriter implements MetadataWriter {
                 }
             }
 
+            Map<String, byte[]> replacements = new HashMap<>();
             if (StringUtils.isNotBlank(thumbnailUrl)) {
                 byte[] coverData = loadImage(thumbnailUrl);
                 if (coverData != null) {
-                    applyCoverImageToEpub(tempDir, opfDoc, coverData);
+                    applyCoverImageToEpub(opf, coverData, replacements);
                     hasChanges[0] = true;
                 }
             }
 
             if (hasChanges[0]) {
-                Transformer transformer = TransformerFactory.newInstance().newTransformer();
-                transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-                transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-                transformer.transform(new DOMSource(opfDoc), new StreamResult(opfFile));
-
-                File tempEpub = new File(epubFile.getParentFile(), epubFile.getName() + ".tmp");
-                addFolderContentsToZip(new ZipFile(tempEpub), tempDir.toFile(), tempDir.toFile());
-
-                if (!epubFile.delete()) throw new IOException("Could not delete original EPUB");
-                if (!tempEpub.renameTo(epubFile)) throw new IOException("Could not rename temp EPUB");
-
+                rewriteEpub(epubFile, opf, replacements);
                 log.info("Metadata updated in EPUB: {}", epubFile.getName());
             } else {
                 log.info("No changes detected. Skipping EPUB write for: {}", epubFile.getName());
             }
         } catch (Exception e) {
+            // The rewrite only replaces the book once the new archive is complete, so there is nothing to restore.
             log.warn("Failed to write metadata to EPUB file {}: {}", epubFile.getName(), e.getMessage(), e);
-            if (backupFile.exists()) {
-                try {
-                    Files.copy(backupFile.toPath(), epubFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-                    log.info("Restored EPUB from backup: {}", epubFile.getName());
-                } catch (IOException io) {
-                    log.error("Failed to restore EPUB from backup for {}: {}", epubFile.getName(), io.getMessage(), io);
-                }
-            }
-        } finally {
-            if (backupFile.exists()) {
-                try {
-                    Files.delete(backupFile.toPath());
-                } catch (IOException ex) {
-                    log.warn("Failed to delete backup for {}: {}", epubFile.getName(), ex.getMessage());
-                }
-            }
         }
     }
 
@@ -254,33 +207,11 @@ public class EpubMetadataWriter implements MetadataWriter {
 
         try {
             File epubFile = new File(bookEntity.getFullFilePath().toUri());
-            Path tempDir = Files.createTempDirectory("epub_cover_" + UUID.randomUUID());
-            new ZipFile(epubFile).extractAll(tempDir.toString());
-
-            File opfFile = findOpfFile(tempDir.toFile());
-            if (opfFile == null) {
-                log.warn("OPF file not found in EPUB: {}", epubFile.getName());
-                return;
-            }
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder builder = dbf.newDocumentBuilder();
-            Document opfDoc = builder.parse(opfFile);
-
-            byte[] coverData = multipartFile.getBytes();
-            applyCoverImageToEpub(tempDir, opfDoc, coverData);
-
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.transform(new DOMSource(opfDoc), new StreamResult(opfFile));
-
-            File tempEpub = new File(epubFile.getParentFile(), epubFile.getName() + ".tmp");
-            addFolderContentsToZip(new ZipFile(tempEpub), tempDir.toFile(), tempDir.toFile());
+            OpfDocument opf = readOpf(epubFile);
 
-            if (!epubFile.delete()) throw new IOException("Could not delete original EPUB");
-            if (!tempEpub.renameTo(epubFile)) throw new IOException("Could not rename temp EPUB");
+            Map<String, byte[]> replacements = new HashMap<>();
+            applyCoverImageToEpub(opf, multipartFile.getBytes(), replacements);
+            rewriteEpub(epubFile, opf, replacements);
 
             log.info("Cover image updated in EPUB: {}", epubFile.getName());
 
@@ -297,38 +228,16 @@ public class EpubMetadataWriter implements MetadataWriter {
         }
         try {
             File epubFile = new File(bookEntity.getFullFilePath().toUri());
-            Path tempDir = Files.createTempDirectory("epub_cover_url_" + UUID.randomUUID());
-            new ZipFile(epubFile).extractAll(tempDir.toString());
-
-            File opfFile = findOpfFile(tempDir.toFile());
-            if (opfFile == null) {
-                log.warn("OPF file not found in EPUB: {}", epubFile.getName());
-                return;
-            }
-
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true);
-            DocumentBuilder builder = dbf.newDocumentBuilder();
-            Document opfDoc = builder.parse(opfFile);
-
             byte[] coverData = loadImage(url);
             if (coverData == null) {
                 log.warn("Failed to load image from URL: {}", url);
                 return;
             }
 
-            applyCoverImageToEpub(tempDir, opfDoc, coverData);
-
-            Transformer transformer = TransformerFactory.newInstance().newTransformer();
-            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
-            transformer.transform(new DOMSource(opfDoc), new StreamResult(opfFile));
-
-            File tempEpub = new File(epubFile.getParentFile(), epubFile.getName() + ".tmp");
-            addFolderContentsToZip(new ZipFile(tempEpub), tempDir.toFile(), tempDir.toFile());
-
-            if (!epubFile.delete()) throw new IOException("Could not delete original EPUB");
-            if (!tempEpub.renameTo(epubFile)) throw new IOException("Could not rename temp EPUB");
+            OpfDocument opf = readOpf(epubFile);
+            Map<String, byte[]> replacements = new HashMap<>();
+            applyCoverImageToEpub(opf, coverData, replacements);
+            rewriteEpub(epubFile, opf, replacements);
 
             log.info("Cover image updated in EPUB via URL: {}", epubFile.getName());
         } catch (Exception e) {
@@ -341,7 +250,30 @@ public class EpubMetadataWriter implements MetadataWriter {
         return BookFileType.EPUB;
     }
 
-    private void applyCoverImageToEpub(Path tempDir, Document opfDoc, byte[] coverData) throws IOException {
+    private OpfDocument readOpf(File epubFile) throws Exception {
+        try (EpubContainer epub = EpubContainer.open(epubFile);
+             InputStream in = epub.openOpf()) {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            DocumentBuilder builder = dbf.newDocumentBuilder();
+            return new OpfDocument(epub.getOpfPath(), builder.parse(in));
+        }
+    }
+
+    private void rewriteEpub(File epubFile, OpfDocument opf, Map<String, byte[]> replacements) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+        ByteArrayOutputStream opfBytes = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(opf.document()), new StreamResult(opfBytes));
+
+        Map<String, byte[]> entries = new LinkedHashMap<>(replacements);
+        entries.put(opf.path(), opfBytes.toByteArray());
+        EpubRewriter.rewrite(epubFile.toPath(), entries);
+    }
+
+    private void applyCoverImageToEpub(OpfDocument opf, byte[] coverData, Map<String, byte[]> replacements) throws IOException {
+        Document opfDoc = opf.document();
         NodeList manifestList = opfDoc.getElementsByTagNameNS(OPF_NS, "manifest");
         if (manifestList.getLength() == 0) {
             throw new IOException("No <manifest> element found in OPF document.");
@@ -361,17 +293,7 @@ public class EpubMetadataWriter implements MetadataWriter {
 
         String coverHref = existingCoverItem != null ? existingCoverItem.getAttribute("href") : "images/cover.jpg";
 
-        Path opfPath;
-        try {
-            opfPath = findOpfPath(tempDir);
-        } catch (ParserConfigurationException | SAXException e) {
-            throw new IOException("Failed to parse container.xml to locate OPF path", e);
-        }
-
-        Path opfDir = opfPath.getParent();
-        Path coverFilePath = opfDir.resolve(coverHref).normalize();
-        Files.createDirectories(coverFilePath.getParent());
-        Files.write(coverFilePath, coverData);
+        replacements.put(EpubContainer.resolveAgainstOpf(opf.path(), coverHref), coverData);
 
         if (existingCoverItem != null) {
             manifest.removeChild(existingCoverItem);
@@ -397,38 +319,6 @@ public class EpubMetadataWriter implements MetadataWriter {
         metadataElement.appendChild(meta);
     }
 
-    private Path findOpfPath(Path tempDir) throws IOException, ParserConfigurationException, SAXException {
-        Path containerXml = tempDir.resolve("META-INF/container.xml");
-        if (!Files.exists(containerXml)) {
-            throw new IOException("container.xml not found at expected location: " + containerXml);
-        }
-
-        Document containerDoc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(containerXml.toFile());
-        Node rootfile = containerDoc.getElementsByTagName("rootfile").item(0);
-        if (rootfile == null) {
-            throw new IOException("No <rootfile> found in container.xml");
-        }
-
-        String opfPath = ((Element) rootfile).getAttribute("full-path");
-        if (opfPath.isBlank()) {
-            throw new IOException("Missing or empty 'full-path' attribute in <rootfile>");
-        }
-
-        return tempDir.resolve(opfPath).normalize();
-    }
-
-    private File findOpfFile(File rootDir) {
-        File[] matches = rootDir.listFiles(path -> path.isFile() && path.getName().endsWith(".opf"));
-        if (matches != null && matches.length > 0) return matches[0];
-        for (File file : Objects.requireNonNull(rootDir.listFiles())) {
-            if (file.isDirectory()) {
-                File child = findOpfFile(file);
-                if (child != null) return child;
-            }
-        }
-        return null;
-    }
-
     private byte[] loadImage(String pathOrUrl) {
         try (InputStream stream = pathOrUrl.startsWith("http") ? new URL(pathOrUrl).openStream() : new FileInputStream(pathOrUrl)) {
             return stream.readAllBytes();
@@ -438,19 +328,6 @@ public class EpubMetadataWriter implements MetadataWriter {
         }
     }
 
-    private void addFolderContentsToZip(ZipFile zipFile, File baseDir, File currentDir) throws IOException {
-        File[] files = Objects.requireNonNull(currentDir.listFiles());
-        for (File file : files) {
-            if (file.isDirectory()) {
-                addFolderContentsToZip(zipFile, baseDir, file);
-            } else {
-                ZipParameters params = new ZipParameters();
-                params.setFileNameInZip(baseDir.toPath().relativize(file.toPath()).toString().replace(File.separatorChar, '/'));
-                zipFile.addFile(file, params);
-            }
-        }
-    }
-
     private void removeMetaByName(Element metadataElement, String name) {
         NodeList metas = metadataElement.getElementsByTagNameNS("*", "meta");
         for (int i = metas.getLength() - 1; i >= 0; i--) {
@@ -535,5 +412,7 @@ public class EpubMetadataWriter implements MetadataWriter {
         }
         return null;
     }
-}
 
+    private record OpfDocument(String path, Document document) {
+    }
+}
@@ -3,10 +3,14 @@ package com.adityachandel.booklore.service.metadata.writer;
 import com.adityachandel.booklore.model.MetadataClearFlags;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
 import com.adityachandel.booklore.model.enums.BookFileType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.RandomAccessReadBufferedFile;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentCatalog;
 import org.apache.pdfbox.pdmodel.PDDocumentInformation;
 import org.apache.pdfbox.pdmodel.common.PDMetadata;
 import org.apache.xmpbox.XMPMetadata;
@@ -27,9 +31,13 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.Calendar;
@@ -42,6 +50,12 @@ import java.util.UUID;
 @Component
 public class PdfMetadataWriter implements MetadataWriter {
 
+    private final MeterRegistry meterRegistry;
+
+    public PdfMetadataWriter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     @Override
     public void writeMetadataToFile(File file, BookMetadataEntity metadataEntity, String thumbnailUrl, boolean restoreMode, MetadataClearFlags clear) {
         if (!file.exists() || !file.getName().toLowerCase().endsWith(".pdf")) {
@@ -49,6 +63,80 @@ public class PdfMetadataWriter implements MetadataWriter {
             return;
         }
 
+        try {
+            if (writeIncrementally(file, metadataEntity, restoreMode, clear)) {
+                return;
+            }
+        } catch (Exception e) {
+            log.info("Incremental update not possible for PDF {}, rewriting the whole file: {}", file.getName(), e.getMessage());
+        }
+        rewriteFully(file, metadataEntity, restoreMode, clear);
+    }
+
+    /**
+     * Appends an incremental update holding only the changed Info dictionary, catalog and XMP stream, leaving the
+     * original bytes untouched. PDFBox always copies the original file in front of the update, so that copy is
+     * discarded and only the tail is written. Returns {@code false} when the document has to be rewritten instead.
+     */
+    private boolean writeIncrementally(File file, BookMetadataEntity metadataEntity, boolean restoreMode, MetadataClearFlags clear) throws IOException {
+        Path filePath = file.toPath();
+        long originalLength = Files.size(filePath);
+        byte[] increment;
+
+        try (PDDocument pdf = Loader.loadPDF(new RandomAccessReadBufferedFile(file))) {
+            if (pdf.isEncrypted()) {
+                // Removing the encryption is only possible by rewriting every object.
+                return false;
+            }
+            PDDocumentCatalog catalog = pdf.getDocumentCatalog();
+            PDMetadata metadataBefore = catalog.getMetadata();
+
+            applyMetadataToDocument(pdf, metadataEntity, restoreMode, clear);
+
+            pdf.getDocument().getTrailer().setNeedToBeUpdated(true);
+            pdf.getDocumentInformation().getCOSObject().setNeedToBeUpdated(true);
+            PDMetadata metadataAfter = catalog.getMetadata();
+            if (metadataAfter != null && metadataAfter != metadataBefore) {
+                catalog.getCOSObject().setNeedToBeUpdated(true);
+                metadataAfter.getCOSObject().setNeedToBeUpdated(true);
+            }
+
+            IncrementCapture capture = new IncrementCapture(originalLength);
+            pdf.saveIncremental(capture);
+            increment = capture.increment();
+        }
+
+        appendIncrement(filePath, originalLength, increment);
+        recordBytesWritten("incremental", increment.length);
+        log.info("Embedded metadata into PDF {} incrementally, appended {} bytes to {} bytes", file.getName(), increment.length, originalLength);
+        return true;
+    }
+
+    private void appendIncrement(Path filePath, long originalLength, byte[] increment) throws IOException {
+        try (FileChannel channel = FileChannel.open(filePath, StandardOpenOption.WRITE)) {
+            appendIncrement(channel, originalLength, increment);
+        }
+    }
+
+    static void appendIncrement(FileChannel channel, long originalLength, byte[] increment) throws IOException {
+        if (channel.size() != originalLength) {
+            throw new IOException("PDF changed on disk while its metadata was being written");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(increment);
+            long position = originalLength;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            // Cut off a partially written update so the previous revision stays the last one.
+            channel.truncate(originalLength);
+            throw e;
+        }
+    }
+
+    private void rewriteFully(File file, BookMetadataEntity metadataEntity, boolean restoreMode, MetadataClearFlags clear) {
         Path filePath = file.toPath();
         Path backupPath = null;
         boolean backupCreated = false;
@@ -68,8 +156,10 @@ public class PdfMetadataWriter implements MetadataWriter {
             applyMetadataToDocument(pdf, metadataEntity, restoreMode, clear);
             tempFile = File.createTempFile("pdfmeta-", ".pdf");
             pdf.save(tempFile);
+            long written = tempFile.length();
             Files.move(tempFile.toPath(), filePath, StandardCopyOption.REPLACE_EXISTING);
-            log.info("Successfully embedded metadata into PDF: {}", file.getName());
+            recordBytesWritten("full", written);
+            log.info("Successfully embedded metadata into PDF: {} ({} bytes rewritten)", file.getName(), written);
         } catch (Exception e) {
             log.warn("Failed to write metadata to PDF {}: {}", file.getName(), e.getMessage(), e);
             if (backupCreated) {
@@ -94,6 +184,15 @@ public class PdfMetadataWriter implements MetadataWriter {
         }
     }
 
+    private void recordBytesWritten(String mode, long bytes) {
+        DistributionSummary.builder("booklore.metadata.pdf.write.bytes")
+                .description("Bytes written to disk per PDF metadata update")
+                .baseUnit("bytes")
+                .tag("mode", mode)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
     @Override
     public BookFileType getSupportedBookType() {
         return BookFileType.PDF;
@@ -278,4 +377,40 @@ public class PdfMetadataWriter implements MetadataWriter {
             return true;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Drops the copy of the original file PDFBox writes ahead of an incremental update and keeps the update itself.
+     */
+    private static final class IncrementCapture extends OutputStream {
+        private final long originalLength;
+        private final ByteArrayOutputStream increment = new ByteArrayOutputStream();
+        private long skipped;
+
+        private IncrementCapture(long originalLength) {
+            this.originalLength = originalLength;
+        }
+
+        @Override
+        public void write(int b) {
+            if (skipped < originalLength) {
+                skipped++;
+            } else {
+                increment.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            int skip = (int) Math.min(len, originalLength - skipped);
+            skipped += skip;
+            increment.write(b, off + skip, len - skip);
+        }
+
+        byte[] increment() throws IOException {
+            if (skipped != originalLength || increment.size() == 0) {
+                throw new IOException("Incremental save did not reproduce the original file");
+            }
+            return increment.toByteArray();
+        }
+    }
+}
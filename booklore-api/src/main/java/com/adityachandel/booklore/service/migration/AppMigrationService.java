@@ -114,6 +114,44 @@ public class AppMigrationService {
         ));
     }
 
+    /**
+     * Hashes the books whose hashes the V55 schema migration cleared because they were not 32 digit fingerprints.
+     */
+    @Transactional
+    public void rehashBooksWithoutHashOnce() {
+        if (migrationRepository.existsById("rehashBooksWithoutHashV55")) return;
+
+        List<BookEntity> books = bookRepository.findAllByCurrentHashIsNull();
+        int updated = 0;
+
+        for (BookEntity book : books) {
+            try {
+                Path path = book.getFullFilePath();
+                if (!Files.exists(path)) {
+                    log.warn("Skipping rehash for book ID {}, file not found at path: {}", book.getId(), path);
+                    continue;
+                }
+                String hash = FileFingerprint.generateHash(path);
+                if (book.getInitialHash() == null) {
+                    book.setInitialHash(hash);
+                }
+                book.setCurrentHash(hash);
+                updated++;
+            } catch (Exception e) {
+                log.error("Failed to rehash book ID {}", book.getId(), e);
+            }
+        }
+
+        bookRepository.saveAll(books);
+
+        log.info("Migration 'rehashBooksWithoutHashV55' rehashed {} of {} books without a hash.", updated, books.size());
+        migrationRepository.save(new AppMigrationEntity(
+                "rehashBooksWithoutHashV55",
+                LocalDateTime.now(),
+                "Recompute the file hashes cleared by the fixed width hash column migration"
+        ));
+    }
+
     @Transactional
     public void populateCoversAndResizeThumbnails() {
         if (migrationRepository.existsById("populateCoversAndResizeThumbnails")) return;
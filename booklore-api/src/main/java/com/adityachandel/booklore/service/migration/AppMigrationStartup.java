@@ -16,6 +16,7 @@ public class AppMigrationStartup {
         appMigrationService.populateMissingFileSizesOnce();
         appMigrationService.populateMetadataScoresOnce();
         appMigrationService.populateFileHashesOnce();
+        appMigrationService.rehashBooksWithoutHashOnce();
         appMigrationService.populateCoversAndResizeThumbnails();
     }
 }
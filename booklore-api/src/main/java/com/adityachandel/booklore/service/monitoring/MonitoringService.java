@@ -1,8 +1,14 @@
 package com.adityachandel.booklore.service.monitoring;
 
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.dto.Library;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
+import com.adityachandel.booklore.service.library.LibraryScanRoot;
 import com.adityachandel.booklore.service.watcher.LibraryFileEventProcessor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +20,7 @@ import java.io.IOException;
 import java.nio.file.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -24,6 +31,10 @@ public class MonitoringService {
     private final LibraryFileEventProcessor libraryFileEventProcessor;
     private final WatchService watchService;
     private final MonitoringTask monitoringTask;
+    private final OverflowResyncService overflowResyncService;
+    private final PollingMonitorService pollingMonitorService;
+    private final MeterRegistry meterRegistry;
+    private final int registrationThreads;
 
     private final BlockingQueue<FileChangeEvent> eventQueue = new LinkedBlockingQueue<>();
     private final ExecutorService singleThreadExecutor = Executors.newSingleThreadExecutor();
@@ -34,13 +45,38 @@ public class MonitoringService {
     private final Map<Path, WatchKey> registeredWatchKeys = new ConcurrentHashMap<>();
     private final Map<Long, List<Path>> libraryIdToPaths = new ConcurrentHashMap<>();
 
-    private int pauseCount = 0;
-    private final Object pauseLock = new Object();
+    private final Object registrationLock = new Object();
 
-    public MonitoringService(LibraryFileEventProcessor libraryFileEventProcessor, WatchService watchService, MonitoringTask monitoringTask) {
+    private volatile boolean initialRegistrationRunning = false;
+    private final AtomicInteger librariesPendingRegistration = new AtomicInteger();
+    private final AtomicInteger foldersRegisteredAtStartup = new AtomicInteger();
+    private volatile RegistrationSummary registrationSummary;
+
+    /**
+     * Outcome of one library's watch registration, split by phase so slow startups can be attributed.
+     */
+    public record LibraryRegistration(String libraryName, int folders, long walkMs, long registerMs) {
+    }
+
+    public record RegistrationSummary(int libraries, int folders, long totalMs, long walkMs, long registerMs, LibraryRegistration slowest) {
+    }
+
+    public MonitoringService(LibraryFileEventProcessor libraryFileEventProcessor, WatchService watchService, MonitoringTask monitoringTask, OverflowResyncService overflowResyncService,
+                             PollingMonitorService pollingMonitorService, AppProperties appProperties, MeterRegistry meterRegistry) {
         this.libraryFileEventProcessor = libraryFileEventProcessor;
         this.watchService = watchService;
         this.monitoringTask = monitoringTask;
+        this.overflowResyncService = overflowResyncService;
+        this.pollingMonitorService = pollingMonitorService;
+        this.meterRegistry = meterRegistry;
+        this.registrationThreads = Math.max(1, appProperties.getWatcher().getRegistrationThreads());
+
+        Gauge.builder("booklore.watcher.queued.events", eventQueue, BlockingQueue::size)
+                .description("Raw watch events waiting to be handed to the event processor")
+                .register(meterRegistry);
+        Gauge.builder("booklore.watcher.watched.folders", registeredWatchKeys, Map::size)
+                .description("Folders currently registered with the file watcher")
+                .register(meterRegistry);
     }
 
     @PostConstruct
@@ -60,91 +96,144 @@ public class MonitoringService {
         }
     }
 
-    public synchronized void pauseMonitoring() {
-        pauseCount++;
-        if (pauseCount == 1) {
-            int count = 0;
-            for (Path path : new HashSet<>(monitoredPaths)) {
-                unregisterPath(path, false);
-                count++;
-            }
-            log.info("Monitoring paused ({} paths unregistered, pauseCount={})", count, pauseCount);
-        } else {
-            log.info("Monitoring pause requested (pauseCount={})", pauseCount);
-        }
+    public void registerLibraries(List<Library> libraries) {
+        libraries.forEach(lib -> libraryWatchStatusMap.put(lib.getId(), lib.isWatch()));
+        libraries.stream().filter(Library::isWatch).forEach(this::registerLibrary);
+        log.info("Registered {} libraries for recursive monitoring", libraries.size());
     }
 
-    public synchronized void resumeMonitoring() {
-        if (pauseCount == 0) {
-            log.warn("resumeMonitoring() called but monitoring is not paused");
-            return;
-        }
-
-        pauseCount--;
-        if (pauseCount == 0) {
-            libraryIdToPaths.forEach((libraryId, rootPaths) -> {
-                for (Path rootPath : rootPaths) {
-                    if (Files.exists(rootPath)) {
-                        try (Stream<Path> stream = Files.walk(rootPath)) {
-                            stream.filter(Files::isDirectory).forEach(path -> {
-                                if (Files.exists(path)) {
-                                    registerPath(path, libraryId);
-                                }
-                            });
-                        } catch (IOException e) {
-                            log.warn("Failed to walk path during resume: {}", rootPath, e);
-                        }
-                    } else {
-                        log.debug("Skipping registration of non-existent path during resume: {}", rootPath);
+    /**
+     * Registers watched libraries in the background, several libraries at a time, so startup does not wait for every
+     * folder of every library to be walked. Events from folders that are already registered are queued and processed
+     * once the whole registration has finished.
+     */
+    public CompletableFuture<RegistrationSummary> registerLibrariesAsync(List<Library> libraries) {
+        libraries.forEach(lib -> libraryWatchStatusMap.put(lib.getId(), lib.isWatch()));
+        List<Library> watched = libraries.stream().filter(Library::isWatch).toList();
+
+        initialRegistrationRunning = true;
+        librariesPendingRegistration.set(watched.size());
+        foldersRegisteredAtStartup.set(0);
+        long start = System.nanoTime();
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(watched.size(), registrationThreads)),
+                Thread.ofPlatform().name("watcher-register-", 0).daemon().factory());
+        List<CompletableFuture<LibraryRegistration>> registrations = watched.stream()
+                .map(library -> CompletableFuture.supplyAsync(() -> registerLibraryTimed(library), executor)
+                        .whenComplete((result, error) -> {
+                            librariesPendingRegistration.decrementAndGet();
+                            if (error != null) {
+                                log.error("Failed to register library '{}' for monitoring", library.getName(), error);
+                            }
+                        }))
+                .toList();
+
+        return CompletableFuture.allOf(registrations.toArray(CompletableFuture[]::new))
+                .handle((ignored, error) -> {
+                    executor.shutdown();
+                    RegistrationSummary summary = summarize(registrations, System.nanoTime() - start);
+                    registrationSummary = summary;
+                    initialRegistrationRunning = false;
+                    synchronized (registrationLock) {
+                        registrationLock.notifyAll();
                     }
-                }
-            });
+                    log.info("Watcher registration finished in {} ms: {} libraries, {} folders, walking {} ms, registering {} ms (summed across libraries){}; {} events were queued meanwhile",
+                            summary.totalMs(), summary.libraries(), summary.folders(), summary.walkMs(), summary.registerMs(),
+                            summary.slowest() != null ? ", slowest '" + summary.slowest().libraryName() + "' at " + (summary.slowest().walkMs() + summary.slowest().registerMs()) + " ms" : "",
+                            eventQueue.size());
+                    return summary;
+                });
+    }
 
-            synchronized (pauseLock) {
-                pauseLock.notifyAll();
-            }
+    public boolean isInitialRegistrationRunning() {
+        return initialRegistrationRunning;
+    }
 
-            log.info("Monitoring resumed");
-        } else {
-            log.info("Monitoring resume requested (pauseCount={}), monitoring still paused", pauseCount);
-        }
+    public int getLibrariesPendingRegistration() {
+        return librariesPendingRegistration.get();
     }
 
-    public synchronized boolean isPaused() {
-        return pauseCount > 0;
+    public int getFoldersRegisteredAtStartup() {
+        return foldersRegisteredAtStartup.get();
     }
 
-    public void registerLibraries(List<Library> libraries) {
-        libraries.forEach(lib -> libraryWatchStatusMap.put(lib.getId(), lib.isWatch()));
-        libraries.stream().filter(Library::isWatch).forEach(this::registerLibrary);
-        log.info("Registered {} libraries for recursive monitoring", libraries.size());
+    public int getQueuedEventCount() {
+        return eventQueue.size();
+    }
+
+    public Optional<RegistrationSummary> getRegistrationSummary() {
+        return Optional.ofNullable(registrationSummary);
     }
 
     public void registerLibrary(Library library) {
+        registerLibraryTimed(library);
+    }
+
+    private LibraryRegistration registerLibraryTimed(Library library) {
         libraryWatchStatusMap.put(library.getId(), library.isWatch());
-        if (!library.isWatch()) return;
+        if (!library.isWatch()) return new LibraryRegistration(library.getName(), 0, 0, 0);
 
-        List<Path> registeredPaths = new ArrayList<>();
-        int[] registeredCount = {0};
+        if (library.getMonitorMode() == LibraryMonitorMode.POLL) {
+            pollingMonitorService.registerLibrary(library);
+            return new LibraryRegistration(library.getName(), 0, 0, 0);
+        }
 
+        long walkStart = System.nanoTime();
+        List<Path> directories = new ArrayList<>();
         library.getPaths().forEach(libraryPath -> {
             Path rootPath = Paths.get(libraryPath.getPath());
             if (Files.isDirectory(rootPath)) {
                 try (Stream<Path> pathStream = Files.walk(rootPath)) {
-                    pathStream.filter(Files::isDirectory).forEach(path -> {
-                        if (registerPath(path, library.getId())) {
-                            registeredCount[0]++;
-                            registeredPaths.add(path);
-                        }
-                    });
+                    pathStream.filter(Files::isDirectory).forEach(directories::add);
                 } catch (IOException e) {
                     log.error("Failed to register paths for library '{}': {}", library.getName(), e.getMessage(), e);
                 }
             }
         });
+        long walkNanos = System.nanoTime() - walkStart;
+
+        long registerStart = System.nanoTime();
+        List<Path> registeredPaths = new ArrayList<>();
+        for (Path path : directories) {
+            if (registerPath(path, library.getId())) {
+                registeredPaths.add(path);
+            }
+        }
+        long registerNanos = System.nanoTime() - registerStart;
 
         libraryIdToPaths.put(library.getId(), registeredPaths);
-        log.info("Registered {} folders for library '{}'", registeredCount[0], library.getName());
+        foldersRegisteredAtStartup.addAndGet(registeredPaths.size());
+        recordPhase("walk", walkNanos);
+        recordPhase("register", registerNanos);
+
+        LibraryRegistration registration = new LibraryRegistration(library.getName(), registeredPaths.size(),
+                TimeUnit.NANOSECONDS.toMillis(walkNanos), TimeUnit.NANOSECONDS.toMillis(registerNanos));
+        log.info("Registered {} folders for library '{}' (walk {} ms, register {} ms)",
+                registration.folders(), library.getName(), registration.walkMs(), registration.registerMs());
+        return registration;
+    }
+
+    private RegistrationSummary summarize(List<CompletableFuture<LibraryRegistration>> registrations, long totalNanos) {
+        List<LibraryRegistration> completed = registrations.stream()
+                .filter(future -> !future.isCompletedExceptionally())
+                .map(CompletableFuture::join)
+                .toList();
+        recordPhase("total", totalNanos);
+        return new RegistrationSummary(
+                completed.size(),
+                completed.stream().mapToInt(LibraryRegistration::folders).sum(),
+                TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                completed.stream().mapToLong(LibraryRegistration::walkMs).sum(),
+                completed.stream().mapToLong(LibraryRegistration::registerMs).sum(),
+                completed.stream().max(Comparator.comparingLong(r -> r.walkMs() + r.registerMs())).orElse(null));
+    }
+
+    private void recordPhase(String phase, long nanos) {
+        Timer.builder("booklore.watcher.registration")
+                .description("Time spent registering library folders with the file watcher")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .record(nanos, TimeUnit.NANOSECONDS);
     }
 
     public void unregisterLibrary(Long libraryId) {
@@ -157,6 +246,7 @@ public class MonitoringService {
             unregisterPath(path);
         }
 
+        pollingMonitorService.unregisterLibrary(libraryId);
         libraryWatchStatusMap.put(libraryId, false);
         libraryIdToPaths.remove(libraryId);
         log.info("Unregistered library {} from monitoring", libraryId);
@@ -211,6 +301,13 @@ public class MonitoringService {
         Path fullPath = event.getFilePath();
         WatchEvent.Kind<?> kind = event.getEventKind();
 
+        if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+            // Forwarded so the event pipeline can hold back a file that is still being written.
+            if (isRelevantBookFile(fullPath) && !eventQueue.offer(event)) {
+                log.warn("Event queue full, dropping: {}", fullPath);
+            }
+            return;
+        }
         if (kind != StandardWatchEventKinds.ENTRY_CREATE && kind != StandardWatchEventKinds.ENTRY_DELETE) return;
 
         boolean isDir = kind == StandardWatchEventKinds.ENTRY_CREATE
@@ -253,18 +350,47 @@ public class MonitoringService {
         }
     }
 
+    @EventListener
+    public void handleWatchOverflow(WatchOverflowEvent event) {
+        Path folder = event.getWatchedFolder();
+        Long libraryId = pathToLibraryIdMap.get(folder);
+        if (libraryId == null) {
+            log.debug("Ignoring overflow for unmonitored folder: {}", folder);
+            return;
+        }
+
+        // Each folder has its own watch key, so only this folder's entries were lost. Subfolders that are already
+        // watched report their own overflow (on Linux a full queue overflows every key); subfolders we are not
+        // watching yet were created unseen and are taken whole. The resync service merges the requests per library.
+        List<LibraryScanRoot> roots = new ArrayList<>();
+        roots.add(LibraryScanRoot.filesOnly(folder));
+        if (Files.isDirectory(folder)) {
+            try (Stream<Path> children = Files.list(folder)) {
+                for (Path child : children.filter(Files::isDirectory).filter(path -> !monitoredPaths.contains(path)).toList()) {
+                    try (Stream<Path> nested = Files.walk(child)) {
+                        nested.filter(Files::isDirectory).forEach(path -> registerPath(path, libraryId));
+                    }
+                    roots.add(LibraryScanRoot.recursive(child));
+                }
+            } catch (IOException e) {
+                log.warn("Failed to register new folders after overflow: {}", folder, e);
+            }
+        }
+        overflowResyncService.scheduleLibraryResync(libraryId, roots);
+    }
+
     private void startProcessingThread() {
         log.info("Starting file change processor...");
         singleThreadExecutor.submit(() -> {
             while (!Thread.currentThread().isInterrupted()) {
                 try {
-                    synchronized (pauseLock) {
-                        while (isPaused()) {
-                            pauseLock.wait();
+                    FileChangeEvent event = eventQueue.take();
+                    // Hold events while startup registration is still running.
+                    synchronized (registrationLock) {
+                        while (initialRegistrationRunning) {
+                            registrationLock.wait();
                         }
                     }
-
-                    FileChangeEvent event = eventQueue.take();
                     processFileChangeEvent(event);
 
                 } catch (InterruptedException e) {
@@ -0,0 +1,134 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.service.library.LibraryProcessingService;
+import com.adityachandel.booklore.service.library.LibraryScanRoot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recovers from watch queue overflows by re-synchronizing only the folders whose events were lost.
+ * <p>
+ * Requests are debounced per library, so a burst of overflows during one bulk copy results in a single resync of
+ * every affected folder once the copy has settled. A burst that never settles is still resynced once the first
+ * request has waited {@code overflowResyncMaxWaitMs}. Resyncs run one at a time on a dedicated thread so an overflow
+ * storm cannot starve the rest of the application.
+ */
+@Slf4j
+@Service
+public class OverflowResyncService {
+
+    private final LibraryProcessingService libraryProcessingService;
+    private final MeterRegistry meterRegistry;
+    private final long debounceMs;
+    private final long maxWaitMs;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("watcher-overflow-resync").daemon().factory());
+    private final Map<String, PendingResync> pending = new HashMap<>();
+
+    public OverflowResyncService(LibraryProcessingService libraryProcessingService, AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.libraryProcessingService = libraryProcessingService;
+        this.meterRegistry = meterRegistry;
+        this.debounceMs = appProperties.getWatcher().getOverflowResyncDelayMs();
+        this.maxWaitMs = Math.max(debounceMs, appProperties.getWatcher().getOverflowResyncMaxWaitMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules a rescan of the given parts of a library, merged with any other parts still waiting for that library.
+     */
+    public void scheduleLibraryResync(long libraryId, Collection<LibraryScanRoot> roots) {
+        schedule("library", "library:" + libraryId, roots, scope -> libraryProcessingService.rescanLibrarySubtrees(libraryId, scope));
+    }
+
+    public void scheduleBookdropResync(Path bookdrop, Runnable rescan) {
+        schedule("bookdrop", "bookdrop:" + bookdrop, List.of(LibraryScanRoot.recursive(bookdrop)), scope -> rescan.run());
+    }
+
+    private synchronized void schedule(String source, String key, Collection<LibraryScanRoot> roots, ResyncAction action) {
+        Counter.builder("booklore.watcher.overflow")
+                .description("Watch queue overflows that dropped file events")
+                .tag("source", source)
+                .register(meterRegistry)
+                .increment();
+
+        PendingResync resync = pending.get(key);
+        if (resync == null || !resync.future.cancel(false)) {
+            // Nothing waiting, or the previous resync already started and cannot see these changes.
+            resync = new PendingResync(source, key, action, System.nanoTime());
+            pending.put(key, resync);
+        }
+        resync.roots.addAll(roots);
+
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - resync.firstRequested);
+        long delayMs = Math.max(0, Math.min(debounceMs, maxWaitMs - waitedMs));
+        PendingResync scheduled = resync;
+        resync.future = executor.schedule(() -> run(scheduled), delayMs, TimeUnit.MILLISECONDS);
+        log.warn("Watch events lost for {} under {}, resync scheduled in {} ms", roots.stream().map(LibraryScanRoot::path).toList(), key, delayMs);
+    }
+
+    private void run(PendingResync resync) {
+        List<LibraryScanRoot> roots;
+        synchronized (this) {
+            pending.remove(resync.key, resync);
+            roots = LibraryScanRoot.withoutOverlaps(resync.roots);
+        }
+        long start = System.nanoTime();
+        String outcome = "success";
+        try {
+            resync.action.run(roots);
+            log.info("Resynced {} folders of {} after watch overflow in {} ms", roots.size(), resync.key, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            outcome = "failure";
+            log.error("Resync of {} after watch overflow failed", resync.key, e);
+        }
+        Counter.builder("booklore.watcher.overflow.resync")
+                .description("Folder resyncs triggered by watch queue overflows")
+                .tag("source", resync.source)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    @FunctionalInterface
+    private interface ResyncAction {
+        void run(List<LibraryScanRoot> roots) throws Exception;
+    }
+
+    private static final class PendingResync {
+
+        private final String source;
+        private final String key;
+        private final ResyncAction action;
+        private final long firstRequested;
+        private final Set<LibraryScanRoot> roots = new LinkedHashSet<>();
+        private ScheduledFuture<?> future;
+
+        private PendingResync(String source, String key, ResyncAction action, long firstRequested) {
+            this.source = source;
+            this.key = key;
+            this.action = action;
+            this.firstRequested = firstRequested;
+        }
+    }
+}
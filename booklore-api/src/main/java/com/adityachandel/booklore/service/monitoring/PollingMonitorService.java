@@ -0,0 +1,409 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.Library;
+import com.adityachandel.booklore.model.enums.BookFileExtension;
+import com.adityachandel.booklore.service.watcher.LibraryFileEventProcessor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Change detection for libraries on file systems that never deliver watch events (NFS, SMB, FUSE mounts).
+ * <p>
+ * Each library keeps a snapshot of its directories with their modification time and the book files and
+ * subdirectories they contain. A poll stats every known directory once and only lists the ones whose mtime moved,
+ * so an unchanged library costs one stat per directory. Differences are fed to {@link LibraryFileEventProcessor} as
+ * regular create/delete events. New files are reported once their size and mtime held still for one poll, so a
+ * copy in progress is not imported half-written. Changes on paths BookLore itself was changing since the previous
+ * listing, as declared to {@link WatchSuppressionService}, are taken into the snapshot without being reported.
+ * <p>
+ * Only the presence of files is tracked. A book rewritten in place under the same name is not reported, whatever
+ * its new size or mtime, just as the native watcher ignores modify events and cancels out the delete and create of a
+ * replace. Detecting changed content would mean fingerprinting every file on every poll, which is what polling is
+ * meant to avoid on slow shares.
+ * <p>
+ * The poll interval doubles after every poll without changes, up to {@code app.watcher.poll-max-interval-ms}, and
+ * drops back to {@code app.watcher.poll-interval-ms} as soon as something changes. Every delay is jittered so many
+ * libraries on the same server do not poll in lockstep.
+ */
+@Slf4j
+@Service
+public class PollingMonitorService {
+
+    // Directory mtimes on network shares can be as coarse as 2 seconds; a change inside that window after a
+    // listing may leave the mtime untouched, so such directories are listed again on the next poll.
+    private static final long MTIME_GRANULARITY_MS = 2000L;
+
+    private final LibraryFileEventProcessor libraryFileEventProcessor;
+    private final WatchSuppressionService watchSuppressionService;
+    private final AppProperties.Watcher settings;
+    private final Timer pollDuration;
+    private final Counter directoriesListed;
+    private final Counter changesDetected;
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+            Thread.ofPlatform().name("watcher-poll-", 0).daemon().factory());
+    private final Map<Long, LibraryPoller> pollers = new ConcurrentHashMap<>();
+
+    public PollingMonitorService(LibraryFileEventProcessor libraryFileEventProcessor, WatchSuppressionService watchSuppressionService,
+                                 AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.libraryFileEventProcessor = libraryFileEventProcessor;
+        this.watchSuppressionService = watchSuppressionService;
+        this.settings = appProperties.getWatcher();
+        this.pollDuration = Timer.builder("booklore.watcher.poll.duration")
+                .description("Time spent on a single library poll")
+                .register(meterRegistry);
+        this.directoriesListed = Counter.builder("booklore.watcher.poll.directories.listed")
+                .description("Directories re-listed because their mtime changed")
+                .register(meterRegistry);
+        this.changesDetected = Counter.builder("booklore.watcher.poll.changes")
+                .description("File events produced by polling")
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public void registerLibrary(Library library) {
+        track(library, true).schedule(0);
+        log.info("Polling {} path(s) of library '{}'", library.getPaths().size(), library.getName());
+    }
+
+    /**
+     * Tracks a library without scheduling any polls; they are run with {@link #pollNow(Long)}.
+     */
+    void trackLibrary(Library library) {
+        track(library, false);
+    }
+
+    void pollNow(Long libraryId) {
+        LibraryPoller poller = pollers.get(libraryId);
+        if (poller != null) {
+            poller.poll();
+        }
+    }
+
+    private LibraryPoller track(Library library, boolean scheduled) {
+        List<Path> roots = library.getPaths().stream()
+                .map(p -> Paths.get(p.getPath()).toAbsolutePath().normalize())
+                .toList();
+        LibraryPoller poller = new LibraryPoller(library.getId(), roots, scheduled);
+        LibraryPoller previous = pollers.put(library.getId(), poller);
+        if (previous != null) {
+            previous.cancel();
+        }
+        return poller;
+    }
+
+    public void unregisterLibrary(Long libraryId) {
+        LibraryPoller poller = pollers.remove(libraryId);
+        if (poller != null) {
+            poller.cancel();
+            log.info("Stopped polling library {}", libraryId);
+        }
+    }
+
+    public boolean isPolled(Long libraryId) {
+        return pollers.containsKey(libraryId);
+    }
+
+    private long jitter(long intervalMs) {
+        double jitter = Math.max(0, Math.min(1, settings.getPollJitter()));
+        double factor = 1 + (ThreadLocalRandom.current().nextDouble() * 2 - 1) * jitter;
+        return Math.max(1000L, (long) (intervalMs * factor));
+    }
+
+    private static boolean isBookFile(Path path) {
+        return BookFileExtension.fromFileName(path.getFileName().toString()).isPresent();
+    }
+
+    private record DirectorySnapshot(long mtime, long listedAt, Map<String, FileStamp> files, Set<String> directories) {
+    }
+
+    private record FileStamp(long size, long mtime) {
+    }
+
+    private final class LibraryPoller {
+
+        private final long libraryId;
+        private final List<Path> roots;
+        private final boolean scheduled;
+        private final Map<Path, DirectorySnapshot> snapshots = new HashMap<>();
+        private final Map<Path, FileStamp> unsettledFiles = new HashMap<>();
+        // New files that disappeared before they settled, during the current poll; they were never reported.
+        private final Set<Path> vanishedUnsettled = new HashSet<>();
+        private long intervalMs = settings.getPollIntervalMs();
+        private boolean baselined;
+        private volatile boolean cancelled;
+        private volatile ScheduledFuture<?> next;
+
+        private LibraryPoller(long libraryId, List<Path> roots, boolean scheduled) {
+            this.libraryId = libraryId;
+            this.roots = roots;
+            this.scheduled = scheduled;
+        }
+
+        void schedule(long delayMs) {
+            if (scheduled && !cancelled) {
+                next = scheduler.schedule(this::poll, delayMs, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> future = next;
+            if (future != null) future.cancel(false);
+        }
+
+        private synchronized void poll() {
+            if (cancelled) return;
+            boolean changed = false;
+            Timer.Sample sample = Timer.start();
+            try {
+                if (!baselined) {
+                    snapshots.clear();
+                    unsettledFiles.clear();
+                    for (Path root : roots) {
+                        snapshotTree(root, null);
+                    }
+                    baselined = true;
+                    log.debug("Baseline of library {} has {} directories", libraryId, snapshots.size());
+                } else {
+                    changed = pollChanges();
+                }
+            } catch (Exception e) {
+                log.warn("Polling library {} failed: {}", libraryId, e.getMessage());
+            } finally {
+                sample.stop(pollDuration);
+            }
+
+            if (changed || !unsettledFiles.isEmpty()) {
+                intervalMs = settings.getPollIntervalMs();
+            } else {
+                intervalMs = Math.min(settings.getPollMaxIntervalMs(), intervalMs * 2);
+            }
+            schedule(jitter(intervalMs));
+        }
+
+        private boolean pollChanges() {
+            long pollStart = System.currentTimeMillis();
+            vanishedUnsettled.clear();
+            boolean changed = reportSettledFiles();
+
+            for (Path directory : new ArrayList<>(snapshots.keySet())) {
+                DirectorySnapshot snapshot = snapshots.get(directory);
+                if (snapshot == null) continue; // removed as part of a parent directory earlier in this poll
+
+                long mtime = lastModified(directory);
+                if (mtime < 0) {
+                    // Let the parent listing report the removal; only a vanished root is handled here.
+                    if (roots.contains(directory)) {
+                        changed |= removeTree(directory, snapshot.listedAt());
+                    }
+                    continue;
+                }
+                boolean racy = snapshot.listedAt() - snapshot.mtime() < MTIME_GRANULARITY_MS;
+                if (mtime != snapshot.mtime() || racy) {
+                    changed |= relist(directory, snapshot, mtime, pollStart);
+                }
+            }
+            return changed;
+        }
+
+        private boolean relist(Path directory, DirectorySnapshot previous, long mtime, long listedAt) {
+            directoriesListed.increment();
+            Map<String, FileStamp> files = new HashMap<>();
+            Set<String> directories = new HashSet<>();
+            if (!list(directory, files, directories)) {
+                return false;
+            }
+            snapshots.put(directory, new DirectorySnapshot(mtime, listedAt, files, directories));
+
+            long since = previous.listedAt();
+            boolean changed = false;
+            for (String name : directories) {
+                if (!previous.directories().contains(name)) {
+                    Map<Path, FileStamp> newFiles = new HashMap<>();
+                    snapshotTree(directory.resolve(name), newFiles);
+                    newFiles.forEach((path, stamp) -> {
+                        if (!watchSuppressionService.wasSuppressedSince(path, since)) {
+                            unsettledFiles.put(path, stamp);
+                        }
+                    });
+                    changed = true;
+                }
+            }
+            for (String name : previous.directories()) {
+                if (!directories.contains(name)) {
+                    changed |= removeTree(directory.resolve(name), since);
+                }
+            }
+            for (Map.Entry<String, FileStamp> file : files.entrySet()) {
+                Path path = directory.resolve(file.getKey());
+                if (!previous.files().containsKey(file.getKey()) && !watchSuppressionService.wasSuppressedSince(path, since)) {
+                    unsettledFiles.put(path, file.getValue());
+                    changed = true;
+                }
+            }
+            for (String name : previous.files().keySet()) {
+                if (!files.containsKey(name)) {
+                    Path path = directory.resolve(name);
+                    if (wasReported(path) && !watchSuppressionService.wasSuppressedSince(path, since)) {
+                        emit(StandardWatchEventKinds.ENTRY_DELETE, directory, path);
+                    }
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+
+        /**
+         * Reports new files whose size and mtime did not change since the previous poll.
+         */
+        private boolean reportSettledFiles() {
+            boolean reported = false;
+            Iterator<Map.Entry<Path, FileStamp>> iterator = unsettledFiles.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, FileStamp> entry = iterator.next();
+                Path path = entry.getKey();
+                FileStamp current = stamp(path);
+                if (current == null) {
+                    iterator.remove();
+                    vanishedUnsettled.add(path);
+                } else if (current.equals(entry.getValue())) {
+                    iterator.remove();
+                    emit(StandardWatchEventKinds.ENTRY_CREATE, path.getParent(), path);
+                    reported = true;
+                } else {
+                    entry.setValue(current);
+                }
+            }
+            return reported;
+        }
+
+        /**
+         * Records a directory tree. When {@code newFiles} is given the tree is new to us and its book files are queued
+         * to be reported; otherwise this is a silent baseline.
+         */
+        private void snapshotTree(Path root, Map<Path, FileStamp> newFiles) {
+            if (!Files.isDirectory(root)) return;
+            try {
+                Files.walkFileTree(root, new SimpleFileVisitor<>() {
+                    @Override
+                    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                        Map<String, FileStamp> files = new HashMap<>();
+                        Set<String> directories = new HashSet<>();
+                        if (list(dir, files, directories)) {
+                            snapshots.put(dir, new DirectorySnapshot(attrs.lastModifiedTime().toMillis(), System.currentTimeMillis(), files, directories));
+                            if (newFiles != null) {
+                                files.forEach((name, stamp) -> newFiles.put(dir.resolve(name), stamp));
+                            }
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    @Override
+                    public FileVisitResult visitFileFailed(Path file, IOException e) {
+                        log.debug("Cannot read '{}' while polling: {}", file, e.getMessage());
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
+            } catch (IOException e) {
+                log.warn("Failed to snapshot '{}': {}", root, e.getMessage());
+            }
+        }
+
+        /**
+         * Forgets a removed directory tree and reports every book file we knew in it as deleted, except those BookLore
+         * moved or removed itself since {@code since}.
+         */
+        private boolean removeTree(Path root, long since) {
+            boolean removed = false;
+            Iterator<Map.Entry<Path, DirectorySnapshot>> iterator = snapshots.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<Path, DirectorySnapshot> entry = iterator.next();
+                Path directory = entry.getKey();
+                if (!directory.startsWith(root)) continue;
+                for (String name : entry.getValue().files().keySet()) {
+                    Path path = directory.resolve(name);
+                    if (wasReported(path) && !watchSuppressionService.wasSuppressedSince(path, since)) {
+                        emit(StandardWatchEventKinds.ENTRY_DELETE, directory, path);
+                    }
+                }
+                iterator.remove();
+                removed = true;
+            }
+            return removed;
+        }
+
+        /**
+         * Whether a file that is gone now was known beyond this poller, from the baseline or a reported create. Files
+         * that were still settling are forgotten instead.
+         */
+        private boolean wasReported(Path path) {
+            return unsettledFiles.remove(path) == null && !vanishedUnsettled.contains(path);
+        }
+
+        private boolean list(Path directory, Map<String, FileStamp> files, Set<String> directories) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+                for (Path child : stream) {
+                    BasicFileAttributes attrs;
+                    try {
+                        attrs = Files.readAttributes(child, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    String name = child.getFileName().toString();
+                    if (attrs.isDirectory()) {
+                        directories.add(name);
+                    } else if (attrs.isRegularFile() && isBookFile(child)) {
+                        files.put(name, new FileStamp(attrs.size(), attrs.lastModifiedTime().toMillis()));
+                    }
+                }
+                return true;
+            } catch (IOException e) {
+                log.debug("Cannot list '{}' while polling: {}", directory, e.getMessage());
+                return false;
+            }
+        }
+
+        private long lastModified(Path directory) {
+            try {
+                return Files.getLastModifiedTime(directory).toMillis();
+            } catch (IOException e) {
+                return -1L;
+            }
+        }
+
+        private FileStamp stamp(Path file) {
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(attrs.size(), attrs.lastModifiedTime().toMillis());
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private void emit(WatchEvent.Kind<?> kind, Path directory, Path path) {
+            changesDetected.increment();
+            libraryFileEventProcessor.processFile(kind, libraryId, directory.toString(), path.toString());
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Keeps the file watcher from reacting to changes BookLore makes itself, without touching any watch registration.
+ * <p>
+ * An upload, move or import opens a {@link Suppression} and declares the files it is about to write or remove.
+ * Watch events for those paths, or anything below them, are dropped while the suppression is open and for
+ * {@code app.watcher.suppression-window-ms} after it is closed, since the kernel may deliver them late. Polled
+ * libraries only notice a change on their next poll, which can be minutes later, so a poll that sees a change on a
+ * declared path that was suppressed at any point since the directory was last listed treats it as already handled.
+ */
+@Slf4j
+@Service
+public class WatchSuppressionService {
+
+    private final long windowMs;
+    private final long retentionMs;
+    private final Set<Suppression> active = ConcurrentHashMap.newKeySet();
+    private final Deque<Released> released = new ConcurrentLinkedDeque<>();
+    private final Counter watchEventsSuppressed;
+    private final Counter pollChangesSuppressed;
+
+    public WatchSuppressionService(AppProperties appProperties, MeterRegistry meterRegistry) {
+        AppProperties.Watcher settings = appProperties.getWatcher();
+        this.windowMs = Math.max(0, settings.getSuppressionWindowMs());
+        // Long enough for every polled library to have listed its directories again at the longest interval.
+        this.retentionMs = Math.max(windowMs, settings.getPollMaxIntervalMs() * 2);
+
+        Gauge.builder("booklore.watcher.suppressions.active", active, Set::size)
+                .description("Open suppressions of watcher events for paths BookLore is changing")
+                .register(meterRegistry);
+        this.watchEventsSuppressed = Counter.builder("booklore.watcher.suppressed")
+                .description("File changes ignored because BookLore made them")
+                .tag("source", "watch")
+                .register(meterRegistry);
+        this.pollChangesSuppressed = Counter.builder("booklore.watcher.suppressed")
+                .description("File changes ignored because BookLore made them")
+                .tag("source", "poll")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens a suppression for the given paths. More paths can be added while it is open; close it once the files are
+     * in place and the database reflects them.
+     */
+    public Suppression suppress(String reason, Path... paths) {
+        Suppression suppression = new Suppression(reason);
+        for (Path path : paths) {
+            suppression.add(path);
+        }
+        active.add(suppression);
+        return suppression;
+    }
+
+    /**
+     * @return whether a watch event for the path should be dropped
+     */
+    public boolean isSuppressed(Path path) {
+        Path normalized = normalize(path);
+        long releasedAfter = System.currentTimeMillis() - windowMs;
+        if (matches(normalized, releasedAfter)) {
+            watchEventsSuppressed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param sinceMillis when the poller last saw the path's directory unchanged
+     * @return whether a change a poll found on the path was made by a suppressed operation since then
+     */
+    public boolean wasSuppressedSince(Path path, long sinceMillis) {
+        if (matches(normalize(path), sinceMillis)) {
+            pollChangesSuppressed.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean matches(Path path, long releasedAfter) {
+        for (Suppression suppression : active) {
+            if (covers(suppression.paths, path)) {
+                return true;
+            }
+        }
+        prune();
+        for (Released entry : released) {
+            if (entry.releasedAt() >= releasedAfter && covers(entry.paths(), path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean covers(Collection<Path> declared, Path path) {
+        for (Path candidate : declared) {
+            if (path.startsWith(candidate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void prune() {
+        long cutoff = System.currentTimeMillis() - retentionMs;
+        Released oldest;
+        while ((oldest = released.peekFirst()) != null && oldest.releasedAt() < cutoff) {
+            released.remove(oldest);
+        }
+    }
+
+    private static Path normalize(Path path) {
+        return path.toAbsolutePath().normalize();
+    }
+
+    private record Released(Set<Path> paths, long releasedAt) {
+    }
+
+    public final class Suppression implements AutoCloseable {
+
+        private final String reason;
+        private final Set<Path> paths = ConcurrentHashMap.newKeySet();
+        private volatile boolean closed;
+
+        private Suppression(String reason) {
+            this.reason = reason;
+        }
+
+        public Suppression add(Path path) {
+            if (path != null) {
+                paths.add(normalize(path));
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Published as released before it leaves the active set, so there is no moment it is in neither.
+            released.addLast(new Released(Set.copyOf(paths), System.currentTimeMillis()));
+            active.remove(this);
+            prune();
+            log.debug("Released watcher suppression for {} ({} paths)", reason, paths.size());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/**
+ * Exposes the progress of the background watch registration that runs after startup as the {@code watcher} health
+ * component. While libraries are still being registered the component reports {@code REGISTERING}, which is served
+ * with HTTP 200 so the application stays live, but tells operators that file changes are only being queued.
+ */
+@Component
+@RequiredArgsConstructor
+public class WatcherHealthIndicator implements HealthIndicator {
+
+    static final Status REGISTERING = new Status("REGISTERING", "Library folders are still being registered with the file watcher");
+
+    private final MonitoringService monitoringService;
+
+    @Override
+    public Health health() {
+        if (monitoringService.isInitialRegistrationRunning()) {
+            return Health.status(REGISTERING)
+                    .withDetail("librariesPending", monitoringService.getLibrariesPendingRegistration())
+                    .withDetail("foldersRegistered", monitoringService.getFoldersRegisteredAtStartup())
+                    .withDetail("queuedEvents", monitoringService.getQueuedEventCount())
+                    .build();
+        }
+
+        Health.Builder builder = Health.up().withDetail("queuedEvents", monitoringService.getQueuedEventCount());
+        monitoringService.getRegistrationSummary().ifPresent(summary -> builder
+                .withDetail("libraries", summary.libraries())
+                .withDetail("folders", summary.folders())
+                .withDetail("registrationMs", summary.totalMs())
+                .withDetail("walkMs", summary.walkMs())
+                .withDetail("registerMs", summary.registerMs()));
+        return builder.build();
+    }
+}
@@ -5,14 +5,21 @@ import com.adityachandel.booklore.config.security.userdetails.OpdsUserDetails;
 import com.adityachandel.booklore.mapper.custom.BookLoreUserTransformer;
 import com.adityachandel.booklore.model.dto.*;
 import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
+import com.adityachandel.booklore.model.entity.MagicShelfEntity;
 import com.adityachandel.booklore.repository.UserRepository;
 import com.adityachandel.booklore.service.BookQueryService;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Set;
@@ -27,33 +34,94 @@ public class OpdsService {
     private final AuthenticationService authenticationService;
     private final UserRepository userRepository;
     private final BookLoreUserTransformer bookLoreUserTransformer;
+    private final OpdsV2FeedWriter opdsV2FeedWriter;
+    private final MagicShelfBookService magicShelfBookService;
 
     public String generateCatalogFeed(HttpServletRequest request) {
-        List<Book> books = getAllowedBooks(null);
+        return generateCatalogFeed(request, null);
+    }
+
+    public String generateCatalogFeed(HttpServletRequest request, Long magicShelfId) {
         String feedVersion = extractVersionFromAcceptHeader(request);
         return switch (feedVersion) {
-            case "2.0" -> generateOpdsV2Feed(books);
-            default -> generateOpdsV1Feed(books, request);
+            case "2.0" -> generateOpdsV2Feed(request, null, null, magicShelfId, 1, OpdsV2FeedWriter.DEFAULT_PAGE_SIZE);
+            default -> magicShelfId != null
+                    ? generateOpdsV1Feed(getMagicShelfBooks(magicShelfId), List.of(), request)
+                    : generateOpdsV1Feed(getAllowedBooks(null), getMagicShelves(), request);
         };
     }
 
     public String generateSearchResults(HttpServletRequest request, String queryParam) {
-        List<Book> books = getAllowedBooks(queryParam);
         String feedVersion = extractVersionFromAcceptHeader(request);
         return switch (feedVersion) {
-            case "2.0" -> generateOpdsV2Feed(books);
-            default -> generateOpdsV1Feed(books, request);
+            case "2.0" -> generateOpdsV2Feed(request, queryParam, null, null, 1, OpdsV2FeedWriter.DEFAULT_PAGE_SIZE);
+            default -> generateOpdsV1Feed(getAllowedBooks(queryParam), List.of(), request);
         };
     }
 
+    public boolean isOpdsV2Request(HttpServletRequest request) {
+        return "2.0".equals(extractVersionFromAcceptHeader(request));
+    }
+
+    public StreamingResponseBody streamOpdsV2Feed(HttpServletRequest request, String queryParam, Long libraryId, Long magicShelfId, int page, int size) {
+        // Resolve permissions on the request thread; the body itself is written asynchronously.
+        Set<Long> allowedLibraryIds = resolveAllowedLibraryIds();
+        Long userId = resolveOpdsUserId();
+        if (magicShelfId != null && userId == null) {
+            throw new AccessDeniedException("Magic shelves require a user-linked OPDS account");
+        }
+        OpdsV2FeedRequest feedRequest = new OpdsV2FeedRequest(
+                "/api/" + extractVersionFromRequest(request) + "/opds/",
+                queryParam != null && !queryParam.isBlank() ? queryParam.trim() : null,
+                libraryId,
+                magicShelfId,
+                userId,
+                allowedLibraryIds,
+                page,
+                size);
+        return outputStream -> opdsV2FeedWriter.writeFeed(feedRequest, outputStream);
+    }
+
     private List<Book> getAllowedBooks(String queryParam) {
+        Set<Long> libraryIds = resolveAllowedLibraryIds();
+        if (libraryIds == null) {
+            return (queryParam != null)
+                    ? bookQueryService.searchBooksByMetadata(queryParam)
+                    : bookQueryService.getAllBooks(true);
+        }
+        return (queryParam != null)
+                ? bookQueryService.searchBooksByMetadataInLibraries(queryParam, libraryIds)
+                : bookQueryService.getAllBooksByLibraryIds(libraryIds, true);
+    }
+
+    private List<Book> getMagicShelfBooks(Long magicShelfId) {
+        resolveAllowedLibraryIds();
+        Long userId = resolveOpdsUserId();
+        if (userId == null) {
+            throw new AccessDeniedException("Magic shelves require a user-linked OPDS account");
+        }
+        return bookQueryService.getBooksByIdsInOrder(magicShelfBookService.getAllBookIds(magicShelfId, userId));
+    }
+
+    private List<MagicShelfEntity> getMagicShelves() {
+        Long userId = resolveOpdsUserId();
+        return userId != null ? magicShelfBookService.getShelvesForUser(userId) : List.of();
+    }
+
+    private Long resolveOpdsUserId() {
+        OpdsUserV2 opdsUserV2 = authenticationService.getOpdsUser().getOpdsUserV2();
+        return opdsUserV2 != null ? opdsUserV2.getUserId() : null;
+    }
+
+    /**
+     * @return the library ids visible to the current OPDS user, or {@code null} when the user may see every library
+     */
+    private Set<Long> resolveAllowedLibraryIds() {
         OpdsUserDetails opdsUserDetails = authenticationService.getOpdsUser();
         OpdsUser opdsUser = opdsUserDetails.getOpdsUser();
 
         if (opdsUser != null) {
-            return (queryParam != null)
-                    ? bookQueryService.searchBooksByMetadata(queryParam)
-                    : bookQueryService.getAllBooks(true);
+            return null;
         }
 
         OpdsUserV2 opdsUserV2 = opdsUserDetails.getOpdsUserV2();
@@ -65,34 +133,26 @@ public class OpdsService {
         }
 
         BookLoreUser user = bookLoreUserTransformer.toDTO(entity);
-        boolean isAdmin = user.getPermissions().isAdmin();
-        Set<Long> libraryIds = user.getAssignedLibraries().stream()
+        if (user.getPermissions().isAdmin()) {
+            return null;
+        }
+        return user.getAssignedLibraries().stream()
                 .map(Library::getId)
                 .collect(Collectors.toSet());
-
-        if (isAdmin) {
-            return (queryParam != null)
-                    ? bookQueryService.searchBooksByMetadata(queryParam)
-                    : bookQueryService.getAllBooks(true);
-        } else {
-            return (queryParam != null)
-                    ? bookQueryService.searchBooksByMetadataInLibraries(queryParam, libraryIds)
-                    : bookQueryService.getAllBooksByLibraryIds(libraryIds, true);
-        }
     }
 
     public String generateSearchDescription(HttpServletRequest request) {
         var feedVersion = extractVersionFromAcceptHeader(request);
 
         return switch (feedVersion) {
-            case "2.0" -> generateOpdsV2SearchDescription();
+            case "2.0" -> generateOpdsV2SearchDescription(request);
             default -> generateOpdsV1SearchDescription();
         };
     }
 
     private String extractVersionFromAcceptHeader(HttpServletRequest request) {
         var acceptHeader = request.getHeader("Accept");
-        return (acceptHeader != null && acceptHeader.contains("version=2.0")) ? "2.0" : "1.2";
+        return (acceptHeader != null && (acceptHeader.contains("version=2.0") || acceptHeader.contains(OpdsV2FeedWriter.OPDS_JSON))) ? "2.0" : "1.2";
     }
 
     private String generateOpdsV1SearchDescription() {
@@ -109,7 +169,7 @@ public class OpdsService {
                 """;
     }
 
-    private String generateOpdsV1Feed(List<Book> books, HttpServletRequest request) {
+    private String generateOpdsV1Feed(List<Book> books, List<MagicShelfEntity> magicShelves, HttpServletRequest request) {
         String version = extractVersionFromRequest(request); // v1 or v2
         var feed = new StringBuilder("""
                 <?xml version="1.0" encoding="UTF-8"?>
@@ -120,12 +180,24 @@ public class OpdsService {
                   <link rel="search" type="application/opensearchdescription+xml" title="Booklore Search" href="/api/%s/opds/search.opds"/>
                 """.formatted(now(), version));
 
+        magicShelves.forEach(shelf -> appendMagicShelfEntryV1(feed, shelf, version));
         books.forEach(book -> appendBookEntryV1(feed, book, version));
 
         feed.append("</feed>");
         return feed.toString();
     }
 
+    private void appendMagicShelfEntryV1(StringBuilder feed, MagicShelfEntity shelf, String version) {
+        feed.append("""
+                <entry>
+                  <title>%s</title>
+                  <id>urn:booklore:magic-shelf:%d</id>
+                  <updated>%s</updated>
+                  <link rel="subsection" href="/api/%s/opds/catalog?magicShelfId=%d" type="application/atom+xml;profile=opds-catalog;kind=acquisition"/>
+                </entry>
+                """.formatted(escapeXml(shelf.getName()), shelf.getId(), now(), version, shelf.getId()));
+    }
+
     private void appendBookEntryV1(StringBuilder feed, Book book, String version) {
         feed.append("""
                 <entry>
@@ -189,14 +261,24 @@ public class OpdsService {
         }
     }
 
-    private String generateOpdsV2Feed(List<Book> books) {
-        // Placeholder for OPDS v2.0 feed implementation (similar structure as v1)
-        return "OPDS v2.0 Feed is under construction";
+    private String generateOpdsV2Feed(HttpServletRequest request, String queryParam, Long libraryId, Long magicShelfId, int page, int size) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            streamOpdsV2Feed(request, queryParam, libraryId, magicShelfId, page, size).writeTo(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
     }
 
-    private String generateOpdsV2SearchDescription() {
-        // Placeholder for OPDS v2.0 feed implementation (similar structure as v1)
-        return "OPDS v2.0 Feed is under construction";
+    private String generateOpdsV2SearchDescription(HttpServletRequest request) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            opdsV2FeedWriter.writeSearchDescription("/api/" + extractVersionFromRequest(request) + "/opds/", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(StandardCharsets.UTF_8);
     }
 
 
@@ -0,0 +1,25 @@
+package com.adityachandel.booklore.service.opds;
+
+import java.util.Set;
+
+/**
+ * Parameters for a single OPDS 2.0 feed page.
+ *
+ * @param basePath          OPDS base path, e.g. {@code /api/v2/opds/}
+ * @param query             free text search, or {@code null} for the catalog
+ * @param libraryId         library facet selected by the client, or {@code null}
+ * @param magicShelfId      magic shelf to list, or {@code null}
+ * @param userId            BookLore user behind the OPDS account, or {@code null} for legacy OPDS users
+ * @param allowedLibraryIds libraries the user may see, or {@code null} when unrestricted
+ * @param page              1-based page number
+ * @param size              items per page
+ */
+public record OpdsV2FeedRequest(String basePath,
+                                String query,
+                                Long libraryId,
+                                Long magicShelfId,
+                                Long userId,
+                                Set<Long> allowedLibraryIds,
+                                int page,
+                                int size) {
+}
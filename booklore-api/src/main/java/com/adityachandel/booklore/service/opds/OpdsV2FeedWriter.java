@@ -0,0 +1,365 @@
+package com.adityachandel.booklore.service.opds;
+
+import com.adityachandel.booklore.model.entity.*;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes OPDS 2.0 feeds straight to the response stream. Only the book ids of the requested page are held in memory;
+ * entities are loaded and serialized in small chunks so the footprint does not grow with the catalog size.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OpdsV2FeedWriter {
+
+    public static final String OPDS_JSON = "application/opds+json";
+
+    static final String SEARCH_TEMPLATE = "search{?q,page,size}";
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+    private static final int FETCH_CHUNK_SIZE = 50;
+
+    private final BookRepository bookRepository;
+    private final LibraryRepository libraryRepository;
+    private final ObjectMapper objectMapper;
+    private final MagicShelfBookService magicShelfBookService;
+
+    public void writeFeed(OpdsV2FeedRequest feedRequest, OutputStream outputStream) throws IOException {
+        int size = Math.min(Math.max(feedRequest.size(), 1), MAX_PAGE_SIZE);
+        int page = Math.max(feedRequest.page(), 1);
+        Pageable pageable = PageRequest.of(page - 1, size);
+        Page<Long> bookIds = feedRequest.magicShelfId() != null
+                ? magicShelfBookService.getBookIds(feedRequest.magicShelfId(), feedRequest.userId(), pageable)
+                : findBookIds(feedRequest.query(), resolveLibraryScope(feedRequest), pageable);
+
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            writeFeedMetadata(gen, feedRequest, bookIds);
+            writeFeedLinks(gen, feedRequest, bookIds);
+
+            if (feedRequest.query() == null && feedRequest.magicShelfId() == null) {
+                List<LibraryEntity> libraries = findVisibleLibraries(feedRequest.allowedLibraryIds());
+                if (page == 1 && feedRequest.libraryId() == null) {
+                    List<MagicShelfEntity> magicShelves = feedRequest.userId() != null
+                            ? magicShelfBookService.getShelvesForUser(feedRequest.userId())
+                            : List.of();
+                    writeNavigation(gen, feedRequest, libraries, magicShelves);
+                }
+                writeFacets(gen, feedRequest, libraries, size);
+            }
+
+            gen.writeArrayFieldStart("publications");
+            List<Long> ids = bookIds.getContent();
+            for (int from = 0; from < ids.size(); from += FETCH_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + FETCH_CHUNK_SIZE, ids.size()));
+                Map<Long, BookEntity> books = bookRepository.findAllForFeedByIds(chunk).stream()
+                        .collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+                for (Long id : chunk) {
+                    BookEntity book = books.get(id);
+                    if (book != null && book.getMetadata() != null) {
+                        writePublication(gen, feedRequest.basePath(), book);
+                    }
+                }
+                gen.flush();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    public void writeSearchDescription(String basePath, OutputStream outputStream) throws IOException {
+        try (JsonGenerator gen = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+            gen.writeStartObject();
+            gen.writeObjectFieldStart("metadata");
+            gen.writeStringField("title", "Booklore Search");
+            gen.writeEndObject();
+            gen.writeArrayFieldStart("links");
+            writeLink(gen, "self", basePath + "search.opds", OPDS_JSON, null);
+            writeSearchLink(gen, basePath);
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("navigation");
+            writeLink(gen, "start", basePath + "catalog", OPDS_JSON, "Booklore Catalog");
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+    }
+
+    private Set<Long> resolveLibraryScope(OpdsV2FeedRequest feedRequest) {
+        Long libraryId = feedRequest.libraryId();
+        Set<Long> allowed = feedRequest.allowedLibraryIds();
+        if (libraryId == null) {
+            return allowed;
+        }
+        if (allowed != null && !allowed.contains(libraryId)) {
+            return Set.of();
+        }
+        return Set.of(libraryId);
+    }
+
+    private Page<Long> findBookIds(String query, Set<Long> libraryScope, Pageable pageable) {
+        if (libraryScope != null && libraryScope.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        if (query == null) {
+            return libraryScope == null
+                    ? bookRepository.findPagedBookIds(pageable)
+                    : bookRepository.findPagedBookIdsByLibraryIds(libraryScope, pageable);
+        }
+        return libraryScope == null
+                ? bookRepository.searchPagedBookIds(query, pageable)
+                : bookRepository.searchPagedBookIdsByLibraryIds(query, libraryScope, pageable);
+    }
+
+    private List<LibraryEntity> findVisibleLibraries(Set<Long> allowedLibraryIds) {
+        List<LibraryEntity> libraries = allowedLibraryIds == null
+                ? libraryRepository.findAll()
+                : libraryRepository.findByIdIn(new ArrayList<>(allowedLibraryIds));
+        return libraries.stream()
+                .sorted(Comparator.comparing(LibraryEntity::getName, String.CASE_INSENSITIVE_ORDER))
+                .toList();
+    }
+
+    private void writeFeedMetadata(JsonGenerator gen, OpdsV2FeedRequest feedRequest, Page<Long> bookIds) throws IOException {
+        gen.writeObjectFieldStart("metadata");
+        gen.writeStringField("title", feedRequest.query() != null ? "Search results for \"" + feedRequest.query() + "\"" : "Booklore Catalog");
+        gen.writeNumberField("numberOfItems", bookIds.getTotalElements());
+        gen.writeNumberField("itemsPerPage", bookIds.getSize());
+        gen.writeNumberField("currentPage", bookIds.getNumber() + 1);
+        gen.writeEndObject();
+    }
+
+    private void writeFeedLinks(JsonGenerator gen, OpdsV2FeedRequest feedRequest, Page<Long> bookIds) throws IOException {
+        String basePath = feedRequest.basePath();
+        int current = bookIds.getNumber() + 1;
+        int last = Math.max(bookIds.getTotalPages(), 1);
+
+        gen.writeArrayFieldStart("links");
+        writeLink(gen, "self", pageHref(feedRequest, current, bookIds.getSize()), OPDS_JSON, null);
+        writeLink(gen, "start", basePath + "catalog", OPDS_JSON, "Booklore Catalog");
+        writeSearchLink(gen, basePath);
+        writeLink(gen, "first", pageHref(feedRequest, 1, bookIds.getSize()), OPDS_JSON, null);
+        if (bookIds.hasPrevious()) {
+            writeLink(gen, "previous", pageHref(feedRequest, current - 1, bookIds.getSize()), OPDS_JSON, null);
+        }
+        if (bookIds.hasNext()) {
+            writeLink(gen, "next", pageHref(feedRequest, current + 1, bookIds.getSize()), OPDS_JSON, null);
+        }
+        writeLink(gen, "last", pageHref(feedRequest, last, bookIds.getSize()), OPDS_JSON, null);
+        gen.writeEndArray();
+    }
+
+    private void writeNavigation(JsonGenerator gen, OpdsV2FeedRequest feedRequest, List<LibraryEntity> libraries, List<MagicShelfEntity> magicShelves) throws IOException {
+        String basePath = feedRequest.basePath();
+        gen.writeArrayFieldStart("navigation");
+        writeLink(gen, "collection", basePath + "catalog", OPDS_JSON, "All Books");
+        for (LibraryEntity library : libraries) {
+            String href = UriComponentsBuilder.fromPath(basePath + "catalog")
+                    .queryParam("libraryId", library.getId())
+                    .build().toUriString();
+            writeLink(gen, "subsection", href, OPDS_JSON, library.getName());
+        }
+        for (MagicShelfEntity shelf : magicShelves) {
+            String href = UriComponentsBuilder.fromPath(basePath + "catalog")
+                    .queryParam("magicShelfId", shelf.getId())
+                    .build().toUriString();
+            writeLink(gen, "subsection", href, OPDS_JSON, shelf.getName());
+        }
+        gen.writeEndArray();
+    }
+
+    private void writeFacets(JsonGenerator gen, OpdsV2FeedRequest feedRequest, List<LibraryEntity> libraries, int size) throws IOException {
+        if (libraries.size() < 2) {
+            return;
+        }
+        String basePath = feedRequest.basePath();
+        gen.writeArrayFieldStart("facets");
+        gen.writeStartObject();
+        gen.writeObjectFieldStart("metadata");
+        gen.writeStringField("title", "Library");
+        gen.writeEndObject();
+        gen.writeArrayFieldStart("links");
+        writeFacetLink(gen, basePath + "catalog?size=" + size, "All Libraries", feedRequest.libraryId() == null);
+        for (LibraryEntity library : libraries) {
+            String href = UriComponentsBuilder.fromPath(basePath + "catalog")
+                    .queryParam("libraryId", library.getId())
+                    .queryParam("size", size)
+                    .build().toUriString();
+            writeFacetLink(gen, href, library.getName(), library.getId().equals(feedRequest.libraryId()));
+        }
+        gen.writeEndArray();
+        gen.writeEndObject();
+        gen.writeEndArray();
+    }
+
+    private void writeFacetLink(JsonGenerator gen, String href, String title, boolean active) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("href", href);
+        gen.writeStringField("type", OPDS_JSON);
+        gen.writeStringField("title", title);
+        if (active) {
+            gen.writeStringField("rel", "self");
+        }
+        gen.writeEndObject();
+    }
+
+    private void writePublication(JsonGenerator gen, String basePath, BookEntity book) throws IOException {
+        BookMetadataEntity metadata = book.getMetadata();
+        gen.writeStartObject();
+
+        gen.writeObjectFieldStart("metadata");
+        gen.writeStringField("@type", "http://schema.org/Book");
+        gen.writeStringField("identifier", metadata.getIsbn13() != null ? "urn:isbn:" + metadata.getIsbn13()
+                : metadata.getIsbn10() != null ? "urn:isbn:" + metadata.getIsbn10()
+                : "urn:booklore:book:" + book.getId());
+        gen.writeStringField("title", metadata.getTitle() != null ? metadata.getTitle() : book.getFileName());
+        writeOptionalString(gen, "subtitle", metadata.getSubtitle());
+        writeOptionalString(gen, "description", metadata.getDescription());
+        writeOptionalString(gen, "publisher", metadata.getPublisher());
+        writeOptionalString(gen, "language", metadata.getLanguage());
+        if (metadata.getPublishedDate() != null) {
+            gen.writeStringField("published", metadata.getPublishedDate().toString());
+        }
+        Instant modified = metadata.getUpdatedOn() != null ? metadata.getUpdatedOn() : book.getAddedOn();
+        if (modified != null) {
+            gen.writeStringField("modified", modified.toString());
+        }
+        if (metadata.getPageCount() != null && metadata.getPageCount() > 0) {
+            gen.writeNumberField("numberOfPages", metadata.getPageCount());
+        }
+        if (metadata.getAuthors() != null && !metadata.getAuthors().isEmpty()) {
+            gen.writeArrayFieldStart("author");
+            for (AuthorEntity author : metadata.getAuthors()) {
+                gen.writeStartObject();
+                gen.writeStringField("name", author.getName());
+                gen.writeEndObject();
+            }
+            gen.writeEndArray();
+        }
+        if (metadata.getCategories() != null && !metadata.getCategories().isEmpty()) {
+            gen.writeArrayFieldStart("subject");
+            for (CategoryEntity category : metadata.getCategories()) {
+                gen.writeString(category.getName());
+            }
+            gen.writeEndArray();
+        }
+        if (metadata.getSeriesName() != null) {
+            gen.writeObjectFieldStart("belongsTo");
+            gen.writeArrayFieldStart("series");
+            gen.writeStartObject();
+            gen.writeStringField("name", metadata.getSeriesName());
+            if (metadata.getSeriesNumber() != null) {
+                gen.writeNumberField("position", metadata.getSeriesNumber());
+            }
+            gen.writeEndObject();
+            gen.writeEndArray();
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+
+        gen.writeArrayFieldStart("links");
+        gen.writeStartObject();
+        gen.writeStringField("rel", "http://opds-spec.org/acquisition");
+        gen.writeStringField("href", basePath + book.getId() + "/download");
+        gen.writeStringField("type", acquisitionMimeType(book));
+        if (book.getFileSizeKb() != null) {
+            gen.writeObjectFieldStart("properties");
+            gen.writeNumberField("size", book.getFileSizeKb() * 1024);
+            gen.writeEndObject();
+        }
+        gen.writeEndObject();
+        gen.writeEndArray();
+
+        if (metadata.getCoverUpdatedOn() != null) {
+            String version = "?" + metadata.getCoverUpdatedOn().toEpochMilli();
+            gen.writeArrayFieldStart("images");
+            gen.writeStartObject();
+            gen.writeStringField("href", basePath + book.getId() + "/cover/full" + version);
+            gen.writeStringField("type", "image/jpeg");
+            gen.writeEndObject();
+            gen.writeStartObject();
+            gen.writeStringField("href", basePath + book.getId() + "/cover" + version);
+            gen.writeStringField("type", "image/jpeg");
+            gen.writeEndObject();
+            gen.writeEndArray();
+        }
+
+        gen.writeEndObject();
+    }
+
+    private void writeLink(JsonGenerator gen, String rel, String href, String type, String title) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("rel", rel);
+        gen.writeStringField("href", href);
+        gen.writeStringField("type", type);
+        writeOptionalString(gen, "title", title);
+        gen.writeEndObject();
+    }
+
+    private void writeSearchLink(JsonGenerator gen, String basePath) throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("rel", "search");
+        gen.writeStringField("href", basePath + SEARCH_TEMPLATE);
+        gen.writeStringField("type", OPDS_JSON);
+        gen.writeBooleanField("templated", true);
+        gen.writeEndObject();
+    }
+
+    private void writeOptionalString(JsonGenerator gen, String field, String value) throws IOException {
+        if (value != null && !value.isBlank()) {
+            gen.writeStringField(field, value);
+        }
+    }
+
+    private String pageHref(OpdsV2FeedRequest feedRequest, int page, int size) {
+        UriComponentsBuilder builder = UriComponentsBuilder.fromPath(feedRequest.basePath() + (feedRequest.query() != null ? "search" : "catalog"));
+        if (feedRequest.query() != null) {
+            builder.queryParam("q", feedRequest.query());
+        }
+        if (feedRequest.libraryId() != null) {
+            builder.queryParam("libraryId", feedRequest.libraryId());
+        }
+        if (feedRequest.magicShelfId() != null) {
+            builder.queryParam("magicShelfId", feedRequest.magicShelfId());
+        }
+        return builder.queryParam("page", page)
+                .queryParam("size", size)
+                .encode()
+                .build()
+                .toUriString();
+    }
+
+    private String acquisitionMimeType(BookEntity book) {
+        if (book.getBookType() == null) {
+            return "application/octet-stream";
+        }
+        return switch (book.getBookType()) {
+            case PDF -> "application/pdf";
+            case EPUB -> "application/epub+zip";
+            case CBX -> {
+                String name = book.getFileName() != null ? book.getFileName().toLowerCase(Locale.ROOT) : "";
+                if (name.endsWith(".cbr")) yield "application/vnd.comicbook-rar";
+                if (name.endsWith(".cb7")) yield "application/x-cb7";
+                yield "application/vnd.comicbook+zip";
+            }
+        };
+    }
+}
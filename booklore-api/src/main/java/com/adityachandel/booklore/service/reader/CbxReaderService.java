@@ -9,6 +9,8 @@ import com.adityachandel.booklore.util.FileUtils;
 import com.github.junrar.Archive;
 import com.github.junrar.exception.RarException;
 import com.github.junrar.rarfile.FileHeader;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
@@ -44,6 +46,7 @@ public class CbxReaderService {
     private final BookRepository bookRepository;
     private final AppSettingService appSettingService;
     private final FileService fileService;
+    private final MeterRegistry meterRegistry;
 
     public List<Integer> getAvailablePages(Long bookId) {
         BookEntity bookEntity = bookRepository.findById(bookId).orElseThrow(() -> ApiError.BOOK_NOT_FOUND.createException(bookId));
@@ -62,7 +65,9 @@ public class CbxReaderService {
             }
             enforceCacheLimit();
 
-            if (needsCacheRefresh(cbzPath, cacheInfoPath)) {
+            boolean refresh = needsCacheRefresh(cbzPath, cacheInfoPath);
+            recordCacheLookup(refresh);
+            if (refresh) {
                 log.info("Invalidating cache for book {}", bookId);
                 if (Files.exists(cacheDir)) FileUtils.deleteDirectoryRecursively(cacheDir);
                 Files.createDirectories(cacheDir);
@@ -187,6 +192,15 @@ public class CbxReaderService {
         }
     }
 
+    private void recordCacheLookup(boolean miss) {
+        Counter.builder("booklore.reader.cache")
+                .description("Page cache lookups when a book is opened in the reader")
+                .tag("reader", "cbx")
+                .tag("result", miss ? "miss" : "hit")
+                .register(meterRegistry)
+                .increment();
+    }
+
     private boolean needsCacheRefresh(Path cbzPath, Path cacheInfoPath) throws IOException {
         if (!Files.exists(cacheInfoPath)) return true;
 
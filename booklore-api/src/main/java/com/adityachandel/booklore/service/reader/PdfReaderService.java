@@ -6,6 +6,8 @@ import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.util.FileService;
 import com.adityachandel.booklore.util.FileUtils;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.pdfbox.Loader;
@@ -34,6 +36,7 @@ public class PdfReaderService {
     private final BookRepository bookRepository;
     private final AppSettingService appSettingService;
     private final FileService fileService;
+    private final MeterRegistry meterRegistry;
 
     public List<Integer> getAvailablePages(Long bookId) throws IOException {
         BookEntity bookEntity = bookRepository.findById(bookId).orElseThrow(() -> ApiError.BOOK_NOT_FOUND.createException(bookId));
@@ -50,7 +53,9 @@ public class PdfReaderService {
         }
 
         try {
-            if (needsCacheRefresh(pdfPath, cacheInfoPath)) {
+            boolean refresh = needsCacheRefresh(pdfPath, cacheInfoPath);
+            recordCacheLookup(refresh);
+            if (refresh) {
                 log.info("Invalidating cache for PDF book {}", bookId);
                 if (Files.exists(cacheDir)) FileUtils.deleteDirectoryRecursively(cacheDir);
                 Files.createDirectories(cacheDir);
@@ -102,6 +107,15 @@ public class PdfReaderService {
         }
     }
 
+    private void recordCacheLookup(boolean miss) {
+        Counter.builder("booklore.reader.cache")
+                .description("Page cache lookups when a book is opened in the reader")
+                .tag("reader", "pdf")
+                .tag("result", miss ? "miss" : "hit")
+                .register(meterRegistry)
+                .increment();
+    }
+
     private boolean needsCacheRefresh(Path pdfPath, Path cacheInfoPath) throws IOException {
         if (!Files.exists(cacheInfoPath)) return true;
 
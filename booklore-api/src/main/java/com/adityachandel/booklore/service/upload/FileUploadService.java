@@ -18,14 +18,16 @@ import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
 import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.BookHashIndex;
 import com.adityachandel.booklore.service.FileFingerprint;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessor;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessorRegistry;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 import com.adityachandel.booklore.service.metadata.extractor.EpubMetadataExtractor;
 import com.adityachandel.booklore.service.metadata.extractor.PdfMetadataExtractor;
-import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
 import com.adityachandel.booklore.util.FileUtils;
 import com.adityachandel.booklore.util.PathPatternResolver;
 import lombok.RequiredArgsConstructor;
@@ -62,7 +64,8 @@ public class FileUploadService {
     private final PdfMetadataExtractor pdfMetadataExtractor;
     private final EpubMetadataExtractor epubMetadataExtractor;
     private final AdditionalFileMapper additionalFileMapper;
-    private final MonitoringService monitoringService;
+    private final WatchSuppressionService watchSuppressionService;
+    private final BookHashIndex bookHashIndex;
 
     @Value("${PUID:0}")
     private String userId;
@@ -82,60 +85,59 @@ public class FileUploadService {
                 .orElseThrow(() -> ApiError.INVALID_LIBRARY_PATH.createException(libraryId));
 
         Path tempPath = Files.createTempFile("upload-", Objects.requireNonNull(file.getOriginalFilename()));
-        Book book;
-
-        boolean wePaused = false;
-        if (!monitoringService.isPaused()) {
-            monitoringService.pauseMonitoring();
-            wePaused = true;
-        }
 
         try {
             file.transferTo(tempPath);
-            setTemporaryFileOwnership(tempPath);
-            BookFileExtension fileExt = BookFileExtension.fromFileName(file.getOriginalFilename()).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
-            BookMetadata metadata = extractMetadata(fileExt, tempPath.toFile());
-            String uploadPattern = appSettingService.getAppSettings().getUploadPattern();
-            if (uploadPattern.endsWith("/") || uploadPattern.endsWith("\\")) {
-                uploadPattern += "{currentFilename}";
-            }
+            return importStagedFile(tempPath, file.getOriginalFilename(), libraryEntity, libraryPathEntity, null);
+        } catch (IOException e) {
+            throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
+        } finally {
+            Files.deleteIfExists(tempPath);
+        }
+    }
 
-            String relativePath = PathPatternResolver.resolvePattern(metadata, uploadPattern, file.getOriginalFilename());
-            Path finalPath = Paths.get(libraryPathEntity.getPath(), relativePath);
-            File finalFile = finalPath.toFile();
+    /**
+     * Moves a fully received upload to where the upload pattern puts it in the library path and ingests it. Staging
+     * the file on the library path's own filesystem turns the move into a rename. If the book cannot be saved the file
+     * is moved back to {@code stagedPath}.
+     *
+     * @param hash the fingerprint if it was computed while the file was received, otherwise {@code null}
+     */
+    public Book importStagedFile(Path stagedPath, String originalFileName, LibraryEntity libraryEntity, LibraryPathEntity libraryPathEntity, String hash) throws IOException {
+        setTemporaryFileOwnership(stagedPath);
+        BookFileExtension fileExt = BookFileExtension.fromFileName(originalFileName).orElseThrow(() -> ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension"));
+        BookMetadata metadata = extractMetadata(fileExt, stagedPath, hash);
+        String uploadPattern = appSettingService.getAppSettings().getUploadPattern();
+        if (uploadPattern.endsWith("/") || uploadPattern.endsWith("\\")) {
+            uploadPattern += "{currentFilename}";
+        }
 
-            if (finalFile.exists()) {
-                throw ApiError.FILE_ALREADY_EXISTS.createException();
-            }
+        String relativePath = PathPatternResolver.resolvePattern(metadata, uploadPattern, originalFileName);
+        Path finalPath = Paths.get(libraryPathEntity.getPath(), relativePath);
+        File finalFile = finalPath.toFile();
 
+        if (finalFile.exists()) {
+            throw ApiError.FILE_ALREADY_EXISTS.createException();
+        }
+
+        Book book;
+        try (WatchSuppressionService.Suppression ignored = watchSuppressionService.suppress("upload", finalPath)) {
             Files.createDirectories(finalPath.getParent());
-            Files.move(tempPath, finalPath);
+            moveIntoPlace(stagedPath, finalPath);
 
             log.info("File uploaded to final location: {}", finalPath);
 
-            book = processFile(finalFile.getName(), libraryEntity, libraryPathEntity, finalFile, fileExt.getType());
-            notificationService.sendMessage(Topic.BOOK_ADD, book);
-
-            return book;
-
-        } catch (IOException e) {
-            throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
-        } finally {
-            Files.deleteIfExists(tempPath);
-
-            if (wePaused) {
-                Thread.startVirtualThread(() -> {
-                    try {
-                        Thread.sleep(5_000);
-                        monitoringService.resumeMonitoring();
-                        log.info("Monitoring resumed after 5s delay");
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        log.warn("Interrupted while delaying resume of monitoring");
-                    }
-                });
+            try {
+                book = processFile(finalFile.getName(), libraryEntity, libraryPathEntity, finalFile, fileExt.getType(), hash);
+            } catch (RuntimeException e) {
+                // Put the file back where the caller staged it, so a failed import can be retried.
+                moveIntoPlace(finalPath, stagedPath);
+                throw e;
             }
         }
+        notificationService.sendMessage(Topic.BOOK_ADD, book);
+
+        return book;
     }
 
     @Transactional
@@ -153,12 +155,6 @@ public class FileUploadService {
 
         Path tempPath = Files.createTempFile("upload-", Objects.requireNonNull(file.getOriginalFilename()));
 
-        boolean wePaused = false;
-        if (!monitoringService.isPaused()) {
-            monitoringService.pauseMonitoring();
-            wePaused = true;
-        }
-
         try {
             file.transferTo(tempPath);
 
@@ -167,7 +163,7 @@ public class FileUploadService {
             // Check for duplicates by hash, but only for alternative formats
             String fileHash = FileFingerprint.generateHash(tempPath);
             if (additionalFileType == AdditionalFileType.ALTERNATIVE_FORMAT) {
-                Optional<BookAdditionalFileEntity> existingAltFormat = additionalFileRepository.findByAltFormatCurrentHash(fileHash);
+                Optional<BookAdditionalFileEntity> existingAltFormat = bookHashIndex.findAlternativeFormatByHash(fileHash);
                 if (existingAltFormat.isPresent()) {
                     throw new IllegalArgumentException("Alternative format file already exists with same content");
                 }
@@ -181,44 +177,34 @@ public class FileUploadService {
                 throw ApiError.FILE_ALREADY_EXISTS.createException();
             }
 
-            Files.createDirectories(finalPath.getParent());
-            Files.move(tempPath, finalPath);
-
-            log.info("Additional file uploaded to final location: {}", finalPath);
-
-            // Create entity
-            BookAdditionalFileEntity entity = BookAdditionalFileEntity.builder()
-                    .book(book)
-                    .fileName(originalFileName)
-                    .fileSubPath(book.getFileSubPath())
-                    .additionalFileType(additionalFileType)
-                    .fileSizeKb(file.getSize() / 1024)
-                    .initialHash(fileHash)
-                    .currentHash(fileHash)
-                    .description(description)
-                    .addedOn(Instant.now())
-                    .build();
-
-            entity = additionalFileRepository.save(entity);
+            BookAdditionalFileEntity entity;
+            try (WatchSuppressionService.Suppression ignored = watchSuppressionService.suppress("additional file upload", finalPath)) {
+                Files.createDirectories(finalPath.getParent());
+                Files.move(tempPath, finalPath);
+
+                log.info("Additional file uploaded to final location: {}", finalPath);
+
+                // Create entity
+                entity = BookAdditionalFileEntity.builder()
+                        .book(book)
+                        .fileName(originalFileName)
+                        .fileSubPath(book.getFileSubPath())
+                        .additionalFileType(additionalFileType)
+                        .fileSizeKb(file.getSize() / 1024)
+                        .initialHash(fileHash)
+                        .currentHash(fileHash)
+                        .description(description)
+                        .addedOn(Instant.now())
+                        .build();
+
+                entity = additionalFileRepository.save(entity);
+            }
 
             return additionalFileMapper.toAdditionalFile(entity);
         } catch (IOException e) {
             throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
         } finally {
             Files.deleteIfExists(tempPath);
-
-            if (wePaused) {
-                Thread.startVirtualThread(() -> {
-                    try {
-                        Thread.sleep(5_000);
-                        monitoringService.resumeMonitoring();
-                        log.info("Monitoring resumed after 5s delay");
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        log.warn("Interrupted while delaying resume of monitoring");
-                    }
-                });
-            }
         }
     }
 
@@ -249,12 +235,22 @@ public class FileUploadService {
         }
     }
 
-    private BookMetadata extractMetadata(BookFileExtension fileExt, File file) throws IOException {
-        return switch (fileExt) {
-            case PDF -> pdfMetadataExtractor.extractMetadata(file);
-            case EPUB -> epubMetadataExtractor.extractMetadata(file);
-            case CBZ, CBR, CB7 -> new BookMetadata();
-        };
+    private BookMetadata extractMetadata(BookFileExtension fileExt, Path path, String hash) {
+        try (BookFileSession session = BookFileSession.open(path, hash)) {
+            return switch (fileExt) {
+                case PDF -> pdfMetadataExtractor.extractMetadata(session);
+                case EPUB -> epubMetadataExtractor.extractMetadata(session);
+                case CBZ, CBR, CB7 -> new BookMetadata();
+            };
+        }
+    }
+
+    private void moveIntoPlace(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target);
+        }
     }
 
     private void validateFile(MultipartFile file) {
@@ -281,7 +277,7 @@ public class FileUploadService {
         }
     }
 
-    private Book processFile(String fileName, LibraryEntity libraryEntity, LibraryPathEntity libraryPathEntity, File storageFile, BookFileType type) {
+    private Book processFile(String fileName, LibraryEntity libraryEntity, LibraryPathEntity libraryPathEntity, File storageFile, BookFileType type, String hash) {
         String subPath = FileUtils.getRelativeSubPath(libraryPathEntity.getPath(), storageFile.toPath());
 
         LibraryFile libraryFile = LibraryFile.builder()
@@ -290,6 +286,7 @@ public class FileUploadService {
                 .fileSubPath(subPath)
                 .bookFileType(type)
                 .fileName(fileName)
+                .hash(hash)
                 .build();
 
         BookFileProcessor processor = processorRegistry.getProcessorOrThrow(type);
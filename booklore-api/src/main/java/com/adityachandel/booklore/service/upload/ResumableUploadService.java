@@ -0,0 +1,445 @@
+package com.adityachandel.booklore.service.upload;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.config.security.service.AuthenticationService;
+import com.adityachandel.booklore.exception.APIException;
+import com.adityachandel.booklore.exception.ApiError;
+import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.BookLoreUser;
+import com.adityachandel.booklore.model.dto.request.ResumableUploadRequest;
+import com.adityachandel.booklore.model.dto.response.ResumableUploadStatus;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.enums.BookFileExtension;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.FileFingerprint;
+import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Uploads sent as a series of offset-addressed chunks, so a dropped connection only costs the chunk in flight.
+ * <p>
+ * Chunks are appended to a hidden staging file in {@value #STAGING_DIR} on the target library path, which puts it on
+ * the same filesystem as the book's final location, and hashed as they arrive. When the last chunk lands the file is
+ * renamed into place and ingested without being copied or read again for its fingerprint. Imports run on a bounded
+ * pool; when it is saturated, or the import fails for a reason other than the upload itself, the final chunk is
+ * answered with 503 and can be retried with an empty body. The session and its staging file are kept until the import
+ * has finished, so a retry after a dropped request picks up the import already running instead of starting another.
+ * A completed upload is remembered for {@link #COMPLETED_RETENTION}, so a client whose final response was lost gets
+ * the imported book again rather than a 404.
+ * <p>
+ * Sessions live in memory. Staging files left behind by a restart are deleted by the hourly cleanup.
+ */
+@Slf4j
+@Service
+public class ResumableUploadService {
+
+    static final String STAGING_DIR = ".booklore-uploads";
+    static final Duration COMPLETED_RETENTION = Duration.ofMinutes(15);
+    private static final String PART_SUFFIX = ".part";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final LibraryRepository libraryRepository;
+    private final AppSettingService appSettingService;
+    private final FileUploadService fileUploadService;
+    private final AuthenticationService authenticationService;
+    private final WatchSuppressionService watchSuppressionService;
+    private final Duration expiry;
+    private final ThreadPoolExecutor importExecutor;
+    private final Map<String, UploadSession> sessions = new ConcurrentHashMap<>();
+    private final Map<String, CompletedUpload> completedUploads = new ConcurrentHashMap<>();
+    private final Counter bytesReceived;
+
+    public ResumableUploadService(LibraryRepository libraryRepository, AppSettingService appSettingService, FileUploadService fileUploadService,
+                                  AuthenticationService authenticationService, WatchSuppressionService watchSuppressionService,
+                                  AppProperties appProperties, MeterRegistry meterRegistry) {
+        this.libraryRepository = libraryRepository;
+        this.appSettingService = appSettingService;
+        this.fileUploadService = fileUploadService;
+        this.authenticationService = authenticationService;
+        this.watchSuppressionService = watchSuppressionService;
+
+        AppProperties.Upload settings = appProperties.getUpload();
+        this.expiry = Duration.ofHours(Math.max(1, settings.getExpiryHours()));
+        int threads = Math.max(1, settings.getWorkerThreads());
+        this.importExecutor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, settings.getQueueCapacity())),
+                Thread.ofPlatform().name("upload-import-", 0).daemon().factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+
+        Gauge.builder("booklore.upload.sessions.active", sessions, Map::size)
+                .description("Resumable uploads started and not yet completed, cancelled or expired")
+                .register(meterRegistry);
+        this.bytesReceived = Counter.builder("booklore.upload.bytes")
+                .description("Bytes received through resumable uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public ResumableUploadStatus create(ResumableUploadRequest request) {
+        String fileName = request.getFileName();
+        if (fileName == null || fileName.isBlank() || BookFileExtension.fromFileName(fileName).isEmpty()) {
+            throw ApiError.INVALID_FILE_FORMAT.createException("Unsupported file extension");
+        }
+        if (fileName.contains("/") || fileName.contains("\\")) {
+            throw ApiError.INVALID_INPUT.createException("File name must not contain a path");
+        }
+        if (request.getLength() == null || request.getLength() <= 0) {
+            throw ApiError.INVALID_INPUT.createException("Upload length must be positive");
+        }
+        int maxSizeMb = appSettingService.getAppSettings().getMaxFileUploadSizeInMb();
+        if (request.getLength() > maxSizeMb * 1024L * 1024L) {
+            throw ApiError.FILE_TOO_LARGE.createException(maxSizeMb);
+        }
+        long libraryId = request.getLibraryId() == null ? 0 : request.getLibraryId();
+        long pathId = request.getPathId() == null ? 0 : request.getPathId();
+        LibraryPathEntity libraryPath = findLibraryPath(findLibrary(libraryId), pathId);
+
+        Path stagingDir = Paths.get(libraryPath.getPath(), STAGING_DIR);
+        String id = UUID.randomUUID().toString();
+        UploadSession session = new UploadSession(id, currentUserId(), libraryId, pathId, fileName,
+                stagingDir.resolve("." + id + PART_SUFFIX), new FileFingerprint.Incremental(request.getLength()));
+        // Registered before the file exists, so the cleanup never mistakes a new staging file for an orphan.
+        sessions.put(id, session);
+        try (WatchSuppressionService.Suppression ignored = watchSuppressionService.suppress("upload staging", stagingDir)) {
+            Files.createDirectories(stagingDir);
+            Files.createFile(session.partFile);
+        } catch (IOException e) {
+            sessions.remove(id);
+            log.error("Failed to create staging file for upload of '{}': {}", fileName, e.getMessage());
+            throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
+        }
+        log.info("Started resumable upload {} of '{}' ({} bytes)", id, fileName, request.getLength());
+        return toStatus(session, null);
+    }
+
+    public ResumableUploadStatus getStatus(String id) {
+        if (!sessions.containsKey(id)) {
+            ResumableUploadStatus completed = findCompleted(id);
+            if (completed != null) {
+                return completed;
+            }
+        }
+        return toStatus(findSession(id), null);
+    }
+
+    /**
+     * Appends the body to the upload, which must currently end at {@code offset}. Completes the upload once its
+     * declared length has been received; an empty body at the final offset retries a completion that was refused.
+     */
+    public ResumableUploadStatus append(String id, long offset, InputStream body) {
+        if (!sessions.containsKey(id)) {
+            // A completed upload is recorded before its session is removed, so one of the two is always found.
+            ResumableUploadStatus completed = findCompleted(id);
+            if (completed != null) {
+                return completed;
+            }
+        }
+        UploadSession session = findSession(id);
+        if (!session.lock.tryLock()) {
+            // Another request is still writing; the client's view of the offset cannot be current.
+            throw ApiError.UPLOAD_OFFSET_MISMATCH.createException(session.fingerprint.getPosition());
+        }
+        try {
+            if (session.cancelled) {
+                throw ApiError.UPLOAD_NOT_FOUND.createException(id);
+            }
+            if (offset != session.fingerprint.getPosition()) {
+                throw ApiError.UPLOAD_OFFSET_MISMATCH.createException(session.fingerprint.getPosition());
+            }
+            write(session, body);
+            session.lastActivity = Instant.now();
+            if (session.fingerprint.getPosition() < session.length) {
+                return toStatus(session, null);
+            }
+            return complete(session);
+        } finally {
+            session.lock.unlock();
+        }
+    }
+
+    public void cancel(String id) {
+        UploadSession session = findSession(id);
+        session.lock.lock();
+        try {
+            if (session.isImporting()) {
+                throw ApiError.UPLOAD_IMPORTING.createException(id);
+            }
+            session.cancelled = true;
+            sessions.remove(id);
+            deleteQuietly(session.partFile);
+        } finally {
+            session.lock.unlock();
+        }
+        log.info("Cancelled resumable upload {} of '{}'", id, session.fileName);
+    }
+
+    private void write(UploadSession session, InputStream body) {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        FileFingerprint.Incremental fingerprint = session.fingerprint;
+        try (FileChannel channel = FileChannel.open(session.partFile, StandardOpenOption.WRITE)) {
+            try {
+                long remaining;
+                int read;
+                while ((remaining = session.length - fingerprint.getPosition()) > 0
+                        && (read = body.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+                    ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, read);
+                    long position = fingerprint.getPosition();
+                    while (bytes.hasRemaining()) {
+                        position += channel.write(bytes, position);
+                    }
+                    fingerprint.update(buffer, 0, read);
+                    bytesReceived.increment(read);
+                }
+            } catch (IOException e) {
+                // Drop any partial write past what was hashed, so the offset the client resumes from is exact.
+                channel.truncate(fingerprint.getPosition());
+                throw e;
+            }
+        } catch (IOException e) {
+            log.warn("Upload {} interrupted at offset {}: {}", session.id, fingerprint.getPosition(), e.getMessage());
+            throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
+        }
+    }
+
+    private ResumableUploadStatus complete(UploadSession session) {
+        if (session.hash == null) {
+            session.hash = session.fingerprint.finish();
+        }
+        if (session.importResult == null) {
+            try {
+                session.importResult = importExecutor.submit(new DelegatingSecurityContextCallable<>(() -> {
+                    LibraryEntity library = findLibrary(session.libraryId);
+                    return fileUploadService.importStagedFile(session.partFile, session.fileName, library, findLibraryPath(library, session.pathId), session.hash);
+                }));
+            } catch (RejectedExecutionException e) {
+                log.warn("Import of upload {} refused, {} imports queued", session.id, importExecutor.getQueue().size());
+                throw ApiError.TOO_MANY_UPLOADS.createException();
+            }
+        }
+        Book book;
+        try {
+            book = session.importResult.get();
+        } catch (InterruptedException e) {
+            // The import carries on; the session stays so a retry can collect its result.
+            Thread.currentThread().interrupt();
+            throw ApiError.FILE_READ_ERROR.createException(e.getMessage());
+        } catch (ExecutionException e) {
+            session.importResult = null;
+            throw importFailed(session, e.getCause());
+        }
+        ResumableUploadStatus status = toStatus(session, book);
+        completedUploads.put(session.id, new CompletedUpload(session.ownerId, status, Instant.now()));
+        sessions.remove(session.id);
+        log.info("Completed resumable upload {} of '{}'", session.id, session.fileName);
+        return status;
+    }
+
+    private ResumableUploadStatus findCompleted(String id) {
+        CompletedUpload completed = completedUploads.get(id);
+        if (completed == null || completed.completedAt().isBefore(Instant.now().minus(COMPLETED_RETENTION))
+                || !completed.ownerId().equals(currentUserId())) {
+            return null;
+        }
+        return completed.status();
+    }
+
+    /**
+     * Rejections of the upload itself end the session. Anything else, a database hiccup for instance, leaves the
+     * staged file in place for a retry.
+     */
+    private APIException importFailed(UploadSession session, Throwable cause) {
+        if (cause instanceof APIException apiException && apiException.getStatus().is4xxClientError()) {
+            discard(session);
+            return apiException;
+        }
+        if (!Files.exists(session.partFile)) {
+            discard(session);
+            log.error("Import of upload {} failed and its staging file is gone: {}", session.id, cause.getMessage(), cause);
+            return ApiError.FILE_READ_ERROR.createException(cause.getMessage());
+        }
+        log.warn("Import of upload {} failed, keeping it for a retry: {}", session.id, cause.getMessage(), cause);
+        return ApiError.UPLOAD_IMPORT_FAILED.createException(cause.getMessage());
+    }
+
+    private void discard(UploadSession session) {
+        session.cancelled = true;
+        sessions.remove(session.id);
+        deleteQuietly(session.partFile);
+    }
+
+    @Scheduled(fixedDelayString = "PT1H", initialDelayString = "PT5M")
+    public void removeExpiredUploads() {
+        Instant now = Instant.now();
+        removeCompletedBefore(now.minus(COMPLETED_RETENTION));
+        removeUploadsIdleSince(now.minus(expiry));
+    }
+
+    void removeCompletedBefore(Instant cutoff) {
+        completedUploads.values().removeIf(completed -> completed.completedAt().isBefore(cutoff));
+    }
+
+    void removeUploadsIdleSince(Instant cutoff) {
+        for (UploadSession session : sessions.values()) {
+            if (session.lastActivity.isBefore(cutoff) && !session.isImporting() && session.lock.tryLock()) {
+                try {
+                    discard(session);
+                    log.info("Expired resumable upload {} of '{}' at offset {}", session.id, session.fileName, session.fingerprint.getPosition());
+                } finally {
+                    session.lock.unlock();
+                }
+            }
+        }
+        for (LibraryEntity library : libraryRepository.findAll()) {
+            for (LibraryPathEntity libraryPath : library.getLibraryPaths()) {
+                removeOrphanedStagingFiles(Paths.get(libraryPath.getPath(), STAGING_DIR));
+            }
+        }
+    }
+
+    private void removeOrphanedStagingFiles(Path stagingDir) {
+        if (!Files.isDirectory(stagingDir)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(stagingDir, "*" + PART_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                String id = name.substring(1, name.length() - PART_SUFFIX.length());
+                if (!sessions.containsKey(id)) {
+                    deleteQuietly(file);
+                    log.info("Removed orphaned upload staging file {}", file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list upload staging directory {}: {}", stagingDir, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        importExecutor.shutdown();
+        try {
+            if (!importExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                importExecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            importExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private UploadSession findSession(String id) {
+        UploadSession session = sessions.get(id);
+        // Someone else's upload is reported as missing rather than forbidden, so ids cannot be probed.
+        if (session == null || !session.ownerId.equals(currentUserId())) {
+            throw ApiError.UPLOAD_NOT_FOUND.createException(id);
+        }
+        return session;
+    }
+
+    private LibraryEntity findLibrary(long libraryId) {
+        return libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
+    }
+
+    private static LibraryPathEntity findLibraryPath(LibraryEntity libraryEntity, long pathId) {
+        return libraryEntity.getLibraryPaths()
+                .stream()
+                .filter(p -> p.getId() == pathId)
+                .findFirst()
+                .orElseThrow(() -> ApiError.INVALID_LIBRARY_PATH.createException(libraryEntity.getId()));
+    }
+
+    private Long currentUserId() {
+        BookLoreUser user = authenticationService.getAuthenticatedUser();
+        if (user == null) {
+            throw ApiError.GENERIC_UNAUTHORIZED.createException("No authenticated user");
+        }
+        return user.getId();
+    }
+
+    private static ResumableUploadStatus toStatus(UploadSession session, Book book) {
+        long offset = session.fingerprint.getPosition();
+        return ResumableUploadStatus.builder()
+                .id(session.id)
+                .fileName(session.fileName)
+                .offset(offset)
+                .length(session.length)
+                .complete(book != null)
+                .book(book)
+                .build();
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete upload staging file {}: {}", path, e.getMessage());
+        }
+    }
+
+    private record CompletedUpload(Long ownerId, ResumableUploadStatus status, Instant completedAt) {
+    }
+
+    private static final class UploadSession {
+
+        private final String id;
+        private final Long ownerId;
+        private final long libraryId;
+        private final long pathId;
+        private final String fileName;
+        private final Path partFile;
+        private final long length;
+        private final FileFingerprint.Incremental fingerprint;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Instant lastActivity = Instant.now();
+        private volatile boolean cancelled;
+        private String hash;
+        private volatile Future<Book> importResult;
+
+        private UploadSession(String id, Long ownerId, long libraryId, long pathId, String fileName, Path partFile, FileFingerprint.Incremental fingerprint) {
+            this.id = id;
+            this.ownerId = ownerId;
+            this.libraryId = libraryId;
+            this.pathId = pathId;
+            this.fileName = fileName;
+            this.partFile = partFile;
+            this.length = fingerprint.getLength();
+            this.fingerprint = fingerprint;
+        }
+
+        private boolean isImporting() {
+            Future<Book> result = importResult;
+            return result != null && !result.isDone();
+        }
+    }
+}
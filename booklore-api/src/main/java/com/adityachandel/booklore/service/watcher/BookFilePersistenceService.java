@@ -8,6 +8,7 @@ import com.adityachandel.booklore.model.entity.LibraryPathEntity;
 import com.adityachandel.booklore.model.enums.PermissionType;
 import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.service.BookHashIndex;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.util.FileUtils;
 import jakarta.persistence.EntityManager;
@@ -31,6 +32,7 @@ public class BookFilePersistenceService {
 
     private final EntityManager entityManager;
     private final BookRepository bookRepository;
+    private final BookHashIndex bookHashIndex;
     private final NotificationService notificationService;
     private final BookMapper bookMapper;
 
@@ -41,11 +43,15 @@ public class BookFilePersistenceService {
 
         String newSubPath = FileUtils.getRelativeSubPath(newLibraryPath.getPath(), path);
 
-        boolean pathChanged = !Objects.equals(newSubPath, book.getFileSubPath()) || !Objects.equals(newLibraryPath.getId(), book.getLibraryPath().getId());
+        String newFileName = path.getFileName().toString();
+
+        boolean pathChanged = !Objects.equals(newSubPath, book.getFileSubPath()) || !Objects.equals(newFileName, book.getFileName())
+                || !Objects.equals(newLibraryPath.getId(), book.getLibraryPath().getId());
 
         if (pathChanged || Boolean.TRUE.equals(book.getDeleted())) {
             book.setLibraryPath(newLibraryPath);
             book.setFileSubPath(newSubPath);
+            book.setFileName(newFileName);
             book.setDeleted(Boolean.FALSE);
             bookRepository.save(book);
             log.info("[FILE_CREATE] Updated path / undeleted existing book with hash '{}': '{}'", currentHash, path);
@@ -57,7 +63,7 @@ public class BookFilePersistenceService {
 
     @Transactional(readOnly = true)
     public Optional<BookEntity> findByHash(String hash) {
-        return bookRepository.findByCurrentHash(hash);
+        return bookHashIndex.findBookByHash(hash);
     }
 
     String findMatchingLibraryPath(LibraryEntity libraryEntity, Path filePath) {
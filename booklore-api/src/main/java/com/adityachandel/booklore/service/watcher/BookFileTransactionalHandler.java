@@ -6,8 +6,6 @@ import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.LibraryEntity;
 import com.adityachandel.booklore.model.entity.LibraryPathEntity;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
-import com.adityachandel.booklore.model.enums.BookFileType;
-import com.adityachandel.booklore.model.enums.PermissionType;
 import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.LibraryRepository;
 import com.adityachandel.booklore.service.NotificationService;
@@ -19,9 +17,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.nio.file.Path;
-import java.util.List;
-import java.util.Optional;
-import java.util.Set;
+import java.nio.file.Paths;
+import java.util.*;
 
 import static com.adityachandel.booklore.model.enums.PermissionType.ADMIN;
 import static com.adityachandel.booklore.model.enums.PermissionType.MANIPULATE_LIBRARY;
@@ -39,24 +36,97 @@ public class BookFileTransactionalHandler {
 
     @Transactional()
     public void handleNewBookFile(long libraryId, Path path, String currentHash) {
+        handleNewBookFiles(libraryId, Map.of(path, currentHash));
+    }
+
+    /**
+     * Persists a batch of newly detected files of one library in a single transaction. Files whose hash is already
+     * known are treated as moves, everything else is handed to the library's file processor in one call.
+     */
+    @Transactional()
+    public void handleNewBookFiles(long libraryId, Map<Path, String> hashesByPath) {
         LibraryEntity libraryEntity = libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
 
-        Optional<BookEntity> existingOpt = bookFilePersistenceService.findByHash(currentHash);
-        if (existingOpt.isPresent()) {
-            BookEntity existingBook = existingOpt.get();
-            bookFilePersistenceService.updatePathIfChanged(existingBook, libraryEntity, path, currentHash);
+        List<LibraryFile> libraryFiles = new ArrayList<>();
+        hashesByPath.forEach((path, currentHash) -> {
+            Optional<BookEntity> existingOpt = bookFilePersistenceService.findByHash(currentHash);
+            if (existingOpt.isPresent()) {
+                bookFilePersistenceService.updatePathIfChanged(existingOpt.get(), libraryEntity, path, currentHash);
+                return;
+            }
+            try {
+                libraryFiles.add(toLibraryFile(libraryEntity, path));
+            } catch (RuntimeException e) {
+                log.warn("[SKIP] Cannot process '{}': {}", path, e.getMessage());
+            }
+        });
+
+        if (libraryFiles.isEmpty()) {
             return;
         }
 
-        String filePath = path.toString();
-        String fileName = path.getFileName().toString();
-        String libraryPath = bookFilePersistenceService.findMatchingLibraryPath(libraryEntity, path);
+        String description = libraryFiles.size() == 1
+                ? "file: " + libraryFiles.getFirst().getFullPath()
+                : libraryFiles.size() + " files in library: " + libraryEntity.getName();
+        notificationService.sendMessageToPermissions(Topic.LOG, createLogNotification("Started processing " + description), Set.of(ADMIN, MANIPULATE_LIBRARY));
+
+        libraryProcessingService.processLibraryFiles(libraryFiles, libraryEntity);
 
-        notificationService.sendMessageToPermissions(Topic.LOG, createLogNotification("Started processing file: " + filePath), Set.of(ADMIN, MANIPULATE_LIBRARY));
+        notificationService.sendMessageToPermissions(Topic.LOG, createLogNotification("Finished processing " + description), Set.of(ADMIN, MANIPULATE_LIBRARY));
+        log.info("[CREATE] Completed processing of {} file(s) in library '{}'", libraryFiles.size(), libraryEntity.getName());
+    }
+
+    /**
+     * Marks the books behind a batch of deleted files of one library as deleted and sends a single removal event.
+     */
+    @Transactional()
+    public void handleDeletedBookFiles(long libraryId, Collection<Path> paths) {
+        LibraryEntity libraryEntity = libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
 
+        Set<Long> removedIds = new LinkedHashSet<>();
+        for (Path path : paths) {
+            try {
+                String libPath = bookFilePersistenceService.findMatchingLibraryPath(libraryEntity, path);
+                LibraryPathEntity libPathEntity = bookFilePersistenceService.getLibraryPathEntityForFile(libraryEntity, libPath);
+
+                Path relPath = Paths.get(libPathEntity.getPath()).relativize(path);
+                String fileName = relPath.getFileName().toString();
+                String fileSubPath = Optional.ofNullable(relPath.getParent()).map(Path::toString).orElse("");
+
+                bookFilePersistenceService.findByLibraryPathSubPathAndFileName(libPathEntity.getId(), fileSubPath, fileName)
+                        .ifPresentOrElse(book -> {
+                            book.setDeleted(true);
+                            bookFilePersistenceService.save(book);
+                            removedIds.add(book.getId());
+                            log.info("[MARKED_DELETED] Book '{}' marked as deleted", fileName);
+                        }, () -> log.warn("[NOT_FOUND] Book for deleted path '{}' not found", path));
+            } catch (Exception e) {
+                log.warn("[ERROR] While handling file delete '{}': {}", path, e.getMessage());
+            }
+        }
+
+        if (!removedIds.isEmpty()) {
+            notificationService.sendMessageToPermissions(Topic.BOOKS_REMOVE, removedIds, Set.of(ADMIN, MANIPULATE_LIBRARY));
+        }
+    }
+
+    @Transactional()
+    public void handleDeletedFolder(long libraryId, Path folderPath) {
+        LibraryEntity libraryEntity = libraryRepository.findById(libraryId).orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(libraryId));
+        String libPath = bookFilePersistenceService.findMatchingLibraryPath(libraryEntity, folderPath);
+        LibraryPathEntity libPathEntity = bookFilePersistenceService.getLibraryPathEntityForFile(libraryEntity, libPath);
+
+        String relativePrefix = FileUtils.getRelativeSubPath(libPathEntity.getPath(), folderPath);
+        int count = bookFilePersistenceService.markAllBooksUnderPathAsDeleted(libPathEntity.getId(), relativePrefix);
+        log.info("[MARKED_DELETED] {} books under '{}'", count, folderPath);
+    }
+
+    private LibraryFile toLibraryFile(LibraryEntity libraryEntity, Path path) {
+        String fileName = path.getFileName().toString();
+        String libraryPath = bookFilePersistenceService.findMatchingLibraryPath(libraryEntity, path);
         LibraryPathEntity libraryPathEntity = bookFilePersistenceService.getLibraryPathEntityForFile(libraryEntity, libraryPath);
 
-        LibraryFile libraryFile = LibraryFile.builder()
+        return LibraryFile.builder()
                 .libraryEntity(libraryEntity)
                 .libraryPathEntity(libraryPathEntity)
                 .fileSubPath(FileUtils.getRelativeSubPath(libraryPathEntity.getPath(), path))
@@ -65,10 +135,5 @@ public class BookFileTransactionalHandler {
                         .map(BookFileExtension::getType)
                         .orElseThrow(() -> new IllegalArgumentException("Unsupported book file type: " + fileName)))
                 .build();
-
-        libraryProcessingService.processLibraryFiles(List.of(libraryFile), libraryEntity);
-
-        notificationService.sendMessageToPermissions(Topic.LOG, createLogNotification("Finished processing file: " + filePath), Set.of(ADMIN, MANIPULATE_LIBRARY));
-        log.info("[CREATE] Completed processing for file '{}'", filePath);
     }
 }
@@ -1,179 +1,259 @@
 package com.adityachandel.booklore.service.watcher;
 
-import com.adityachandel.booklore.exception.ApiError;
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.entity.LibraryEntity;
 import com.adityachandel.booklore.model.entity.LibraryPathEntity;
 import com.adityachandel.booklore.model.enums.BookFileExtension;
-import com.adityachandel.booklore.model.enums.PermissionType;
-import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.LibraryRepository;
 import com.adityachandel.booklore.service.FileFingerprint;
-import com.adityachandel.booklore.service.NotificationService;
-import com.adityachandel.booklore.util.FileUtils;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
 import java.nio.file.*;
-import java.time.Duration;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
+/**
+ * Batching pipeline between the directory watcher and the database.
+ * <p>
+ * Events are coalesced per path until the path has been quiet for {@code app.watcher.quiet-period-ms}, then grouped by
+ * library and parent directory. Each group is persisted as one batch on a bounded worker pool; batches of the same
+ * directory run strictly one after another so a delete and a later re-create never overtake each other. Events for
+ * paths BookLore is changing itself are dropped, see {@link WatchSuppressionService}.
+ */
 @Slf4j
 @Service
-@AllArgsConstructor
 public class LibraryFileEventProcessor {
 
-    private static final long DEBOUNCE_MS = 500L;
-
-    private final BlockingQueue<FileEvent> eventQueue = new LinkedBlockingQueue<>();
     private final LibraryRepository libraryRepository;
     private final BookFileTransactionalHandler bookFileTransactionalHandler;
-    private final BookFilePersistenceService bookFilePersistenceService;
-    private final NotificationService notificationService;
+    private final WatchSuppressionService watchSuppressionService;
+    private final AppProperties.Watcher settings;
+
+    private final ConcurrentMap<Path, PendingEvent> pendingEvents = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Path, CompletableFuture<Void>> directoryTails = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedBatches = new AtomicInteger();
+
+    private final Timer eventLatency;
+    private final Timer batchDuration;
+    private final DistributionSummary batchSize;
 
-    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final ConcurrentMap<Path, ScheduledFuture<?>> pendingDeletes = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private ExecutorService workers;
+
+    public LibraryFileEventProcessor(LibraryRepository libraryRepository,
+                                     BookFileTransactionalHandler bookFileTransactionalHandler,
+                                     WatchSuppressionService watchSuppressionService,
+                                     AppProperties appProperties,
+                                     MeterRegistry meterRegistry) {
+        this.libraryRepository = libraryRepository;
+        this.bookFileTransactionalHandler = bookFileTransactionalHandler;
+        this.watchSuppressionService = watchSuppressionService;
+        this.settings = appProperties.getWatcher();
+
+        Gauge.builder("booklore.watcher.pending.events", pendingEvents, Map::size)
+                .description("File events waiting for their quiet period to elapse")
+                .register(meterRegistry);
+        Gauge.builder("booklore.watcher.queued.batches", queuedBatches, AtomicInteger::get)
+                .description("Coalesced batches waiting for or running on a worker")
+                .register(meterRegistry);
+        this.eventLatency = Timer.builder("booklore.watcher.event.latency")
+                .description("Time from the first event on a path until its batch was persisted")
+                .register(meterRegistry);
+        this.batchDuration = Timer.builder("booklore.watcher.batch.duration")
+                .description("Time spent persisting a single batch")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("booklore.watcher.batch.size")
+                .description("Number of coalesced events per batch")
+                .register(meterRegistry);
+    }
 
     @PostConstruct
     public void init() {
-        Thread.ofVirtual().start(() -> {
-            log.info("LibraryFileEventProcessor virtual thread started.");
-            while (!Thread.currentThread().isInterrupted()) {
-                try {
-                    handleEvent(eventQueue.take());
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                    log.warn("LibraryFileEventProcessor virtual thread interrupted.");
-                } catch (Exception e) {
-                    log.error("Error while processing file event", e);
-                }
-            }
-        });
+        int threads = Math.max(1, settings.getWorkerThreads());
+        long tickMs = Math.max(100L, settings.getQuietPeriodMs() / 4);
+        workers = Executors.newFixedThreadPool(threads, Thread.ofPlatform().name("watcher-worker-", 0).daemon().factory());
+        scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("watcher-flush").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::flushQuietEvents, tickMs, tickMs, TimeUnit.MILLISECONDS);
+        log.info("LibraryFileEventProcessor started with {} workers and a {} ms quiet period", threads, settings.getQuietPeriodMs());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        log.info("Shutting down LibraryFileEventProcessor...");
+        scheduler.shutdownNow();
+        workers.shutdownNow();
     }
 
     public void processFile(WatchEvent.Kind<?> eventKind, long libraryId, String libraryPath, String filePath) {
         Path path = Paths.get(filePath).toAbsolutePath().normalize();
+        if (watchSuppressionService.isSuppressed(path)) {
+            log.debug("[SUPPRESSED] {} '{}'", eventKind.name(), path);
+            return;
+        }
+        long now = System.nanoTime();
+        pendingEvents.compute(path, (p, existing) -> coalesce(existing, eventKind, libraryId, now));
+    }
 
-        if (eventKind == StandardWatchEventKinds.ENTRY_DELETE) {
-            // Schedule DELETE after debounce
-            ScheduledFuture<?> existing = pendingDeletes.put(path, scheduler.schedule(() -> {
-                eventQueue.offer(new FileEvent(eventKind, libraryId, libraryPath, filePath));
-                pendingDeletes.remove(path);
-            }, DEBOUNCE_MS, TimeUnit.MILLISECONDS));
-
-            if (existing != null) existing.cancel(false);
-        } else if (eventKind == StandardWatchEventKinds.ENTRY_CREATE) {
-            // If a DELETE is pending for this path, cancel both DELETE and CREATE
-            ScheduledFuture<?> pendingDelete = pendingDeletes.remove(path);
-            if (pendingDelete != null) {
-                pendingDelete.cancel(false);
-                log.info("[DEBOUNCE] CREATE ignored because pending DELETE exists for '{}'", path);
-                return;
+    /**
+     * Folds a new event into whatever is already pending for the same path. Returns {@code null} when the two events
+     * cancel each other out: a delete followed by a create is an in-place replace of a file we already know, a create
+     * followed by a delete is a temporary file that never needs to reach the database.
+     */
+    private PendingEvent coalesce(PendingEvent existing, WatchEvent.Kind<?> kind, long libraryId, long now) {
+        if (existing == null) {
+            // Modifications only matter as a signal that a pending copy is still in progress.
+            return kind == StandardWatchEventKinds.ENTRY_MODIFY ? null : new PendingEvent(kind, libraryId, now, now);
+        }
+        if (kind == StandardWatchEventKinds.ENTRY_MODIFY || kind == existing.kind()) {
+            return existing.touch(now);
+        }
+        log.debug("[DEBOUNCE] {} followed by {} cancel out", existing.kind().name(), kind.name());
+        return null;
+    }
+
+    private void flushQuietEvents() {
+        try {
+            long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(settings.getQuietPeriodMs());
+            Map<BatchKey, List<ReadyEvent>> batches = new LinkedHashMap<>();
+            for (Map.Entry<Path, PendingEvent> entry : pendingEvents.entrySet()) {
+                PendingEvent event = entry.getValue();
+                if (event.lastSeen() > cutoff || !pendingEvents.remove(entry.getKey(), event)) {
+                    continue;
+                }
+                Path path = entry.getKey();
+                Path directory = Optional.ofNullable(path.getParent()).orElse(path);
+                batches.computeIfAbsent(new BatchKey(event.libraryId(), directory), k -> new ArrayList<>())
+                        .add(new ReadyEvent(event.kind(), path, event.firstSeen()));
             }
-            // Otherwise process CREATE immediately
-            eventQueue.offer(new FileEvent(eventKind, libraryId, libraryPath, filePath));
-        } else {
-            // Other events
-            eventQueue.offer(new FileEvent(eventKind, libraryId, libraryPath, filePath));
+            batches.forEach(this::dispatch);
+        } catch (Exception e) {
+            log.error("Error while flushing file events", e);
         }
     }
 
-    private void handleEvent(FileEvent event) {
-        Path path = Paths.get(event.filePath()).toAbsolutePath().normalize();
-        String fileName = path.getFileName().toString();
-        log.info("[PROCESS] '{}' event for '{}'", event.eventKind().name(), fileName);
+    private void dispatch(BatchKey key, List<ReadyEvent> events) {
+        queuedBatches.incrementAndGet();
+        Runnable task = () -> {
+            try {
+                processBatch(key, events);
+            } catch (Exception e) {
+                log.error("Error while processing {} file event(s) in '{}'", events.size(), key.directory(), e);
+            } finally {
+                queuedBatches.decrementAndGet();
+            }
+        };
+        CompletableFuture<Void> tail = directoryTails.compute(key.directory(), (dir, previous) ->
+                previous == null
+                        ? CompletableFuture.runAsync(task, workers)
+                        : previous.thenRunAsync(task, workers));
+        tail.whenComplete((ignored, error) -> directoryTails.remove(key.directory(), tail));
+    }
 
-        LibraryEntity library = libraryRepository.findById(event.libraryId())
-                .orElseThrow(() -> ApiError.LIBRARY_NOT_FOUND.createException(event.libraryId()));
+    private void processBatch(BatchKey key, List<ReadyEvent> events) {
+        Timer.Sample sample = Timer.start();
+        batchSize.record(events.size());
 
-        if (library.getLibraryPaths().stream().noneMatch(lp -> path.startsWith(lp.getPath()))) {
-            log.warn("[SKIP] Path outside of library: '{}'", path);
+        Optional<LibraryEntity> libraryOpt = libraryRepository.findById(key.libraryId());
+        if (libraryOpt.isEmpty()) {
+            log.warn("[SKIP] Library {} no longer exists, dropping {} event(s)", key.libraryId(), events.size());
             return;
         }
+        List<Path> libraryRoots = libraryOpt.get().getLibraryPaths().stream()
+                .map(LibraryPathEntity::getPath)
+                .map(p -> Paths.get(p).toAbsolutePath().normalize())
+                .toList();
 
-        if (isFolder(path)) {
-            switch (event.eventKind().name()) {
-                case "ENTRY_CREATE" -> handleFolderCreate(library, path);
-                case "ENTRY_DELETE" -> handleFolderDelete(library, path);
-                default -> log.warn("[SKIP] Folder event '{}' ignored for '{}'", event.eventKind().name(), fileName);
+        List<Path> createdFiles = new ArrayList<>();
+        List<Path> deletedFiles = new ArrayList<>();
+        for (ReadyEvent event : events) {
+            Path path = event.path();
+            if (libraryRoots.stream().noneMatch(path::startsWith)) {
+                log.warn("[SKIP] Path outside of library: '{}'", path);
+                continue;
+            }
+            boolean create = event.kind() == StandardWatchEventKinds.ENTRY_CREATE;
+            if (isFolder(path)) {
+                log.info("[{}] '{}'", create ? "FOLDER_CREATE" : "FOLDER_DELETE", path);
+                if (create) {
+                    collectBookFiles(path, createdFiles);
+                } else {
+                    handleFolderDelete(key.libraryId(), path);
+                }
+            } else if (isBookFile(path.getFileName().toString())) {
+                (create ? createdFiles : deletedFiles).add(path);
+            } else {
+                log.debug("[SKIP] Ignored non-book file '{}'", path.getFileName());
             }
-            return;
         }
 
-        if (!isBookFile(fileName)) {
-            log.debug("[SKIP] Ignored non-book file '{}'", fileName);
-            return;
+        if (!deletedFiles.isEmpty()) {
+            log.info("[FILE_DELETE] {} file(s) in '{}'", deletedFiles.size(), key.directory());
+            bookFileTransactionalHandler.handleDeletedBookFiles(key.libraryId(), deletedFiles);
         }
-
-        switch (event.eventKind().name()) {
-            case "ENTRY_CREATE" -> handleFileCreate(library, path);
-            case "ENTRY_DELETE" -> handleFileDelete(library, path);
-            default -> log.debug("[SKIP] File event '{}' ignored for '{}'", event.eventKind().name(), fileName);
+        for (int from = 0; from < createdFiles.size(); from += Math.max(1, settings.getMaxBatchSize())) {
+            List<Path> chunk = createdFiles.subList(from, Math.min(createdFiles.size(), from + Math.max(1, settings.getMaxBatchSize())));
+            handleFileCreates(key.libraryId(), chunk);
         }
-    }
 
-    private void handleFileCreate(LibraryEntity library, Path path) {
-        log.info("[FILE_CREATE] '{}'", path);
-        String hash = FileFingerprint.generateHash(path);
-        bookFileTransactionalHandler.handleNewBookFile(library.getId(), path, hash);
+        long batchNanos = sample.stop(batchDuration);
+        long now = System.nanoTime();
+        events.forEach(event -> eventLatency.record(now - event.firstSeen(), TimeUnit.NANOSECONDS));
+        log.info("[BATCH] {} event(s) in '{}' processed in {} ms", events.size(), key.directory(), TimeUnit.NANOSECONDS.toMillis(batchNanos));
     }
 
-    private void handleFileDelete(LibraryEntity library, Path path) {
-        log.info("[FILE_DELETE] '{}'", path);
+    private void handleFileCreates(long libraryId, List<Path> paths) {
+        Map<Path, String> hashes = new LinkedHashMap<>();
+        for (Path path : paths) {
+            try {
+                hashes.put(path, FileFingerprint.generateHash(path));
+            } catch (Exception e) {
+                log.warn("[ERROR] Hashing file '{}': {}", path, e.getMessage());
+            }
+        }
+        if (hashes.isEmpty()) {
+            return;
+        }
+        log.info("[FILE_CREATE] {} file(s), first '{}'", hashes.size(), hashes.keySet().iterator().next());
         try {
-            String libPath = bookFilePersistenceService.findMatchingLibraryPath(library, path);
-            LibraryPathEntity libPathEntity = bookFilePersistenceService.getLibraryPathEntityForFile(library, libPath);
-
-            Path relPath = Paths.get(libPathEntity.getPath()).relativize(path);
-            String fileName = relPath.getFileName().toString();
-            String fileSubPath = Optional.ofNullable(relPath.getParent()).map(Path::toString).orElse("");
-
-            bookFilePersistenceService.findByLibraryPathSubPathAndFileName(libPathEntity.getId(), fileSubPath, fileName)
-                    .ifPresentOrElse(book -> {
-                        book.setDeleted(true);
-                        bookFilePersistenceService.save(book);
-                        notificationService.sendMessageToPermissions(Topic.BOOKS_REMOVE, Set.of(book.getId()),
-                                Set.of(PermissionType.ADMIN, PermissionType.MANIPULATE_LIBRARY));
-                        log.info("[MARKED_DELETED] Book '{}' marked as deleted", fileName);
-                    }, () -> log.warn("[NOT_FOUND] Book for deleted path '{}' not found", path));
-
+            bookFileTransactionalHandler.handleNewBookFiles(libraryId, hashes);
         } catch (Exception e) {
-            log.warn("[ERROR] While handling file delete '{}': {}", path, e.getMessage());
+            log.warn("[ERROR] Batch of {} file(s) failed, retrying individually: {}", hashes.size(), e.getMessage());
+            hashes.forEach((path, hash) -> {
+                try {
+                    bookFileTransactionalHandler.handleNewBookFile(libraryId, path, hash);
+                } catch (Exception fileError) {
+                    log.warn("[ERROR] Processing file '{}': {}", path, fileError.getMessage());
+                }
+            });
         }
     }
 
-    private void handleFolderCreate(LibraryEntity library, Path folderPath) {
-        log.info("[FOLDER_CREATE] '{}'", folderPath);
-        try (var stream = Files.walk(folderPath)) {
+    private void collectBookFiles(Path folderPath, List<Path> target) {
+        try (Stream<Path> stream = Files.walk(folderPath)) {
             stream.filter(Files::isRegularFile)
                     .filter(p -> isBookFile(p.getFileName().toString()))
-                    .forEach(p -> {
-                        try {
-                            String hash = FileFingerprint.generateHash(p);
-                            bookFileTransactionalHandler.handleNewBookFile(library.getId(), p, hash);
-                        } catch (Exception e) {
-                            log.warn("[ERROR] Processing file '{}': {}", p, e.getMessage());
-                        }
-                    });
+                    // A folder created for an upload or move already holds a file that is being handled.
+                    .filter(p -> !watchSuppressionService.isSuppressed(p))
+                    .forEach(target::add);
         } catch (IOException e) {
             log.warn("[ERROR] Walking folder '{}': {}", folderPath, e.getMessage());
         }
     }
 
-    private void handleFolderDelete(LibraryEntity library, Path folderPath) {
-        log.info("[FOLDER_DELETE] '{}'", folderPath);
+    private void handleFolderDelete(long libraryId, Path folderPath) {
         try {
-            String libPath = bookFilePersistenceService.findMatchingLibraryPath(library, folderPath);
-            LibraryPathEntity libPathEntity = bookFilePersistenceService.getLibraryPathEntityForFile(library, libPath);
-
-            String relativePrefix = FileUtils.getRelativeSubPath(libPathEntity.getPath(), folderPath);
-            int count = bookFilePersistenceService.markAllBooksUnderPathAsDeleted(libPathEntity.getId(), relativePrefix);
-            log.info("[MARKED_DELETED] {} books under '{}'", count, folderPath);
+            bookFileTransactionalHandler.handleDeletedFolder(libraryId, folderPath);
         } catch (Exception e) {
             log.warn("[ERROR] Folder delete '{}': {}", folderPath, e.getMessage());
         }
@@ -187,12 +267,15 @@ public class LibraryFileEventProcessor {
         return BookFileExtension.fromFileName(fileName).isPresent();
     }
 
-    @PreDestroy
-    public void shutdown() {
-        scheduler.shutdownNow();
-        log.info("Shutting down LibraryFileEventProcessor...");
+    private record PendingEvent(WatchEvent.Kind<?> kind, long libraryId, long firstSeen, long lastSeen) {
+        PendingEvent touch(long now) {
+            return new PendingEvent(kind, libraryId, firstSeen, now);
+        }
+    }
+
+    private record ReadyEvent(WatchEvent.Kind<?> kind, Path path, long firstSeen) {
     }
 
-    public record FileEvent(WatchEvent.Kind<?> eventKind, long libraryId, String libraryPath, String filePath) {
+    private record BatchKey(long libraryId, Path directory) {
     }
-}
\ No newline at end of file
+}
@@ -7,9 +7,10 @@ import com.adityachandel.booklore.model.dto.settings.LibraryFile;
 import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
 import com.adityachandel.booklore.model.entity.BookEntity;
 import com.adityachandel.booklore.model.entity.BookMetadataEntity;
-import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
-import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.mapper.BookMapper;
+import com.adityachandel.booklore.service.BookHashIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -40,6 +41,8 @@ import java.util.stream.Stream;
 public class FileService {
 
     private final AppProperties appProperties;
+    private final BookHashIndex bookHashIndex;
+    private final MeterRegistry meterRegistry;
 
     // @formatter:off
     private static final String IMAGES_DIR          = "images";
@@ -72,6 +75,20 @@ public class FileService {
     }
 
     public boolean saveCoverImages(BufferedImage coverImage, long bookId) throws IOException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        boolean saved = false;
+        try {
+            saved = writeCoverImages(coverImage, bookId);
+            return saved;
+        } finally {
+            sample.stop(Timer.builder("booklore.cover.render")
+                    .description("Time spent scaling and encoding a cover and its thumbnail")
+                    .tag("outcome", saved ? "saved" : "failed")
+                    .register(meterRegistry));
+        }
+    }
+
+    private boolean writeCoverImages(BufferedImage coverImage, long bookId) throws IOException {
         String folderPath = getImagesFolder(bookId);
         File folder = new File(folderPath);
         if (!folder.exists() && !folder.mkdirs()) {
@@ -134,12 +151,12 @@ public class FileService {
     }
 
     @Transactional
-    public Optional<Book> checkForDuplicateAndUpdateMetadataIfNeeded(LibraryFile libraryFile, String hash, BookRepository bookRepository, BookAdditionalFileRepository bookAdditionalFileRepository, BookMapper bookMapper) {
+    public Optional<Book> checkForDuplicateAndUpdateMetadataIfNeeded(LibraryFile libraryFile, String hash, BookMapper bookMapper) {
         if (StringUtils.isBlank(hash)) {
             log.warn("Skipping file due to missing hash: {}", libraryFile.getFullPath());
             return Optional.empty();
         }
-        Optional<BookEntity> existingByHash = bookRepository.findByCurrentHash(hash);
+        Optional<BookEntity> existingByHash = bookHashIndex.findBookByHash(hash);
         if (existingByHash.isPresent()) {
             BookEntity book = existingByHash.get();
             String fileName = libraryFile.getFullPath().getFileName().toString();
@@ -152,7 +169,7 @@ public class FileService {
             }
             return Optional.of(bookMapper.toBook(book));
         }
-        Optional<BookAdditionalFileEntity> existingAdditionalFile = bookAdditionalFileRepository.findByAltFormatCurrentHash(hash);
+        Optional<BookAdditionalFileEntity> existingAdditionalFile = bookHashIndex.findAlternativeFormatByHash(hash);
         if (existingAdditionalFile.isPresent()) {
             BookAdditionalFileEntity additionalFile = existingAdditionalFile.get();
             BookEntity book = additionalFile.getBook();
@@ -0,0 +1,184 @@
+package com.adityachandel.booklore.util;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing map from a 128-bit hex fingerprint to a positive id, kept as three parallel {@code long} arrays so
+ * each entry costs 24 bytes instead of a hex {@code String}, a boxed {@code Long} and a hash map node.
+ * <p>
+ * Keys that are not exactly 32 hex digits cannot be stored; check {@link #isIndexable(String)} first. Not thread
+ * safe, callers guard it with their own lock.
+ */
+public final class Hash128Index {
+
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = -1L;
+    private static final int HEX_LENGTH = 32;
+    private static final double MAX_LOAD = 0.6;
+
+    private long[] highs;
+    private long[] lows;
+    private long[] values;
+    private int size;
+    private int occupied;
+
+    public Hash128Index() {
+        this(1024);
+    }
+
+    public Hash128Index(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public static boolean isIndexable(String hex) {
+        if (hex == null || hex.length() != HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HEX_LENGTH; i++) {
+            if (Character.digit(hex.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the id stored for the fingerprint, or 0 if there is none
+     */
+    public long get(String hex) {
+        long high = high(hex);
+        long low = low(hex);
+        int mask = values.length - 1;
+        for (int slot = slot(high, low, mask); ; slot = (slot + 1) & mask) {
+            long value = values[slot];
+            if (value == EMPTY) {
+                return 0L;
+            }
+            if (value != TOMBSTONE && highs[slot] == high && lows[slot] == low) {
+                return value;
+            }
+        }
+    }
+
+    public void put(String hex, long id) {
+        if (id <= 0) {
+            throw new IllegalArgumentException("Ids must be positive: " + id);
+        }
+        long high = high(hex);
+        long low = low(hex);
+        int mask = values.length - 1;
+        int firstTombstone = -1;
+        int slot = slot(high, low, mask);
+        for (; ; slot = (slot + 1) & mask) {
+            long value = values[slot];
+            if (value == EMPTY) {
+                break;
+            }
+            if (value == TOMBSTONE) {
+                if (firstTombstone < 0) {
+                    firstTombstone = slot;
+                }
+            } else if (highs[slot] == high && lows[slot] == low) {
+                values[slot] = id;
+                return;
+            }
+        }
+        if (firstTombstone >= 0) {
+            slot = firstTombstone;
+        } else {
+            occupied++;
+        }
+        highs[slot] = high;
+        lows[slot] = low;
+        values[slot] = id;
+        size++;
+        if (occupied > values.length * MAX_LOAD) {
+            rehash(capacityFor(size));
+        }
+    }
+
+    /**
+     * Removes the fingerprint only if it still maps to {@code expectedId}, so a late removal cannot drop a newer
+     * entry for the same content.
+     */
+    public boolean remove(String hex, long expectedId) {
+        long high = high(hex);
+        long low = low(hex);
+        int mask = values.length - 1;
+        for (int slot = slot(high, low, mask); ; slot = (slot + 1) & mask) {
+            long value = values[slot];
+            if (value == EMPTY) {
+                return false;
+            }
+            if (value != TOMBSTONE && highs[slot] == high && lows[slot] == low) {
+                if (value != expectedId) {
+                    return false;
+                }
+                values[slot] = TOMBSTONE;
+                size--;
+                return true;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        allocate(capacityFor(0));
+    }
+
+    private void rehash(int capacity) {
+        long[] oldHighs = highs;
+        long[] oldLows = lows;
+        long[] oldValues = values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            long value = oldValues[i];
+            if (value == EMPTY || value == TOMBSTONE) {
+                continue;
+            }
+            int slot = slot(oldHighs[i], oldLows[i], mask);
+            while (values[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            highs[slot] = oldHighs[i];
+            lows[slot] = oldLows[i];
+            values[slot] = value;
+            size++;
+            occupied++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        highs = new long[capacity];
+        lows = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(values, EMPTY);
+        size = 0;
+        occupied = 0;
+    }
+
+    private static int capacityFor(int entries) {
+        int capacity = 16;
+        while (capacity * MAX_LOAD < entries * 2L && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int slot(long high, long low, int mask) {
+        long mixed = (high ^ low) * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    private static long high(String hex) {
+        return Long.parseUnsignedLong(hex, 0, 16, 16);
+    }
+
+    private static long low(String hex) {
+        return Long.parseUnsignedLong(hex, 16, HEX_LENGTH, 16);
+    }
+}
@@ -0,0 +1,78 @@
+package com.adityachandel.booklore.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BinaryOperator;
+
+/**
+ * Coalesces writes per key in memory until they are flushed to the database.
+ * <p>
+ * {@link #put} merges a new value into whatever is pending for the key. {@link #drain()} hands the pending values to
+ * a flush and keeps them readable as in flight until {@link #complete(Map)}, so {@link #get} sees the latest state
+ * at every point, including while the flush transaction is still running. The merge function must return a new value
+ * rather than modify either argument, and a newer value must include everything the older one did.
+ */
+public final class WriteBehindBuffer<K, V> {
+
+    private final Map<K, V> pending = new ConcurrentHashMap<>();
+    private final Map<K, V> inFlight = new ConcurrentHashMap<>();
+    private final BinaryOperator<V> merge;
+
+    public WriteBehindBuffer(BinaryOperator<V> merge) {
+        this.merge = merge;
+    }
+
+    public void put(K key, V value) {
+        pending.merge(key, value, merge);
+    }
+
+    public Optional<V> get(K key) {
+        V flushing = inFlight.get(key);
+        V queued = pending.get(key);
+        if (flushing != null && queued != null) {
+            return Optional.of(merge.apply(flushing, queued));
+        }
+        return Optional.ofNullable(queued != null ? queued : flushing);
+    }
+
+    public int size() {
+        return pending.size() + inFlight.size();
+    }
+
+    /**
+     * Moves everything pending to in flight and returns it. Callers must serialise drains and pass the result to
+     * {@link #complete(Map)} once it is written or given up on.
+     */
+    public Map<K, V> drain() {
+        Map<K, V> batch = new HashMap<>();
+        for (K key : pending.keySet()) {
+            V value = pending.get(key);
+            if (value == null) {
+                continue;
+            }
+            // Publish as in flight before removing, so readers never see neither.
+            inFlight.put(key, value);
+            if (pending.remove(key, value)) {
+                batch.put(key, value);
+            } else {
+                // Updated meanwhile: the newer pending value supersedes this one and goes out with the next flush.
+                inFlight.remove(key, value);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Puts a drained value that could not be written back as pending, ahead of anything queued for the key since.
+     */
+    public void requeue(K key, V value) {
+        pending.merge(key, value, (queued, failed) -> merge.apply(failed, queued));
+        inFlight.remove(key, value);
+    }
+
+    public void complete(Map<K, V> batch) {
+        batch.forEach(inFlight::remove);
+    }
+}
@@ -0,0 +1,333 @@
+package com.adityachandel.booklore.util.epub;
+
+import lombok.Getter;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Random-access view of an EPUB package.
+ * <p>
+ * Only the ZIP central directory, {@code META-INF/container.xml} and the OPF package document are read when the
+ * container is opened; every other entry is inflated on demand. Unlike epub4j's {@code EpubReader}, which loads every
+ * resource of the book into memory, this keeps cover and metadata extraction cheap for image-heavy books.
+ */
+public final class EpubContainer implements Closeable {
+
+    private static final String CONTAINER_PATH = "META-INF/container.xml";
+    private static final long MAX_ENTRY_SIZE = 64L * 1024 * 1024;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createInputFactory();
+
+    private final ZipFile zip;
+    @Getter
+    private final String opfPath;
+    private final List<ManifestItem> manifest;
+    private final String coverId;
+    private Map<String, ZipArchiveEntry> entriesByLowerCaseName;
+
+    /**
+     * An item of the OPF manifest, with {@code href} resolved to a ZIP entry name.
+     */
+    public record ManifestItem(String id, String href, String mediaType, Set<String> properties) {
+        public boolean isImage() {
+            return mediaType != null && mediaType.toLowerCase(Locale.ROOT).startsWith("image");
+        }
+    }
+
+    private EpubContainer(ZipFile zip, String opfPath, List<ManifestItem> manifest, String coverId) {
+        this.zip = zip;
+        this.opfPath = opfPath;
+        this.manifest = manifest;
+        this.coverId = coverId;
+    }
+
+    public static EpubContainer open(File file) throws IOException {
+        return open(ZipFile.builder().setFile(file).get(), file.getName());
+    }
+
+    /**
+     * Opens the package on top of a channel owned by the caller, e.g. one that is also used to fingerprint the file.
+     * Closing the container does not close the channel.
+     */
+    public static EpubContainer open(SeekableByteChannel channel, String name) throws IOException {
+        return open(ZipFile.builder().setSeekableByteChannel(new NonClosingChannel(channel)).get(), name);
+    }
+
+    private static EpubContainer open(ZipFile zip, String name) throws IOException {
+        try {
+            String opfPath = readOpfPath(zip);
+            ZipArchiveEntry opfEntry = zip.getEntry(opfPath);
+            if (opfEntry == null) {
+                throw new IOException("OPF package '" + opfPath + "' not found in " + name);
+            }
+            ManifestParser parser = new ManifestParser(baseDirectory(opfPath));
+            try (InputStream in = zip.getInputStream(opfEntry)) {
+                parser.parse(in);
+            }
+            return new EpubContainer(zip, opfPath, parser.items, parser.coverId);
+        } catch (IOException | RuntimeException e) {
+            zip.close();
+            throw e;
+        }
+    }
+
+    public List<ManifestItem> getManifest() {
+        return Collections.unmodifiableList(manifest);
+    }
+
+    public InputStream openOpf() throws IOException {
+        return openEntry(opfPath);
+    }
+
+    public InputStream openEntry(String name) throws IOException {
+        ZipArchiveEntry entry = findEntry(name);
+        if (entry == null) {
+            throw new IOException("Entry '" + name + "' not found");
+        }
+        return zip.getInputStream(entry);
+    }
+
+    public byte[] readEntry(String name) throws IOException {
+        ZipArchiveEntry entry = findEntry(name);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.getSize() > MAX_ENTRY_SIZE) {
+            throw new IOException("Entry '" + name + "' is too large (" + entry.getSize() + " bytes)");
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            return in.readNBytes((int) MAX_ENTRY_SIZE);
+        }
+    }
+
+    /**
+     * Resolves the cover image the same way reading systems do: the EPUB 3 {@code cover-image} manifest property,
+     * then the EPUB 2 {@code <meta name="cover">} reference, then any image whose id or href mentions "cover".
+     */
+    public Optional<ManifestItem> findCover() {
+        Optional<ManifestItem> cover = manifest.stream()
+                .filter(item -> item.properties().contains("cover-image"))
+                .findFirst();
+        if (cover.isEmpty() && coverId != null) {
+            cover = manifest.stream()
+                    .filter(item -> coverId.equals(item.id()) || item.href().endsWith(coverId))
+                    .filter(ManifestItem::isImage)
+                    .findFirst();
+        }
+        if (cover.isEmpty()) {
+            cover = manifest.stream()
+                    .filter(ManifestItem::isImage)
+                    .filter(item -> containsCover(item.id()) || containsCover(item.href()))
+                    .findFirst();
+        }
+        return cover;
+    }
+
+    public byte[] readCover() throws IOException {
+        Optional<ManifestItem> cover = findCover();
+        return cover.isPresent() ? readEntry(cover.get().href()) : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        zip.close();
+    }
+
+    private ZipArchiveEntry findEntry(String name) {
+        ZipArchiveEntry entry = zip.getEntry(name);
+        if (entry != null) {
+            return entry;
+        }
+        // Some packages reference resources with a different case than they are stored with.
+        if (entriesByLowerCaseName == null) {
+            Map<String, ZipArchiveEntry> entries = new HashMap<>();
+            Collections.list(zip.getEntries()).forEach(e -> entries.putIfAbsent(e.getName().toLowerCase(Locale.ROOT), e));
+            entriesByLowerCaseName = entries;
+        }
+        return entriesByLowerCaseName.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean containsCover(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains("cover");
+    }
+
+    private static String readOpfPath(ZipFile zip) throws IOException {
+        ZipArchiveEntry container = zip.getEntry(CONTAINER_PATH);
+        if (container == null) {
+            throw new IOException(CONTAINER_PATH + " not found");
+        }
+        try (InputStream in = zip.getInputStream(container)) {
+            XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT && "rootfile".equals(reader.getLocalName())) {
+                        String fullPath = reader.getAttributeValue(null, "full-path");
+                        if (fullPath != null && !fullPath.isBlank()) {
+                            return fullPath.trim();
+                        }
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed " + CONTAINER_PATH + ": " + e.getMessage(), e);
+        }
+        throw new IOException("No rootfile declared in " + CONTAINER_PATH);
+    }
+
+    private static String baseDirectory(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? "" : path.substring(0, slash + 1);
+    }
+
+    /**
+     * Resolves an OPF-relative {@code href} to the ZIP entry name it refers to.
+     */
+    public static String resolveAgainstOpf(String opfPath, String href) {
+        return resolveHref(baseDirectory(opfPath), href);
+    }
+
+    static String resolveHref(String baseDirectory, String href) {
+        String decoded;
+        try {
+            decoded = URLDecoder.decode(href.replace("+", "%2B"), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            decoded = href;
+        }
+        int fragment = decoded.indexOf('#');
+        if (fragment >= 0) {
+            decoded = decoded.substring(0, fragment);
+        }
+        String combined = decoded.startsWith("/") ? decoded.substring(1) : baseDirectory + decoded;
+        Deque<String> segments = new ArrayDeque<>();
+        for (String segment : combined.split("/")) {
+            if (segment.isEmpty() || segment.equals(".")) continue;
+            if (segment.equals("..")) {
+                segments.pollLast();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        return String.join("/", segments);
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        return factory;
+    }
+
+    private record NonClosingChannel(SeekableByteChannel delegate) implements SeekableByteChannel {
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return delegate.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // The channel belongs to the caller.
+        }
+    }
+
+    private static final class ManifestParser {
+        private final String baseDirectory;
+        private final List<ManifestItem> items = new ArrayList<>();
+        private String coverId;
+
+        private ManifestParser(String baseDirectory) {
+            this.baseDirectory = baseDirectory;
+        }
+
+        void parse(InputStream in) throws IOException {
+            try {
+                XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+                try {
+                    while (reader.hasNext()) {
+                        int event = reader.next();
+                        if (event == XMLStreamConstants.START_ELEMENT) {
+                            switch (reader.getLocalName()) {
+                                case "item" -> addItem(reader);
+                                case "meta" -> {
+                                    if ("cover".equalsIgnoreCase(reader.getAttributeValue(null, "name"))) {
+                                        coverId = reader.getAttributeValue(null, "content");
+                                    }
+                                }
+                                default -> {
+                                }
+                            }
+                        } else if (event == XMLStreamConstants.END_ELEMENT && "manifest".equals(reader.getLocalName())) {
+                            // Nothing after the manifest (spine, guide) is needed.
+                            return;
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (XMLStreamException e) {
+                throw new IOException("Malformed OPF package: " + e.getMessage(), e);
+            }
+        }
+
+        private void addItem(XMLStreamReader reader) {
+            String href = reader.getAttributeValue(null, "href");
+            if (href == null || href.isBlank()) {
+                return;
+            }
+            String properties = reader.getAttributeValue(null, "properties");
+            items.add(new ManifestItem(
+                    reader.getAttributeValue(null, "id"),
+                    resolveHref(baseDirectory, href.trim()),
+                    reader.getAttributeValue(null, "media-type"),
+                    properties == null ? Set.of() : Set.copyOf(Arrays.asList(properties.trim().split("\\s+")))));
+        }
+    }
+}
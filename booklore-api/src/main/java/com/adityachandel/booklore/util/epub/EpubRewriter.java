@@ -0,0 +1,121 @@
+package com.adityachandel.booklore.util.epub;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Rewrites an EPUB with a handful of entries replaced, without touching the rest of the book.
+ * <p>
+ * Unchanged entries are copied as raw compressed bytes, so a metadata edit on a large illustrated book costs one
+ * sequential copy instead of inflating and deflating every image. The {@code mimetype} entry is always written first
+ * and uncompressed as the OCF spec requires. The new archive is built next to the original and moved over it in one
+ * step, so readers never observe a half-written book and a failure leaves the original untouched.
+ */
+@Slf4j
+public final class EpubRewriter {
+
+    private static final String MIMETYPE_ENTRY = "mimetype";
+    private static final byte[] DEFAULT_MIMETYPE = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+
+    private EpubRewriter() {
+    }
+
+    /**
+     * @param epub         the book to rewrite in place
+     * @param replacements entry name to new content; names not present in the archive are appended
+     */
+    public static void rewrite(Path epub, Map<String, byte[]> replacements) throws IOException {
+        Map<String, byte[]> pending = new LinkedHashMap<>(replacements);
+        Path temp = Files.createTempFile(epub.toAbsolutePath().getParent(), "." + epub.getFileName(), ".tmp");
+        try {
+            try (ZipFile source = ZipFile.builder().setPath(epub).get();
+                 ZipArchiveOutputStream out = new ZipArchiveOutputStream(temp)) {
+                writeMimetype(out, source, pending.remove(MIMETYPE_ENTRY));
+
+                for (ZipArchiveEntry entry : Collections.list(source.getEntriesInPhysicalOrder())) {
+                    String name = entry.getName();
+                    if (MIMETYPE_ENTRY.equals(name)) {
+                        continue;
+                    }
+                    byte[] replacement = pending.remove(name);
+                    if (replacement != null) {
+                        writeDeflated(out, name, replacement);
+                    } else {
+                        try (InputStream raw = source.getRawInputStream(entry)) {
+                            out.addRawArchiveEntry(entry, raw);
+                        }
+                    }
+                }
+                for (Map.Entry<String, byte[]> added : pending.entrySet()) {
+                    writeDeflated(out, added.getKey(), added.getValue());
+                }
+                out.finish();
+            }
+            commit(temp, epub);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeMimetype(ZipArchiveOutputStream out, ZipFile source, byte[] replacement) throws IOException {
+        byte[] content = replacement;
+        if (content == null) {
+            ZipArchiveEntry existing = source.getEntry(MIMETYPE_ENTRY);
+            if (existing != null) {
+                try (InputStream in = source.getInputStream(existing)) {
+                    content = in.readNBytes(256);
+                }
+            }
+        }
+        if (content == null || content.length == 0) {
+            content = DEFAULT_MIMETYPE;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(content);
+        ZipArchiveEntry entry = new ZipArchiveEntry(MIMETYPE_ENTRY);
+        entry.setMethod(ZipArchiveEntry.STORED);
+        entry.setSize(content.length);
+        entry.setCompressedSize(content.length);
+        entry.setCrc(crc.getValue());
+        out.putArchiveEntry(entry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    private static void writeDeflated(ZipArchiveOutputStream out, String name, byte[] content) throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(name);
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        out.putArchiveEntry(entry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    private static void commit(Path temp, Path target) throws IOException {
+        // Temp files are created owner-only; keep the permissions the book had.
+        try {
+            Files.setPosixFilePermissions(temp, Files.getPosixFilePermissions(target));
+        } catch (UnsupportedOperationException e) {
+            log.trace("POSIX permissions not supported for {}", target);
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            log.debug("Atomic move not supported for {}, falling back to replace", target);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
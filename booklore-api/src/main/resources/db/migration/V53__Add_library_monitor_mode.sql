@@ -0,0 +1,2 @@
+ALTER TABLE library
+    ADD COLUMN IF NOT EXISTS monitor_mode VARCHAR(10) NOT NULL DEFAULT 'NATIVE';
@@ -0,0 +1,2 @@
+ALTER TABLE library
+    ADD COLUMN IF NOT EXISTS rescan_checkpoint VARCHAR(1000) NULL;
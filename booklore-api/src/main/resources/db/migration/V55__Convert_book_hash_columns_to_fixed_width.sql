@@ -0,0 +1,13 @@
+-- File fingerprints are always 32 lowercase hex digits; anything else cannot match a file and is rehashed on the next scan.
+UPDATE book SET initial_hash = NULL WHERE initial_hash IS NOT NULL AND CHAR_LENGTH(initial_hash) <> 32;
+UPDATE book SET current_hash = NULL WHERE current_hash IS NOT NULL AND CHAR_LENGTH(current_hash) <> 32;
+
+DROP INDEX IF EXISTS idx_book_initial_hash ON book;
+DROP INDEX IF EXISTS idx_book_current_hash ON book;
+
+ALTER TABLE book
+    MODIFY COLUMN initial_hash CHAR(32) CHARACTER SET ascii COLLATE ascii_general_ci NULL,
+    MODIFY COLUMN current_hash CHAR(32) CHARACTER SET ascii COLLATE ascii_general_ci NULL;
+
+CREATE INDEX IF NOT EXISTS idx_book_initial_hash ON book(initial_hash);
+CREATE INDEX IF NOT EXISTS idx_book_current_hash ON book(current_hash);
@@ -0,0 +1,13 @@
+CREATE TABLE IF NOT EXISTS kobo_shelf_change
+(
+    id          BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id     BIGINT      NOT NULL,
+    book_id     BIGINT      NOT NULL,
+    change_type VARCHAR(20) NOT NULL,
+    created_at  TIMESTAMP   NOT NULL DEFAULT CURRENT_TIMESTAMP,
+
+    CONSTRAINT fk_kobo_shelf_change_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_kobo_shelf_change_user_id ON kobo_shelf_change (user_id, id);
+CREATE INDEX idx_kobo_shelf_change_created_at ON kobo_shelf_change (created_at);
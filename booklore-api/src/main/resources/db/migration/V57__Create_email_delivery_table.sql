@@ -0,0 +1,20 @@
+CREATE TABLE IF NOT EXISTS email_delivery
+(
+    id              BIGINT AUTO_INCREMENT PRIMARY KEY,
+    provider_id     BIGINT        NOT NULL,
+    book_id         BIGINT        NOT NULL,
+    recipient_email VARCHAR(255)  NOT NULL,
+    requested_by    VARCHAR(255),
+    status          VARCHAR(20)   NOT NULL,
+    attempts        INT           NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    last_error      VARCHAR(1000),
+    created_at      TIMESTAMP     NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    sent_at         TIMESTAMP     NULL,
+
+    CONSTRAINT fk_email_delivery_provider FOREIGN KEY (provider_id) REFERENCES email_provider (id) ON DELETE CASCADE,
+    CONSTRAINT fk_email_delivery_book FOREIGN KEY (book_id) REFERENCES book (id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_email_delivery_status ON email_delivery (status, next_attempt_at);
+CREATE INDEX idx_email_delivery_created_at ON email_delivery (created_at);
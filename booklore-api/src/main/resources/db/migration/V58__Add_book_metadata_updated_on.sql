@@ -0,0 +1,2 @@
+ALTER TABLE book_metadata
+    ADD COLUMN IF NOT EXISTS updated_on TIMESTAMP NULL;
@@ -7,6 +7,7 @@ import com.adityachandel.booklore.service.BookDownloadService;
 import com.adityachandel.booklore.service.BookQueryService;
 import com.adityachandel.booklore.service.BookService;
 import com.adityachandel.booklore.service.UserProgressService;
+import com.adityachandel.booklore.service.kobo.KoboShelfChangeService;
 import com.adityachandel.booklore.util.FileService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -43,11 +44,11 @@ class BookServiceDeleteTests {
         FileService fileService = Mockito.mock(FileService.class);
         BookMapper bookMapper = Mockito.mock(BookMapper.class);
         UserRepository userRepository = Mockito.mock(UserRepository.class);
-        UserBookProgressRepository userBookProgressRepository = Mockito.mock(UserBookProgressRepository.class);
         AuthenticationService authenticationService = Mockito.mock(AuthenticationService.class);
         BookQueryService bookQueryService = Mockito.mock(BookQueryService.class);
         UserProgressService userProgressService = Mockito.mock(UserProgressService.class);
         BookDownloadService bookDownloadService = Mockito.mock(BookDownloadService.class);
+        KoboShelfChangeService koboShelfChangeService = Mockito.mock(KoboShelfChangeService.class);
 
         bookService = new BookService(
                 bookRepository,
@@ -59,11 +60,11 @@ class BookServiceDeleteTests {
                 fileService,
                 bookMapper,
                 userRepository,
-                userBookProgressRepository,
                 authenticationService,
                 bookQueryService,
                 userProgressService,
-                bookDownloadService
+                bookDownloadService,
+                koboShelfChangeService
         );
     }
 
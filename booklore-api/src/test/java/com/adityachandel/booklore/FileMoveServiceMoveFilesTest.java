@@ -1,7 +1,9 @@
 package com.adityachandel.booklore;
 
 import com.adityachandel.booklore.mapper.BookMapper;
+import com.adityachandel.booklore.config.AppProperties;
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.FilePathEntry;
 import com.adityachandel.booklore.model.dto.request.FileMoveRequest;
 import com.adityachandel.booklore.model.dto.settings.AppSettings;
 import com.adityachandel.booklore.model.entity.*;
@@ -12,15 +14,19 @@ import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.service.BookQueryService;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.file.FileMoveJournal;
 import com.adityachandel.booklore.service.file.FileMoveService;
-import com.adityachandel.booklore.service.library.LibraryService;
-import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -54,14 +60,24 @@ class FileMoveServiceMoveFilesTest {
     @Mock
     private NotificationService notificationService;
 
-    @Mock
-    private MonitoringService monitoringService;
+    @Spy
+    private WatchSuppressionService watchSuppressionService = new WatchSuppressionService(new AppProperties(), new SimpleMeterRegistry());
 
     @Mock
     private AppSettingService appSettingService;
 
     @Mock
-    private LibraryService libraryService;
+    private PlatformTransactionManager transactionManager;
+
+    // Static, so it is created before the fields below are initialized.
+    @TempDir
+    static Path dataDir;
+
+    @Spy
+    private AppProperties appProperties = appProperties(dataDir);
+
+    @Spy
+    private FileMoveJournal fileMoveJournal = new FileMoveJournal(appProperties, new ObjectMapper());
 
     @InjectMocks
     private FileMoveService fileMoveService;
@@ -69,6 +85,12 @@ class FileMoveServiceMoveFilesTest {
     @TempDir
     Path tempLibraryRoot;
 
+    private static AppProperties appProperties(Path dataDir) {
+        AppProperties properties = new AppProperties();
+        properties.setPathConfig(dataDir.toString());
+        return properties;
+    }
+
     private BookEntity createBookWithFile(Path libraryRoot, String fileSubPath, String fileName) throws IOException {
         LibraryEntity library = LibraryEntity.builder()
                 .id(42L)
@@ -396,9 +418,11 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newPath)).isTrue();
         assertThat(Files.exists(oldFilePath)).isFalse();
 
-        verify(bookRepository).save(book);
+        assertThat(book.getFileSubPath()).isEqualTo("X");
+        assertThat(book.getFileName()).isEqualTo("Test Book.epub");
+        verify(bookRepository).saveAll(List.of(book));
         verify(notificationService).sendMessage(eq(Topic.BOOK_METADATA_BATCH_UPDATE), anyList());
-        verify(libraryService).rescanLibrary(book.getLibraryPath().getLibrary().getId());
+        assertThat(dataDir.resolve("move-journal")).isEmptyDirectory();
     }
 
     @Test
@@ -431,7 +455,7 @@ class FileMoveServiceMoveFilesTest {
 
         Path moved = tempLibraryRoot.resolve("DEF").resolve("DFT.epub");
         assertThat(Files.exists(moved)).isTrue();
-        verify(bookRepository).save(book);
+        verify(bookRepository).saveAll(List.of(book));
     }
 
     @Test
@@ -543,25 +567,32 @@ class FileMoveServiceMoveFilesTest {
         fileMoveService.moveFiles(req);
 
         assertThat(Files.exists(oldFilePath)).isTrue();
-        verify(bookRepository, never()).save(any());
+        verify(bookRepository, never()).saveAll(any());
         verify(notificationService, never()).sendMessage(any(), anyList());
-        verify(libraryService, never()).rescanLibrary(anyLong());
+        verifyNoInteractions(transactionManager);
     }
 
     @Test
-    void testMoveFiles_doesNotPauseMonitoringWhenAlreadyPaused() {
-        when(monitoringService.isPaused()).thenReturn(true);
-        when(bookQueryService.findAllWithMetadataByIds(anySet())).thenReturn(List.of());
+    void testMoveFiles_suppressesWatchEventsOnlyForMovedPaths() throws IOException {
+        BookEntity book = createBookWithFile(tempLibraryRoot, "sub", "suppressed.epub");
+        Path oldFilePath = book.getFullFilePath();
+        Path untouched = tempLibraryRoot.resolve("sub").resolve("other.epub");
+
+        when(bookQueryService.findAllWithMetadataByIds(Set.of(1L))).thenReturn(List.of(book));
         AppSettings settings = new AppSettings();
-        settings.setUploadPattern("X/{title}");
+        settings.setUploadPattern("Moved/{title}");
         when(appSettingService.getAppSettings()).thenReturn(settings);
+        when(bookMapper.toBook(book)).thenReturn(Book.builder().id(book.getId()).build());
 
         FileMoveRequest req = new FileMoveRequest();
-        req.setBookIds(Set.of(999L));
+        req.setBookIds(Set.of(1L));
         fileMoveService.moveFiles(req);
 
-        verify(monitoringService, never()).pauseMonitoring();
-        verify(monitoringService, never()).resumeMonitoring();
+        Path newFilePath = tempLibraryRoot.resolve("Moved").resolve("Test Book.epub");
+        assertThat(Files.exists(newFilePath)).isTrue();
+        assertThat(watchSuppressionService.isSuppressed(oldFilePath)).isTrue();
+        assertThat(watchSuppressionService.isSuppressed(newFilePath)).isTrue();
+        assertThat(watchSuppressionService.isSuppressed(untouched)).isFalse();
     }
 
     @Test
@@ -599,7 +630,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newAdditionalPath2)).isTrue();
 
         // Verify database updated
-        verify(bookAdditionalFileRepository, times(2)).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository).saveAll(List.of(additionalFile1, additionalFile2));
     }
 
     @Test
@@ -632,7 +663,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newAdditionalPath1)).isTrue();
         assertThat(Files.exists(newAdditionalPath2)).isTrue();
 
-        verify(bookAdditionalFileRepository, times(2)).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository).saveAll(List.of(additionalFile1, additionalFile2));
     }
 
     @Test
@@ -661,7 +692,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newBookPath)).isTrue();
 
         // Verify nonexistent additional file not saved
-        verify(bookAdditionalFileRepository, never()).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
     }
 
     @Test
@@ -685,7 +716,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newBookPath)).isTrue();
 
         // Verify no additional file operations
-        verify(bookAdditionalFileRepository, never()).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
     }
 
     @Test
@@ -709,7 +740,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(newBookPath)).isTrue();
 
         // Verify no additional file operations
-        verify(bookAdditionalFileRepository, never()).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
     }
 
     @Test
@@ -745,7 +776,7 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(basePath.resolve("Test Book.mobi"))).isTrue();
         assertThat(Files.exists(basePath.resolve("Test Book.jpg"))).isTrue();
 
-        verify(bookAdditionalFileRepository, times(3)).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository).saveAll(List.of(additionalFile1, additionalFile2, additionalFile3));
     }
 
     @Test
@@ -772,6 +803,72 @@ class FileMoveServiceMoveFilesTest {
         assertThat(Files.exists(additionalFilePath)).isTrue();
 
         // Verify no save called for additional file (skipped)
-        verify(bookAdditionalFileRepository, never()).save(any(BookAdditionalFileEntity.class));
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testMoveFiles_leavesSecondBookInPlaceWhenTargetsCollide() throws IOException {
+        BookEntity first = createBookWithFile(tempLibraryRoot, "a", "first.epub");
+        BookEntity second = createBookWithFile(tempLibraryRoot, "b", "second.epub");
+        second.setId(2L);
+        Path secondPath = second.getFullFilePath();
+
+        when(bookQueryService.findAllWithMetadataByIds(Set.of(1L, 2L))).thenReturn(List.of(first, second));
+        AppSettings settings = new AppSettings();
+        settings.setUploadPattern("X/{title}");
+        when(appSettingService.getAppSettings()).thenReturn(settings);
+        when(bookMapper.toBook(first)).thenReturn(Book.builder().id(1L).build());
+
+        FileMoveRequest req = new FileMoveRequest();
+        req.setBookIds(Set.of(1L, 2L));
+        fileMoveService.moveFiles(req);
+
+        assertThat(Files.exists(tempLibraryRoot.resolve("X").resolve("Test Book.epub"))).isTrue();
+        assertThat(Files.exists(secondPath)).isTrue();
+        assertThat(second.getFileSubPath()).isEqualTo("b");
+        verify(bookRepository).saveAll(List.of(first));
+    }
+
+    @Test
+    void testMoveFiles_doesNotOverwriteAnotherBookOfTheLibrary() throws IOException {
+        BookEntity book = createBookWithFile(tempLibraryRoot, "sub", "mybook.epub");
+        book.getLibraryPath().setId(5L);
+        Path occupied = tempLibraryRoot.resolve("X").resolve("Test Book.epub");
+        Files.createDirectories(occupied.getParent());
+        Files.writeString(occupied, "OTHER");
+
+        when(bookQueryService.findAllWithMetadataByIds(Set.of(1L))).thenReturn(List.of(book));
+        when(bookRepository.findFilePathsByLibraryPathIds(Set.of(5L)))
+                .thenReturn(List.of(new FilePathEntry(1L, 5L, "sub", "mybook.epub"), new FilePathEntry(9L, 5L, "X", "Test Book.epub")));
+        AppSettings settings = new AppSettings();
+        settings.setUploadPattern("X/{title}");
+        when(appSettingService.getAppSettings()).thenReturn(settings);
+
+        FileMoveRequest req = new FileMoveRequest();
+        req.setBookIds(Set.of(1L));
+        fileMoveService.moveFiles(req);
+
+        assertThat(Files.readString(occupied)).isEqualTo("OTHER");
+        assertThat(Files.exists(book.getFullFilePath())).isTrue();
+        verify(bookRepository, never()).saveAll(any());
+    }
+
+    @Test
+    void testResumeInterruptedMoves_finishesBatchFromJournal() throws IOException {
+        BookEntity book = createBookWithFile(tempLibraryRoot, "sub", "mybook.epub");
+        Path source = book.getFullFilePath();
+        Path target = tempLibraryRoot.resolve("X").resolve("Test Book.epub");
+        fileMoveJournal.begin(List.of(new FileMoveJournal.Entry(1L, null, source.toString(), target.toString(), "X", "Test Book.epub"))).close();
+
+        when(bookRepository.findAllById(Set.of(1L))).thenReturn(List.of(book));
+
+        fileMoveService.resumeInterruptedMoves();
+
+        assertThat(Files.exists(target)).isTrue();
+        assertThat(Files.exists(source)).isFalse();
+        assertThat(book.getFileSubPath()).isEqualTo("X");
+        assertThat(book.getFileName()).isEqualTo("Test Book.epub");
+        verify(bookRepository).saveAll(List.of(book));
+        assertThat(dataDir.resolve("move-journal")).isEmptyDirectory();
     }
 }
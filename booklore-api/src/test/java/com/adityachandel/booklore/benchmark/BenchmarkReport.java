@@ -0,0 +1,86 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the timings of one benchmark run and writes them as {@code report.json}, for comparing runs, and
+ * {@code report.md}, for reading.
+ */
+final class BenchmarkReport {
+
+    /**
+     * Timings in milliseconds over {@code samples} runs of one step; a step run once has the same value everywhere.
+     */
+    record Measurement(String name, int samples, double minMs, double medianMs, double p95Ms, double maxMs, Map<String, Object> details) {
+    }
+
+    private final Instant startedAt = Instant.now();
+    private final Map<String, Object> environment = new LinkedHashMap<>();
+    private final List<Measurement> measurements = new ArrayList<>();
+
+    void environment(String key, Object value) {
+        environment.put(key, value);
+    }
+
+    void once(String name, long nanos, Map<String, Object> details) {
+        double ms = nanos / 1_000_000.0;
+        measurements.add(new Measurement(name, 1, ms, ms, ms, ms, details));
+    }
+
+    void samples(String name, List<Long> nanos, Map<String, Object> details) {
+        if (nanos.isEmpty()) {
+            measurements.add(new Measurement(name, 0, 0, 0, 0, 0, details));
+            return;
+        }
+        List<Long> sorted = nanos.stream().sorted().toList();
+        measurements.add(new Measurement(name, sorted.size(),
+                sorted.getFirst() / 1_000_000.0,
+                percentile(sorted, 50) / 1_000_000.0,
+                percentile(sorted, 95) / 1_000_000.0,
+                sorted.getLast() / 1_000_000.0,
+                details));
+    }
+
+    List<Measurement> getMeasurements() {
+        return List.copyOf(measurements);
+    }
+
+    void write(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("startedAt", startedAt);
+        json.put("environment", environment);
+        json.put("measurements", measurements);
+        new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(directory.resolve("report.json").toFile(), json);
+
+        StringBuilder markdown = new StringBuilder("# Library benchmark, ").append(startedAt).append("\n\n");
+        environment.forEach((key, value) -> markdown.append("- ").append(key).append(": ").append(value).append('\n'));
+        markdown.append("\n| Step | Samples | Min ms | Median ms | p95 ms | Max ms | Details |\n");
+        markdown.append("|---|---:|---:|---:|---:|---:|---|\n");
+        for (Measurement m : measurements) {
+            markdown.append(String.format("| %s | %d | %.1f | %.1f | %.1f | %.1f | %s |%n",
+                    m.name(), m.samples(), m.minMs(), m.medianMs(), m.p95Ms(), m.maxMs(), m.details()));
+        }
+        Files.writeString(directory.resolve("report.md"), markdown);
+    }
+
+    private static long percentile(List<Long> sorted, int percentile) {
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+        return sorted.get(Math.max(0, Math.min(index, sorted.size() - 1)));
+    }
+}
@@ -0,0 +1,365 @@
+package com.adityachandel.booklore.benchmark;
+
+import com.adityachandel.booklore.config.security.userdetails.OpdsUserDetails;
+import com.adityachandel.booklore.mapper.LibraryMapper;
+import com.adityachandel.booklore.mapper.custom.BookLoreUserTransformer;
+import com.adityachandel.booklore.model.dto.BookLoreUser;
+import com.adityachandel.booklore.model.dto.OpdsUser;
+import com.adityachandel.booklore.model.dto.kobo.KoboHeaders;
+import com.adityachandel.booklore.model.dto.request.InitialUserRequest;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.entity.ShelfEntity;
+import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.model.enums.LibraryMonitorMode;
+import com.adityachandel.booklore.model.enums.LibraryScanMode;
+import com.adityachandel.booklore.model.enums.ShelfType;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.repository.ShelfRepository;
+import com.adityachandel.booklore.repository.UserRepository;
+import com.adityachandel.booklore.service.kobo.KoboLibrarySyncService;
+import com.adityachandel.booklore.service.kobo.KoboServerProxy;
+import com.adityachandel.booklore.service.library.LibraryProcessingService;
+import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.opds.OpdsService;
+import com.adityachandel.booklore.service.reader.CbxReaderService;
+import com.adityachandel.booklore.service.reader.PdfReaderService;
+import com.adityachandel.booklore.service.user.UserProvisioningService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.when;
+
+/**
+ * End-to-end timings for a generated library: full scan, rescan without changes, watcher ingest latency, time to
+ * the first PDF and comic page, OPDS feed latency and a complete Kobo sync. Writes {@code report.json} and
+ * {@code report.md} to {@code BOOKLORE_BENCHMARK_REPORT_DIR} (default {@code build/reports/library-benchmark}).
+ * <p>
+ * Needs a MariaDB the app may create a database in. It uses {@code DATABASE_URL}, {@code DATABASE_USERNAME} and
+ * {@code DATABASE_PASSWORD} like the app does, but defaults to a separate {@code booklore_benchmark} database on
+ * localhost so it never runs against a real library. The Kobo store is stubbed. Corpus shape is read from the
+ * {@code BOOKLORE_BENCHMARK_*} variables described in {@link SyntheticLibraryGenerator.Spec#fromEnvironment()}.
+ * Run with {@code BOOKLORE_BENCHMARK=true ./gradlew test --tests '*LibraryBenchmarkTest'}.
+ */
+@SpringBootTest
+@EnabledIfEnvironmentVariable(named = "BOOKLORE_BENCHMARK", matches = "true")
+class LibraryBenchmarkTest {
+
+    private static final String USERNAME = "benchmark";
+    private static final String KOBO_TOKEN = "benchmark";
+    private static final int READER_SAMPLES = intEnv("BOOKLORE_BENCHMARK_READER_SAMPLES", 20);
+    private static final int WATCH_SAMPLES = intEnv("BOOKLORE_BENCHMARK_WATCH_SAMPLES", 10);
+    private static final int OPDS_SAMPLES = intEnv("BOOKLORE_BENCHMARK_OPDS_SAMPLES", 20);
+    private static final long WATCH_TIMEOUT_MS = 60_000;
+
+    @TempDir
+    static Path workDir;
+
+    @MockitoBean
+    KoboServerProxy koboServerProxy;
+
+    @Autowired
+    LibraryRepository libraryRepository;
+    @Autowired
+    BookRepository bookRepository;
+    @Autowired
+    UserRepository userRepository;
+    @Autowired
+    ShelfRepository shelfRepository;
+    @Autowired
+    LibraryMapper libraryMapper;
+    @Autowired
+    BookLoreUserTransformer bookLoreUserTransformer;
+    @Autowired
+    UserProvisioningService userProvisioningService;
+    @Autowired
+    LibraryProcessingService libraryProcessingService;
+    @Autowired
+    MonitoringService monitoringService;
+    @Autowired
+    PdfReaderService pdfReaderService;
+    @Autowired
+    CbxReaderService cbxReaderService;
+    @Autowired
+    OpdsService opdsService;
+    @Autowired
+    KoboLibrarySyncService koboLibrarySyncService;
+    @Autowired
+    ObjectMapper objectMapper;
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @DynamicPropertySource
+    static void configureProperties(DynamicPropertyRegistry registry) {
+        registry.add("app.path-config", () -> workDir.resolve("data").toString());
+        registry.add("app.bookdrop-folder", () -> workDir.resolve("bookdrop").toString());
+        if (System.getenv("DATABASE_URL") == null) {
+            registry.add("spring.datasource.url", () -> "jdbc:mariadb://localhost:3306/booklore_benchmark?createDatabaseIfNotExist=true");
+        }
+    }
+
+    @AfterEach
+    void clearContext() {
+        SecurityContextHolder.clearContext();
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void measureLibrary() throws Exception {
+        SyntheticLibraryGenerator.Spec spec = SyntheticLibraryGenerator.Spec.fromEnvironment();
+        SyntheticLibraryGenerator generator = new SyntheticLibraryGenerator(spec);
+        Path libraryRoot = Files.createDirectories(workDir.resolve("library"));
+        BenchmarkReport report = new BenchmarkReport();
+        report.environment("corpus", spec);
+        report.environment("java", Runtime.version().toString());
+        report.environment("cpus", Runtime.getRuntime().availableProcessors());
+        report.environment("maxHeapMb", Runtime.getRuntime().maxMemory() / (1024 * 1024));
+
+        long start = System.nanoTime();
+        List<SyntheticLibraryGenerator.GeneratedBook> generated = generator.generate(libraryRoot);
+        report.once("generate corpus", System.nanoTime() - start, Map.of("files", generated.size()));
+
+        BookLoreUser user = authenticateAsBenchmarkUser();
+        LibraryEntity library = createLibrary(libraryRoot);
+
+        start = System.nanoTime();
+        libraryProcessingService.processLibrary(library.getId());
+        long scanNanos = System.nanoTime() - start;
+        List<BookEntity> books = bookRepository.findAllWithMetadataByLibraryId(library.getId());
+        report.once("full scan", scanNanos, Map.of("books", books.size(), "booksPerSecond", rate(books.size(), scanNanos)));
+        assertThat(books).hasSize(generated.size());
+
+        start = System.nanoTime();
+        libraryProcessingService.rescanLibrary(library.getId());
+        report.once("rescan, no changes", System.nanoTime() - start, Map.of("books", books.size()));
+
+        measureWatcherIngest(report, generator, library, libraryRoot);
+        measureFirstPage(report, "pdf first page", books, book -> book.getBookType() == BookFileType.PDF,
+                id -> {
+                    List<Integer> pages = pdfReaderService.getAvailablePages(id);
+                    pdfReaderService.streamPageImage(id, pages.getFirst(), OutputStream.nullOutputStream());
+                });
+        measureFirstPage(report, "cbx first page", books, book -> book.getBookType() == BookFileType.CBX,
+                id -> {
+                    List<Integer> pages = cbxReaderService.getAvailablePages(id);
+                    cbxReaderService.streamPageImage(id, pages.getFirst(), OutputStream.nullOutputStream());
+                });
+        measureOpds(report);
+        authenticate(user);
+        measureKoboSync(report, user, library);
+
+        Path reportDir = Paths.get(System.getenv().getOrDefault("BOOKLORE_BENCHMARK_REPORT_DIR", "build/reports/library-benchmark"));
+        report.write(reportDir);
+        report.getMeasurements().forEach(m -> System.out.printf("%-22s median %10.1f ms  p95 %10.1f ms  %s%n",
+                m.name(), m.medianMs(), m.p95Ms(), m.details()));
+    }
+
+    private void measureWatcherIngest(BenchmarkReport report, SyntheticLibraryGenerator generator, LibraryEntity library, Path libraryRoot)
+            throws IOException, InterruptedException {
+        Path incoming = Files.createDirectories(libraryRoot.resolve("Incoming"));
+        Path staging = Files.createDirectories(workDir.resolve("staging"));
+        monitoringService.registerLibrary(libraryMapper.toLibrary(library));
+
+        List<Long> latencies = new ArrayList<>();
+        int missed = 0;
+        for (int i = 0; i < WATCH_SAMPLES; i++) {
+            String fileName = "Watched Arrival " + i + ".epub";
+            Path staged = staging.resolve(fileName);
+            generator.writeEpub(staged, "Watched Arrival " + i, "Benchmark Author", null, null);
+            // Moved in whole, so the watcher never sees a half-written file.
+            long start = System.nanoTime();
+            Files.move(staged, incoming.resolve(fileName), StandardCopyOption.ATOMIC_MOVE);
+            if (awaitBook(fileName, library.getId())) {
+                latencies.add(System.nanoTime() - start);
+            } else {
+                missed++;
+            }
+        }
+        monitoringService.unregisterLibrary(library.getId());
+        report.samples("watcher ingest", latencies, Map.of("missed", missed));
+    }
+
+    private boolean awaitBook(String fileName, long libraryId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WATCH_TIMEOUT_MS;
+        while (System.currentTimeMillis() < deadline) {
+            if (bookRepository.findBookByFileNameAndLibraryId(fileName, libraryId).isPresent()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    @FunctionalInterface
+    private interface PageReader {
+        void readFirstPage(long bookId) throws IOException;
+    }
+
+    /**
+     * Opens each sampled book once, so every sample includes the work a reader does the first time a book is opened.
+     */
+    private void measureFirstPage(BenchmarkReport report, String name, List<BookEntity> books, Predicate<BookEntity> filter, PageReader reader)
+            throws IOException {
+        List<Long> samples = new ArrayList<>();
+        for (BookEntity book : books.stream().filter(filter).limit(READER_SAMPLES).toList()) {
+            long start = System.nanoTime();
+            reader.readFirstPage(book.getId());
+            samples.add(System.nanoTime() - start);
+        }
+        report.samples(name, samples, Map.of());
+    }
+
+    private void measureOpds(BenchmarkReport report) throws IOException {
+        OpdsUser opdsUser = new OpdsUser();
+        opdsUser.setUsername(USERNAME);
+        OpdsUserDetails details = new OpdsUserDetails(null, opdsUser);
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(details, null, details.getAuthorities()));
+
+        MockHttpServletRequest v1 = new MockHttpServletRequest("GET", "/api/v1/opds/catalog");
+        MockHttpServletRequest v2 = new MockHttpServletRequest("GET", "/api/v2/opds/catalog");
+        v2.addHeader("Accept", "application/opds+json");
+
+        List<Long> v1Samples = new ArrayList<>();
+        List<Long> v2Samples = new ArrayList<>();
+        for (int i = 0; i < OPDS_SAMPLES + 3; i++) {
+            long start = System.nanoTime();
+            String feed = opdsService.generateCatalogFeed(v1);
+            long v1Nanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            opdsService.streamOpdsV2Feed(v2, null, null, null, 1, 50).writeTo(OutputStream.nullOutputStream());
+            long v2Nanos = System.nanoTime() - start;
+
+            // The first rounds warm up caches and the JIT and are left out.
+            if (i >= 3) {
+                v1Samples.add(v1Nanos);
+                v2Samples.add(v2Nanos);
+            }
+            assertThat(feed).contains("<feed");
+        }
+        report.samples("opds v1 catalog", v1Samples, Map.of());
+        report.samples("opds v2 first page", v2Samples, Map.of("pageSize", 50));
+    }
+
+    /**
+     * Puts every book on the user's Kobo shelf and follows the sync from a fresh device until it stops asking to
+     * continue.
+     */
+    private void measureKoboSync(BenchmarkReport report, BookLoreUser user, LibraryEntity library) {
+        when(koboServerProxy.proxyCurrentRequest(any(), anyBoolean())).thenReturn(ResponseEntity.ok(objectMapper.createArrayNode()));
+        fillKoboShelf(user.getId(), library.getId());
+
+        String syncToken = null;
+        int requests = 0;
+        int entitlements = 0;
+        long start = System.nanoTime();
+        boolean more = true;
+        while (more && requests < 10_000) {
+            MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/kobo/" + KOBO_TOKEN + "/v1/library/sync");
+            request.addHeader(KoboHeaders.X_KOBO_DEVICEID, "benchmark-device");
+            if (syncToken != null) {
+                request.addHeader(KoboHeaders.X_KOBO_SYNCTOKEN, syncToken);
+            }
+            RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+            ResponseEntity<?> response = koboLibrarySyncService.syncLibrary(user, KOBO_TOKEN);
+            requests++;
+            if (response.getBody() instanceof List<?> body) {
+                entitlements += body.size();
+            }
+            syncToken = response.getHeaders().getFirst(KoboHeaders.X_KOBO_SYNCTOKEN);
+            more = "continue".equals(response.getHeaders().getFirst(KoboHeaders.X_KOBO_SYNC));
+        }
+        report.once("kobo full sync", System.nanoTime() - start, Map.of("requests", requests, "entitlements", entitlements));
+    }
+
+    private void fillKoboShelf(long userId, long libraryId) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            BookLoreUserEntity userEntity = userRepository.findById(userId).orElseThrow();
+            ShelfEntity shelf = shelfRepository.findByUserIdAndName(userId, ShelfType.KOBO.getName())
+                    .orElseGet(() -> ShelfEntity.builder()
+                            .user(userEntity)
+                            .name(ShelfType.KOBO.getName())
+                            .icon(ShelfType.KOBO.getIcon())
+                            .bookEntities(new HashSet<>())
+                            .build());
+            shelf.getBookEntities().addAll(bookRepository.findAllWithMetadataByLibraryId(libraryId));
+            shelfRepository.save(shelf);
+        });
+    }
+
+    private BookLoreUser authenticateAsBenchmarkUser() {
+        if (userRepository.findByUsername(USERNAME).isEmpty()) {
+            InitialUserRequest request = new InitialUserRequest();
+            request.setUsername(USERNAME);
+            request.setName("Benchmark");
+            request.setEmail("benchmark@booklore.local");
+            request.setPassword("benchmark-" + System.nanoTime());
+            userProvisioningService.provisionInitialUser(request);
+        }
+        BookLoreUser user = new TransactionTemplate(transactionManager).execute(status ->
+                bookLoreUserTransformer.toDTO(userRepository.findByUsername(USERNAME).orElseThrow()));
+        authenticate(Objects.requireNonNull(user));
+        return user;
+    }
+
+    private static void authenticate(BookLoreUser user) {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(user, null, List.of()));
+    }
+
+    private LibraryEntity createLibrary(Path root) {
+        LibraryEntity library = LibraryEntity.builder()
+                .name("Benchmark " + System.currentTimeMillis())
+                .icon("pi pi-book")
+                .watch(true)
+                .monitorMode(LibraryMonitorMode.NATIVE)
+                .scanMode(LibraryScanMode.FILE_AS_BOOK)
+                .libraryPaths(new ArrayList<>())
+                .build();
+        library.getLibraryPaths().add(LibraryPathEntity.builder().library(library).path(root.toString()).build());
+        return libraryRepository.save(library);
+    }
+
+    private static double rate(int count, long nanos) {
+        return nanos == 0 ? 0 : Math.round(count / (nanos / 1_000_000_000.0) * 10) / 10.0;
+    }
+
+    private static int intEnv(String name, int defaultValue) {
+        String value = System.getenv(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+}
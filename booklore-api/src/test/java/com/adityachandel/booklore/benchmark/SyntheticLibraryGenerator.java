@@ -0,0 +1,420 @@
+package com.adityachandel.booklore.benchmark;
+
+import org.apache.commons.compress.archivers.sevenz.SevenZArchiveEntry;
+import org.apache.commons.compress.archivers.sevenz.SevenZMethod;
+import org.apache.commons.compress.archivers.sevenz.SevenZOutputFile;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDDocumentInformation;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes a reproducible corpus of valid books for scan, reader and sync benchmarks: EPUBs with OPF metadata and a
+ * cover, PDFs with a configurable page count, and CBZ/CB7 archives of JPEG pages, spread over nested folders. The same
+ * {@link Spec} always produces the same titles, authors, series and folder layout.
+ */
+public final class SyntheticLibraryGenerator {
+
+    private static final String[] WORDS = {
+            "shadow", "winter", "king", "river", "glass", "empire", "stars", "house", "silent", "night", "iron",
+            "garden", "city", "broken", "crown", "memory", "sea", "fire", "dark", "light", "road", "storm", "wolf",
+            "song", "hidden", "world", "stone", "machine", "ghost", "paper", "golden", "harbor", "lantern", "orchard"
+    };
+    private static final String[] GENRES = {"Fantasy", "Science Fiction", "Mystery", "History", "Horror", "Comics", "Poetry", "Travel"};
+    private static final String[] LANGUAGES = {"en", "en", "en", "de", "fr", "es"};
+
+    public enum Format {
+        EPUB("epub"), PDF("pdf"), CBZ("cbz"), CB7("cb7");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    public enum Layout {
+        /** Every book directly in the library root. */
+        FLAT,
+        /** {@code Author/Title.ext} */
+        AUTHOR,
+        /** {@code Author/Series/Title.ext}, or {@code Author/Title.ext} for books outside a series. */
+        AUTHOR_SERIES,
+        /** A mix of the above plus deeper {@code Genre/Year/Author} trees, as grown libraries end up. */
+        MIXED
+    }
+
+    /**
+     * @param pdfPages   pages per PDF
+     * @param comicPages pages per CBZ or CB7 archive
+     * @param pageWidth  width in pixels of cover and comic page images; height is one and a half times this
+     */
+    public record Spec(int epubs, int pdfs, int pdfPages, int cbzs, int cb7s, int comicPages, int pageWidth, Layout layout, long seed) {
+
+        public static Spec small() {
+            return new Spec(4, 2, 3, 2, 1, 3, 200, Layout.MIXED, 42L);
+        }
+
+        /**
+         * Reads the corpus shape from {@code BOOKLORE_BENCHMARK_*} environment variables, falling back to a library
+         * of about a thousand books.
+         */
+        public static Spec fromEnvironment() {
+            return new Spec(
+                    intEnv("BOOKLORE_BENCHMARK_EPUBS", 600),
+                    intEnv("BOOKLORE_BENCHMARK_PDFS", 200),
+                    intEnv("BOOKLORE_BENCHMARK_PDF_PAGES", 50),
+                    intEnv("BOOKLORE_BENCHMARK_CBZS", 150),
+                    intEnv("BOOKLORE_BENCHMARK_CB7S", 50),
+                    intEnv("BOOKLORE_BENCHMARK_COMIC_PAGES", 24),
+                    intEnv("BOOKLORE_BENCHMARK_PAGE_WIDTH", 800),
+                    Layout.valueOf(System.getenv().getOrDefault("BOOKLORE_BENCHMARK_LAYOUT", Layout.MIXED.name())),
+                    Long.parseLong(System.getenv().getOrDefault("BOOKLORE_BENCHMARK_SEED", "42")));
+        }
+
+        public int total() {
+            return epubs + pdfs + cbzs + cb7s;
+        }
+
+        private static int intEnv(String name, int defaultValue) {
+            String value = System.getenv(name);
+            return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+        }
+    }
+
+    public record GeneratedBook(Path path, Format format, String title, String author, String series, Integer seriesNumber) {
+    }
+
+    private final Spec spec;
+    private final Random random;
+    private final List<String> authors = new ArrayList<>();
+    private final List<String> series = new ArrayList<>();
+
+    public SyntheticLibraryGenerator(Spec spec) {
+        this.spec = spec;
+        this.random = new Random(spec.seed());
+        for (int i = 0; i < Math.max(3, spec.total() / 6); i++) {
+            authors.add(capitalize(word()) + " " + capitalize(word()) + "son");
+        }
+        for (int i = 0; i < Math.max(2, spec.total() / 12); i++) {
+            series.add("The " + capitalize(word()) + " " + capitalize(word()) + " Cycle");
+        }
+    }
+
+    /**
+     * Writes the whole corpus below {@code root}, which must exist.
+     */
+    public List<GeneratedBook> generate(Path root) throws IOException {
+        List<GeneratedBook> books = new ArrayList<>(spec.total());
+        int index = 0;
+        for (int i = 0; i < spec.epubs(); i++) {
+            books.add(generate(root, Format.EPUB, index++));
+        }
+        for (int i = 0; i < spec.pdfs(); i++) {
+            books.add(generate(root, Format.PDF, index++));
+        }
+        for (int i = 0; i < spec.cbzs(); i++) {
+            books.add(generate(root, Format.CBZ, index++));
+        }
+        for (int i = 0; i < spec.cb7s(); i++) {
+            books.add(generate(root, Format.CB7, index++));
+        }
+        return books;
+    }
+
+    /**
+     * Writes one more book of the given format, for measuring how quickly a new file is picked up.
+     */
+    public GeneratedBook generate(Path root, Format format, int index) throws IOException {
+        String author = authors.get(random.nextInt(authors.size()));
+        boolean inSeries = random.nextInt(3) == 0;
+        String seriesName = inSeries ? series.get(random.nextInt(series.size())) : null;
+        Integer seriesNumber = inSeries ? 1 + random.nextInt(12) : null;
+        String title = title() + " " + index;
+
+        Path folder = root.resolve(folder(author, seriesName));
+        Files.createDirectories(folder);
+        Path file = folder.resolve(sanitize(title) + "." + format.getExtension());
+        switch (format) {
+            case EPUB -> writeEpub(file, title, author, seriesName, seriesNumber);
+            case PDF -> writePdf(file, title, author, spec.pdfPages());
+            case CBZ -> writeCbz(file, title, seriesName, seriesNumber, spec.comicPages());
+            case CB7 -> writeCb7(file, title, spec.comicPages());
+        }
+        return new GeneratedBook(file, format, title, author, seriesName, seriesNumber);
+    }
+
+    private String folder(String author, String seriesName) {
+        Layout layout = spec.layout() == Layout.MIXED ? Layout.values()[random.nextInt(4)] : spec.layout();
+        String authorFolder = sanitize(author);
+        return switch (layout) {
+            case FLAT -> "";
+            case AUTHOR -> authorFolder;
+            case AUTHOR_SERIES -> seriesName != null ? authorFolder + "/" + sanitize(seriesName) : authorFolder;
+            case MIXED -> GENRES[random.nextInt(GENRES.length)] + "/" + (1960 + random.nextInt(60)) + "/" + authorFolder;
+        };
+    }
+
+    public void writeEpub(Path file, String title, String author, String seriesName, Integer seriesNumber) throws IOException {
+        String identifier = isbn();
+        int chapters = 3 + random.nextInt(8);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            // The mimetype entry has to come first and be stored uncompressed.
+            byte[] mimetype = "application/epub+zip".getBytes(StandardCharsets.US_ASCII);
+            ZipEntry mimetypeEntry = new ZipEntry("mimetype");
+            mimetypeEntry.setMethod(ZipEntry.STORED);
+            mimetypeEntry.setSize(mimetype.length);
+            CRC32 crc = new CRC32();
+            crc.update(mimetype);
+            mimetypeEntry.setCrc(crc.getValue());
+            zip.putNextEntry(mimetypeEntry);
+            zip.write(mimetype);
+            zip.closeEntry();
+
+            putEntry(zip, "META-INF/container.xml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+                      <rootfiles>
+                        <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+                      </rootfiles>
+                    </container>
+                    """);
+
+            StringBuilder manifest = new StringBuilder();
+            StringBuilder spine = new StringBuilder();
+            StringBuilder nav = new StringBuilder();
+            for (int i = 1; i <= chapters; i++) {
+                manifest.append("    <item id=\"chapter").append(i).append("\" href=\"chapter").append(i)
+                        .append(".xhtml\" media-type=\"application/xhtml+xml\"/>\n");
+                spine.append("    <itemref idref=\"chapter").append(i).append("\"/>\n");
+                nav.append("      <li><a href=\"chapter").append(i).append(".xhtml\">Chapter ").append(i).append("</a></li>\n");
+            }
+            String seriesMeta = seriesName == null ? "" : """
+                        <meta name="calibre:series" content="%s"/>
+                        <meta name="calibre:series_index" content="%d"/>
+                    """.formatted(escapeXml(seriesName), seriesNumber);
+            putEntry(zip, "OEBPS/content.opf", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <package xmlns="http://www.idpf.org/2007/opf" version="3.0" unique-identifier="bookid">
+                      <metadata xmlns:dc="http://purl.org/dc/elements/1.1/" xmlns:opf="http://www.idpf.org/2007/opf">
+                        <dc:identifier id="bookid">urn:isbn:%s</dc:identifier>
+                        <dc:title>%s</dc:title>
+                        <dc:creator>%s</dc:creator>
+                        <dc:language>%s</dc:language>
+                        <dc:publisher>%s Press</dc:publisher>
+                        <dc:date>%s</dc:date>
+                        <dc:subject>%s</dc:subject>
+                        <dc:description>%s</dc:description>
+                    %s    <meta name="cover" content="cover-image"/>
+                        <meta property="dcterms:modified">2024-01-01T00:00:00Z</meta>
+                      </metadata>
+                      <manifest>
+                        <item id="nav" href="nav.xhtml" media-type="application/xhtml+xml" properties="nav"/>
+                        <item id="cover-image" href="images/cover.jpg" media-type="image/jpeg" properties="cover-image"/>
+                    %s  </manifest>
+                      <spine>
+                    %s  </spine>
+                    </package>
+                    """.formatted(identifier, escapeXml(title), escapeXml(author), LANGUAGES[random.nextInt(LANGUAGES.length)],
+                    capitalize(word()), date(), GENRES[random.nextInt(GENRES.length)], escapeXml(sentence(40)),
+                    seriesMeta, manifest, spine));
+            putEntry(zip, "OEBPS/nav.xhtml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <html xmlns="http://www.w3.org/1999/xhtml" xmlns:epub="http://www.idpf.org/2007/ops">
+                    <head><title>%s</title></head>
+                    <body>
+                      <nav epub:type="toc"><ol>
+                    %s  </ol></nav>
+                    </body>
+                    </html>
+                    """.formatted(escapeXml(title), nav));
+            for (int i = 1; i <= chapters; i++) {
+                StringBuilder paragraphs = new StringBuilder();
+                for (int p = 0; p < 10 + random.nextInt(30); p++) {
+                    paragraphs.append("<p>").append(escapeXml(sentence(60 + random.nextInt(120)))).append("</p>\n");
+                }
+                putEntry(zip, "OEBPS/chapter" + i + ".xhtml", """
+                        <?xml version="1.0" encoding="UTF-8"?>
+                        <html xmlns="http://www.w3.org/1999/xhtml">
+                        <head><title>Chapter %d</title></head>
+                        <body>
+                        <h1>Chapter %d</h1>
+                        %s</body>
+                        </html>
+                        """.formatted(i, i, paragraphs));
+            }
+            zip.putNextEntry(new ZipEntry("OEBPS/images/cover.jpg"));
+            zip.write(jpeg(title));
+            zip.closeEntry();
+        }
+    }
+
+    public void writePdf(Path file, String title, String author, int pages) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDDocumentInformation info = document.getDocumentInformation();
+            info.setTitle(title);
+            info.setAuthor(author);
+            info.setSubject(GENRES[random.nextInt(GENRES.length)]);
+            PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+            for (int i = 1; i <= Math.max(1, pages); i++) {
+                PDPage page = new PDPage(PDRectangle.A5);
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 10);
+                    content.setLeading(13);
+                    content.newLineAtOffset(36, page.getMediaBox().getHeight() - 48);
+                    content.showText(i == 1 ? title : title + " - page " + i);
+                    for (int line = 0; line < 36; line++) {
+                        content.newLine();
+                        content.showText(sentence(9));
+                    }
+                    content.endText();
+                }
+            }
+            document.save(file.toFile());
+        }
+    }
+
+    public void writeCbz(Path file, String title, String seriesName, Integer seriesNumber, int pages) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(file))) {
+            putEntry(zip, "ComicInfo.xml", """
+                    <?xml version="1.0" encoding="UTF-8"?>
+                    <ComicInfo>
+                      <Title>%s</Title>
+                      <Series>%s</Series>
+                      <Number>%s</Number>
+                      <PageCount>%d</PageCount>
+                    </ComicInfo>
+                    """.formatted(escapeXml(title), escapeXml(seriesName != null ? seriesName : title),
+                    seriesNumber != null ? seriesNumber : 1, pages));
+            for (int i = 1; i <= Math.max(1, pages); i++) {
+                zip.putNextEntry(new ZipEntry(String.format("page%03d.jpg", i)));
+                zip.write(jpeg(title + " " + i));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    /**
+     * Writes a 7z archive with Deflate, which commons-compress can read and write without the optional XZ library.
+     */
+    public void writeCb7(Path file, String title, int pages) throws IOException {
+        try (SevenZOutputFile archive = new SevenZOutputFile(file.toFile())) {
+            archive.setContentCompression(SevenZMethod.DEFLATE);
+            for (int i = 1; i <= Math.max(1, pages); i++) {
+                byte[] image = jpeg(title + " " + i);
+                SevenZArchiveEntry entry = new SevenZArchiveEntry();
+                entry.setName(String.format("page%03d.jpg", i));
+                entry.setSize(image.length);
+                archive.putArchiveEntry(entry);
+                archive.write(image);
+                archive.closeArchiveEntry();
+            }
+        }
+    }
+
+    private byte[] jpeg(String label) throws IOException {
+        int width = Math.max(64, spec.pageWidth());
+        int height = width * 3 / 2;
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        Color from = new Color(random.nextInt(0xFFFFFF));
+        Color to = new Color(random.nextInt(0xFFFFFF));
+        graphics.setPaint(new GradientPaint(0, 0, from, width, height, to));
+        graphics.fillRect(0, 0, width, height);
+        for (int i = 0; i < 30; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.fillOval(random.nextInt(width), random.nextInt(height), 10 + random.nextInt(width / 4), 10 + random.nextInt(width / 4));
+        }
+        graphics.setColor(Color.WHITE);
+        graphics.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(12, width / 16)));
+        graphics.drawString(label, width / 12, height / 2);
+        graphics.dispose();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    private static void putEntry(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private String title() {
+        int words = 1 + random.nextInt(4);
+        StringBuilder title = new StringBuilder("The ").append(capitalize(word()));
+        for (int i = 1; i < words; i++) {
+            title.append(' ').append(capitalize(word()));
+        }
+        return title.toString();
+    }
+
+    private String sentence(int words) {
+        StringBuilder sentence = new StringBuilder(capitalize(word()));
+        for (int i = 1; i < words; i++) {
+            sentence.append(' ').append(word());
+        }
+        return sentence.append('.').toString();
+    }
+
+    private String isbn() {
+        StringBuilder digits = new StringBuilder("978");
+        for (int i = 0; i < 9; i++) {
+            digits.append(random.nextInt(10));
+        }
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            sum += (digits.charAt(i) - '0') * (i % 2 == 0 ? 1 : 3);
+        }
+        return digits.append((10 - sum % 10) % 10).toString();
+    }
+
+    private String date() {
+        return LocalDate.of(1950 + random.nextInt(75), 1 + random.nextInt(12), 1 + random.nextInt(28)).toString();
+    }
+
+    private String word() {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[\\\\/:*?\"<>|]", "_");
+    }
+
+    private static String escapeXml(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
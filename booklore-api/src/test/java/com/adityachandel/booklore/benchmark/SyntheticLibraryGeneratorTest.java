@@ -0,0 +1,77 @@
+package com.adityachandel.booklore.benchmark;
+
+import org.apache.commons.compress.archivers.sevenz.SevenZFile;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SyntheticLibraryGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void generatesReadableBooksOfEveryFormat() throws IOException {
+        SyntheticLibraryGenerator.Spec spec = SyntheticLibraryGenerator.Spec.small();
+        List<SyntheticLibraryGenerator.GeneratedBook> books = new SyntheticLibraryGenerator(spec).generate(tempDir);
+
+        assertThat(books).hasSize(spec.total());
+        assertThat(books).allSatisfy(book -> assertThat(book.path()).isRegularFile().startsWith(tempDir));
+        assertThat(books.stream().map(SyntheticLibraryGenerator.GeneratedBook::path).distinct()).hasSize(spec.total());
+
+        Path epub = first(books, SyntheticLibraryGenerator.Format.EPUB);
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(epub))) {
+            ZipEntry mimetype = zip.getNextEntry();
+            assertThat(mimetype.getName()).isEqualTo("mimetype");
+            assertThat(mimetype.getMethod()).isEqualTo(ZipEntry.STORED);
+        }
+
+        try (PDDocument pdf = Loader.loadPDF(first(books, SyntheticLibraryGenerator.Format.PDF).toFile())) {
+            assertThat(pdf.getNumberOfPages()).isEqualTo(spec.pdfPages());
+        }
+
+        try (InputStream in = Files.newInputStream(first(books, SyntheticLibraryGenerator.Format.CBZ));
+             ZipInputStream zip = new ZipInputStream(in)) {
+            int pages = 0;
+            for (ZipEntry entry; (entry = zip.getNextEntry()) != null; ) {
+                if (entry.getName().endsWith(".jpg")) {
+                    pages++;
+                }
+            }
+            assertThat(pages).isEqualTo(spec.comicPages());
+        }
+
+        try (SevenZFile sevenZ = new SevenZFile(first(books, SyntheticLibraryGenerator.Format.CB7).toFile())) {
+            long pages = 0;
+            while (sevenZ.getNextEntry() != null) {
+                pages++;
+            }
+            assertThat(pages).isGreaterThanOrEqualTo(spec.comicPages());
+        }
+    }
+
+    @Test
+    void sameSpecProducesSameLibrary() throws IOException {
+        SyntheticLibraryGenerator.Spec spec = SyntheticLibraryGenerator.Spec.small();
+        List<SyntheticLibraryGenerator.GeneratedBook> first = new SyntheticLibraryGenerator(spec).generate(Files.createDirectories(tempDir.resolve("a")));
+        List<SyntheticLibraryGenerator.GeneratedBook> second = new SyntheticLibraryGenerator(spec).generate(Files.createDirectories(tempDir.resolve("b")));
+
+        assertThat(second).extracting(book -> tempDir.resolve("b").relativize(book.path()))
+                .containsExactlyElementsOf(first.stream().map(book -> tempDir.resolve("a").relativize(book.path())).toList());
+    }
+
+    private static Path first(List<SyntheticLibraryGenerator.GeneratedBook> books, SyntheticLibraryGenerator.Format format) {
+        return books.stream().filter(book -> book.format() == format).findFirst().orElseThrow().path();
+    }
+}
@@ -0,0 +1,181 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.model.dto.HashEntry;
+import com.adityachandel.booklore.model.entity.BookAdditionalFileEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.enums.AdditionalFileType;
+import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
+import com.adityachandel.booklore.repository.BookRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookHashIndexTest {
+
+    private static final String HASH = "0123456789abcdef0123456789abcdef";
+    private static final String OTHER_HASH = "fedcba9876543210fedcba9876543210";
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookAdditionalFileRepository additionalFileRepository = mock(BookAdditionalFileRepository.class);
+    private final BookHashIndex index = new BookHashIndex(bookRepository, additionalFileRepository, new SimpleMeterRegistry());
+    private BookHashIndexListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<BookHashIndex> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(index);
+        listener = new BookHashIndexListener(provider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void lookupsGoToTheDatabaseUntilTheIndexIsLoaded() {
+        BookEntity book = book(1L, HASH);
+        when(bookRepository.findByCurrentHash(HASH)).thenReturn(Optional.of(book));
+
+        assertThat(index.findBookByHash(HASH)).contains(book);
+        verify(bookRepository).findByCurrentHash(HASH);
+    }
+
+    @Test
+    void loadedHashIsResolvedByIdAndAMissIsTrusted() {
+        BookEntity book = book(1L, HASH);
+        when(bookRepository.findAllCurrentHashes()).thenReturn(List.of(new HashEntry(1L, HASH)));
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        index.load();
+
+        assertThat(index.findBookByHash(HASH.toUpperCase())).contains(book);
+        assertThat(index.findBookByHash(OTHER_HASH)).isEmpty();
+        verify(bookRepository, never()).findByCurrentHash(anyString());
+    }
+
+    @Test
+    void hashThatIsNotAFingerprintAlwaysGoesToTheDatabase() {
+        index.load();
+
+        assertThat(index.findBookByHash("legacy-hash")).isEmpty();
+        verify(bookRepository).findByCurrentHash("legacy-hash");
+    }
+
+    @Test
+    void staleEntryIsDroppedAndTheDatabaseAsked() {
+        BookEntity rehashed = book(1L, OTHER_HASH);
+        BookEntity moved = book(2L, HASH);
+        when(bookRepository.findAllCurrentHashes()).thenReturn(List.of(new HashEntry(1L, HASH)));
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(rehashed));
+        when(bookRepository.findById(2L)).thenReturn(Optional.of(moved));
+        when(bookRepository.findByCurrentHash(HASH)).thenReturn(Optional.of(moved));
+        index.load();
+
+        assertThat(index.findBookByHash(HASH)).contains(moved);
+        assertThat(index.findBookByHash(HASH)).contains(moved);
+        verify(bookRepository).findByCurrentHash(HASH);
+    }
+
+    @Test
+    void savedBookIsIndexedStraightAway() {
+        index.load();
+        BookEntity book = book(3L, HASH);
+        when(bookRepository.findById(3L)).thenReturn(Optional.of(book));
+
+        listener.onSave(book);
+
+        assertThat(index.findBookByHash(HASH)).contains(book);
+        verify(bookRepository, never()).findByCurrentHash(anyString());
+    }
+
+    @Test
+    void bookSavedInAnOpenTransactionIsIndexedOnceItCommits() {
+        index.load();
+        BookEntity book = book(3L, HASH);
+        when(bookRepository.findById(3L)).thenReturn(Optional.of(book));
+
+        TransactionSynchronizationManager.initSynchronization();
+        listener.onSave(book);
+        assertThat(index.findBookByHash(HASH)).isEmpty();
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(index.findBookByHash(HASH)).contains(book);
+        verify(bookRepository, never()).findByCurrentHash(anyString());
+    }
+
+    @Test
+    void entryWhoseRowIsNotVisibleYetIsKept() {
+        BookEntity book = book(1L, HASH);
+        when(bookRepository.findAllCurrentHashes()).thenReturn(List.of(new HashEntry(1L, HASH)));
+        when(bookRepository.findById(1L)).thenReturn(Optional.empty(), Optional.of(book));
+        index.load();
+
+        // Looked up from a transaction that cannot see the insert yet.
+        assertThat(index.findBookByHash(HASH)).isEmpty();
+        assertThat(index.findBookByHash(HASH)).contains(book);
+        verify(bookRepository, times(1)).findByCurrentHash(HASH);
+    }
+
+    @Test
+    void removedBookLeavesTheIndexOnlyOnceTheDeleteCommits() {
+        BookEntity book = book(1L, HASH);
+        when(bookRepository.findAllCurrentHashes()).thenReturn(List.of(new HashEntry(1L, HASH)));
+        when(bookRepository.findById(1L)).thenReturn(Optional.of(book));
+        index.load();
+
+        TransactionSynchronizationManager.initSynchronization();
+        listener.onRemove(book);
+        assertThat(index.findBookByHash(HASH)).contains(book);
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        TransactionSynchronizationManager.clearSynchronization();
+        assertThat(index.findBookByHash(HASH)).isEmpty();
+        verify(bookRepository, never()).findByCurrentHash(anyString());
+    }
+
+    @Test
+    void onlyAlternativeFormatsAreIndexedAsSuch() {
+        index.load();
+        BookAdditionalFileEntity alternative = additionalFile(5L, AdditionalFileType.ALTERNATIVE_FORMAT, HASH);
+        BookAdditionalFileEntity supplement = additionalFile(6L, AdditionalFileType.SUPPLEMENTARY, OTHER_HASH);
+        when(additionalFileRepository.findById(5L)).thenReturn(Optional.of(alternative));
+
+        listener.onSave(alternative);
+        listener.onSave(supplement);
+
+        assertThat(index.findAlternativeFormatByHash(HASH)).contains(alternative);
+        assertThat(index.findAlternativeFormatByHash(OTHER_HASH)).isEmpty();
+        verify(additionalFileRepository, never()).findByAltFormatCurrentHash(anyString());
+    }
+
+    private static BookEntity book(long id, String hash) {
+        return BookEntity.builder().id(id).currentHash(hash).build();
+    }
+
+    private static BookAdditionalFileEntity additionalFile(long id, AdditionalFileType type, String hash) {
+        BookAdditionalFileEntity file = new BookAdditionalFileEntity();
+        file.setId(id);
+        file.setAdditionalFileType(type);
+        file.setCurrentHash(hash);
+        return file;
+    }
+}
@@ -9,6 +9,7 @@ import com.adityachandel.booklore.model.enums.MetadataProvider;
 import com.adityachandel.booklore.repository.BookdropFileRepository;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.service.bookdrop.BookdropMetadataService;
+import com.adityachandel.booklore.service.fileprocessor.BookFileSession;
 import com.adityachandel.booklore.service.metadata.MetadataRefreshService;
 import com.adityachandel.booklore.service.metadata.extractor.CbxMetadataExtractor;
 import com.adityachandel.booklore.service.metadata.extractor.EpubMetadataExtractor;
@@ -23,7 +24,6 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.io.File;
 import java.time.Instant;
 import java.util.List;
 import java.util.Map;
@@ -72,7 +72,7 @@ class BookdropMetadataServiceTest {
         BookMetadata metadata = BookMetadata.builder().title("Test Book").build();
 
         when(bookdropFileRepository.findById(1L)).thenReturn(Optional.of(sampleFile));
-        when(epubMetadataExtractor.extractMetadata(any(File.class))).thenReturn(metadata);
+        when(epubMetadataExtractor.extractMetadata(any(BookFileSession.class))).thenReturn(metadata);
         when(objectMapper.writeValueAsString(metadata)).thenReturn("{\"title\":\"Test Book\"}");
         when(bookdropFileRepository.save(any())).thenReturn(sampleFile);
 
@@ -118,9 +118,9 @@ class BookdropMetadataServiceTest {
         BookMetadata metadata = BookMetadata.builder().title("No Cover Book").build();
 
         when(bookdropFileRepository.findById(1L)).thenReturn(Optional.of(sampleFile));
-        when(epubMetadataExtractor.extractMetadata(any(File.class))).thenReturn(metadata);
+        when(epubMetadataExtractor.extractMetadata(any(BookFileSession.class))).thenReturn(metadata);
         when(objectMapper.writeValueAsString(metadata)).thenReturn("{\"title\":\"No Cover Book\"}");
-        when(epubMetadataExtractor.extractCover(any(File.class))).thenReturn(null);
+        when(epubMetadataExtractor.extractCover(any(BookFileSession.class))).thenReturn(null);
         when(bookdropFileRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
 
         BookdropFileEntity result = bookdropMetadataService.attachInitialMetadata(1L);
@@ -144,7 +144,7 @@ class BookdropMetadataServiceTest {
     }
 
     @Test
-    void attachFetchedMetadata_shouldSleepIfGoodreadsIncluded() throws Exception {
+    void attachFetchedMetadata_shouldFetchWhenGoodreadsIncluded() throws Exception {
         sampleFile.setOriginalMetadata("{\"title\":\"Book\"}");
         AppSettings settings = new AppSettings();
         BookMetadata fetched = BookMetadata.builder().title("Fetched Book").build();
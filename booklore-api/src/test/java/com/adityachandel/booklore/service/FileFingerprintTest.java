@@ -0,0 +1,48 @@
+package com.adityachandel.booklore.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+
+class FileFingerprintTest {
+
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 256, 1023, 1024, 1025, 4096, 70_000, 1_100_000})
+    void incremental_matchesHashOfWrittenFile(int length) throws IOException {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        Path file = Files.write(tempDir.resolve("book.epub"), content);
+
+        FileFingerprint.Incremental incremental = new FileFingerprint.Incremental(length);
+        Random chunks = new Random(31);
+        int offset = 0;
+        while (offset < length) {
+            int count = Math.min(length - offset, 1 + chunks.nextInt(5000));
+            incremental.update(content, offset, count);
+            offset += count;
+        }
+
+        assertThat(incremental.finish()).isEqualTo(FileFingerprint.generateHash(file));
+    }
+
+    @Test
+    void incremental_refusesToFinishShortFile() {
+        FileFingerprint.Incremental incremental = new FileFingerprint.Incremental(10);
+        incremental.update(new byte[4], 0, 4);
+
+        assertThat(incremental.getPosition()).isEqualTo(4);
+        assertThatIllegalStateException().isThrownBy(incremental::finish);
+    }
+}
@@ -0,0 +1,99 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.kobo.KoboBookEntry;
+import com.adityachandel.booklore.model.dto.kobo.KoboBookMetadata;
+import com.adityachandel.booklore.model.dto.kobo.NewEntitlement;
+import com.adityachandel.booklore.model.dto.settings.AppSettings;
+import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.util.kobo.KoboUrlBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KoboEntitlementServiceTest {
+
+    private static final String TOKEN = "token";
+
+    private final KoboUrlBuilder koboUrlBuilder = mock(KoboUrlBuilder.class);
+    private final BookQueryService bookQueryService = mock(BookQueryService.class);
+    private final AppSettingService appSettingService = mock(AppSettingService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final KoboEntitlementService service = new KoboEntitlementService(koboUrlBuilder, bookQueryService, appSettingService,
+            new AppProperties(), meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        when(appSettingService.getAppSettings()).thenReturn(new AppSettings());
+        when(koboUrlBuilder.downloadUrl(anyString(), anyLong()))
+                .thenAnswer(invocation -> "http://booklore.local/api/kobo/" + invocation.getArgument(0) + "/v1/books/" + invocation.getArgument(1) + "/download");
+    }
+
+    @Test
+    void unchangedBookReusesTheMetadataBuiltForIt() {
+        when(bookQueryService.findKoboEntriesByIds(anyCollection())).thenReturn(List.of(book(1L, "Desert planet")));
+
+        KoboBookMetadata first = metadata(service.generateNewEntitlements(Set.of(1L), TOKEN, false));
+        KoboBookMetadata second = metadata(service.generateNewEntitlements(Set.of(1L), TOKEN, false));
+
+        assertThat(second).isSameAs(first);
+        verify(koboUrlBuilder, times(1)).downloadUrl(TOKEN, 1L);
+        assertThat(meterRegistry.get("booklore.kobo.metadata.cache").tag("result", "hit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("booklore.kobo.metadata.cache").tag("result", "miss").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void changedBookIsBuiltAgain() {
+        when(bookQueryService.findKoboEntriesByIds(anyCollection()))
+                .thenReturn(List.of(book(1L, "Desert planet")), List.of(book(1L, "Desert planet, revised")));
+
+        KoboBookMetadata first = metadata(service.generateNewEntitlements(Set.of(1L), TOKEN, false));
+        KoboBookMetadata second = metadata(service.generateNewEntitlements(Set.of(1L), TOKEN, false));
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getDescription()).isEqualTo("Desert planet, revised");
+    }
+
+    @Test
+    void payloadEstimateFollowsTheSerializedSize() throws Exception {
+        String description = "A long description. ".repeat(200);
+        when(bookQueryService.findKoboEntriesByIds(anyCollection())).thenReturn(List.of(book(1L, "Short"), book(2L, description)));
+        List<NewEntitlement> entitlements = service.generateNewEntitlements(Set.of(1L, 2L), TOKEN, false);
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        for (NewEntitlement entitlement : entitlements) {
+            KoboBookMetadata metadata = entitlement.getNewEntitlement().getBookMetadata();
+            int serialized = objectMapper.writeValueAsBytes(metadata).length;
+            assertThat(KoboEntitlementService.estimateSize(metadata)).isBetween(serialized / 2, serialized * 2);
+        }
+        assertThat(service.estimatePayloadBytes(List.of(2L), List.of(), TOKEN))
+                .isGreaterThan(service.estimatePayloadBytes(List.of(1L), List.of(), TOKEN) + description.length() / 2);
+    }
+
+    private static KoboBookMetadata metadata(List<NewEntitlement> entitlements) {
+        assertThat(entitlements).hasSize(1);
+        return entitlements.getFirst().getNewEntitlement().getBookMetadata();
+    }
+
+    private static KoboBookEntry book(long id, String description) {
+        return new KoboBookEntry(id, BookFileType.EPUB, 512L, Instant.parse("2024-01-01T00:00:00Z"), "Dune", "Chilton",
+                LocalDate.of(1965, 8, 1), "9780441013593", null, description, "Dune", 1f,
+                List.of("Frank Herbert"), List.of("Science Fiction"));
+    }
+}
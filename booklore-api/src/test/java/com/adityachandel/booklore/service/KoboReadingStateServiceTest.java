@@ -0,0 +1,97 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.mapper.KoboReadingStateMapperImpl;
+import com.adityachandel.booklore.model.dto.kobo.KoboReadingState;
+import com.adityachandel.booklore.model.entity.KoboReadingStateEntity;
+import com.adityachandel.booklore.repository.KoboReadingStateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class KoboReadingStateServiceTest {
+
+    private static final String ENTITLEMENT_ID = "42";
+
+    private final KoboReadingStateRepository repository = mock(KoboReadingStateRepository.class);
+    private final KoboReadingStateService service = new KoboReadingStateService(repository, new KoboReadingStateMapperImpl(),
+            mock(PlatformTransactionManager.class));
+    private final List<KoboReadingStateEntity> saved = new ArrayList<>();
+    private final Answer<Void> recordSave = invocation -> {
+        saved.addAll(invocation.getArgument(0));
+        return null;
+    };
+
+    @BeforeEach
+    void setUp() {
+        when(repository.findByEntitlementIdIn(anyCollection())).thenReturn(List.of());
+        doAnswer(recordSave).when(repository).saveAll(anyList());
+    }
+
+    @Test
+    void latestStateIsReadBeforeAndWrittenByTheFlush() {
+        service.saveReadingState(List.of(state("2024-01-01T00:00:00Z")));
+        service.saveReadingState(List.of(state("2024-01-02T00:00:00Z")));
+
+        assertThat(service.getReadingState(ENTITLEMENT_ID).getReadingStates().getFirst().getLastModified()).isEqualTo("2024-01-02T00:00:00Z");
+
+        service.flush();
+
+        assertThat(saved).singleElement().extracting(KoboReadingStateEntity::getEntitlementId).isEqualTo(ENTITLEMENT_ID);
+    }
+
+    @Test
+    void stateThatFailedToSaveIsKeptForTheNextFlush() {
+        CannotAcquireLockException failure = new CannotAcquireLockException("Lock wait timeout");
+        doThrow(failure).doThrow(failure).doAnswer(recordSave).when(repository).saveAll(anyList());
+        service.saveReadingState(List.of(state("2024-01-01T00:00:00Z")));
+
+        service.flush();
+
+        assertThat(saved).isEmpty();
+        assertThat(service.getReadingState(ENTITLEMENT_ID)).isNotNull();
+        service.saveReadingState(List.of(state("2024-01-02T00:00:00Z")));
+
+        service.flush();
+
+        verify(repository, times(3)).saveAll(anyList());
+        assertThat(saved).singleElement().extracting(KoboReadingStateEntity::getPriorityTimestamp).isEqualTo("2024-01-02T00:00:00Z");
+    }
+
+    @Test
+    void stateIsDroppedAfterTheLastAttempt() {
+        doThrow(new CannotAcquireLockException("Lock wait timeout")).when(repository).saveAll(anyList());
+        service.saveReadingState(List.of(state("2024-01-01T00:00:00Z")));
+
+        service.flushOnShutdown();
+
+        // Each flush tries the batch, then the entry on its own.
+        verify(repository, times(2 * KoboReadingStateService.MAX_FLUSH_ATTEMPTS)).saveAll(anyList());
+        assertThat(service.getReadingState(ENTITLEMENT_ID)).isNull();
+        service.flush();
+        verify(repository, times(2 * KoboReadingStateService.MAX_FLUSH_ATTEMPTS)).saveAll(anyList());
+    }
+
+    private static KoboReadingState state(String timestamp) {
+        return KoboReadingState.builder()
+                .entitlementId(ENTITLEMENT_ID)
+                .created(timestamp)
+                .lastModified(timestamp)
+                .priorityTimestamp(timestamp)
+                .build();
+    }
+}
@@ -2,17 +2,13 @@ package com.adityachandel.booklore.service;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
-import static org.mockito.ArgumentMatchers.isNull;
 
 import com.adityachandel.booklore.config.security.userdetails.KoreaderUserDetails;
 import com.adityachandel.booklore.exception.APIException;
 import com.adityachandel.booklore.model.dto.progress.KoreaderProgress;
 import com.adityachandel.booklore.model.entity.BookEntity;
-import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
 import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
-import com.adityachandel.booklore.repository.BookRepository;
-import com.adityachandel.booklore.repository.UserBookProgressRepository;
-import com.adityachandel.booklore.repository.UserRepository;
+import com.adityachandel.booklore.model.enums.ReadStatus;
 import com.adityachandel.booklore.repository.KoreaderUserRepository;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -27,17 +23,16 @@ import org.springframework.security.core.context.*;
 import java.time.Instant;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
 class KoreaderServiceTest {
 
     @Mock
-    UserBookProgressRepository progressRepo;
+    UserProgressService progressService;
     @Mock
-    BookRepository bookRepo;
-    @Mock
-    UserRepository userRepo;
+    BookHashIndex bookHashIndex;
     @Mock
     KoreaderUserRepository koreaderUserRepo;
 
@@ -101,11 +96,11 @@ class KoreaderServiceTest {
         when(details.isSyncEnabled()).thenReturn(true);
         var book = new BookEntity();
         book.setId(99L);
-        when(bookRepo.findByCurrentHash("h")).thenReturn(Optional.of(book));
+        when(bookHashIndex.findBookByHash("h")).thenReturn(Optional.of(book));
         var prog = new UserBookProgressEntity();
         prog.setKoreaderProgress("p");
         prog.setKoreaderProgressPercent(0.5F);
-        when(progressRepo.findByUserIdAndBookId(42L, 99L))
+        when(progressService.findUserProgress(42L, 99L))
                 .thenReturn(Optional.of(prog));
 
         KoreaderProgress out = service.getProgress("h");
@@ -117,16 +112,18 @@ class KoreaderServiceTest {
     @Test
     void getProgress_bookNotFound() {
         when(details.isSyncEnabled()).thenReturn(true);
-        when(bookRepo.findByCurrentHash("h")).thenReturn(Optional.empty());
+        when(bookHashIndex.findBookByHash("h")).thenReturn(Optional.empty());
         assertThrows(APIException.class, () -> service.getProgress("h"));
     }
 
     @Test
     void getProgress_noProgress() {
         when(details.isSyncEnabled()).thenReturn(true);
-        when(bookRepo.findByCurrentHash("h"))
-                .thenReturn(Optional.of(new BookEntity()));
-        when(progressRepo.findByUserIdAndBookId(anyLong(), isNull()))
+        var book = new BookEntity();
+        book.setId(5L);
+        when(bookHashIndex.findBookByHash("h"))
+                .thenReturn(Optional.of(book));
+        when(progressService.findUserProgress(anyLong(), anyLong()))
                 .thenReturn(Optional.empty());
         assertThrows(APIException.class, () -> service.getProgress("h"));
     }
@@ -138,28 +135,23 @@ class KoreaderServiceTest {
     }
 
     @Test
-    void saveProgress_createsNew() {
+    void saveProgress_queuesUpdate() {
         when(details.isSyncEnabled()).thenReturn(true);
         var book = new BookEntity();
         book.setId(7L);
-        when(bookRepo.findByCurrentHash("h")).thenReturn(Optional.of(book));
-        var user = new BookLoreUserEntity();
-        user.setId(42L);
-        when(userRepo.findById(42L)).thenReturn(Optional.of(user));
-        when(progressRepo.findByUserIdAndBookId(42L, 7L))
-                .thenReturn(Optional.empty());
+        when(bookHashIndex.findBookByHash("h")).thenReturn(Optional.of(book));
 
         var dto = KoreaderProgress.builder()
                 .document("h").progress("x").percentage(0.6F).device("d").device_id("id").build();
         service.saveProgress("h", dto);
 
-        ArgumentCaptor<UserBookProgressEntity> cap = ArgumentCaptor.forClass(UserBookProgressEntity.class);
-        verify(progressRepo).save(cap.capture());
-        var saved = cap.getValue();
+        var saved = new UserBookProgressEntity();
+        applyQueuedChange(7L, saved);
         assertEquals("x", saved.getKoreaderProgress());
         assertEquals(0.6F, saved.getKoreaderProgressPercent());
         assertEquals("d", saved.getKoreaderDevice());
         assertEquals("id", saved.getKoreaderDeviceId());
+        assertEquals(ReadStatus.READING, saved.getReadStatus());
         assertEquals(Instant.class, saved.getKoreaderLastSyncTime().getClass());
     }
 
@@ -168,21 +160,37 @@ class KoreaderServiceTest {
         when(details.isSyncEnabled()).thenReturn(true);
         var book = new BookEntity();
         book.setId(8L);
-        when(bookRepo.findByCurrentHash("h")).thenReturn(Optional.of(book));
-        var user = new BookLoreUserEntity();
-        user.setId(42L);
-        when(userRepo.findById(42L)).thenReturn(Optional.of(user));
-        var existing = new UserBookProgressEntity();
-        when(progressRepo.findByUserIdAndBookId(42L, 8L))
-                .thenReturn(Optional.of(existing));
+        when(bookHashIndex.findBookByHash("h")).thenReturn(Optional.of(book));
 
         var dto = KoreaderProgress.builder()
                 .document("h").progress("y").percentage(0.4F).device("d").device_id("id").build();
         service.saveProgress("h", dto);
 
-        verify(progressRepo).save(existing);
+        var existing = new UserBookProgressEntity();
+        existing.setReadStatus(ReadStatus.UNREAD);
+        applyQueuedChange(8L, existing);
         assertEquals("y", existing.getKoreaderProgress());
         assertEquals(0.4F, existing.getKoreaderProgressPercent());
+        assertEquals(ReadStatus.UNREAD, existing.getReadStatus());
+    }
+
+    @Test
+    void saveProgress_rejectsOutOfRangePercentage() {
+        when(details.isSyncEnabled()).thenReturn(true);
+        var book = new BookEntity();
+        book.setId(9L);
+        when(bookHashIndex.findBookByHash("h")).thenReturn(Optional.of(book));
+
+        var dto = KoreaderProgress.builder().document("h").progress("z").percentage(42F).build();
+        assertThrows(APIException.class, () -> service.saveProgress("h", dto));
+        verify(progressService, never()).updateProgress(anyLong(), anyLong(), any());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void applyQueuedChange(long bookId, UserBookProgressEntity target) {
+        ArgumentCaptor<Consumer<UserBookProgressEntity>> cap = ArgumentCaptor.forClass(Consumer.class);
+        verify(progressService).updateProgress(eq(42L), eq(bookId), cap.capture());
+        cap.getValue().accept(target);
     }
 
     @Test
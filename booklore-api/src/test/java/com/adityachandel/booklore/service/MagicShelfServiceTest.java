@@ -0,0 +1,104 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.config.security.service.AuthenticationService;
+import com.adityachandel.booklore.exception.APIException;
+import com.adityachandel.booklore.model.dto.BookLoreUser;
+import com.adityachandel.booklore.model.dto.MagicShelf;
+import com.adityachandel.booklore.model.entity.MagicShelfEntity;
+import com.adityachandel.booklore.repository.MagicShelfRepository;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MagicShelfServiceTest {
+
+    private static final long USER_ID = 1L;
+
+    private final MagicShelfRepository repository = mock(MagicShelfRepository.class);
+    private final AuthenticationService authenticationService = mock(AuthenticationService.class);
+    private final MagicShelfBookService magicShelfBookService = mock(MagicShelfBookService.class);
+    private final MagicShelfService service = new MagicShelfService(repository, authenticationService, magicShelfBookService,
+            mock(BookService.class));
+
+    @BeforeEach
+    void setUp() {
+        BookLoreUser user = new BookLoreUser();
+        user.setId(USER_ID);
+        when(authenticationService.getAuthenticatedUser()).thenReturn(user);
+        when(repository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void updatedShelfIsEvictedOnlyOnceTheUpdateCommits() {
+        when(repository.findById(5L)).thenReturn(Optional.of(shelf(5L, USER_ID)));
+        MagicShelf update = new MagicShelf();
+        update.setId(5L);
+        update.setName("Unread");
+        update.setFilterJson("{}");
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.createOrUpdateShelf(update);
+        verify(magicShelfBookService, never()).evictShelf(anyLong());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(magicShelfBookService).evictShelf(5L);
+    }
+
+    @Test
+    void deletedShelfIsEvictedOnlyOnceTheDeleteCommits() {
+        when(repository.findById(5L)).thenReturn(Optional.of(shelf(5L, USER_ID)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        service.deleteShelf(5L);
+        verify(repository).deleteById(5L);
+        verify(magicShelfBookService, never()).evictShelf(anyLong());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(magicShelfBookService).evictShelf(5L);
+    }
+
+    @Test
+    void missingShelfIsNotFound() {
+        when(repository.findById(5L)).thenReturn(Optional.empty());
+
+        assertThatThrownBy(() -> service.getShelf(5L))
+                .isInstanceOfSatisfying(APIException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+        assertThatThrownBy(() -> service.deleteShelf(5L))
+                .isInstanceOfSatisfying(APIException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.NOT_FOUND));
+    }
+
+    @Test
+    void anotherUsersShelfIsForbidden() {
+        when(repository.findById(5L)).thenReturn(Optional.of(shelf(5L, 2L)));
+
+        assertThatThrownBy(() -> service.deleteShelf(5L))
+                .isInstanceOfSatisfying(APIException.class, e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.FORBIDDEN));
+        verify(repository, never()).deleteById(anyLong());
+    }
+
+    private static MagicShelfEntity shelf(long id, long userId) {
+        return MagicShelfEntity.builder().id(id).userId(userId).name("Shelf").filterJson("{}").build();
+    }
+}
@@ -0,0 +1,156 @@
+package com.adityachandel.booklore.service;
+
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
+import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.UserBookProgressRepository;
+import com.adityachandel.booklore.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserProgressServiceTest {
+
+    private static final long USER_ID = 1L;
+    private static final long BOOK_ID = 10L;
+    private static final long OTHER_BOOK_ID = 11L;
+
+    private final UserBookProgressRepository progressRepository = mock(UserBookProgressRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final UserProgressService service = new UserProgressService(progressRepository, userRepository, bookRepository,
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry());
+    private final List<UserBookProgressEntity> saved = new ArrayList<>();
+    private final Answer<Void> recordSave = invocation -> {
+        saved.addAll(invocation.getArgument(0));
+        return null;
+    };
+    private UserBookProgressEntity stored;
+
+    @BeforeEach
+    void setUp() {
+        stored = UserBookProgressEntity.builder()
+                .id(100L)
+                .user(BookLoreUserEntity.builder().id(USER_ID).build())
+                .book(BookEntity.builder().id(BOOK_ID).build())
+                .pdfProgress(3)
+                .build();
+        when(progressRepository.findByUserIdAndBookId(USER_ID, BOOK_ID)).thenReturn(Optional.of(stored));
+        when(progressRepository.findByUserIdAndBookIdIn(eq(USER_ID), anySet())).thenAnswer(invocation ->
+                // A fresh copy per query, as a reload after a rolled back flush would return.
+                invocation.<Set<Long>>getArgument(1).contains(BOOK_ID) ? List.of(stored.toBuilder().build()) : List.of());
+        when(userRepository.getReferenceById(anyLong())).thenAnswer(invocation -> BookLoreUserEntity.builder().id(invocation.getArgument(0)).build());
+        when(bookRepository.getReferenceById(anyLong())).thenAnswer(invocation -> BookEntity.builder().id(invocation.getArgument(0)).build());
+        doAnswer(recordSave).when(progressRepository).saveAll(anyList());
+    }
+
+    @Test
+    void readsSeeUpdatesBeforeTheyAreFlushed() {
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(7));
+        service.updateProgress(USER_ID, OTHER_BOOK_ID, progress -> progress.setCbxProgress(2));
+
+        assertThat(service.findUserProgress(USER_ID, BOOK_ID)).get().extracting(UserBookProgressEntity::getPdfProgress).isEqualTo(7);
+        Map<Long, UserBookProgressEntity> progress = service.fetchUserProgress(USER_ID, Set.of(BOOK_ID, OTHER_BOOK_ID));
+        assertThat(progress.get(BOOK_ID).getPdfProgress()).isEqualTo(7);
+        assertThat(progress.get(OTHER_BOOK_ID).getCbxProgress()).isEqualTo(2);
+
+        assertThat(stored.getPdfProgress()).isEqualTo(3);
+        verify(progressRepository, never()).saveAll(anyList());
+    }
+
+    @Test
+    void flushWritesEveryQueuedChangeInOrder() {
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(7));
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgressPercent(50f));
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(8));
+        service.updateProgress(USER_ID, OTHER_BOOK_ID, progress -> progress.setCbxProgress(2));
+
+        service.flush();
+
+        verify(progressRepository).saveAll(anyList());
+        assertThat(saved).hasSize(2);
+        UserBookProgressEntity updated = savedFor(BOOK_ID);
+        assertThat(updated.getId()).isEqualTo(stored.getId());
+        assertThat(updated.getPdfProgress()).isEqualTo(8);
+        assertThat(updated.getPdfProgressPercent()).isEqualTo(50f);
+        UserBookProgressEntity created = savedFor(OTHER_BOOK_ID);
+        assertThat(created.getId()).isNull();
+        assertThat(created.getUser().getId()).isEqualTo(USER_ID);
+        assertThat(created.getCbxProgress()).isEqualTo(2);
+
+        service.flush();
+        verify(progressRepository).saveAll(anyList());
+    }
+
+    @Test
+    void shutdownFlushesWhatIsStillBuffered() {
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(7));
+
+        service.flushOnShutdown();
+
+        assertThat(saved).hasSize(1);
+        assertThat(savedFor(BOOK_ID).getPdfProgress()).isEqualTo(7);
+    }
+
+    @Test
+    void failedEntryIsKeptAndWrittenBeforeNewerChanges() {
+        CannotAcquireLockException failure = new CannotAcquireLockException("Lock wait timeout");
+        doThrow(failure).doThrow(failure).doAnswer(recordSave).when(progressRepository).saveAll(anyList());
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(7));
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgressPercent(50f));
+
+        service.flush();
+
+        assertThat(saved).isEmpty();
+        assertThat(service.findUserProgress(USER_ID, BOOK_ID)).get().extracting(UserBookProgressEntity::getPdfProgress).isEqualTo(7);
+        service.updateProgress(USER_ID, BOOK_ID, progress -> progress.setPdfProgress(9));
+
+        service.flush();
+
+        verify(progressRepository, times(3)).saveAll(anyList());
+        assertThat(saved).hasSize(1);
+        assertThat(savedFor(BOOK_ID).getPdfProgress()).isEqualTo(9);
+        assertThat(savedFor(BOOK_ID).getPdfProgressPercent()).isEqualTo(50f);
+    }
+
+    @Test
+    void entryIsDroppedAfterTheLastAttempt() {
+        doThrow(new CannotAcquireLockException("Lock wait timeout")).when(progressRepository).saveAll(anyList());
+        service.updateProgress(USER_ID, OTHER_BOOK_ID, progress -> progress.setCbxProgress(2));
+
+        service.flushOnShutdown();
+
+        // Each flush tries the batch, then the entry on its own.
+        verify(progressRepository, times(2 * UserProgressService.MAX_FLUSH_ATTEMPTS)).saveAll(anyList());
+        assertThat(service.findUserProgress(USER_ID, OTHER_BOOK_ID)).isEmpty();
+        service.flush();
+        verify(progressRepository, times(2 * UserProgressService.MAX_FLUSH_ATTEMPTS)).saveAll(anyList());
+    }
+
+    private UserBookProgressEntity savedFor(long bookId) {
+        return saved.stream().filter(progress -> progress.getBook().getId() == bookId).findFirst().orElseThrow();
+    }
+}
@@ -0,0 +1,204 @@
+package com.adityachandel.booklore.service.bookdrop;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.settings.AppSettings;
+import com.adityachandel.booklore.model.entity.BookdropFileEntity;
+import com.adityachandel.booklore.model.websocket.LogNotification;
+import com.adityachandel.booklore.model.websocket.Topic;
+import com.adityachandel.booklore.repository.BookdropFileRepository;
+import com.adityachandel.booklore.service.NotificationService;
+import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BookdropEventHandlerServiceTest {
+
+    private static final long WAIT_MS = 5000;
+    private static final long ENRICHMENT_INTERVAL_MS = 300;
+
+    @TempDir
+    Path bookdrop;
+
+    private final BookdropFileRepository bookdropFileRepository = mock(BookdropFileRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final AppSettingService appSettingService = mock(AppSettingService.class);
+    private final BookdropMetadataService bookdropMetadataService = mock(BookdropMetadataService.class);
+    private final AppProperties appProperties = new AppProperties();
+    private final AppSettings appSettings = new AppSettings();
+    private final AtomicLong ids = new AtomicLong();
+    private final List<String> logMessages = new CopyOnWriteArrayList<>();
+    private BookdropEventHandlerService service;
+
+    @BeforeEach
+    void setUp() {
+        appProperties.getBookdrop().setExtractionThreads(2);
+        appProperties.getBookdrop().setEnrichmentIntervalMs(ENRICHMENT_INTERVAL_MS);
+        appProperties.getBookdrop().setProgressIntervalMs(250);
+        appSettings.setMetadataDownloadOnBookdrop(true);
+        when(appSettingService.getAppSettings()).thenReturn(appSettings);
+        when(bookdropFileRepository.save(any())).thenAnswer(invocation -> {
+            BookdropFileEntity entity = invocation.getArgument(0);
+            entity.setId(ids.incrementAndGet());
+            return entity;
+        });
+        doAnswer(invocation -> logMessages.add(invocation.<LogNotification>getArgument(1).getMessage()))
+                .when(notificationService).sendMessageToPermissions(eq(Topic.LOG), any(), anySet());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.shutdown();
+        }
+    }
+
+    @Test
+    void repeatedEventsForOneFileCreateOneEntry() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            return null;
+        }).when(bookdropMetadataService).attachInitialMetadata(anyLong());
+        start();
+        Path file = book("dune.epub");
+
+        create(file);
+        verify(bookdropMetadataService, timeout(WAIT_MS)).attachInitialMetadata(1L);
+        create(file);
+        create(file);
+        Thread.sleep(200);
+        release.countDown();
+
+        verify(bookdropMetadataService, timeout(WAIT_MS)).attachFetchedMetadata(1L);
+        verify(bookdropFileRepository, times(1)).save(any());
+    }
+
+    @Test
+    void extractionIsNotHeldUpByPacedMetadataLookups() throws Exception {
+        List<Long> lookupTimes = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            lookupTimes.add(System.nanoTime());
+            return null;
+        }).when(bookdropMetadataService).attachFetchedMetadata(anyLong());
+        start();
+
+        for (int i = 1; i <= 3; i++) {
+            create(book("book-" + i + ".epub"));
+        }
+
+        verify(bookdropMetadataService, timeout(WAIT_MS).times(3)).attachInitialMetadata(anyLong());
+        assertThat(lookupTimes).hasSizeLessThan(3);
+        verify(bookdropMetadataService, timeout(WAIT_MS).times(3)).attachFetchedMetadata(anyLong());
+        for (int i = 1; i < lookupTimes.size(); i++) {
+            assertThat(TimeUnit.NANOSECONDS.toMillis(lookupTimes.get(i) - lookupTimes.get(i - 1)))
+                    .isGreaterThanOrEqualTo(ENRICHMENT_INTERVAL_MS - 20);
+        }
+    }
+
+    @Test
+    void ignoredFilesAreReportedAsSkippedNotAdded() throws Exception {
+        start();
+
+        create(book("dune.epub"));
+        create(book("notes.txt"));
+        create(Files.createDirectories(bookdrop.resolve("Series")));
+
+        assertThat(awaitLog("All bookdrop files have finished processing")).isEqualTo("All bookdrop files have finished processing (1 added, 2 skipped)");
+    }
+
+    @Test
+    void fileAlreadyPendingReviewIsSkipped() throws Exception {
+        Path file = book("dune.epub");
+        BookdropFileEntity existing = BookdropFileEntity.builder().id(9L).filePath(file.toString())
+                .status(BookdropFileEntity.Status.PENDING_REVIEW).fetchedMetadata("{}").build();
+        when(bookdropFileRepository.findByFilePath(file.toString())).thenReturn(Optional.of(existing));
+        start();
+
+        create(file);
+        Thread.sleep(300);
+
+        verify(bookdropFileRepository, timeout(WAIT_MS)).findByFilePath(file.toString());
+        verify(bookdropFileRepository, never()).save(any());
+        verify(bookdropMetadataService, never()).attachFetchedMetadata(anyLong());
+    }
+
+    @Test
+    void lookupsDroppedAtShutdownResumeWhenTheFileIsScannedAgain() throws Exception {
+        appProperties.getBookdrop().setEnrichmentIntervalMs(60_000);
+        start();
+        Path first = book("first.epub");
+        Path second = book("second.epub");
+        create(first);
+        create(second);
+        verify(bookdropMetadataService, timeout(WAIT_MS)).attachFetchedMetadata(anyLong());
+        verify(bookdropMetadataService, timeout(WAIT_MS).times(2)).attachInitialMetadata(anyLong());
+
+        service.shutdown();
+        verify(bookdropMetadataService, times(1)).attachFetchedMetadata(anyLong());
+
+        // The second file is stored, but without fetched metadata.
+        BookdropFileEntity stored = BookdropFileEntity.builder().id(99L).filePath(second.toString())
+                .status(BookdropFileEntity.Status.PENDING_REVIEW).build();
+        when(bookdropFileRepository.findByFilePath(second.toString())).thenReturn(Optional.of(stored));
+        appProperties.getBookdrop().setEnrichmentIntervalMs(ENRICHMENT_INTERVAL_MS);
+        start();
+        create(second);
+
+        verify(bookdropMetadataService, timeout(WAIT_MS)).attachFetchedMetadata(99L);
+        verify(bookdropMetadataService, times(2)).attachInitialMetadata(anyLong());
+        verify(bookdropFileRepository, times(2)).save(any());
+    }
+
+    private void start() {
+        service = new BookdropEventHandlerService(bookdropFileRepository, notificationService, mock(BookdropNotificationService.class),
+                appSettingService, bookdropMetadataService, appProperties, new SimpleMeterRegistry());
+        service.init();
+    }
+
+    private void create(Path file) {
+        service.enqueueFile(file, StandardWatchEventKinds.ENTRY_CREATE);
+    }
+
+    private Path book(String name) throws IOException {
+        return Files.writeString(bookdrop.resolve(name), name).toAbsolutePath();
+    }
+
+    private String awaitLog(String prefix) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+        while (System.nanoTime() < deadline) {
+            Optional<String> message = logMessages.stream().filter(text -> text.startsWith(prefix)).findFirst();
+            if (message.isPresent()) {
+                return message.get();
+            }
+            Thread.sleep(50);
+        }
+        throw new AssertionError("No log starting with '" + prefix + "' in " + logMessages);
+    }
+}
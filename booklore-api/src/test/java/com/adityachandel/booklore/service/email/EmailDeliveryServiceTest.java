@@ -0,0 +1,322 @@
+package com.adityachandel.booklore.service.email;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.EmailDeliveryEntity;
+import com.adityachandel.booklore.model.entity.EmailProviderEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.enums.EmailDeliveryStatus;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.EmailDeliveryRepository;
+import com.adityachandel.booklore.repository.EmailProviderRepository;
+import com.adityachandel.booklore.service.NotificationService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EmailDeliveryServiceTest {
+
+    private static final long WAIT_MS = 5000;
+    private static final String RECIPIENT = "reader@example.com";
+
+    @TempDir
+    Path root;
+
+    private final EmailDeliveryRepository deliveryRepository = mock(EmailDeliveryRepository.class);
+    private final EmailProviderRepository providerRepository = mock(EmailProviderRepository.class);
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final AppProperties appProperties = new AppProperties();
+    private final Map<Long, EmailDeliveryEntity> table = new ConcurrentHashMap<>();
+    private final List<Saved> saves = new CopyOnWriteArrayList<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final Map<Long, BookEntity> books = new ConcurrentHashMap<>();
+    private final Map<Long, SmtpSession> sessions = new ConcurrentHashMap<>();
+    private EmailDeliveryService service;
+
+    /**
+     * A copy of the fields a save wrote, as the row held them at that moment.
+     */
+    private record Saved(long id, EmailDeliveryStatus status, int attempts, Instant nextAttemptAt, Instant savedAt) {
+    }
+
+    // Runs the dispatcher and workers against an in-memory email_delivery table and mocked SMTP connections.
+    @BeforeEach
+    void setUp() {
+        appProperties.getEmail().setWorkerThreads(2);
+        appProperties.getEmail().setMaxAttempts(3);
+        appProperties.getEmail().setRetryBaseDelaySeconds(60);
+
+        // The time filter is the database's job; every queued row counts as due so retries run without waiting.
+        when(deliveryRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByIdAsc(eq(EmailDeliveryStatus.QUEUED), any(), any()))
+                .thenAnswer(invocation -> table.values().stream()
+                        .filter(row -> row.getStatus() == EmailDeliveryStatus.QUEUED)
+                        .sorted(Comparator.comparing(EmailDeliveryEntity::getId))
+                        .toList());
+        when(deliveryRepository.save(any())).thenAnswer(invocation -> store(invocation.getArgument(0)));
+        when(deliveryRepository.saveAll(any())).thenAnswer(invocation -> {
+            invocation.<Collection<EmailDeliveryEntity>>getArgument(0).forEach(this::store);
+            return List.copyOf(invocation.getArgument(0));
+        });
+        when(deliveryRepository.existsById(anyLong())).thenAnswer(invocation -> table.containsKey(invocation.<Long>getArgument(0)));
+        when(providerRepository.findById(anyLong())).thenAnswer(invocation ->
+                Optional.of(EmailProviderEntity.builder().id(invocation.getArgument(0)).host("smtp.example.com").fromAddress("booklore@example.com").build()));
+        when(bookRepository.findAllWithMetadataByIds(anySet())).thenAnswer(invocation ->
+                invocation.<Set<Long>>getArgument(0).stream().map(books::get).filter(book -> book != null).toList());
+
+        service = new EmailDeliveryService(deliveryRepository, providerRepository, bookRepository, mock(NotificationService.class),
+                appProperties, new SimpleMeterRegistry());
+        service.smtpSessionOpener = provider -> sessions.computeIfAbsent(provider.getId(), id -> session());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void queuedDeliveryGoesThroughSendingToSent() throws Exception {
+        book(1L);
+        service.enqueue(7L, RECIPIENT, List.of(1L), "admin");
+        service.start();
+
+        SmtpSession session = awaitSession(7L);
+        verify(session, timeout(WAIT_MS)).send(any());
+        awaitStatus(1L, EmailDeliveryStatus.SENT);
+
+        assertThat(history(1L)).extracting(Saved::status)
+                .containsExactly(EmailDeliveryStatus.QUEUED, EmailDeliveryStatus.SENDING, EmailDeliveryStatus.SENT);
+        assertThat(table.get(1L).getAttempts()).isEqualTo(1);
+        assertThat(table.get(1L).getSentAt()).isNotNull();
+    }
+
+    @Test
+    void failedSendIsRetriedWithDoublingDelayUntilItFails() throws Exception {
+        book(1L);
+        SmtpSession session = session();
+        doThrow(new MessagingException("452 Mailbox full")).when(session).send(any());
+        sessions.put(7L, session);
+
+        service.enqueue(7L, RECIPIENT, List.of(1L), "admin");
+        service.start();
+
+        awaitStatus(1L, EmailDeliveryStatus.FAILED);
+        verify(session, times(3)).send(any());
+        List<Saved> retries = history(1L).stream().filter(saved -> saved.status() == EmailDeliveryStatus.QUEUED && saved.attempts() > 0).toList();
+        assertThat(retries).extracting(Saved::attempts).containsExactly(1, 2);
+        assertThat(delay(retries.get(0))).isBetween(Duration.ofSeconds(59), Duration.ofSeconds(61));
+        assertThat(delay(retries.get(1))).isBetween(Duration.ofSeconds(119), Duration.ofSeconds(121));
+        assertThat(table.get(1L).getAttempts()).isEqualTo(3);
+        assertThat(table.get(1L).getLastError()).contains("Mailbox full");
+    }
+
+    @Test
+    void unexpectedErrorPutsTheBatchBackOnTheRetrySchedule() throws Exception {
+        book(1L);
+        book(2L);
+        SmtpSession session = session();
+        when(session.advertisedSizeLimit()).thenThrow(new IllegalStateException("Connection reset")).thenReturn(0L);
+        sessions.put(7L, session);
+
+        service.enqueue(7L, RECIPIENT, List.of(1L, 2L), "admin");
+        service.start();
+
+        awaitStatus(1L, EmailDeliveryStatus.SENT);
+        awaitStatus(2L, EmailDeliveryStatus.SENT);
+        for (long id : List.of(1L, 2L)) {
+            Saved retry = history(id).stream().filter(saved -> saved.status() == EmailDeliveryStatus.QUEUED && saved.attempts() == 1)
+                    .findFirst().orElseThrow();
+            assertThat(delay(retry)).isBetween(Duration.ofSeconds(59), Duration.ofSeconds(61));
+        }
+        assertThat(table.get(1L).getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void startQueuesDeliveriesInterruptedByARestartAgain() {
+        service.start();
+
+        verify(deliveryRepository).updateStatus(EmailDeliveryStatus.SENDING, EmailDeliveryStatus.QUEUED);
+    }
+
+    @Test
+    void eachProviderHasOneWorkerAndConnectionAtATime() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger maxSending = new AtomicInteger();
+        SmtpSession slow = session();
+        doAnswer(invocation -> {
+            maxSending.accumulateAndGet(sending.incrementAndGet(), Math::max);
+            release.await(WAIT_MS, TimeUnit.MILLISECONDS);
+            sending.decrementAndGet();
+            return null;
+        }).when(slow).send(any());
+        sessions.put(7L, slow);
+        book(1L);
+        book(2L);
+        book(3L);
+        book(4L);
+
+        service.enqueue(7L, RECIPIENT, List.of(1L, 2L), "admin");
+        service.start();
+        verify(slow, timeout(WAIT_MS)).send(any());
+
+        // Another provider is not held up, while new rows for the busy one wait for its worker.
+        service.enqueue(8L, RECIPIENT, List.of(3L), "admin");
+        service.enqueue(7L, RECIPIENT, List.of(4L), "admin");
+        verify(awaitSession(8L), timeout(WAIT_MS)).send(any());
+        awaitStatus(3L, EmailDeliveryStatus.SENT);
+        assertThat(table.get(4L).getStatus()).isEqualTo(EmailDeliveryStatus.QUEUED);
+
+        release.countDown();
+        awaitStatus(1L, EmailDeliveryStatus.SENT);
+        awaitStatus(2L, EmailDeliveryStatus.SENT);
+        awaitStatus(4L, EmailDeliveryStatus.SENT);
+        assertThat(maxSending.get()).isEqualTo(1);
+        verify(slow, times(3)).send(any());
+    }
+
+    @Test
+    void deliveryRemovedWithItsBookDoesNotStopTheRestOfTheBatch() throws Exception {
+        SmtpSession session = session();
+        // The first book is deleted while its message is on the wire, which cascades to its delivery row.
+        doAnswer(invocation -> {
+            table.remove(1L);
+            return null;
+        }).doNothing().when(session).send(any());
+        sessions.put(7L, session);
+        book(1L);
+        book(2L);
+
+        service.enqueue(7L, RECIPIENT, List.of(1L, 2L), "admin");
+        service.start();
+
+        awaitStatus(2L, EmailDeliveryStatus.SENT);
+        verify(session, times(2)).send(any());
+        assertThat(table).containsOnlyKeys(2L);
+        assertThat(history(2L)).extracting(Saved::status).endsWith(EmailDeliveryStatus.SENT);
+    }
+
+    @Test
+    void pack_oneItemPerBatchWhenBatchingIsOff() {
+        List<List<Long>> batches = EmailDeliveryService.pack(List.of(10L, 20L, 30L), Long::longValue, 1, 1000);
+
+        assertThat(batches).containsExactly(List.of(10L), List.of(20L), List.of(30L));
+    }
+
+    @Test
+    void pack_respectsItemCountAndByteLimit() {
+        List<List<Long>> batches = EmailDeliveryService.pack(List.of(40L, 40L, 30L, 10L, 10L, 10L), Long::longValue, 3, 100);
+
+        assertThat(batches).containsExactly(List.of(40L, 40L), List.of(30L, 10L, 10L), List.of(10L));
+    }
+
+    @Test
+    void pack_givesOversizedItemItsOwnBatch() {
+        List<List<Long>> batches = EmailDeliveryService.pack(List.of(10L, 500L, 10L), Long::longValue, 5, 100);
+
+        assertThat(batches).containsExactly(List.of(10L), List.of(500L), List.of(10L));
+    }
+
+    @Test
+    void estimateEncodedSize_accountsForBase64Growth() {
+        long fileBytes = 3 * 1024 * 1024;
+
+        assertThat(EmailDeliveryService.estimateEncodedSize(fileBytes)).isGreaterThan(fileBytes * 4 / 3);
+        assertThat(EmailDeliveryService.estimateEncodedSize(fileBytes)).isLessThan(fileBytes * 14 / 10);
+    }
+
+    private EmailDeliveryEntity store(EmailDeliveryEntity delivery) {
+        if (delivery.getId() == null) {
+            delivery.setId(ids.incrementAndGet());
+            if (delivery.getNextAttemptAt() == null) {
+                delivery.setNextAttemptAt(Instant.now());
+            }
+        } else if (!table.containsKey(delivery.getId())) {
+            throw new ObjectOptimisticLockingFailureException(EmailDeliveryEntity.class, delivery.getId());
+        }
+        table.put(delivery.getId(), delivery);
+        saves.add(new Saved(delivery.getId(), delivery.getStatus(), delivery.getAttempts(), delivery.getNextAttemptAt(), Instant.now()));
+        return delivery;
+    }
+
+    private void book(long id) throws IOException {
+        String fileName = "book-" + id + ".epub";
+        Files.writeString(root.resolve(fileName), "book " + id);
+        LibraryPathEntity libraryPath = LibraryPathEntity.builder().id(1L).path(root.toString()).build();
+        books.put(id, BookEntity.builder().id(id).libraryPath(libraryPath).fileSubPath("").fileName(fileName).build());
+    }
+
+    private static SmtpSession session() {
+        SmtpSession session = mock(SmtpSession.class);
+        when(session.createMimeMessage()).thenAnswer(invocation -> new MimeMessage(Session.getInstance(new Properties())));
+        return session;
+    }
+
+    private SmtpSession awaitSession(long providerId) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+        while (!sessions.containsKey(providerId) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(sessions).containsKey(providerId);
+        return sessions.get(providerId);
+    }
+
+    private void awaitStatus(long deliveryId, EmailDeliveryStatus status) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(WAIT_MS);
+        while (!lastStatusIs(deliveryId, status) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(lastStatusIs(deliveryId, status)).as("delivery %d is %s", deliveryId, status).isTrue();
+    }
+
+    private boolean lastStatusIs(long deliveryId, EmailDeliveryStatus status) {
+        List<Saved> history = history(deliveryId);
+        return !history.isEmpty() && history.getLast().status() == status;
+    }
+
+    private List<Saved> history(long deliveryId) {
+        return new ArrayList<>(saves.stream().filter(saved -> saved.id() == deliveryId).toList());
+    }
+
+    private static Duration delay(Saved saved) {
+        return Duration.between(saved.savedAt(), saved.nextAttemptAt());
+    }
+}
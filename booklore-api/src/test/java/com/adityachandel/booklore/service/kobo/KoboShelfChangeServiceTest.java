@@ -0,0 +1,210 @@
+package com.adityachandel.booklore.service.kobo;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.BookloreSyncToken;
+import com.adityachandel.booklore.model.dto.kobo.KoboShelfChanges;
+import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
+import com.adityachandel.booklore.model.entity.KoboShelfChangeEntity;
+import com.adityachandel.booklore.model.entity.ShelfEntity;
+import com.adityachandel.booklore.model.enums.KoboShelfChangeType;
+import com.adityachandel.booklore.repository.KoboShelfChangeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class KoboShelfChangeServiceTest {
+
+    private static final long USER_ID = 7L;
+
+    @Mock
+    private KoboShelfChangeRepository repository;
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private KoboShelfChangeService service;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getKobo().setChangeLogRetentionDays(30);
+        service = new KoboShelfChangeService(repository, appProperties, transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void getChanges_collapsesToLatestChangePerBook() {
+        when(repository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(10L), any())).thenReturn(List.of(
+                entry(11, 1, KoboShelfChangeType.ADDED),
+                entry(12, 1, KoboShelfChangeType.UPDATED),
+                entry(13, 2, KoboShelfChangeType.ADDED),
+                entry(14, 2, KoboShelfChangeType.REMOVED),
+                entry(15, 3, KoboShelfChangeType.UPDATED)));
+
+        KoboShelfChanges changes = service.getChanges(USER_ID, 10L, 10);
+
+        assertThat(changes.added()).containsExactly(1L);
+        assertThat(changes.updated()).containsExactly(3L);
+        assertThat(changes.removed()).containsExactly(2L);
+        assertThat(changes.offset()).isEqualTo(15L);
+        assertThat(changes.hasMore()).isFalse();
+    }
+
+    @Test
+    void getChanges_stopsAtLimitAndReportsMore() {
+        when(repository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(0L), any())).thenReturn(List.of(
+                entry(1, 1, KoboShelfChangeType.ADDED),
+                entry(2, 2, KoboShelfChangeType.ADDED),
+                entry(3, 3, KoboShelfChangeType.ADDED)));
+
+        KoboShelfChanges changes = service.getChanges(USER_ID, 0L, 2);
+
+        assertThat(changes.added()).containsExactly(1L, 2L);
+        assertThat(changes.offset()).isEqualTo(2L);
+        assertThat(changes.hasMore()).isTrue();
+    }
+
+    @Test
+    void getChanges_keepsOffsetWhenNothingChanged() {
+        when(repository.findByUserIdAndIdGreaterThanOrderByIdAsc(eq(USER_ID), eq(42L), any())).thenReturn(List.of());
+
+        KoboShelfChanges changes = service.getChanges(USER_ID, 42L, 5);
+
+        assertThat(changes.size()).isZero();
+        assertThat(changes.offset()).isEqualTo(42L);
+    }
+
+    @Test
+    void canSyncIncrementally_requiresRecentOffsetOutsideFirstSync() {
+        long now = System.currentTimeMillis();
+        BookloreSyncToken recent = BookloreSyncToken.builder().changeLogOffset(5L).changeLogTime(now).build();
+        BookloreSyncToken stale = BookloreSyncToken.builder().changeLogOffset(5L).changeLogTime(now - Duration.ofDays(31).toMillis()).build();
+        BookloreSyncToken firstSync = recent.toBuilder().ongoingSyncPointId("snapshot").build();
+
+        assertThat(service.canSyncIncrementally(recent)).isTrue();
+        assertThat(service.canSyncIncrementally(stale)).isFalse();
+        assertThat(service.canSyncIncrementally(firstSync)).isFalse();
+        assertThat(service.canSyncIncrementally(new BookloreSyncToken())).isFalse();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void recordShelfChanges_logsOnlyKoboShelf() {
+        BookLoreUserEntity user = new BookLoreUserEntity();
+        user.setId(USER_ID);
+        ShelfEntity kobo = ShelfEntity.builder().id(1L).name("Kobo").user(user).build();
+        ShelfEntity other = ShelfEntity.builder().id(2L).name("Favourites").user(user).build();
+
+        service.recordShelfChanges(other, List.of(1L), List.of());
+        verify(repository, never()).saveAll(any());
+
+        service.recordShelfChanges(kobo, List.of(1L), List.of(2L));
+        ArgumentCaptor<List<KoboShelfChangeEntity>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).saveAll(captor.capture());
+        assertThat(captor.getValue())
+                .extracting(KoboShelfChangeEntity::getBookId, KoboShelfChangeEntity::getChangeType)
+                .containsExactly(
+                        tuple(2L, KoboShelfChangeType.REMOVED),
+                        tuple(1L, KoboShelfChangeType.ADDED));
+        assertThat(captor.getValue()).allMatch(change -> change.getUserId() == USER_ID);
+    }
+
+    @Test
+    void recordShelfChanges_waitsForCommitAndAppendsInOwnTransaction() {
+        BookLoreUserEntity user = new BookLoreUserEntity();
+        user.setId(USER_ID);
+        ShelfEntity kobo = ShelfEntity.builder().id(1L).name("Kobo").user(user).build();
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.recordShelfChanges(kobo, List.of(1L), List.of());
+        verify(repository, never()).saveAll(any());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        verify(repository).saveAll(any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void recordShelfChanges_rolledBackTransactionLogsNothing() {
+        BookLoreUserEntity user = new BookLoreUserEntity();
+        user.setId(USER_ID);
+        TransactionSynchronizationManager.initSynchronization();
+
+        service.recordShelfChanges(ShelfEntity.builder().id(1L).name("Kobo").user(user).build(), List.of(1L), List.of());
+        TransactionSynchronizationManager.getSynchronizations()
+                .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        verify(repository, never()).saveAll(any());
+    }
+
+    @Test
+    void appendsNeverOverlap() throws InterruptedException {
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger maxInside = new AtomicInteger();
+        when(repository.insertForShelvedBooks(anyString(), anyCollection(), anyString())).thenAnswer(invocation -> {
+            maxInside.accumulateAndGet(inside.incrementAndGet(), Math::max);
+            Thread.sleep(5);
+            inside.decrementAndGet();
+            return 1;
+        });
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (long i = 0; i < 32; i++) {
+            long bookId = i;
+            pool.submit(() -> {
+                start.await();
+                service.recordBookUpdates(Set.of(bookId));
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertThat(pool.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        verify(repository, times(32)).insertForShelvedBooks(anyString(), anyCollection(), anyString());
+        assertThat(maxInside.get()).isEqualTo(1);
+    }
+
+    private static KoboShelfChangeEntity entry(long id, long bookId, KoboShelfChangeType type) {
+        return KoboShelfChangeEntity.builder()
+                .id(id)
+                .userId(USER_ID)
+                .bookId(bookId)
+                .changeType(type)
+                .build();
+    }
+}
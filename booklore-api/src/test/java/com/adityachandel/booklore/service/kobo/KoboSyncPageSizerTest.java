@@ -0,0 +1,59 @@
+package com.adityachandel.booklore.service.kobo;
+
+import com.adityachandel.booklore.config.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KoboSyncPageSizerTest {
+
+    private KoboSyncPageSizer pageSizer;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getKobo().setSyncPageMin(5);
+        appProperties.getKobo().setSyncPageMax(100);
+        appProperties.getKobo().setSyncPayloadBudgetBytes(100_000);
+        pageSizer = new KoboSyncPageSizer(appProperties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void unknownDevice_usesInitialEstimate() {
+        assertThat(pageSizer.pageSize("1:device")).isEqualTo(24);
+    }
+
+    @Test
+    void smallPayloads_growPageUpToMaximum() {
+        for (int i = 0; i < 20; i++) {
+            pageSizer.record("1:device", 10, 5_000);
+        }
+
+        assertThat(pageSizer.pageSize("1:device")).isEqualTo(100);
+    }
+
+    @Test
+    void largePayloads_shrinkPageDownToMinimum() {
+        pageSizer.record("1:device", 5, 500_000);
+
+        assertThat(pageSizer.pageSize("1:device")).isEqualTo(5);
+    }
+
+    @Test
+    void devices_areSizedIndependently() {
+        pageSizer.record("1:small", 10, 10_000);
+        pageSizer.record("1:large", 10, 100_000);
+
+        assertThat(pageSizer.pageSize("1:small")).isEqualTo(100);
+        assertThat(pageSizer.pageSize("1:large")).isEqualTo(10);
+    }
+
+    @Test
+    void emptyPage_isIgnored() {
+        pageSizer.record("1:device", 0, 0);
+
+        assertThat(pageSizer.pageSize("1:device")).isEqualTo(24);
+    }
+}
@@ -1,6 +1,7 @@
 package com.adityachandel.booklore.service.library;
 
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.FilePathEntry;
 import com.adityachandel.booklore.model.dto.settings.LibraryFile;
 import com.adityachandel.booklore.model.entity.*;
 import com.adityachandel.booklore.model.enums.AdditionalFileType;
@@ -24,9 +25,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
@@ -57,7 +56,7 @@ class FolderAsBookFileProcessorTest {
     private FolderAsBookFileProcessor processor;
 
     @Captor
-    private ArgumentCaptor<BookAdditionalFileEntity> additionalFileCaptor;
+    private ArgumentCaptor<List<BookAdditionalFileEntity>> additionalFilesCaptor;
 
     private MockedStatic<FileUtils> fileUtilsMock;
     private MockedStatic<FileFingerprint> fileFingerprintMock;
@@ -113,16 +112,12 @@ class FolderAsBookFileProcessorTest {
 
         BookEntity bookEntity = createBookEntity(1L, "book.pdf", "books");
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString()))
-                .thenReturn(new ArrayList<>());
         when(bookFileProcessorRegistry.getProcessorOrThrow(BookFileType.PDF))
                 .thenReturn(mockBookFileProcessor);
         when(mockBookFileProcessor.processFile(any(LibraryFile.class)))
                 .thenReturn(createdBook);
         when(bookRepository.getReferenceById(createdBook.getId()))
                 .thenReturn(bookEntity);
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), anyString(), anyString()))
-                .thenReturn(Optional.empty());
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -131,9 +126,9 @@ class FolderAsBookFileProcessorTest {
         verify(mockBookFileProcessor).processFile(any(LibraryFile.class));
         verify(bookEventBroadcaster).broadcastBookAddEvent(createdBook);
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, times(2)).save(additionalFileCaptor.capture());
+        verify(bookAdditionalFileRepository).saveAll(additionalFilesCaptor.capture());
 
-        List<BookAdditionalFileEntity> capturedFiles = additionalFileCaptor.getAllValues();
+        List<BookAdditionalFileEntity> capturedFiles = additionalFilesCaptor.getValue();
         assertThat(capturedFiles).hasSize(2);
         assertThat(capturedFiles).extracting(BookAdditionalFileEntity::getFileName)
                 .containsExactlyInAnyOrder("book.epub", "cover.jpg");
@@ -152,10 +147,10 @@ class FolderAsBookFileProcessorTest {
 
         BookEntity existingBook = createBookEntity(1L, "book.pdf", "books");
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), eq("books")))
-                .thenReturn(List.of(existingBook));
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), anyString(), anyString()))
-                .thenReturn(Optional.empty());
+        when(bookRepository.findFilePathsByLibraryPathIds(anyCollection()))
+                .thenReturn(List.of(new FilePathEntry(1L, 1L, "books", "book.pdf")));
+        when(bookRepository.getReferenceById(1L))
+                .thenReturn(existingBook);
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -164,9 +159,9 @@ class FolderAsBookFileProcessorTest {
         verify(mockBookFileProcessor, never()).processFile(any());
         verify(bookEventBroadcaster, never()).broadcastBookAddEvent(any());
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, times(2)).save(additionalFileCaptor.capture());
+        verify(bookAdditionalFileRepository).saveAll(additionalFilesCaptor.capture());
 
-        List<BookAdditionalFileEntity> capturedFiles = additionalFileCaptor.getAllValues();
+        List<BookAdditionalFileEntity> capturedFiles = additionalFilesCaptor.getValue();
         assertThat(capturedFiles).hasSize(2);
         assertThat(capturedFiles).extracting(BookAdditionalFileEntity::getFileName)
                 .containsExactlyInAnyOrder("book.epub", "cover.jpg");
@@ -183,12 +178,10 @@ class FolderAsBookFileProcessorTest {
 
         BookEntity parentBook = createBookEntity(1L, "book.pdf", "books");
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), eq("books/chapter1")))
-                .thenReturn(new ArrayList<>());
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), eq("books")))
-                .thenReturn(List.of(parentBook));
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), anyString(), anyString()))
-                .thenReturn(Optional.empty());
+        when(bookRepository.findFilePathsByLibraryPathIds(anyCollection()))
+                .thenReturn(List.of(new FilePathEntry(1L, 1L, "books", "book.pdf")));
+        when(bookRepository.getReferenceById(1L))
+                .thenReturn(parentBook);
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -197,9 +190,9 @@ class FolderAsBookFileProcessorTest {
         verify(mockBookFileProcessor, never()).processFile(any());
         verify(bookEventBroadcaster, never()).broadcastBookAddEvent(any());
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, times(2)).save(additionalFileCaptor.capture());
+        verify(bookAdditionalFileRepository).saveAll(additionalFilesCaptor.capture());
 
-        List<BookAdditionalFileEntity> capturedFiles = additionalFileCaptor.getAllValues();
+        List<BookAdditionalFileEntity> capturedFiles = additionalFilesCaptor.getValue();
         assertThat(capturedFiles).hasSize(2);
         assertThat(capturedFiles).extracting(BookAdditionalFileEntity::getAdditionalFileType)
                 .containsOnly(AdditionalFileType.SUPPLEMENTARY);
@@ -225,16 +218,12 @@ class FolderAsBookFileProcessorTest {
 
         BookEntity bookEntity = createBookEntity(1L, "book.epub", "books");
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString()))
-                .thenReturn(new ArrayList<>());
         when(bookFileProcessorRegistry.getProcessorOrThrow(BookFileType.EPUB))
                 .thenReturn(mockBookFileProcessor);
         when(mockBookFileProcessor.processFile(argThat(file -> file.getFileName().equals("book.epub"))))
                 .thenReturn(createdBook);
         when(bookRepository.getReferenceById(createdBook.getId()))
                 .thenReturn(bookEntity);
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), anyString(), anyString()))
-                .thenReturn(Optional.empty());
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -243,9 +232,9 @@ class FolderAsBookFileProcessorTest {
         verify(mockBookFileProcessor).processFile(argThat(file -> file.getFileName().equals("book.epub")));
         verify(bookEventBroadcaster).broadcastBookAddEvent(createdBook);
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, times(2)).save(additionalFileCaptor.capture());
+        verify(bookAdditionalFileRepository).saveAll(additionalFilesCaptor.capture());
 
-        List<BookAdditionalFileEntity> capturedFiles = additionalFileCaptor.getAllValues();
+        List<BookAdditionalFileEntity> capturedFiles = additionalFilesCaptor.getValue();
         assertThat(capturedFiles).extracting(BookAdditionalFileEntity::getFileName)
                 .containsExactlyInAnyOrder("book.pdf", "book.cbz");
     }
@@ -270,16 +259,12 @@ class FolderAsBookFileProcessorTest {
 
         BookEntity bookEntity = createBookEntity(1L, "book.pdf", "books");
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString()))
-                .thenReturn(new ArrayList<>());
         when(bookFileProcessorRegistry.getProcessorOrThrow(BookFileType.PDF))
                 .thenReturn(mockBookFileProcessor);
         when(mockBookFileProcessor.processFile(argThat(file -> file.getFileName().equals("book.pdf"))))
                 .thenReturn(createdBook);
         when(bookRepository.getReferenceById(createdBook.getId()))
                 .thenReturn(bookEntity);
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), anyString(), anyString()))
-                .thenReturn(Optional.empty());
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -308,12 +293,12 @@ class FolderAsBookFileProcessorTest {
                 .additionalFileType(AdditionalFileType.ALTERNATIVE_FORMAT)
                 .build();
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), eq("books")))
-                .thenReturn(List.of(existingBook));
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), eq("books"), eq("book.epub")))
-                .thenReturn(Optional.of(existingAdditionalFile));
-        when(bookAdditionalFileRepository.findByLibraryPath_IdAndFileSubPathAndFileName(anyLong(), eq("books"), eq("cover.jpg")))
-                .thenReturn(Optional.empty());
+        when(bookRepository.findFilePathsByLibraryPathIds(anyCollection()))
+                .thenReturn(List.of(new FilePathEntry(1L, 1L, "books", "book.pdf")));
+        when(bookRepository.getReferenceById(1L))
+                .thenReturn(existingBook);
+        when(bookAdditionalFileRepository.findFilePathsByLibraryPathIds(anyCollection()))
+                .thenReturn(List.of(new FilePathEntry(existingAdditionalFile.getId(), 1L, "books", "book.epub")));
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -321,10 +306,10 @@ class FolderAsBookFileProcessorTest {
         // Then
         verify(bookEventBroadcaster, never()).broadcastBookAddEvent(any());
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, times(1)).save(additionalFileCaptor.capture());
+        verify(bookAdditionalFileRepository).saveAll(additionalFilesCaptor.capture());
 
-        BookAdditionalFileEntity capturedFile = additionalFileCaptor.getValue();
-        assertThat(capturedFile.getFileName()).isEqualTo("cover.jpg");
+        assertThat(additionalFilesCaptor.getValue()).extracting(BookAdditionalFileEntity::getFileName)
+                .containsExactly("cover.jpg");
     }
 
     @Test
@@ -336,8 +321,6 @@ class FolderAsBookFileProcessorTest {
                 createLibraryFile("notes.txt", "docs")
         );
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString()))
-                .thenReturn(new ArrayList<>());
 
         // When
         processor.processLibraryFiles(libraryFiles, libraryEntity);
@@ -346,7 +329,7 @@ class FolderAsBookFileProcessorTest {
         verify(mockBookFileProcessor, never()).processFile(any());
         verify(bookEventBroadcaster, never()).broadcastBookAddEvent(any());
         verify(adminEventBroadcaster, never()).broadcastAdminEvent(anyString());
-        verify(bookAdditionalFileRepository, never()).save(any());
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
     }
 
     @Test
@@ -357,8 +340,6 @@ class FolderAsBookFileProcessorTest {
                 createLibraryFile("book.pdf", "books", BookFileType.PDF)
         );
 
-        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString()))
-                .thenReturn(new ArrayList<>());
         when(bookFileProcessorRegistry.getProcessorOrThrow(BookFileType.PDF))
                 .thenReturn(mockBookFileProcessor);
         when(mockBookFileProcessor.processFile(any(LibraryFile.class)))
@@ -369,7 +350,7 @@ class FolderAsBookFileProcessorTest {
 
         // Then
         verify(bookEventBroadcaster, never()).broadcastBookAddEvent(any());
-        verify(bookAdditionalFileRepository, never()).save(any());
+        verify(bookAdditionalFileRepository, never()).saveAll(any());
         verify(adminEventBroadcaster).broadcastAdminEvent(anyString());
     }
 
@@ -0,0 +1,111 @@
+package com.adityachandel.booklore.service.library;
+
+import com.adityachandel.booklore.mapper.BookMapper;
+import com.adityachandel.booklore.model.dto.settings.LibraryFile;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.model.websocket.Topic;
+import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.NotificationService;
+import com.adityachandel.booklore.util.FileService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryProcessingServiceTest {
+
+    @TempDir
+    Path root;
+
+    private final LibraryRepository libraryRepository = mock(LibraryRepository.class);
+    private final NotificationService notificationService = mock(NotificationService.class);
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final BookAdditionalFileRepository bookAdditionalFileRepository = mock(BookAdditionalFileRepository.class);
+    private final FileService fileService = mock(FileService.class);
+    private final LibraryFileProcessorRegistry fileProcessorRegistry = mock(LibraryFileProcessorRegistry.class);
+    private final LibraryFileProcessor processor = mock(LibraryFileProcessor.class);
+    private LibraryEntity library;
+    private LibraryPathEntity libraryPath;
+    private LibraryProcessingService service;
+
+    @BeforeEach
+    void setUp() {
+        libraryPath = LibraryPathEntity.builder().id(10L).path(root.toString()).build();
+        // No books on the entity: a subtree rescan must not need the whole library.
+        library = LibraryEntity.builder().id(1L).name("Books").libraryPaths(List.of(libraryPath)).bookEntities(null).build();
+        when(libraryRepository.findById(1L)).thenReturn(Optional.of(library));
+        when(fileProcessorRegistry.getProcessor(library)).thenReturn(processor);
+        when(fileService.getImagesFolder(anyLong())).thenReturn(root.resolve("images").toString());
+        when(fileService.getBookMetadataBackupPath(anyLong())).thenReturn(root.resolve("backup").toString());
+
+        service = new LibraryProcessingService(libraryRepository, notificationService, bookRepository, bookAdditionalFileRepository,
+                fileService, mock(BookMapper.class), fileProcessorRegistry, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void subtreeRescanLoadsOnlyBooksUnderItsRoot() throws IOException {
+        Path author = Files.createDirectories(root.resolve("Author"));
+        Files.write(author.resolve("kept.epub"), new byte[1]);
+        Files.write(author.resolve("new.epub"), new byte[1]);
+        BookEntity kept = book(1L, "Author", "kept.epub");
+        BookEntity gone = book(2L, "Author", "gone.epub");
+        BookEntity sibling = book(3L, "Authors", "elsewhere.epub");
+        when(bookRepository.findAllByLibraryPathIdAndFileSubPathStartingWith(10L, "Author")).thenReturn(List.of(kept, gone, sibling));
+        when(bookRepository.findAllById(List.of(2L))).thenReturn(List.of(gone));
+
+        service.rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.recursive(author)));
+
+        verify(bookRepository).deleteAll(List.of(gone));
+        verify(notificationService).sendMessage(Topic.BOOKS_REMOVE, List.of(2L));
+        verify(bookAdditionalFileRepository, never()).findByLibraryId(anyLong());
+        assertThat(newFiles()).extracting(LibraryFile::getFileName).containsExactly("new.epub");
+    }
+
+    @Test
+    void filesOnlyRootLoadsOnlyBooksOfItsOwnFolder() throws IOException {
+        Files.write(root.resolve("top.epub"), new byte[1]);
+        Files.createDirectories(root.resolve("Nested"));
+        Files.write(root.resolve("Nested/deeper.epub"), new byte[1]);
+        BookEntity top = book(4L, "", "top.epub");
+        when(bookRepository.findAllByLibraryPathIdAndFileSubPath(10L, "")).thenReturn(List.of(top));
+
+        service.rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.filesOnly(root)));
+
+        // The files directly in a library path must not pull in every book below it.
+        verify(bookRepository, never()).findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), anyString());
+        verify(bookRepository, never()).deleteAll(anyList());
+        assertThat(newFiles()).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<LibraryFile> newFiles() {
+        ArgumentCaptor<List<LibraryFile>> files = ArgumentCaptor.forClass(List.class);
+        verify(processor).processLibraryFiles(files.capture(), same(library));
+        return files.getValue();
+    }
+
+    private BookEntity book(long id, String subPath, String fileName) {
+        return BookEntity.builder().id(id).library(library).libraryPath(libraryPath).fileSubPath(subPath).fileName(fileName).build();
+    }
+}
@@ -0,0 +1,145 @@
+package com.adityachandel.booklore.service.library;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.quartz.JobSchedulerService;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class LibraryRescanOrchestratorTest {
+
+    @TempDir
+    Path root;
+
+    private final LibraryRepository libraryRepository = mock(LibraryRepository.class);
+    private final LibraryProcessingService libraryProcessingService = mock(LibraryProcessingService.class);
+    private final JobSchedulerService jobSchedulerService = mock(JobSchedulerService.class);
+    private final AppProperties appProperties = new AppProperties();
+    private LibraryRescanOrchestrator orchestrator;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties.Rescan settings = appProperties.getRescan();
+        settings.setStaggerSeconds(0);
+        settings.setTimeBudgetMinutes(0);
+        orchestrator = new LibraryRescanOrchestrator(libraryRepository, libraryProcessingService, jobSchedulerService,
+                new SimpleMeterRegistry(), appProperties);
+    }
+
+    @Test
+    void librariesStartInPriorityOrderThenById() throws Exception {
+        appProperties.getRescan().setMaxConcurrentLibraries(1);
+        appProperties.getRescan().setLibraryPriority(Map.of(3L, 10));
+        List<LibraryEntity> libraries = List.of(library(1L, "one"), library(2L, "two"), library(3L, "three"));
+
+        runAll(libraries);
+
+        InOrder order = inOrder(libraryProcessingService);
+        order.verify(libraryProcessingService).rescanLibrary(3L);
+        order.verify(libraryProcessingService).rescanLibrary(1L);
+        order.verify(libraryProcessingService).rescanLibrary(2L);
+    }
+
+    @Test
+    void librariesOnTheSameFileStoreNeverRunTogether() throws Exception {
+        appProperties.getRescan().setMaxConcurrentLibraries(4);
+        appProperties.getRescan().setMaxConcurrentPerFileStore(1);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            active.decrementAndGet();
+            return null;
+        }).when(libraryProcessingService).rescanLibrary(anyLong());
+
+        runAll(List.of(library(1L, "one"), library(2L, "two"), library(3L, "three")));
+
+        verify(libraryProcessingService).rescanLibrary(1L);
+        verify(libraryProcessingService).rescanLibrary(2L);
+        verify(libraryProcessingService).rescanLibrary(3L);
+        assertThat(maxActive.get()).isEqualTo(1);
+    }
+
+    @Test
+    void spentBudgetStopsAfterOneSliceAndTheNextRunResumesAfterTheCheckpoint() throws IOException {
+        appProperties.getRescan().setSlicesPerLibrary(100);
+        LibraryEntity library = library(1L, "big");
+        for (String folder : List.of("A", "B", "C")) {
+            Files.createDirectories(root.resolve("big").resolve(folder));
+        }
+        Path libraryRoot = root.resolve("big").toAbsolutePath().normalize();
+
+        LibraryRescanOrchestrator.Outcome first = orchestrator.rescanInSlices(library, System.nanoTime());
+
+        assertThat(first).isEqualTo(LibraryRescanOrchestrator.Outcome.PARTIAL);
+        verify(libraryProcessingService).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.filesOnly(libraryRoot)));
+        verify(libraryRepository).updateRescanCheckpoint(1L, libraryRoot.toString());
+        verify(libraryProcessingService, never()).pruneMissingFiles(anyLong());
+
+        // The checkpoint the first run stored, plus one more folder that finished before a restart.
+        library.setRescanCheckpoint(libraryRoot.resolve("A").toString());
+        LibraryRescanOrchestrator.Outcome second = orchestrator.rescanInSlices(library, System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+
+        assertThat(second).isEqualTo(LibraryRescanOrchestrator.Outcome.COMPLETE);
+        InOrder order = inOrder(libraryProcessingService, libraryRepository);
+        order.verify(libraryProcessingService).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.recursive(libraryRoot.resolve("B"))));
+        order.verify(libraryRepository).updateRescanCheckpoint(1L, libraryRoot.resolve("B").toString());
+        order.verify(libraryProcessingService).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.recursive(libraryRoot.resolve("C"))));
+        order.verify(libraryProcessingService).pruneMissingFiles(1L);
+        order.verify(libraryRepository).updateRescanCheckpoint(1L, null);
+        verify(libraryProcessingService, never()).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.recursive(libraryRoot.resolve("A"))));
+    }
+
+    @Test
+    void checkpointPastTheLastFolderStartsOver() throws IOException {
+        LibraryEntity library = library(1L, "small");
+        Path libraryRoot = Files.createDirectories(root.resolve("small/A")).getParent().toAbsolutePath().normalize();
+        library.setRescanCheckpoint(libraryRoot.resolve("Z").toString());
+
+        orchestrator.rescanInSlices(library, System.nanoTime() + TimeUnit.HOURS.toNanos(1));
+
+        verify(libraryProcessingService).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.filesOnly(libraryRoot)));
+        verify(libraryProcessingService).rescanLibrarySubtrees(1L, List.of(LibraryScanRoot.recursive(libraryRoot.resolve("A"))));
+        verify(libraryProcessingService).pruneMissingFiles(1L);
+        verify(libraryRepository).updateRescanCheckpoint(1L, null);
+    }
+
+    private void runAll(List<LibraryEntity> libraries) throws InterruptedException {
+        when(libraryRepository.findAll()).thenReturn(libraries);
+        assertThat(orchestrator.rescanAllLibraries()).isTrue();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (orchestrator.isRunning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(orchestrator.isRunning()).isFalse();
+    }
+
+    private LibraryEntity library(long id, String name) throws IOException {
+        Path folder = Files.createDirectories(root.resolve(name));
+        LibraryPathEntity path = LibraryPathEntity.builder().id(id).path(folder.toString()).build();
+        return LibraryEntity.builder().id(id).name(name).libraryPaths(List.of(path)).build();
+    }
+}
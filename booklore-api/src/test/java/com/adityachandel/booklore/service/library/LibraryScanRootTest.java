@@ -0,0 +1,48 @@
+package com.adityachandel.booklore.service.library;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LibraryScanRootTest {
+
+    private static final Path ROOT = Path.of("/books").toAbsolutePath();
+
+    @Test
+    void filesOnlyCoversDirectChildrenOnly() {
+        LibraryScanRoot root = LibraryScanRoot.filesOnly(ROOT.resolve("Author"));
+
+        assertThat(root.covers(ROOT.resolve("Author/book.epub"))).isTrue();
+        assertThat(root.covers(ROOT.resolve("Author/Series/book.epub"))).isFalse();
+        assertThat(root.covers(ROOT.resolve("Authors/book.epub"))).isFalse();
+    }
+
+    @Test
+    void recursiveRootContainsEverythingBelowIt() {
+        LibraryScanRoot author = LibraryScanRoot.recursive(ROOT.resolve("Author"));
+
+        assertThat(author.contains(LibraryScanRoot.filesOnly(ROOT.resolve("Author")))).isTrue();
+        assertThat(author.contains(LibraryScanRoot.recursive(ROOT.resolve("Author/Series")))).isTrue();
+        assertThat(author.contains(LibraryScanRoot.filesOnly(ROOT.resolve("Authors")))).isFalse();
+        assertThat(LibraryScanRoot.filesOnly(ROOT.resolve("Author")).contains(author)).isFalse();
+        assertThat(LibraryScanRoot.filesOnly(ROOT).contains(LibraryScanRoot.filesOnly(ROOT.resolve("Author")))).isFalse();
+    }
+
+    @Test
+    void overlappingRootsAreDropped() {
+        List<LibraryScanRoot> roots = LibraryScanRoot.withoutOverlaps(List.of(
+                LibraryScanRoot.filesOnly(ROOT),
+                LibraryScanRoot.filesOnly(ROOT.resolve("Author/Series")),
+                LibraryScanRoot.recursive(ROOT.resolve("Author")),
+                LibraryScanRoot.filesOnly(ROOT),
+                LibraryScanRoot.filesOnly(ROOT.resolve("Other"))));
+
+        assertThat(roots).containsExactly(
+                LibraryScanRoot.filesOnly(ROOT),
+                LibraryScanRoot.recursive(ROOT.resolve("Author")),
+                LibraryScanRoot.filesOnly(ROOT.resolve("Other")));
+    }
+}
@@ -0,0 +1,101 @@
+package com.adityachandel.booklore.service.magicshelf;
+
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class MagicShelfCacheInvalidationListenerTest {
+
+    private final MagicShelfBookService service = mock(MagicShelfBookService.class);
+    private MagicShelfCacheInvalidationListener listener;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MagicShelfBookService> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable()).thenReturn(service);
+        listener = new MagicShelfCacheInvalidationListener(provider);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void bookChangesInOneTransactionInvalidateOnceAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        for (long id = 1; id <= 500; id++) {
+            listener.onChange(BookEntity.builder().id(id).build());
+            listener.onChange(BookMetadataEntity.builder().bookId(id).build());
+        }
+        verifyNoInteractions(service);
+
+        complete(true);
+        verify(service, times(1)).markBooksChanged();
+        verify(service, times(0)).evictAll();
+    }
+
+    @Test
+    void progressOnlyEvictsItsOwner() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.onChange(progress(3L));
+        listener.onChange(progress(3L));
+        listener.onChange(progress(4L));
+        complete(true);
+
+        verify(service).evictUser(3L);
+        verify(service).evictUser(4L);
+        verify(service, times(0)).markBooksChanged();
+    }
+
+    @Test
+    void rolledBackChangesAreIgnored() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        listener.onChange(BookEntity.builder().id(1L).build());
+        complete(false);
+
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void changesOutsideATransactionApplyImmediately() {
+        listener.onChange(BookEntity.builder().id(1L).build());
+        listener.onChange(progress(5L));
+
+        verify(service).markBooksChanged();
+        verify(service).evictUser(5L);
+    }
+
+    private static UserBookProgressEntity progress(long userId) {
+        return UserBookProgressEntity.builder().user(BookLoreUserEntity.builder().id(userId).build()).build();
+    }
+
+    private static void complete(boolean committed) {
+        var synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        if (committed) {
+            synchronizations.forEach(TransactionSynchronization::afterCommit);
+        }
+        int status = committed ? TransactionSynchronization.STATUS_COMMITTED : TransactionSynchronization.STATUS_ROLLED_BACK;
+        synchronizations.forEach(s -> s.afterCompletion(status));
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+}
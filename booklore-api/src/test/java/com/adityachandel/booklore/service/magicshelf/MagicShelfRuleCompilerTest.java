@@ -0,0 +1,405 @@
+package com.adityachandel.booklore.service.magicshelf;
+
+import com.adityachandel.booklore.model.dto.MagicShelfRule;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.UserBookProgressEntity;
+import com.adityachandel.booklore.model.enums.ReadStatus;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.mockito.Answers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class MagicShelfRuleCompilerTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final long USER_ID = 7L;
+
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private Root<BookEntity> root;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private CriteriaQuery<Object> query;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private CriteriaBuilder cb;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private Join<BookEntity, BookMetadataEntity> metadata;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private Subquery<Long> subquery;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private Root<BookMetadataEntity> subMetadata;
+    @Mock(answer = Answers.RETURNS_MOCKS)
+    private Root<UserBookProgressEntity> progress;
+
+    private final MagicShelfRuleCompiler compiler = new MagicShelfRuleCompiler();
+    private final Predicate noMatch = mock(Predicate.class);
+    private final Predicate allMatch = mock(Predicate.class);
+
+    @BeforeEach
+    void setUp() {
+        doReturn(metadata).when(root).join("metadata", JoinType.LEFT);
+        doReturn(subquery).when(query).subquery(Long.class);
+        doReturn(subMetadata).when(subquery).from(BookMetadataEntity.class);
+        doReturn(progress).when(subquery).from(UserBookProgressEntity.class);
+        doReturn(noMatch).when(cb).disjunction();
+        doReturn(allMatch).when(cb).conjunction();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+            "contains,    Dune_1%, '%dune\\_1\\%%'",
+            "starts_with, Dune,    'dune%'",
+            "ends_with,   Dune,    '%dune'"
+    })
+    void textLikeOperatorsEscapeAndLowercase(String operator, String value, String pattern) {
+        Path<String> title = path(metadata, "title");
+        Expression<String> lower = lowered(title);
+
+        compile(rule("title", operator, value));
+
+        verify(cb).like(lower, pattern, '\\');
+    }
+
+    @Test
+    void textEqualsComparesLowercasedSingleValue() {
+        Expression<String> lower = lowered(path(metadata, "publisher"));
+
+        compile(rule("publisher", "equals", "Tor"));
+
+        verify(cb).equal(lower, "tor");
+    }
+
+    @Test
+    void textEqualsWithSeveralValuesUsesIn() {
+        Expression<String> lower = lowered(path(metadata, "language"));
+
+        compile(rule("language", "equals", List.of("EN", "de")));
+
+        verify(lower).in(List.of("en", "de"));
+    }
+
+    @Test
+    void textNegationsAlsoMatchMissingValues() {
+        Path<String> series = path(metadata, "seriesName");
+        Expression<String> lower = lowered(series);
+
+        compile(rule("seriesName", "does_not_contain", "saga"));
+        compile(rule("seriesName", "not_equals", "saga"));
+
+        verify(cb).notLike(lower, "%saga%", '\\');
+        verify(cb).notEqual(lower, "saga");
+        verify(cb, times(2)).isNull(series);
+    }
+
+    @Test
+    void textEmptinessTrimsValue() {
+        Path<String> subtitle = path(metadata, "subtitle");
+
+        compile(rule("subtitle", "is_empty", null));
+        compile(rule("subtitle", "is_not_empty", null));
+
+        verify(cb).isNull(subtitle);
+        verify(cb).isNotNull(subtitle);
+        verify(cb, times(2)).trim(subtitle);
+    }
+
+    @Test
+    void textIncludesAllRequiresEveryValue() {
+        Expression<String> lower = lowered(path(metadata, "title"));
+
+        compile(rule("title", "includes_all", List.of("a", "b")));
+
+        verify(cb).equal(lower, "a");
+        verify(cb).equal(lower, "b");
+    }
+
+    @Test
+    void numericOperatorOnTextFieldNeverMatches() {
+        assertThat(compile(rule("title", "greater_than", "3"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void metadataNumberComparisonsConvertToColumnType() {
+        Path<Integer> pageCount = path(metadata, "pageCount");
+        doReturn(Integer.class).when(pageCount).getJavaType();
+
+        compile(rule("pageCount", "greater_than", "300"));
+        compile(rule("pageCount", "less_than_equal_to", "500.0"));
+
+        verify(cb).greaterThan(pageCount, 300);
+        verify(cb).lessThanOrEqualTo(pageCount, 500);
+    }
+
+    @Test
+    void numberRangeUsesBothBounds() {
+        Path<Double> rating = path(metadata, "goodreadsRating");
+        doReturn(Double.class).when(rating).getJavaType();
+
+        compile(MagicShelfRule.builder().type("rule").field("goodreadsRating").operator("in_between")
+                .valueStart(MAPPER.valueToTree("3.5")).valueEnd(MAPPER.valueToTree(4.5)).build());
+
+        verify(cb).between(rating, 3.5, 4.5);
+    }
+
+    @Test
+    void numberRangeWithoutUpperBoundNeverMatches() {
+        Path<Double> rating = path(metadata, "goodreadsRating");
+        doReturn(Double.class).when(rating).getJavaType();
+
+        Predicate predicate = compile(MagicShelfRule.builder().type("rule").field("goodreadsRating").operator("in_between")
+                .valueStart(MAPPER.valueToTree("3.5")).build());
+
+        assertThat(predicate).isSameAs(noMatch);
+    }
+
+    @Test
+    void numberListsAndEmptiness() {
+        Path<Integer> seriesTotal = path(metadata, "seriesTotal");
+        doReturn(Integer.class).when(seriesTotal).getJavaType();
+
+        compile(rule("seriesTotal", "includes_any", List.of("1", "2")));
+        compile(rule("seriesTotal", "is_empty", null));
+
+        verify(seriesTotal).in(List.of(1, 2));
+        verify(cb).isNull(seriesTotal);
+    }
+
+    @Test
+    void bookNumberFieldsReadFromBookColumns() {
+        Path<Long> fileSize = path(root, "fileSizeKb");
+        doReturn(Long.class).when(fileSize).getJavaType();
+        Path<Float> score = path(root, "metadataMatchScore");
+        doReturn(Float.class).when(score).getJavaType();
+
+        compile(rule("fileSize", "less_than", "2048"));
+        compile(rule("metadataScore", "greater_than_equal_to", "80"));
+
+        verify(cb).lessThan(fileSize, 2048L);
+        verify(cb).greaterThanOrEqualTo(score, 80f);
+        verify(root, never()).join("metadata", JoinType.LEFT);
+    }
+
+    @Test
+    void unparseableNumberNeverMatches() {
+        Path<Integer> pageCount = path(metadata, "pageCount");
+        doReturn(Integer.class).when(pageCount).getJavaType();
+
+        assertThat(compile(rule("pageCount", "equals", "many"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void collectionsMatchThroughCorrelatedSubquery() {
+        Join<Object, Object> authors = mock(Join.class, Answers.RETURNS_MOCKS);
+        doReturn(authors).when(subMetadata).join("authors");
+        Expression<String> name = lowered(path(authors, "name"));
+        Predicate exists = mock(Predicate.class);
+        doReturn(exists).when(cb).exists(subquery);
+
+        compile(rule("authors", "includes_any", List.of("Ann", "Bo")));
+        compile(rule("authors", "excludes_all", List.of("Ann")));
+        compile(rule("authors", "contains", "an"));
+
+        verify(name).in(List.of("ann", "bo"));
+        verify(name).in(List.of("ann"));
+        verify(cb).like(name, "%an%", '\\');
+        verify(cb).not(exists);
+    }
+
+    @Test
+    void categoriesJoinTheirOwnCollection() {
+        compile(rule("categories", "is_not_empty", null));
+
+        verify(subMetadata).join("categories");
+        verify(cb).exists(subquery);
+    }
+
+    @Test
+    void emptyCollectionListMatchesNothingOrEverything() {
+        assertThat(compile(rule("categories", "includes_any", List.of()))).isSameAs(noMatch);
+        assertThat(compile(rule("categories", "excludes_all", List.of()))).isSameAs(allMatch);
+    }
+
+    @Test
+    void libraryMatchesById() {
+        Path<Long> libraryId = path(path(root, "library"), "id");
+
+        compile(rule("library", "includes_any", List.of(1, 2)));
+
+        verify(libraryId).in(List.of(1L, 2L));
+    }
+
+    @Test
+    void libraryIncludesAllOfTwoLibrariesNeverMatches() {
+        path(path(root, "library"), "id");
+
+        assertThat(compile(rule("library", "includes_all", List.of(1, 2)))).isSameAs(noMatch);
+        assertThat(compile(rule("library", "equals", "abc"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void publishedDateComparesCalendarDay() {
+        Path<LocalDate> published = path(metadata, "publishedDate");
+
+        compile(rule("publishedDate", "greater_than", "2020-05-01T12:00:00Z"));
+
+        verify(cb).greaterThan(published, LocalDate.of(2020, 5, 1));
+    }
+
+    @Test
+    void invalidDateNeverMatches() {
+        path(metadata, "publishedDate");
+
+        assertThat(compile(rule("publishedDate", "less_than", "yesterday"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void readStatusIsScopedToTheShelfOwner() {
+        Path<Long> userId = path(path(progress, "user"), "id");
+        Path<ReadStatus> status = path(progress, "readStatus");
+
+        compile(rule("readStatus", "equals", "read"));
+
+        verify(cb).equal(userId, USER_ID);
+        verify(status).in(List.of(ReadStatus.READ));
+    }
+
+    @Test
+    void unreadAlsoMatchesBooksWithoutProgress() {
+        path(path(progress, "user"), "id");
+        Path<ReadStatus> status = path(progress, "readStatus");
+        Predicate stored = mock(Predicate.class);
+        doReturn(stored).when(cb).exists(subquery);
+
+        compile(rule("readStatus", "includes_any", List.of("UNREAD")));
+
+        verify(status).in(List.of(ReadStatus.UNREAD));
+        verify(cb).isNotNull(status);
+        verify(cb).not(stored);
+    }
+
+    @Test
+    void unknownReadStatusNeverMatches() {
+        assertThat(compile(rule("readStatus", "equals", "skimmed"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void dateFinishedEqualsCoversTheWholeDayForTheOwner() {
+        Path<Long> userId = path(path(progress, "user"), "id");
+        Path<Instant> finished = path(progress, "dateFinished");
+
+        compile(rule("dateFinished", "equals", "2024-03-01"));
+
+        verify(cb).greaterThanOrEqualTo(finished, Instant.parse("2024-03-01T00:00:00Z"));
+        verify(cb).lessThan(finished, Instant.parse("2024-03-02T00:00:00Z"));
+        verify(cb).equal(userId, USER_ID);
+    }
+
+    @Test
+    void fileTypeMatchesExtension() {
+        Expression<String> fileName = lowered(path(root, "fileName"));
+
+        compile(rule("fileType", "equals", List.of("EPUB")));
+
+        verify(cb).like(fileName, "%.epub", '\\');
+    }
+
+    @Test
+    void nestedGroupsCombineChildren() {
+        Expression<String> title = lowered(path(metadata, "title"));
+        Predicate titleMatch = mock(Predicate.class);
+        doReturn(titleMatch).when(cb).like(title, "%dune%", '\\');
+        Predicate orGroup = mock(Predicate.class);
+        doReturn(orGroup).when(cb).or(any(Predicate[].class));
+        Predicate andGroup = mock(Predicate.class);
+        doReturn(andGroup).when(cb).and(any(Predicate[].class));
+
+        MagicShelfRule rule = group("and",
+                rule("title", "contains", "dune"),
+                group("or", rule("title", "starts_with", "a"), rule("publisher", "equals", "tor")));
+
+        assertThat(compile(rule)).isSameAs(andGroup);
+
+        ArgumentCaptor<Predicate[]> and = ArgumentCaptor.forClass(Predicate[].class);
+        verify(cb).and(and.capture());
+        assertThat(and.getValue()).containsExactly(titleMatch, orGroup);
+        ArgumentCaptor<Predicate[]> or = ArgumentCaptor.forClass(Predicate[].class);
+        verify(cb).or(or.capture());
+        assertThat(or.getValue()).hasSize(2);
+    }
+
+    @Test
+    void emptyGroupsFollowTheirJoin() {
+        assertThat(compile(group("and"))).isSameAs(allMatch);
+        assertThat(compile(group("or"))).isSameAs(noMatch);
+    }
+
+    @Test
+    void missingOrUnknownRulesNeverMatch() {
+        assertThat(compile(null)).isSameAs(noMatch);
+        assertThat(compile(new MagicShelfRule())).isSameAs(noMatch);
+        assertThat(compile(rule("shoeSize", "equals", "42"))).isSameAs(noMatch);
+        assertThat(compile(rule("title", "sounds_like", "dune"))).isSameAs(noMatch);
+        assertThat(compile(rule("title", "contains", null))).isSameAs(noMatch);
+    }
+
+    private Predicate compile(MagicShelfRule rule) {
+        return compiler.compile(rule, USER_ID).toPredicate(root, query, cb);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Path<T> path(Path<?> parent, String attribute) {
+        Path<T> path = mock(Path.class, Answers.RETURNS_MOCKS);
+        doReturn(path).when(parent).get(attribute);
+        return path;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Expression<String> lowered(Path<String> path) {
+        Expression<String> lower = mock(Expression.class, Answers.RETURNS_MOCKS);
+        doReturn(lower).when(cb).lower(path);
+        return lower;
+    }
+
+    private static MagicShelfRule rule(String field, String operator, Object value) {
+        return MagicShelfRule.builder()
+                .type("rule")
+                .field(field)
+                .operator(operator)
+                .value(value == null ? null : MAPPER.valueToTree(value))
+                .build();
+    }
+
+    private static MagicShelfRule group(String join, MagicShelfRule... rules) {
+        return MagicShelfRule.builder().type("group").join(join).rules(List.of(rules)).build();
+    }
+}
@@ -0,0 +1,170 @@
+package com.adityachandel.booklore.service.metadata;
+
+import com.adityachandel.booklore.model.dto.MetadataPresence;
+import com.adityachandel.booklore.model.dto.settings.AppSettings;
+import com.adityachandel.booklore.model.dto.settings.MetadataMatchWeights;
+import com.adityachandel.booklore.model.entity.AuthorEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.service.NotificationService;
+import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MetadataMatchServiceTest {
+
+    private final AppSettingService appSettingService = mock(AppSettingService.class);
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final MagicShelfBookService magicShelfBookService = mock(MagicShelfBookService.class);
+    private final MetadataMatchService service = new MetadataMatchService(appSettingService, bookRepository,
+            mock(NotificationService.class), magicShelfBookService);
+    private final MetadataMatchWeights weights = MetadataMatchWeights.builder()
+            .title(10).subtitle(1).description(5).authors(10).publisher(3).publishedDate(3)
+            .seriesName(2).seriesNumber(2).seriesTotal(1).isbn13(4).isbn10(2).language(1).pageCount(1).categories(2)
+            .amazonRating(1).amazonReviewCount(1).goodreadsRating(1).goodreadsReviewCount(1)
+            .hardcoverRating(1).hardcoverReviewCount(1)
+            .build();
+
+    @BeforeEach
+    void setUp() {
+        AppSettings settings = new AppSettings();
+        settings.setMetadataMatchWeights(weights);
+        when(appSettingService.getAppSettings()).thenReturn(settings);
+    }
+
+    @Test
+    void fullyPopulatedBookScoresTheSameFromTheProjectionAsFromTheEntity() {
+        BookMetadataEntity metadata = new BookMetadataEntity();
+        metadata.setTitle("Dune");
+        metadata.setSubtitle("Book One");
+        metadata.setDescription("Desert planet");
+        metadata.setAuthors(Set.of(AuthorEntity.builder().name("Frank Herbert").build()));
+        metadata.setPublisher("Chilton");
+        metadata.setPublishedDate(LocalDate.of(1965, 8, 1));
+        metadata.setSeriesName("Dune");
+        metadata.setSeriesNumber(1f);
+        metadata.setSeriesTotal(6);
+        metadata.setIsbn13("9780441013593");
+        metadata.setIsbn10("0441013597");
+        metadata.setLanguage("en");
+        metadata.setPageCount(412);
+        metadata.setAmazonRating(4.6);
+        metadata.setAmazonReviewCount(100);
+        metadata.setGoodreadsRating(4.3);
+        metadata.setGoodreadsReviewCount(0);
+        metadata.setHardcoverRating(0.0);
+
+        Float fromEntity = service.calculateMatchScore(book(metadata));
+        Float fromProjection = service.calculateMatchScore(asQueried(metadata), weights);
+
+        assertThat(fromProjection).isEqualTo(fromEntity);
+        assertThat(fromEntity).isBetween(0f, 100f);
+    }
+
+    @ParameterizedTest
+    @NullSource
+    @ValueSource(strings = {"", "   ", "\t", "\n", " \t ", "Dune", "  Dune  "})
+    void textFieldCountsAsPresentExactlyWhenTheQueryTrimsItToSomething(String title) {
+        BookMetadataEntity metadata = new BookMetadataEntity();
+        metadata.setTitle(title);
+        metadata.setPublisher(title);
+
+        Float fromEntity = service.calculateMatchScore(book(metadata));
+        Float fromProjection = service.calculateMatchScore(asQueried(metadata), weights);
+
+        assertThat(fromProjection).isEqualTo(fromEntity);
+    }
+
+    @Test
+    void changedScoresAreWrittenPerScoreAndMagicShelvesAreEvicted() {
+        MetadataPresence unchanged = presence(1L, 0f);
+        MetadataPresence stale = presence(2L, 50f);
+        MetadataPresence alsoStale = presence(3L, null);
+        when(bookRepository.findMetadataPresenceAfter(eq(0L), any(Pageable.class))).thenReturn(List.of(unchanged, stale, alsoStale));
+        when(bookRepository.updateMetadataMatchScore(anyCollection(), any())).thenReturn(2);
+
+        service.recalculateAllMatchScores();
+
+        verify(bookRepository).updateMetadataMatchScore(List.of(2L, 3L), 0f);
+        verify(bookRepository).findMetadataPresenceAfter(eq(3L), any(Pageable.class));
+        verify(magicShelfBookService).evictAll();
+    }
+
+    @Test
+    void magicShelvesAreKeptWhenNoScoreChanged() {
+        when(bookRepository.findMetadataPresenceAfter(anyLong(), any(Pageable.class))).thenReturn(List.of(presence(1L, 0f)), List.of());
+
+        service.recalculateAllMatchScores();
+
+        verify(bookRepository, never()).updateMetadataMatchScore(anyCollection(), any());
+        verify(magicShelfBookService, never()).evictAll();
+    }
+
+    private static BookEntity book(BookMetadataEntity metadata) {
+        BookEntity book = new BookEntity();
+        book.setId(1L);
+        book.setMetadata(metadata);
+        return book;
+    }
+
+    private static MetadataPresence presence(Long bookId, Float currentScore) {
+        return new MetadataPresence(bookId, currentScore, false, false, false, false, false, false, false, false, false,
+                false, false, false, false, false, false, false, false, false, false, false);
+    }
+
+    /**
+     * Builds the projection the way {@code BookRepository.findMetadataPresenceAfter} evaluates each column.
+     */
+    private static MetadataPresence asQueried(BookMetadataEntity m) {
+        return new MetadataPresence(1L, null,
+                trimmedNotEmpty(m.getTitle()),
+                trimmedNotEmpty(m.getSubtitle()),
+                trimmedNotEmpty(m.getDescription()),
+                m.getAuthors() != null && !m.getAuthors().isEmpty(),
+                trimmedNotEmpty(m.getPublisher()),
+                m.getPublishedDate() != null,
+                trimmedNotEmpty(m.getSeriesName()),
+                greaterThanZero(m.getSeriesNumber()),
+                greaterThanZero(m.getSeriesTotal()),
+                trimmedNotEmpty(m.getIsbn13()),
+                trimmedNotEmpty(m.getIsbn10()),
+                trimmedNotEmpty(m.getLanguage()),
+                greaterThanZero(m.getPageCount()),
+                m.getCategories() != null && !m.getCategories().isEmpty(),
+                greaterThanZero(m.getAmazonRating()),
+                greaterThanZero(m.getAmazonReviewCount()),
+                greaterThanZero(m.getGoodreadsRating()),
+                greaterThanZero(m.getGoodreadsReviewCount()),
+                greaterThanZero(m.getHardcoverRating()),
+                greaterThanZero(m.getHardcoverReviewCount()));
+    }
+
+    // TRIM(x) <> '': SQL TRIM removes leading and trailing spaces only, and NULL never compares as different.
+    private static boolean trimmedNotEmpty(String value) {
+        return value != null && !value.replaceAll("^ +| +$", "").isEmpty();
+    }
+
+    private static boolean greaterThanZero(Number value) {
+        return value != null && value.doubleValue() > 0;
+    }
+}
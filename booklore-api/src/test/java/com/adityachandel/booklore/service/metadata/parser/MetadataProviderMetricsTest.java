@@ -0,0 +1,90 @@
+package com.adityachandel.booklore.service.metadata.parser;
+
+import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.BookMetadata;
+import com.adityachandel.booklore.model.dto.request.FetchMetadataRequest;
+import com.adityachandel.booklore.model.enums.MetadataProvider;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.HttpStatusException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MetadataProviderMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MetadataProviderMetrics metrics = new MetadataProviderMetrics(meterRegistry);
+
+    @Test
+    void jsoupStatusIsRecordedByStatusAndThrottlingByName() {
+        metrics.recordFetchFailure(MetadataProvider.Amazon, new HttpStatusException("Too many requests", 429, "https://www.amazon.com"));
+        metrics.recordFetchFailure(MetadataProvider.GoodReads, new HttpStatusException("Service unavailable", 503, "https://www.goodreads.com"));
+
+        assertThat(errors(MetadataProvider.Amazon, "throttled")).isEqualTo(1);
+        assertThat(errors(MetadataProvider.GoodReads, "http_5xx")).isEqualTo(1);
+    }
+
+    @Test
+    void restClientStatusIsRecordedByStatus() {
+        metrics.recordFetchFailure(MetadataProvider.Hardcover, HttpClientErrorException.create(HttpStatus.TOO_MANY_REQUESTS, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], null));
+
+        assertThat(errors(MetadataProvider.Hardcover, "throttled")).isEqualTo(1);
+    }
+
+    @Test
+    void failureWithoutResponseIsRecordedAsIo() {
+        metrics.recordFetchFailure(MetadataProvider.Douban, new SocketTimeoutException("Read timed out"));
+        metrics.recordFetchFailure(MetadataProvider.Hardcover, new ResourceAccessException("Connection refused"));
+
+        assertThat(errors(MetadataProvider.Douban, "io")).isEqualTo(1);
+        assertThat(errors(MetadataProvider.Hardcover, "io")).isEqualTo(1);
+    }
+
+    @Test
+    void ioFailureReachingTheWrapperIsNotCountedTwice() {
+        BookParser parser = metrics.instrument(MetadataProvider.Amazon, failingWith(new RuntimeException(new IOException("Connection reset"))));
+
+        assertThatThrownBy(() -> parser.fetchTopMetadata(Book.builder().build(), FetchMetadataRequest.builder().build())).isInstanceOf(RuntimeException.class);
+
+        assertThat(meterRegistry.find("booklore.metadata.provider.errors").counters()).isEmpty();
+        assertThat(meterRegistry.get("booklore.metadata.provider.requests").tag("outcome", "error").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void otherExceptionReachingTheWrapperIsCounted() {
+        BookParser parser = metrics.instrument(MetadataProvider.Amazon, failingWith(new IllegalStateException("Unexpected page layout")));
+
+        assertThatThrownBy(() -> parser.fetchMetadata(Book.builder().build(), FetchMetadataRequest.builder().build())).isInstanceOf(IllegalStateException.class);
+
+        assertThat(errors(MetadataProvider.Amazon, "exception")).isEqualTo(1);
+    }
+
+    private double errors(MetadataProvider provider, String reason) {
+        Counter counter = meterRegistry.find("booklore.metadata.provider.errors").tag("provider", provider.name()).tag("reason", reason).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static BookParser failingWith(RuntimeException failure) {
+        return new BookParser() {
+            @Override
+            public BookMetadata fetchTopMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
+                throw failure;
+            }
+
+            @Override
+            public List<BookMetadata> fetchMetadata(Book book, FetchMetadataRequest fetchMetadataRequest) {
+                throw failure;
+            }
+        };
+    }
+}
@@ -0,0 +1,130 @@
+package com.adityachandel.booklore.service.metadata.writer;
+
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.encryption.AccessPermission;
+import org.apache.pdfbox.pdmodel.encryption.StandardProtectionPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIOException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PdfMetadataWriterTest {
+
+    @TempDir
+    Path root;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final PdfMetadataWriter writer = new PdfMetadataWriter(meterRegistry);
+
+    @Test
+    void metadataIsAppendedAfterTheUntouchedOriginalBytes() throws IOException {
+        Path pdf = createPdf("plain.pdf", false);
+        byte[] original = Files.readAllBytes(pdf);
+
+        writer.writeMetadataToFile(pdf.toFile(), metadata("Dune", "Chilton"), null, false, null);
+
+        byte[] updated = Files.readAllBytes(pdf);
+        assertThat(updated.length).isGreaterThan(original.length);
+        assertThat(Arrays.copyOf(updated, original.length)).isEqualTo(original);
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            assertThat(document.getDocumentInformation().getTitle()).isEqualTo("Dune");
+            assertThat(document.getDocumentInformation().getProducer()).isEqualTo("Chilton");
+            assertThat(new String(document.getDocumentCatalog().getMetadata().toByteArray(), StandardCharsets.UTF_8)).contains("Dune");
+            assertThat(document.getNumberOfPages()).isEqualTo(1);
+        }
+        assertThat(bytesWritten("incremental")).isEqualTo(updated.length - original.length);
+        assertThat(meterRegistry.find("booklore.metadata.pdf.write.bytes").tag("mode", "full").summary()).isNull();
+    }
+
+    @Test
+    void encryptedPdfIsRewrittenWithoutItsEncryption() throws IOException {
+        Path pdf = createPdf("locked.pdf", true);
+
+        writer.writeMetadataToFile(pdf.toFile(), metadata("Dune", null), null, false, null);
+
+        try (PDDocument document = Loader.loadPDF(pdf.toFile())) {
+            assertThat(document.isEncrypted()).isFalse();
+            assertThat(document.getDocumentInformation().getTitle()).isEqualTo("Dune");
+        }
+        assertThat(bytesWritten("full")).isEqualTo(Files.size(pdf));
+        assertThat(meterRegistry.find("booklore.metadata.pdf.write.bytes").tag("mode", "incremental").summary()).isNull();
+    }
+
+    @Test
+    void failedAppendIsCutBackToTheOriginalLength() throws IOException {
+        FileChannel channel = mock(FileChannel.class);
+        when(channel.size()).thenReturn(100L);
+        when(channel.write(any(ByteBuffer.class), anyLong()))
+                .thenAnswer(invocation -> {
+                    ByteBuffer buffer = invocation.getArgument(0);
+                    buffer.position(buffer.position() + 10);
+                    return 10;
+                })
+                .thenThrow(new IOException("No space left on device"));
+
+        assertThatIOException().isThrownBy(() -> PdfMetadataWriter.appendIncrement(channel, 100, new byte[50]))
+                .withMessage("No space left on device");
+
+        verify(channel).write(any(ByteBuffer.class), eq(110L));
+        verify(channel).truncate(100);
+        verify(channel, never()).force(anyBoolean());
+    }
+
+    @Test
+    void fileThatChangedSinceItWasReadIsLeftAlone() throws IOException {
+        FileChannel channel = mock(FileChannel.class);
+        when(channel.size()).thenReturn(120L);
+
+        assertThatIOException().isThrownBy(() -> PdfMetadataWriter.appendIncrement(channel, 100, new byte[50]));
+
+        verify(channel, never()).write(any(ByteBuffer.class), anyLong());
+        verify(channel, never()).truncate(anyLong());
+    }
+
+    private Path createPdf(String name, boolean encrypted) throws IOException {
+        Path file = root.resolve(name);
+        try (PDDocument document = new PDDocument()) {
+            document.addPage(new PDPage());
+            document.getDocumentInformation().setTitle("Untitled");
+            if (encrypted) {
+                StandardProtectionPolicy policy = new StandardProtectionPolicy("owner", "", new AccessPermission());
+                policy.setEncryptionKeyLength(128);
+                document.protect(policy);
+            }
+            document.save(file.toFile());
+        }
+        return file;
+    }
+
+    private double bytesWritten(String mode) {
+        return meterRegistry.get("booklore.metadata.pdf.write.bytes").tag("mode", mode).summary().totalAmount();
+    }
+
+    private static BookMetadataEntity metadata(String title, String publisher) {
+        BookMetadataEntity metadata = new BookMetadataEntity();
+        metadata.setTitle(title);
+        metadata.setPublisher(publisher);
+        return metadata;
+    }
+}
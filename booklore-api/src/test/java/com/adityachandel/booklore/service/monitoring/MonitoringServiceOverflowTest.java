@@ -0,0 +1,64 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.service.library.LibraryScanRoot;
+import com.adityachandel.booklore.service.watcher.LibraryFileEventProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class MonitoringServiceOverflowTest {
+
+    @TempDir
+    Path root;
+
+    private final OverflowResyncService overflowResyncService = mock(OverflowResyncService.class);
+    private MonitoringService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new MonitoringService(mock(LibraryFileEventProcessor.class), FileSystems.getDefault().newWatchService(),
+                mock(MonitoringTask.class), overflowResyncService, mock(PollingMonitorService.class), new AppProperties(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stopMonitoring();
+    }
+
+    @Test
+    void overflowResyncsOnlyTheFolderItsKeyWatches() throws IOException {
+        Path watched = Files.createDirectories(root.resolve("Watched/Series"));
+        service.registerPath(root, 1L);
+        service.registerPath(watched.getParent(), 1L);
+        service.registerPath(watched, 1L);
+        Path created = Files.createDirectories(root.resolve("Created/Nested"));
+
+        service.handleWatchOverflow(new WatchOverflowEvent(this, root));
+
+        verify(overflowResyncService).scheduleLibraryResync(1L,
+                List.of(LibraryScanRoot.filesOnly(root), LibraryScanRoot.recursive(created.getParent())));
+        // Folders created while events were lost are watched from now on.
+        assertThat(service.registerPath(created, 1L)).isFalse();
+    }
+
+    @Test
+    void overflowOfAnUnwatchedFolderIsIgnored() {
+        service.handleWatchOverflow(new WatchOverflowEvent(this, root));
+
+        verifyNoInteractions(overflowResyncService);
+    }
+}
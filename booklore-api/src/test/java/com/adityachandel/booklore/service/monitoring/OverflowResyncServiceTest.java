@@ -0,0 +1,108 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.service.library.LibraryProcessingService;
+import com.adityachandel.booklore.service.library.LibraryScanRoot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+class OverflowResyncServiceTest {
+
+    private static final Path ROOT = Path.of("/books").toAbsolutePath();
+
+    private final LibraryProcessingService libraryProcessingService = mock(LibraryProcessingService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OverflowResyncService service;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getWatcher().setOverflowResyncDelayMs(100);
+        appProperties.getWatcher().setOverflowResyncMaxWaitMs(300);
+        service = new OverflowResyncService(libraryProcessingService, appProperties, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void burstIsMergedIntoOneResyncPerLibrary() throws IOException {
+        service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.filesOnly(ROOT.resolve("A"))));
+        service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.recursive(ROOT.resolve("B"))));
+        service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.filesOnly(ROOT.resolve("B/C"))));
+        service.scheduleLibraryResync(2L, List.of(LibraryScanRoot.filesOnly(ROOT.resolve("D"))));
+
+        verify(libraryProcessingService, timeout(2000)).rescanLibrarySubtrees(1L,
+                List.of(LibraryScanRoot.filesOnly(ROOT.resolve("A")), LibraryScanRoot.recursive(ROOT.resolve("B"))));
+        verify(libraryProcessingService, timeout(2000)).rescanLibrarySubtrees(2L, List.of(LibraryScanRoot.filesOnly(ROOT.resolve("D"))));
+        verify(libraryProcessingService, after(300).times(2)).rescanLibrarySubtrees(anyLong(), anyList());
+        assertThat(meterRegistry.counter("booklore.watcher.overflow", "source", "library").count()).isEqualTo(4);
+    }
+
+    @Test
+    void burstThatNeverSettlesIsResyncedAfterTheMaxWait() throws Exception {
+        AtomicLong firstResync = new AtomicLong();
+        doAnswer(invocation -> {
+            firstResync.compareAndSet(0, System.nanoTime());
+            return null;
+        }).when(libraryProcessingService).rescanLibrarySubtrees(anyLong(), anyList());
+
+        long start = System.nanoTime();
+        while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800)) {
+            service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.filesOnly(ROOT)));
+            Thread.sleep(20);
+        }
+
+        assertThat(firstResync.get()).isPositive();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(firstResync.get() - start)).isLessThan(700);
+    }
+
+    @Test
+    void failedResyncIsCountedAndLaterOverflowsStillResync() throws IOException {
+        doThrow(new IOException("Library path unreachable")).doNothing()
+                .when(libraryProcessingService).rescanLibrarySubtrees(eq(1L), anyList());
+
+        service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.filesOnly(ROOT)));
+        verify(libraryProcessingService, timeout(2000)).rescanLibrarySubtrees(eq(1L), anyList());
+        service.scheduleLibraryResync(1L, List.of(LibraryScanRoot.filesOnly(ROOT)));
+        verify(libraryProcessingService, timeout(2000).times(2)).rescanLibrarySubtrees(eq(1L), anyList());
+
+        verify(libraryProcessingService, after(200).times(2)).rescanLibrarySubtrees(eq(1L), anyList());
+        assertThat(meterRegistry.counter("booklore.watcher.overflow.resync", "source", "library", "outcome", "failure").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("booklore.watcher.overflow.resync", "source", "library", "outcome", "success").count()).isEqualTo(1);
+    }
+
+    @Test
+    void bookdropResyncRunsItsOwnRescan() {
+        Runnable rescan = mock(Runnable.class);
+        doNothing().when(rescan).run();
+
+        service.scheduleBookdropResync(ROOT.resolve("bookdrop"), rescan);
+        service.scheduleBookdropResync(ROOT.resolve("bookdrop"), rescan);
+
+        verify(rescan, timeout(2000)).run();
+        verify(rescan, after(300).times(1)).run();
+    }
+}
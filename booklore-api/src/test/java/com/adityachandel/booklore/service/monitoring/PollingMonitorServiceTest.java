@@ -0,0 +1,180 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.dto.Library;
+import com.adityachandel.booklore.model.dto.LibraryPath;
+import com.adityachandel.booklore.service.watcher.LibraryFileEventProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class PollingMonitorServiceTest {
+
+    private static final long LIBRARY_ID = 3L;
+
+    @TempDir
+    Path root;
+
+    private final LibraryFileEventProcessor processor = mock(LibraryFileEventProcessor.class);
+    private final WatchSuppressionService suppression = mock(WatchSuppressionService.class);
+    private PollingMonitorService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new PollingMonitorService(processor, suppression, new AppProperties(), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void baselineReportsNothing() throws IOException {
+        Files.createDirectories(root.resolve("Author"));
+        write(root.resolve("Author/existing.epub"), 10);
+
+        baseline();
+        service.pollNow(LIBRARY_ID);
+        service.pollNow(LIBRARY_ID);
+
+        verifyNoInteractions(processor);
+    }
+
+    @Test
+    void newFileIsReportedOnceItHeldStillForAPoll() throws IOException {
+        baseline();
+        Path book = write(root.resolve("new.epub"), 10);
+
+        service.pollNow(LIBRARY_ID);
+        verifyNoInteractions(processor);
+
+        service.pollNow(LIBRARY_ID);
+        verifyCreate(book);
+    }
+
+    @Test
+    void growingFileIsHeldBackUntilItSettles() throws IOException {
+        baseline();
+        Path book = write(root.resolve("copying.pdf"), 10);
+        service.pollNow(LIBRARY_ID);
+
+        write(book, 20);
+        service.pollNow(LIBRARY_ID);
+        verifyNoInteractions(processor);
+
+        service.pollNow(LIBRARY_ID);
+        verifyCreate(book);
+    }
+
+    @Test
+    void deletedFileIsReported() throws IOException {
+        Path book = write(root.resolve("gone.cbz"), 10);
+        baseline();
+
+        Files.delete(book);
+        service.pollNow(LIBRARY_ID);
+
+        verify(processor).processFile(StandardWatchEventKinds.ENTRY_DELETE, LIBRARY_ID, root.toString(), book.toString());
+    }
+
+    @Test
+    void fileCreatedAndDeletedBetweenPollsIsNeverReported() throws IOException {
+        baseline();
+        Path book = write(root.resolve("temp.epub"), 10);
+        service.pollNow(LIBRARY_ID);
+
+        Files.delete(book);
+        service.pollNow(LIBRARY_ID);
+        service.pollNow(LIBRARY_ID);
+
+        verifyNoInteractions(processor);
+    }
+
+    @Test
+    void filesOfANewDirectoryAreReported() throws IOException {
+        baseline();
+        Path series = Files.createDirectories(root.resolve("Author/Series"));
+        Path first = write(series.resolve("one.epub"), 10);
+        Path second = write(series.resolve("two.epub"), 10);
+
+        service.pollNow(LIBRARY_ID);
+        service.pollNow(LIBRARY_ID);
+
+        verifyCreate(first);
+        verifyCreate(second);
+    }
+
+    @Test
+    void filesOfARemovedDirectoryAreReportedDeleted() throws IOException {
+        Path series = Files.createDirectories(root.resolve("Author/Series"));
+        Path book = write(series.resolve("one.epub"), 10);
+        baseline();
+
+        Files.delete(book);
+        Files.delete(series);
+        Files.delete(series.getParent());
+        service.pollNow(LIBRARY_ID);
+
+        verify(processor).processFile(StandardWatchEventKinds.ENTRY_DELETE, LIBRARY_ID, series.toString(), book.toString());
+    }
+
+    @Test
+    void nonBookFilesAreIgnored() throws IOException {
+        baseline();
+        write(root.resolve("notes.txt"), 10);
+
+        service.pollNow(LIBRARY_ID);
+        service.pollNow(LIBRARY_ID);
+
+        verifyNoInteractions(processor);
+    }
+
+    @Test
+    void changesMadeByBookloreAreNotReported() throws IOException {
+        Path moved = write(root.resolve("moved.epub"), 10);
+        baseline();
+        when(suppression.wasSuppressedSince(any(), anyLong())).thenReturn(true);
+
+        Files.delete(moved);
+        write(root.resolve("renamed.epub"), 10);
+        service.pollNow(LIBRARY_ID);
+        service.pollNow(LIBRARY_ID);
+
+        verify(processor, never()).processFile(any(), anyLong(), anyString(), anyString());
+    }
+
+    private void baseline() {
+        service.trackLibrary(Library.builder()
+                .id(LIBRARY_ID)
+                .name("Polled")
+                .paths(List.of(LibraryPath.builder().path(root.toString()).build()))
+                .build());
+        service.pollNow(LIBRARY_ID);
+    }
+
+    private void verifyCreate(Path book) {
+        verify(processor).processFile(StandardWatchEventKinds.ENTRY_CREATE, LIBRARY_ID, book.getParent().toString(), book.toString());
+    }
+
+    private static Path write(Path file, int size) throws IOException {
+        return Files.write(file, new byte[size]);
+    }
+}
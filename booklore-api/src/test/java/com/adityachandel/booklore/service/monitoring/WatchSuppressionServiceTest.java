@@ -0,0 +1,107 @@
+package com.adityachandel.booklore.service.monitoring;
+
+import com.adityachandel.booklore.config.AppProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WatchSuppressionServiceTest {
+
+    private static final long WINDOW_MS = 200;
+    private static final long POLL_MAX_INTERVAL_MS = 300;
+    private static final Path ROOT = Path.of("/books").toAbsolutePath();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WatchSuppressionService service;
+
+    @BeforeEach
+    void setUp() {
+        AppProperties appProperties = new AppProperties();
+        appProperties.getWatcher().setSuppressionWindowMs(WINDOW_MS);
+        appProperties.getWatcher().setPollMaxIntervalMs(POLL_MAX_INTERVAL_MS);
+        service = new WatchSuppressionService(appProperties, meterRegistry);
+    }
+
+    @Test
+    void openSuppressionCoversThePathAndEverythingBelowIt() {
+        service.suppress("move", ROOT.resolve("Fantasy"));
+
+        assertThat(service.isSuppressed(ROOT.resolve("Fantasy"))).isTrue();
+        assertThat(service.isSuppressed(ROOT.resolve("Fantasy/Saga/book.epub"))).isTrue();
+        assertThat(service.isSuppressed(ROOT.resolve("Fantasy/../Fantasy/book.epub"))).isTrue();
+        assertThat(service.isSuppressed(ROOT.resolve("Fantasy Classics/book.epub"))).isFalse();
+        assertThat(service.isSuppressed(ROOT)).isFalse();
+    }
+
+    @Test
+    void pathsAddedWhileOpenAreCoveredToo() {
+        WatchSuppressionService.Suppression suppression = service.suppress("upload");
+
+        assertThat(service.isSuppressed(ROOT.resolve("new.epub"))).isFalse();
+        suppression.add(ROOT.resolve("new.epub")).add(null);
+
+        assertThat(service.isSuppressed(ROOT.resolve("new.epub"))).isTrue();
+    }
+
+    @Test
+    void closedSuppressionLastsForTheWindowOnly() throws InterruptedException {
+        Path book = ROOT.resolve("book.epub");
+        service.suppress("import", book).close();
+
+        assertThat(service.isSuppressed(book)).isTrue();
+        Thread.sleep(WINDOW_MS + 100);
+        assertThat(service.isSuppressed(book)).isFalse();
+    }
+
+    @Test
+    void pollSeesChangesSuppressedSinceItLastListedTheDirectory() throws InterruptedException {
+        Path book = ROOT.resolve("book.epub");
+        long beforeRelease = System.currentTimeMillis();
+        service.suppress("move", book).close();
+        Thread.sleep(WINDOW_MS + 100);
+
+        assertThat(service.isSuppressed(book)).isFalse();
+        assertThat(service.wasSuppressedSince(book, beforeRelease)).isTrue();
+        assertThat(service.wasSuppressedSince(book, System.currentTimeMillis())).isFalse();
+        assertThat(service.wasSuppressedSince(ROOT.resolve("other.epub"), beforeRelease)).isFalse();
+    }
+
+    @Test
+    void releasedSuppressionIsForgottenAfterTheRetention() throws InterruptedException {
+        Path book = ROOT.resolve("book.epub");
+        long beforeRelease = System.currentTimeMillis();
+        service.suppress("move", book).close();
+
+        Thread.sleep(POLL_MAX_INTERVAL_MS * 2 + 100);
+
+        assertThat(service.wasSuppressedSince(book, beforeRelease)).isFalse();
+    }
+
+    @Test
+    void closingTwiceDoesNotExtendTheWindow() throws InterruptedException {
+        Path book = ROOT.resolve("book.epub");
+        WatchSuppressionService.Suppression suppression = service.suppress("import", book);
+        suppression.close();
+        Thread.sleep(WINDOW_MS + 100);
+
+        suppression.close();
+
+        assertThat(service.isSuppressed(book)).isFalse();
+    }
+
+    @Test
+    void suppressedChangesAreCountedBySource() {
+        service.suppress("move", ROOT);
+        service.isSuppressed(ROOT.resolve("a.epub"));
+        service.isSuppressed(ROOT.resolve("b.epub"));
+        service.wasSuppressedSince(ROOT.resolve("c.epub"), 0);
+
+        assertThat(meterRegistry.get("booklore.watcher.suppressed").tag("source", "watch").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("booklore.watcher.suppressed").tag("source", "poll").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("booklore.watcher.suppressions.active").gauge().value()).isEqualTo(1);
+    }
+}
@@ -7,14 +7,17 @@ import com.adityachandel.booklore.model.dto.*;
 import com.adityachandel.booklore.model.entity.BookLoreUserEntity;
 import com.adityachandel.booklore.repository.UserRepository;
 import com.adityachandel.booklore.service.BookQueryService;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.access.AccessDeniedException;
 
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -35,6 +38,10 @@ class OpdsServiceTest {
     @Mock
     private BookLoreUserTransformer bookLoreUserTransformer;
     @Mock
+    private OpdsV2FeedWriter opdsV2FeedWriter;
+    @Mock
+    private MagicShelfBookService magicShelfBookService;
+    @Mock
     private HttpServletRequest request;
 
     @InjectMocks
@@ -85,7 +92,7 @@ class OpdsServiceTest {
     }
 
     @Test
-    void generateCatalogFeed_opdsV2Admin_callsGetAllBooks_and_returnsV2Placeholder() {
+    void generateCatalogFeed_opdsV2Admin_streamsUnrestrictedV2Feed() throws Exception {
         OpdsUserDetails details = mock(OpdsUserDetails.class);
         when(authenticationService.getOpdsUser()).thenReturn(details);
         when(details.getOpdsUser()).thenReturn(null);
@@ -106,21 +113,24 @@ class OpdsServiceTest {
         when(userDto.getPermissions()).thenReturn(dtoPerms);
         when(bookLoreUserTransformer.toDTO(entity)).thenReturn(userDto);
 
-        // Accept header drives v2 selection; do not stub request.getRequestURI() (unused here)
         when(request.getHeader("Accept")).thenReturn("application/opds+json;version=2.0");
-        // stub the backend call exercised by getAllowedBooks for admin + no query
-        when(bookQueryService.getAllBooks(true)).thenReturn(List.of());
+        when(request.getRequestURI()).thenReturn("/api/v2/opds/catalog");
 
         String feed = service.generateCatalogFeed(request);
 
-        assertEquals("OPDS v2.0 Feed is under construction", feed);
+        assertNotNull(feed);
+        ArgumentCaptor<OpdsV2FeedRequest> captor = ArgumentCaptor.forClass(OpdsV2FeedRequest.class);
+        verify(opdsV2FeedWriter).writeFeed(captor.capture(), any(OutputStream.class));
+        assertNull(captor.getValue().allowedLibraryIds());
+        assertNull(captor.getValue().query());
+        assertEquals("/api/v2/opds/", captor.getValue().basePath());
         verify(userRepository).findById(9L);
-        verify(bookQueryService).getAllBooks(true);
+        verifyNoInteractions(bookQueryService);
     }
 
 
     @Test
-    void generateSearchResults_opdsV2_callsSearch_and_returnsV2Placeholder() {
+    void generateSearchResults_opdsV2_streamsSearchFeed() throws Exception {
         // Setup v2 user (admin) so getAllowedBooks will call searchBooksByMetadata(query)
         OpdsUserDetails details = mock(OpdsUserDetails.class);
         when(authenticationService.getOpdsUser()).thenReturn(details);
@@ -140,17 +150,17 @@ class OpdsServiceTest {
         when(userDto.getPermissions()).thenReturn(dtoPerms);
         when(bookLoreUserTransformer.toDTO(entity)).thenReturn(userDto);
 
-        // Accept header drives v2 selection; do not stub request.getRequestURI()
         when(request.getHeader("Accept")).thenReturn("application/opds+json;version=2.0");
+        when(request.getRequestURI()).thenReturn("/api/v1/opds/search");
 
-        // getAllowedBooks will invoke searchBooksByMetadata for admin + query
-        when(bookQueryService.searchBooksByMetadata("query")).thenReturn(List.of(mock(Book.class)));
+        service.generateSearchResults(request, "query");
 
-        String feed = service.generateSearchResults(request, "query");
-
-        assertEquals("OPDS v2.0 Feed is under construction", feed);
+        ArgumentCaptor<OpdsV2FeedRequest> captor = ArgumentCaptor.forClass(OpdsV2FeedRequest.class);
+        verify(opdsV2FeedWriter).writeFeed(captor.capture(), any(OutputStream.class));
+        assertEquals("query", captor.getValue().query());
+        assertEquals("/api/v1/opds/", captor.getValue().basePath());
         verify(userRepository).findById(9L);
-        verify(bookQueryService).searchBooksByMetadata("query");
+        verifyNoInteractions(bookQueryService);
     }
 
     @Test
@@ -208,9 +218,12 @@ class OpdsServiceTest {
     }
 
     @Test
-    void generateSearchDescription_opdsV2_returnsV2Placeholder() {
+    void generateSearchDescription_opdsV2_delegatesToV2Writer() throws Exception {
         when(request.getHeader("Accept")).thenReturn("application/opds+json;version=2.0");
-        String desc = service.generateSearchDescription(request);
-        assertEquals("OPDS v2.0 Feed is under construction", desc);
+        when(request.getRequestURI()).thenReturn("/api/v2/opds/search.opds");
+
+        service.generateSearchDescription(request);
+
+        verify(opdsV2FeedWriter).writeSearchDescription(eq("/api/v2/opds/"), any(OutputStream.class));
     }
 }
\ No newline at end of file
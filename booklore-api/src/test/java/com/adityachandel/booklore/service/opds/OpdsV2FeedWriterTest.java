@@ -0,0 +1,208 @@
+package com.adityachandel.booklore.service.opds;
+
+import com.adityachandel.booklore.model.entity.AuthorEntity;
+import com.adityachandel.booklore.model.entity.BookEntity;
+import com.adityachandel.booklore.model.entity.BookMetadataEntity;
+import com.adityachandel.booklore.model.entity.CategoryEntity;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.enums.BookFileType;
+import com.adityachandel.booklore.repository.BookRepository;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.magicshelf.MagicShelfBookService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OpdsV2FeedWriterTest {
+
+    private static final String BASE = "/api/v2/opds/";
+
+    @Mock
+    private BookRepository bookRepository;
+    @Mock
+    private LibraryRepository libraryRepository;
+    @Mock
+    private MagicShelfBookService magicShelfBookService;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private OpdsV2FeedWriter writer;
+
+    @BeforeEach
+    void setUp() {
+        writer = new OpdsV2FeedWriter(bookRepository, libraryRepository, objectMapper, magicShelfBookService);
+    }
+
+    @Test
+    void middlePageLinksToEveryNeighbour() throws IOException {
+        when(bookRepository.findPagedBookIds(PageRequest.of(1, 2)))
+                .thenReturn(new PageImpl<>(List.of(3L, 4L), PageRequest.of(1, 2), 5));
+        when(bookRepository.findAllForFeedByIds(List.of(3L, 4L))).thenReturn(List.of(book(3L), book(4L)));
+        when(libraryRepository.findAll()).thenReturn(List.of());
+
+        JsonNode feed = write(new OpdsV2FeedRequest(BASE, null, null, null, null, null, 2, 2));
+
+        assertThat(feed.at("/metadata/numberOfItems").asLong()).isEqualTo(5);
+        assertThat(feed.at("/metadata/itemsPerPage").asInt()).isEqualTo(2);
+        assertThat(feed.at("/metadata/currentPage").asInt()).isEqualTo(2);
+        Map<String, String> links = links(feed);
+        assertThat(links).containsEntry("self", BASE + "catalog?page=2&size=2")
+                .containsEntry("first", BASE + "catalog?page=1&size=2")
+                .containsEntry("previous", BASE + "catalog?page=1&size=2")
+                .containsEntry("next", BASE + "catalog?page=3&size=2")
+                .containsEntry("last", BASE + "catalog?page=3&size=2")
+                .containsEntry("search", BASE + "search{?q,page,size}");
+        assertThat(feed.get("publications")).hasSize(2);
+    }
+
+    @Test
+    void lastPageHasNoNextLink() throws IOException {
+        when(bookRepository.findPagedBookIds(PageRequest.of(2, 2)))
+                .thenReturn(new PageImpl<>(List.of(5L), PageRequest.of(2, 2), 5));
+        when(bookRepository.findAllForFeedByIds(List.of(5L))).thenReturn(List.of(book(5L)));
+        when(libraryRepository.findAll()).thenReturn(List.of());
+
+        Map<String, String> links = links(write(new OpdsV2FeedRequest(BASE, null, null, null, null, null, 3, 2)));
+
+        assertThat(links).doesNotContainKey("next").containsKey("previous")
+                .containsEntry("last", BASE + "catalog?page=3&size=2");
+    }
+
+    @Test
+    void searchKeepsQueryInLinksAndSkipsNavigation() throws IOException {
+        when(bookRepository.searchPagedBookIdsByLibraryIds(eq("winter king"), anyCollection(), any()))
+                .thenReturn(new PageImpl<>(List.of(1L), PageRequest.of(0, 50), 1));
+        when(bookRepository.findAllForFeedByIds(List.of(1L))).thenReturn(List.of(book(1L)));
+
+        JsonNode feed = write(new OpdsV2FeedRequest(BASE, "winter king", null, null, 7L, Set.of(1L), 1, 50));
+
+        assertThat(feed.at("/metadata/title").asText()).isEqualTo("Search results for \"winter king\"");
+        assertThat(links(feed)).containsEntry("self", BASE + "search?q=winter%20king&page=1&size=50");
+        assertThat(feed.has("navigation")).isFalse();
+        assertThat(feed.has("facets")).isFalse();
+    }
+
+    @Test
+    void libraryOutsideAllowedScopeYieldsEmptyFeed() throws IOException {
+        when(libraryRepository.findByIdIn(List.of(1L))).thenReturn(List.of());
+
+        JsonNode feed = write(new OpdsV2FeedRequest(BASE, null, 2L, null, null, Set.of(1L), 1, 50));
+
+        assertThat(feed.at("/metadata/numberOfItems").asLong()).isZero();
+        assertThat(feed.get("publications")).isEmpty();
+        assertThat(links(feed)).containsEntry("last", BASE + "catalog?libraryId=2&page=1&size=50");
+    }
+
+    @Test
+    void publicationCarriesMetadataAcquisitionAndCovers() throws IOException {
+        when(bookRepository.findPagedBookIds(PageRequest.of(0, 50)))
+                .thenReturn(new PageImpl<>(List.of(9L), PageRequest.of(0, 50), 1));
+        when(bookRepository.findAllForFeedByIds(List.of(9L))).thenReturn(List.of(book(9L)));
+        when(libraryRepository.findAll()).thenReturn(List.of(
+                LibraryEntity.builder().id(1L).name("Comics").build(),
+                LibraryEntity.builder().id(2L).name("Books").build()));
+
+        JsonNode feed = write(new OpdsV2FeedRequest(BASE, null, null, null, null, null, 1, 50));
+
+        JsonNode publication = feed.get("publications").get(0);
+        assertThat(publication.at("/metadata/title").asText()).isEqualTo("Book 9");
+        assertThat(publication.at("/metadata/identifier").asText()).isEqualTo("urn:isbn:9780000000009");
+        assertThat(publication.at("/metadata/author/0/name").asText()).isEqualTo("Ann Author");
+        assertThat(publication.at("/metadata/subject/0").asText()).isEqualTo("Fantasy");
+        assertThat(publication.at("/metadata/belongsTo/series/0/name").asText()).isEqualTo("Saga");
+        assertThat(publication.at("/metadata/belongsTo/series/0/position").asDouble()).isEqualTo(2.0);
+        assertThat(publication.at("/metadata/published").asText()).isEqualTo("2001-02-03");
+        assertThat(publication.at("/links/0/href").asText()).isEqualTo(BASE + "9/download");
+        assertThat(publication.at("/links/0/type").asText()).isEqualTo("application/epub+zip");
+        assertThat(publication.at("/links/0/properties/size").asLong()).isEqualTo(2048);
+        assertThat(publication.at("/images/1/href").asText()).isEqualTo(BASE + "9/cover?1000");
+        assertThat(publication.at("/images/1").has("width")).isFalse();
+        assertThat(publication.at("/metadata/modified").asText()).isEqualTo("2024-05-06T07:08:09Z");
+
+        assertThat(feed.at("/navigation/1/title").asText()).isEqualTo("Books");
+        assertThat(feed.at("/facets/0/links")).hasSize(3);
+    }
+
+    @Test
+    void bookWhoseMetadataWasNeverEditedIsModifiedWhenAdded() throws IOException {
+        BookEntity book = book(9L);
+        book.getMetadata().setUpdatedOn(null);
+        when(bookRepository.findPagedBookIds(PageRequest.of(0, 50)))
+                .thenReturn(new PageImpl<>(List.of(9L), PageRequest.of(0, 50), 1));
+        when(bookRepository.findAllForFeedByIds(List.of(9L))).thenReturn(List.of(book));
+        when(libraryRepository.findAll()).thenReturn(List.of());
+
+        JsonNode feed = write(new OpdsV2FeedRequest(BASE, null, null, null, null, null, 1, 50));
+
+        assertThat(feed.at("/publications/0/metadata/modified").asText()).isEqualTo("2024-01-01T00:00:00Z");
+    }
+
+    @Test
+    void searchDescriptionAdvertisesPagedTemplate() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeSearchDescription(BASE, out);
+
+        JsonNode description = objectMapper.readTree(out.toByteArray());
+        JsonNode search = description.get("links").get(1);
+        assertThat(search.get("rel").asText()).isEqualTo("search");
+        assertThat(search.get("href").asText()).isEqualTo(BASE + OpdsV2FeedWriter.SEARCH_TEMPLATE);
+        assertThat(search.get("templated").asBoolean()).isTrue();
+    }
+
+    private JsonNode write(OpdsV2FeedRequest request) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeFeed(request, out);
+        return objectMapper.readTree(out.toByteArray());
+    }
+
+    private static Map<String, String> links(JsonNode feed) {
+        Map<String, String> links = new HashMap<>();
+        feed.get("links").forEach(link -> links.put(link.get("rel").asText(), link.get("href").asText()));
+        return links;
+    }
+
+    private static BookEntity book(long id) {
+        BookEntity book = BookEntity.builder()
+                .id(id)
+                .fileName("book-" + id + ".epub")
+                .bookType(BookFileType.EPUB)
+                .fileSizeKb(2L)
+                .addedOn(Instant.parse("2024-01-01T00:00:00Z"))
+                .build();
+        book.setMetadata(BookMetadataEntity.builder()
+                .bookId(id)
+                .title("Book " + id)
+                .isbn13(String.format("978%010d", id))
+                .publishedDate(LocalDate.of(2001, 2, 3))
+                .seriesName("Saga")
+                .seriesNumber(2f)
+                .coverUpdatedOn(Instant.ofEpochMilli(1000))
+                .updatedOn(Instant.parse("2024-05-06T07:08:09Z"))
+                .authors(Set.of(AuthorEntity.builder().name("Ann Author").build()))
+                .categories(Set.of(CategoryEntity.builder().name("Fantasy").build()))
+                .book(book)
+                .build());
+        return book;
+    }
+}
@@ -13,13 +13,15 @@ import com.adityachandel.booklore.model.websocket.Topic;
 import com.adityachandel.booklore.repository.BookAdditionalFileRepository;
 import com.adityachandel.booklore.repository.BookRepository;
 import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.BookHashIndex;
 import com.adityachandel.booklore.service.NotificationService;
 import com.adityachandel.booklore.service.appsettings.AppSettingService;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessor;
 import com.adityachandel.booklore.service.fileprocessor.BookFileProcessorRegistry;
 import com.adityachandel.booklore.service.metadata.extractor.EpubMetadataExtractor;
 import com.adityachandel.booklore.service.metadata.extractor.PdfMetadataExtractor;
-import com.adityachandel.booklore.service.monitoring.MonitoringService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -62,7 +64,7 @@ class FileUploadServiceTest {
     @Mock
     EpubMetadataExtractor epubMetadataExtractor;
     @Mock
-    MonitoringService monitoringService;
+    BookHashIndex bookHashIndex;
 
     AppProperties appProperties;
     FileUploadService service;
@@ -84,7 +86,8 @@ class FileUploadServiceTest {
                 libraryRepository, bookRepository, bookAdditionalFileRepository,
                 processorRegistry, notificationService,
                 appSettingService, appProperties, pdfMetadataExtractor,
-                epubMetadataExtractor, additionalFilesMapper, monitoringService
+                epubMetadataExtractor, additionalFilesMapper,
+                new WatchSuppressionService(appProperties, new SimpleMeterRegistry()), bookHashIndex
         );
 
         ReflectionTestUtils.setField(service, "userId", "0");
@@ -219,4 +222,26 @@ class FileUploadServiceTest {
         verify(notificationService).sendMessage(eq(Topic.BOOK_ADD), same(stubBook));
         verifyNoInteractions(pdfMetadataExtractor, epubMetadataExtractor);
     }
+
+    @Test
+    void importStagedFile_movesFileBack_whenBookCannotBeSaved() throws IOException {
+        Path staged = Files.write(tempDir.resolve(".staged.part"), "content".getBytes());
+        LibraryEntity lib = new LibraryEntity();
+        lib.setId(7L);
+        LibraryPathEntity path = new LibraryPathEntity();
+        path.setId(2L);
+        path.setPath(tempDir.toString());
+        lib.setLibraryPaths(List.of(path));
+
+        BookFileProcessor proc = mock(BookFileProcessor.class);
+        when(processorRegistry.getProcessorOrThrow(BookFileType.CBX)).thenReturn(proc);
+        when(proc.processFile(any())).thenThrow(new IllegalStateException("Lock wait timeout exceeded"));
+
+        assertThatExceptionOfType(IllegalStateException.class)
+            .isThrownBy(() -> service.importStagedFile(staged, "book.cbz", lib, path, null));
+
+        assertThat(Files.exists(staged)).isTrue();
+        assertThat(Files.exists(tempDir.resolve("book.cbz"))).isFalse();
+        verifyNoInteractions(notificationService);
+    }
 }
@@ -0,0 +1,336 @@
+package com.adityachandel.booklore.service.upload;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.config.security.service.AuthenticationService;
+import com.adityachandel.booklore.exception.APIException;
+import com.adityachandel.booklore.exception.ApiError;
+import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.BookLoreUser;
+import com.adityachandel.booklore.model.dto.request.ResumableUploadRequest;
+import com.adityachandel.booklore.model.dto.response.ResumableUploadStatus;
+import com.adityachandel.booklore.model.dto.settings.AppSettings;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.FileFingerprint;
+import com.adityachandel.booklore.service.appsettings.AppSettingService;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.ThrowableAssert.ThrowingCallable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.stubbing.Answer;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ResumableUploadServiceTest {
+
+    private static final String FILE_NAME = "book.epub";
+
+    @TempDir
+    Path root;
+
+    private final LibraryRepository libraryRepository = mock(LibraryRepository.class);
+    private final AppSettingService appSettingService = mock(AppSettingService.class);
+    private final FileUploadService fileUploadService = mock(FileUploadService.class);
+    private final AuthenticationService authenticationService = mock(AuthenticationService.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AppProperties appProperties = new AppProperties();
+    private LibraryEntity library;
+    private LibraryPathEntity libraryPath;
+    private ResumableUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        libraryPath = new LibraryPathEntity();
+        libraryPath.setId(2L);
+        libraryPath.setPath(root.toString());
+        library = new LibraryEntity();
+        library.setId(1L);
+        library.setLibraryPaths(List.of(libraryPath));
+        when(libraryRepository.findById(1L)).thenReturn(Optional.of(library));
+
+        AppSettings settings = new AppSettings();
+        settings.setMaxFileUploadSizeInMb(10);
+        when(appSettingService.getAppSettings()).thenReturn(settings);
+
+        BookLoreUser user = new BookLoreUser();
+        user.setId(5L);
+        when(authenticationService.getAuthenticatedUser()).thenReturn(user);
+
+        appProperties.getUpload().setWorkerThreads(1);
+        appProperties.getUpload().setQueueCapacity(1);
+        service = new ResumableUploadService(libraryRepository, appSettingService, fileUploadService, authenticationService,
+                new WatchSuppressionService(appProperties, new SimpleMeterRegistry()), appProperties, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    @Test
+    void chunkAtWrongOffsetIsRefusedWithCurrentOffset() {
+        String id = start(10);
+        service.append(id, 0, body(4));
+
+        assertError(() -> service.append(id, 0, body(6)), ApiError.UPLOAD_OFFSET_MISMATCH);
+        assertThat(service.getStatus(id).getOffset()).isEqualTo(4);
+    }
+
+    @Test
+    void brokenChunkIsTruncatedToWhatWasHashed() throws IOException {
+        String id = start(10);
+        InputStream failing = new InputStream() {
+            private int sent;
+
+            @Override
+            public int read() throws IOException {
+                if (sent == 5) {
+                    throw new IOException("Connection reset");
+                }
+                return sent++;
+            }
+        };
+
+        assertError(() -> service.append(id, 0, failing), ApiError.FILE_READ_ERROR);
+
+        assertThat(service.getStatus(id).getOffset()).isEqualTo(5);
+        assertThat(Files.size(partFile(id))).isEqualTo(5);
+    }
+
+    @Test
+    void completionHandsOverTheHashComputedWhileReceiving() throws IOException {
+        byte[] content = new byte[200_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        Path copy = Files.write(Files.createTempFile(root, "copy", ".epub"), content);
+        String expectedHash = FileFingerprint.generateHash(copy);
+        Book book = Book.builder().id(9L).build();
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any())).thenAnswer(imported(book));
+
+        String id = start(content.length);
+        Path part = partFile(id);
+        service.append(id, 0, new ByteArrayInputStream(content, 0, 70_000));
+        ResumableUploadStatus status = service.append(id, 70_000, new ByteArrayInputStream(content, 70_000, content.length - 70_000));
+
+        assertThat(status.isComplete()).isTrue();
+        assertThat(status.getBook()).isSameAs(book);
+        verify(fileUploadService).importStagedFile(eq(part), eq(FILE_NAME), same(library), same(libraryPath), eq(expectedHash));
+        assertThat(service.getStatus(id).getBook()).isSameAs(book);
+    }
+
+    @Test
+    void retriedCompletionGetsTheSameResultUntilTheRetentionPasses() throws IOException {
+        Book book = Book.builder().id(9L).build();
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any())).thenAnswer(imported(book));
+        String id = start(4);
+        ResumableUploadStatus completed = service.append(id, 0, body(4));
+
+        ResumableUploadStatus retried = service.append(id, 4, InputStream.nullInputStream());
+
+        assertThat(retried.isComplete()).isTrue();
+        assertThat(retried.getBook()).isSameAs(completed.getBook());
+        verify(fileUploadService, times(1)).importStagedFile(any(), anyString(), any(), any(), any());
+        assertError(() -> service.cancel(id), ApiError.UPLOAD_NOT_FOUND);
+
+        service.removeCompletedBefore(Instant.now().minus(ResumableUploadService.COMPLETED_RETENTION));
+        assertThat(service.getStatus(id).isComplete()).isTrue();
+        service.removeCompletedBefore(Instant.now().plusSeconds(1));
+        assertError(() -> service.append(id, 4, InputStream.nullInputStream()), ApiError.UPLOAD_NOT_FOUND);
+    }
+
+    @Test
+    void completedUploadIsNotFoundForAnotherUser() throws IOException {
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any())).thenAnswer(imported(Book.builder().id(9L).build()));
+        String id = start(4);
+        service.append(id, 0, body(4));
+
+        BookLoreUser other = new BookLoreUser();
+        other.setId(6L);
+        when(authenticationService.getAuthenticatedUser()).thenReturn(other);
+
+        assertError(() -> service.append(id, 4, InputStream.nullInputStream()), ApiError.UPLOAD_NOT_FOUND);
+        assertError(() -> service.getStatus(id), ApiError.UPLOAD_NOT_FOUND);
+    }
+
+    @Test
+    void saturatedImportPoolAnswers503AndAnEmptyRetryCompletes() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Book book = Book.builder().id(9L).build();
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return imported(book).answer(invocation);
+        });
+
+        Thread running = completeInBackground(start(4), new AtomicReference<>());
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Thread queued = completeInBackground(start(4), new AtomicReference<>());
+        awaitWaiting(queued);
+
+        String id = start(4);
+        assertError(() -> service.append(id, 0, body(4)), ApiError.TOO_MANY_UPLOADS);
+        assertThat(service.getStatus(id).getOffset()).isEqualTo(4);
+        assertThat(partFile(id)).exists();
+
+        release.countDown();
+        running.join(5000);
+        queued.join(5000);
+        assertThat(service.append(id, 4, InputStream.nullInputStream()).isComplete()).isTrue();
+    }
+
+    @Test
+    void transientImportFailureKeepsTheUploadForARetry() throws IOException {
+        Book book = Book.builder().id(9L).build();
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any()))
+                .thenThrow(new IllegalStateException("Deadlock found when trying to get lock"))
+                .thenAnswer(imported(book));
+
+        String id = start(4);
+        assertError(() -> service.append(id, 0, body(4)), ApiError.UPLOAD_IMPORT_FAILED);
+        assertThat(partFile(id)).exists();
+        assertThat(service.getStatus(id).getOffset()).isEqualTo(4);
+
+        assertThat(service.append(id, 4, InputStream.nullInputStream()).getBook()).isSameAs(book);
+        verify(fileUploadService, times(2)).importStagedFile(any(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void rejectedUploadIsDiscarded() throws IOException {
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any()))
+                .thenThrow(ApiError.FILE_ALREADY_EXISTS.createException());
+
+        String id = start(4);
+        Path part = partFile(id);
+        assertError(() -> service.append(id, 0, body(4)), ApiError.FILE_ALREADY_EXISTS);
+
+        assertThat(part).doesNotExist();
+        assertError(() -> service.getStatus(id), ApiError.UPLOAD_NOT_FOUND);
+    }
+
+    @Test
+    void droppedCompletionLeavesTheImportRunningAndARetryCollectsIt() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Book book = Book.builder().id(9L).build();
+        when(fileUploadService.importStagedFile(any(), anyString(), any(), any(), any())).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return imported(book).answer(invocation);
+        });
+
+        String id = start(4);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread request = completeInBackground(id, failure);
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        request.interrupt();
+        request.join(5000);
+
+        assertThat(failure.get()).isInstanceOf(APIException.class);
+        assertThat(partFile(id)).exists();
+        assertError(() -> service.cancel(id), ApiError.UPLOAD_IMPORTING);
+        service.removeUploadsIdleSince(Instant.now().plusSeconds(60));
+        assertThat(partFile(id)).exists();
+
+        release.countDown();
+        assertThat(service.append(id, 4, InputStream.nullInputStream()).getBook()).isSameAs(book);
+        verify(fileUploadService, times(1)).importStagedFile(any(), anyString(), any(), any(), any());
+    }
+
+    @Test
+    void idleUploadsAndOrphanedStagingFilesAreRemoved() throws IOException {
+        when(libraryRepository.findAll()).thenReturn(List.of(library));
+        String idle = start(10);
+        service.append(idle, 0, body(3));
+        Path orphan = Files.createFile(root.resolve(ResumableUploadService.STAGING_DIR).resolve(".left-by-restart.part"));
+
+        service.removeUploadsIdleSince(Instant.now().minusSeconds(60));
+        assertThat(partFile(idle)).exists();
+        assertThat(orphan).doesNotExist();
+
+        service.removeUploadsIdleSince(Instant.now().plusSeconds(60));
+        assertThat(partFile(idle)).doesNotExist();
+        assertError(() -> service.getStatus(idle), ApiError.UPLOAD_NOT_FOUND);
+    }
+
+    private String start(long length) {
+        ResumableUploadRequest request = new ResumableUploadRequest();
+        request.setLibraryId(1L);
+        request.setPathId(2L);
+        request.setFileName(FILE_NAME);
+        request.setLength(length);
+        return service.create(request).getId();
+    }
+
+    private Thread completeInBackground(String id, AtomicReference<Throwable> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                service.append(id, 0, body(4));
+            } catch (RuntimeException e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    private Path partFile(String id) {
+        return root.resolve(ResumableUploadService.STAGING_DIR).resolve("." + id + ".part");
+    }
+
+    private static InputStream body(int size) {
+        return new ByteArrayInputStream(new byte[size]);
+    }
+
+    /**
+     * Stands in for the real import, which renames the staged file into the library.
+     */
+    private static Answer<Book> imported(Book book) {
+        return invocation -> {
+            Files.delete(invocation.getArgument(0, Path.class));
+            return book;
+        };
+    }
+
+    private static void awaitWaiting(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(thread.getState()).isEqualTo(Thread.State.WAITING);
+    }
+
+    private static void assertError(ThrowingCallable call, ApiError error) {
+        assertThatExceptionOfType(APIException.class)
+                .isThrownBy(call)
+                .satisfies(e -> {
+                    assertThat(e.getStatus()).isEqualTo(error.getStatus());
+                    assertThat(e.getMessage()).startsWith(error.getMessage().split("%")[0]);
+                });
+    }
+}
@@ -0,0 +1,187 @@
+package com.adityachandel.booklore.service.watcher;
+
+import com.adityachandel.booklore.config.AppProperties;
+import com.adityachandel.booklore.model.entity.LibraryEntity;
+import com.adityachandel.booklore.model.entity.LibraryPathEntity;
+import com.adityachandel.booklore.repository.LibraryRepository;
+import com.adityachandel.booklore.service.FileFingerprint;
+import com.adityachandel.booklore.service.monitoring.WatchSuppressionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class LibraryFileEventProcessorTest {
+
+    private static final long LIBRARY_ID = 1L;
+    private static final long QUIET_MS = 200;
+    private static final long WAIT_MS = 3000;
+
+    @TempDir
+    Path root;
+
+    private final LibraryRepository libraryRepository = mock(LibraryRepository.class);
+    private final BookFileTransactionalHandler handler = mock(BookFileTransactionalHandler.class);
+    private final AppProperties appProperties = new AppProperties();
+    private LibraryFileEventProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        LibraryPathEntity libraryPath = LibraryPathEntity.builder().id(2L).path(root.toString()).build();
+        when(libraryRepository.findById(LIBRARY_ID))
+                .thenReturn(Optional.of(LibraryEntity.builder().id(LIBRARY_ID).libraryPaths(List.of(libraryPath)).build()));
+        appProperties.getWatcher().setQuietPeriodMs(QUIET_MS);
+        appProperties.getWatcher().setWorkerThreads(2);
+    }
+
+    @AfterEach
+    void tearDown() {
+        processor.shutdown();
+    }
+
+    @Test
+    void fileCreatedAndDeletedWithinTheQuietPeriodNeverReachesTheDatabase() throws Exception {
+        start();
+        Path temp = book("Author/download.epub");
+
+        event(StandardWatchEventKinds.ENTRY_CREATE, temp);
+        event(StandardWatchEventKinds.ENTRY_MODIFY, temp);
+        event(StandardWatchEventKinds.ENTRY_DELETE, temp);
+
+        Thread.sleep(QUIET_MS * 4);
+        verifyNoInteractions(handler);
+    }
+
+    @Test
+    void fileReplacedInPlaceIsNotReported() throws Exception {
+        start();
+        Path replaced = book("Author/book.epub");
+
+        event(StandardWatchEventKinds.ENTRY_DELETE, replaced);
+        event(StandardWatchEventKinds.ENTRY_CREATE, replaced);
+
+        Thread.sleep(QUIET_MS * 4);
+        verifyNoInteractions(handler);
+    }
+
+    @Test
+    void renameInOneFolderRemovesTheOldPathBeforeAddingTheNew() throws IOException {
+        start();
+        Path renamed = book("Author/new name.epub");
+        Path old = renamed.resolveSibling("old name.epub");
+
+        event(StandardWatchEventKinds.ENTRY_DELETE, old);
+        event(StandardWatchEventKinds.ENTRY_CREATE, renamed);
+
+        Map<Path, String> created = Map.of(renamed, FileFingerprint.generateHash(renamed));
+        verify(handler, timeout(WAIT_MS)).handleNewBookFiles(LIBRARY_ID, created);
+        InOrder order = inOrder(handler);
+        order.verify(handler).handleDeletedBookFiles(LIBRARY_ID, List.of(old));
+        order.verify(handler).handleNewBookFiles(LIBRARY_ID, created);
+    }
+
+    @Test
+    void batchIsHeldUntilItsFolderHasBeenQuiet() throws Exception {
+        start();
+        Path copying = book("Author/large.pdf");
+
+        event(StandardWatchEventKinds.ENTRY_CREATE, copying);
+        long until = System.nanoTime() + QUIET_MS * 3_000_000;
+        while (System.nanoTime() < until) {
+            event(StandardWatchEventKinds.ENTRY_MODIFY, copying);
+            Thread.sleep(QUIET_MS / 4);
+        }
+        verify(handler, never()).handleNewBookFiles(anyLong(), anyMap());
+
+        verify(handler, timeout(WAIT_MS)).handleNewBookFiles(eq(LIBRARY_ID), argThat(hashes -> hashes.containsKey(copying)));
+    }
+
+    @Test
+    void largeFolderIsSplitIntoBatchesOfTheConfiguredSize() throws IOException {
+        appProperties.getWatcher().setMaxBatchSize(2);
+        start();
+        for (int i = 0; i < 5; i++) {
+            event(StandardWatchEventKinds.ENTRY_CREATE, book("Series/volume " + i + ".cbz"));
+        }
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<Path, String>> batches = ArgumentCaptor.forClass(Map.class);
+        verify(handler, timeout(WAIT_MS).times(3)).handleNewBookFiles(eq(LIBRARY_ID), batches.capture());
+        assertThat(batches.getAllValues()).extracting(Map::size).containsExactlyInAnyOrder(2, 2, 1);
+    }
+
+    @Test
+    void failedBatchIsRetriedPerFileAndDoesNotBlockOtherBatches() throws IOException {
+        start();
+        Path broken = book("Broken/bad.epub");
+        Path fine = book("Broken/good.epub");
+        Path elsewhere = book("Other/book.epub");
+        doThrow(new IllegalStateException("Deadlock")).when(handler)
+                .handleNewBookFiles(eq(LIBRARY_ID), argThat(hashes -> hashes != null && hashes.containsKey(broken)));
+        doThrow(new IllegalStateException("Corrupt file")).when(handler)
+                .handleNewBookFile(eq(LIBRARY_ID), eq(broken), any());
+
+        event(StandardWatchEventKinds.ENTRY_CREATE, broken);
+        event(StandardWatchEventKinds.ENTRY_CREATE, fine);
+        event(StandardWatchEventKinds.ENTRY_CREATE, elsewhere);
+
+        verify(handler, timeout(WAIT_MS)).handleNewBookFile(LIBRARY_ID, fine, FileFingerprint.generateHash(fine));
+        verify(handler, timeout(WAIT_MS)).handleNewBookFiles(LIBRARY_ID, Map.of(elsewhere, FileFingerprint.generateHash(elsewhere)));
+    }
+
+    @Test
+    void failingBatchDoesNotStopLaterBatchesOfTheSameFolder() throws IOException {
+        start();
+        Path gone = root.resolve("Author/gone.epub");
+        doThrow(new IllegalStateException("Connection reset")).when(handler).handleDeletedBookFiles(LIBRARY_ID, List.of(gone));
+
+        event(StandardWatchEventKinds.ENTRY_DELETE, gone);
+        verify(handler, timeout(WAIT_MS)).handleDeletedBookFiles(LIBRARY_ID, List.of(gone));
+        Path added = book("Author/added.epub");
+        event(StandardWatchEventKinds.ENTRY_CREATE, added);
+
+        verify(handler, timeout(WAIT_MS)).handleNewBookFiles(LIBRARY_ID, Map.of(added, FileFingerprint.generateHash(added)));
+    }
+
+    private void start() {
+        processor = new LibraryFileEventProcessor(libraryRepository, handler, mock(WatchSuppressionService.class), appProperties, new SimpleMeterRegistry());
+        processor.init();
+    }
+
+    private void event(WatchEvent.Kind<?> kind, Path path) {
+        processor.processFile(kind, LIBRARY_ID, root.toString(), path.toString());
+    }
+
+    private Path book(String relativePath) throws IOException {
+        Path file = root.resolve(relativePath);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, relativePath);
+    }
+}
@@ -0,0 +1,40 @@
+package com.adityachandel.booklore.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class Hash128IndexTest {
+
+    @Test
+    void storesAndRemovesEntriesAcrossResizes() {
+        Hash128Index index = new Hash128Index(4);
+        for (long id = 1; id <= 5000; id++) {
+            index.put(hash(id), id);
+        }
+        assertThat(index.size()).isEqualTo(5000);
+        assertThat(index.get(hash(1234))).isEqualTo(1234L);
+        assertThat(index.get(hash(1234).toUpperCase())).isEqualTo(1234L);
+
+        assertThat(index.remove(hash(1234), 99L)).isFalse();
+        assertThat(index.remove(hash(1234), 1234L)).isTrue();
+        assertThat(index.get(hash(1234))).isZero();
+        assertThat(index.get(hash(4321))).isEqualTo(4321L);
+
+        index.put(hash(1234), 7L);
+        assertThat(index.get(hash(1234))).isEqualTo(7L);
+        assertThat(index.size()).isEqualTo(5000);
+    }
+
+    @Test
+    void onlyAcceptsFullFingerprints() {
+        assertThat(Hash128Index.isIndexable("0123456789abcdef0123456789ABCDEF")).isTrue();
+        assertThat(Hash128Index.isIndexable("0123456789abcdef")).isFalse();
+        assertThat(Hash128Index.isIndexable("0123456789abcdef0123456789abcdeg")).isFalse();
+        assertThat(Hash128Index.isIndexable(null)).isFalse();
+    }
+
+    private static String hash(long id) {
+        return String.format("%016x%016x", id * 31, Long.reverse(id));
+    }
+}
@@ -0,0 +1,54 @@
+package com.adityachandel.booklore.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WriteBehindBufferTest {
+
+    private final WriteBehindBuffer<String, List<Integer>> buffer = new WriteBehindBuffer<>((older, newer) -> {
+        List<Integer> combined = new ArrayList<>(older);
+        combined.addAll(newer);
+        return combined;
+    });
+
+    @Test
+    void coalescesUpdatesPerKey() {
+        buffer.put("a", List.of(1));
+        buffer.put("a", List.of(2));
+        buffer.put("b", List.of(3));
+
+        assertThat(buffer.drain()).isEqualTo(Map.of("a", List.of(1, 2), "b", List.of(3)));
+    }
+
+    @Test
+    void keepsDrainedValuesReadableUntilCompleted() {
+        buffer.put("a", List.of(1));
+        Map<String, List<Integer>> batch = buffer.drain();
+        buffer.put("a", List.of(2));
+
+        assertThat(buffer.get("a")).contains(List.of(1, 2));
+
+        buffer.complete(batch);
+        assertThat(buffer.get("a")).contains(List.of(2));
+        assertThat(buffer.drain()).isEqualTo(Map.of("a", List.of(2)));
+        assertThat(buffer.get("b")).isEmpty();
+    }
+
+    @Test
+    void requeuedValueGoesBeforeNewerUpdates() {
+        buffer.put("a", List.of(1));
+        Map<String, List<Integer>> batch = buffer.drain();
+        buffer.put("a", List.of(2));
+
+        buffer.requeue("a", batch.get("a"));
+        buffer.complete(batch);
+
+        assertThat(buffer.get("a")).contains(List.of(1, 2));
+        assertThat(buffer.drain()).isEqualTo(Map.of("a", List.of(1, 2)));
+    }
+}
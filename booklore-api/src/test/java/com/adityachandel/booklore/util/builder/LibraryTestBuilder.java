@@ -3,6 +3,7 @@ package com.adityachandel.booklore.util.builder;
 import com.adityachandel.booklore.mapper.BookMapper;
 import com.adityachandel.booklore.mapper.BookMapperImpl;
 import com.adityachandel.booklore.model.dto.Book;
+import com.adityachandel.booklore.model.dto.FilePathEntry;
 import com.adityachandel.booklore.model.dto.settings.LibraryFile;
 import com.adityachandel.booklore.model.entity.*;
 import com.adityachandel.booklore.model.enums.AdditionalFileType;
@@ -24,11 +25,17 @@ import java.nio.file.Path;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.lenient;
@@ -81,14 +88,23 @@ public class LibraryTestBuilder {
                     Long bookId = invocation.getArgument(0);
                     return getBookById(bookId);
                 });
-        when(bookRepositoryMock.findAllByLibraryPathIdAndFileSubPathStartingWith(anyLong(), any(String.class)))
+        when(bookRepositoryMock.findFilePathsByLibraryPathIds(anyCollection()))
                 .thenAnswer(invocation -> {
-                    Long libraryPathId = invocation.getArgument(0);
-                    String fileSubPath = invocation.getArgument(1);
+                    Collection<Long> libraryPathIds = invocation.getArgument(0);
                     return bookRepository.values()
                             .stream()
-                            .filter(book -> book.getLibraryPath().getId().equals(libraryPathId) &&
-                                    book.getFileSubPath().startsWith(fileSubPath))
+                            .filter(book -> libraryPathIds.contains(book.getLibraryPath().getId()))
+                            .sorted(Comparator.comparing(BookEntity::getId))
+                            .map(book -> new FilePathEntry(book.getId(), book.getLibraryPath().getId(), book.getFileSubPath(), book.getFileName()))
+                            .toList();
+                });
+        lenient().when(bookAdditionalFileRepositoryMock.findFilePathsByLibraryPathIds(anyCollection()))
+                .thenAnswer(invocation -> {
+                    Collection<Long> libraryPathIds = invocation.getArgument(0);
+                    return bookAdditionalFileRepository.values()
+                            .stream()
+                            .filter(file -> libraryPathIds.contains(file.getBook().getLibraryPath().getId()))
+                            .map(file -> new FilePathEntry(file.getId(), file.getBook().getLibraryPath().getId(), file.getFileSubPath(), file.getFileName()))
                             .toList();
                 });
 
@@ -99,6 +115,11 @@ public class LibraryTestBuilder {
                     BookAdditionalFileEntity additionalFile = invocation.getArgument(0);
                     return saveBookAdditionalFile(additionalFile);
                 });
+        lenient().when(bookAdditionalFileRepositoryMock.saveAll(anyIterable()))
+                .thenAnswer(invocation -> {
+                    Iterable<BookAdditionalFileEntity> additionalFiles = invocation.getArgument(0);
+                    return saveBookAdditionalFiles(additionalFiles);
+                });
     }
 
     /**
@@ -330,6 +351,25 @@ public class LibraryTestBuilder {
         return additionalFile;
     }
 
+    private @NotNull List<BookAdditionalFileEntity> saveBookAdditionalFiles(Iterable<BookAdditionalFileEntity> additionalFiles) {
+        // Like a rolled back batch insert: nothing is stored unless every file can be
+        List<BookAdditionalFileEntity> batch = new ArrayList<>();
+        additionalFiles.forEach(batch::add);
+        Set<String> batchHashes = new HashSet<>();
+        for (BookAdditionalFileEntity additionalFile : batch) {
+            if (additionalFile.getAdditionalFileType() == AdditionalFileType.ALTERNATIVE_FORMAT &&
+                    (!batchHashes.add(additionalFile.getCurrentHash()) ||
+                            bookAdditionalFileRepository.values()
+                                    .stream()
+                                    .anyMatch(existingFile -> existingFile.getCurrentHash()
+                                            .equals(additionalFile.getCurrentHash())))) {
+                throw new IllegalArgumentException("File with the same hash already exists: " + additionalFile.getCurrentHash());
+            }
+        }
+        batch.forEach(this::saveBookAdditionalFile);
+        return batch;
+    }
+
     private static BookFileType getBookFileType(String fileName) {
         var extension = BookFileExtension.fromFileName(fileName);
         return extension.map(BookFileExtension::getType).orElse(null);
@@ -0,0 +1,143 @@
+package com.adityachandel.booklore.util.epub;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EpubContainerTest {
+
+    private static final String CONTAINER = """
+            <?xml version="1.0"?>
+            <container version="1.0" xmlns="urn:oasis:names:tc:opendocument:xmlns:container">
+              <rootfiles>
+                <rootfile full-path="OEBPS/content.opf" media-type="application/oebps-package+xml"/>
+              </rootfiles>
+            </container>
+            """;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void resolvesEpub3CoverImageProperty() throws IOException {
+        Path epub = writeEpub(Map.of(
+                "OEBPS/content.opf", opf("""
+                        <item id="c" href="images/front.jpg" media-type="image/jpeg" properties="cover-image"/>
+                        <item id="other-cover" href="images/cover.png" media-type="image/png"/>
+                        """, ""),
+                "OEBPS/images/front.jpg", "front",
+                "OEBPS/images/cover.png", "other"));
+
+        try (EpubContainer container = EpubContainer.open(epub.toFile())) {
+            assertThat(container.getOpfPath()).isEqualTo("OEBPS/content.opf");
+            assertThat(new String(container.readCover(), StandardCharsets.UTF_8)).isEqualTo("front");
+        }
+    }
+
+    @Test
+    void resolvesEpub2CoverMetaWithRelativeAndEncodedHref() throws IOException {
+        Path epub = writeEpub(Map.of(
+                "OEBPS/content.opf", opf("""
+                        <item id="cover-img" href="../Images/My%20Cover.jpg" media-type="image/jpeg"/>
+                        """, "<meta name=\"cover\" content=\"cover-img\"/>"),
+                "Images/My Cover.jpg", "epub2"));
+
+        try (EpubContainer container = EpubContainer.open(epub.toFile())) {
+            assertThat(container.findCover()).get().extracting(EpubContainer.ManifestItem::href).isEqualTo("Images/My Cover.jpg");
+            assertThat(new String(container.readCover(), StandardCharsets.UTF_8)).isEqualTo("epub2");
+        }
+    }
+
+    @Test
+    void fallsBackToImageNamedCoverAndToleratesCaseMismatch() throws IOException {
+        Path epub = writeEpub(Map.of(
+                "OEBPS/content.opf", opf("""
+                        <item id="page" href="cover.xhtml" media-type="application/xhtml+xml"/>
+                        <item id="img" href="Cover.JPG" media-type="image/jpeg"/>
+                        """, ""),
+                "OEBPS/cover.jpg", "fallback"));
+
+        try (EpubContainer container = EpubContainer.open(epub.toFile())) {
+            assertThat(new String(container.readCover(), StandardCharsets.UTF_8)).isEqualTo("fallback");
+        }
+    }
+
+    @Test
+    void opensOpfForMetadataParsing() throws IOException {
+        Path epub = writeEpub(Map.of("OEBPS/content.opf", opf("", "<dc:title>Dune</dc:title>")));
+
+        try (EpubContainer container = EpubContainer.open(epub.toFile());
+             InputStream opf = container.openOpf()) {
+            assertThat(new String(opf.readAllBytes(), StandardCharsets.UTF_8)).contains("<dc:title>Dune</dc:title>");
+            assertThat(container.readCover()).isNull();
+        }
+    }
+
+    @Test
+    void opensOnCallerOwnedChannelWithoutClosingIt() throws IOException {
+        Path epub = writeEpub(Map.of(
+                "OEBPS/content.opf", opf("<item id=\"cover\" href=\"cover.png\" media-type=\"image/png\"/>", ""),
+                "OEBPS/cover.png", "shared"));
+
+        try (FileChannel channel = FileChannel.open(epub, StandardOpenOption.READ)) {
+            try (EpubContainer container = EpubContainer.open(channel, "book.epub")) {
+                assertThat(new String(container.readCover(), StandardCharsets.UTF_8)).isEqualTo("shared");
+            }
+            assertThat(channel.isOpen()).isTrue();
+        }
+    }
+
+    @Test
+    void rejectsArchiveWithoutContainer() throws IOException {
+        Path epub = tempDir.resolve("broken.epub");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(epub))) {
+            zip.putNextEntry(new ZipEntry("mimetype"));
+            zip.write("application/epub+zip".getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertThatThrownBy(() -> EpubContainer.open(epub.toFile())).isInstanceOf(IOException.class);
+    }
+
+    private static String opf(String manifest, String metadata) {
+        return """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <package xmlns="http://www.idpf.org/2007/opf" xmlns:dc="http://purl.org/dc/elements/1.1/" version="3.0">
+                  <metadata>%s</metadata>
+                  <manifest>%s</manifest>
+                  <spine/>
+                </package>
+                """.formatted(metadata, manifest);
+    }
+
+    private Path writeEpub(Map<String, String> entries) throws IOException {
+        Map<String, String> all = new LinkedHashMap<>();
+        all.put("mimetype", "application/epub+zip");
+        all.put("META-INF/container.xml", CONTAINER);
+        all.putAll(entries);
+
+        Path epub = Files.createTempFile(tempDir, "book", ".epub");
+        try (OutputStream out = Files.newOutputStream(epub); ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, String> entry : all.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return epub;
+    }
+}
@@ -0,0 +1,89 @@
+package com.adityachandel.booklore.util.epub;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EpubRewriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void replacesOnlyGivenEntriesAndCopiesTheRestRaw() throws IOException {
+        Path epub = tempDir.resolve("book.epub");
+        try (OutputStream out = Files.newOutputStream(epub); ZipOutputStream zip = new ZipOutputStream(out)) {
+            // Deliberately compressed and not first, as some tools produce it.
+            put(zip, "META-INF/container.xml", "<container/>");
+            put(zip, "mimetype", "application/epub+zip");
+            put(zip, "OEBPS/content.opf", "<package>old</package>");
+            put(zip, "OEBPS/chapter1.xhtml", "<html>" + "text ".repeat(1000) + "</html>");
+        }
+        byte[] chapterRawBefore = rawBytes(epub, "OEBPS/chapter1.xhtml");
+
+        EpubRewriter.rewrite(epub, Map.of(
+                "OEBPS/content.opf", "<package>new</package>".getBytes(StandardCharsets.UTF_8),
+                "OEBPS/images/cover.jpg", new byte[]{1, 2, 3}));
+
+        try (ZipFile zip = ZipFile.builder().setPath(epub).get()) {
+            List<ZipArchiveEntry> entries = Collections.list(zip.getEntriesInPhysicalOrder());
+            assertThat(entries).extracting(ZipArchiveEntry::getName).containsExactly(
+                    "mimetype", "META-INF/container.xml", "OEBPS/content.opf", "OEBPS/chapter1.xhtml", "OEBPS/images/cover.jpg");
+            assertThat(entries.getFirst().getMethod()).isEqualTo(ZipArchiveEntry.STORED);
+            assertThat(read(zip, "mimetype")).isEqualTo("application/epub+zip");
+            assertThat(read(zip, "OEBPS/content.opf")).isEqualTo("<package>new</package>");
+        }
+        assertThat(rawBytes(epub, "OEBPS/chapter1.xhtml")).isEqualTo(chapterRawBefore);
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(epub);
+        }
+    }
+
+    @Test
+    void leavesOriginalUntouchedWhenSourceIsNotAnArchive() throws IOException {
+        Path epub = tempDir.resolve("broken.epub");
+        Files.writeString(epub, "not a zip");
+
+        assertThatThrownBy(() -> EpubRewriter.rewrite(epub, Map.of("a", new byte[0]))).isInstanceOf(IOException.class);
+
+        assertThat(Files.readString(epub)).isEqualTo("not a zip");
+        try (var files = Files.list(tempDir)) {
+            assertThat(files).containsExactly(epub);
+        }
+    }
+
+    private static void put(ZipOutputStream zip, String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        zip.write(content.getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+    }
+
+    private static String read(ZipFile zip, String name) throws IOException {
+        try (InputStream in = zip.getInputStream(zip.getEntry(name))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static byte[] rawBytes(Path epub, String name) throws IOException {
+        try (ZipFile zip = ZipFile.builder().setPath(epub).get();
+             InputStream in = zip.getRawInputStream(zip.getEntry(name))) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -9,7 +9,7 @@ import {TableModule} from 'primeng/table';
 import {Step, StepList, StepPanel, StepPanels, Stepper} from 'primeng/stepper';
 import {FormsModule} from '@angular/forms';
 import {InputText} from 'primeng/inputtext';
-import {Library, LibraryScanMode, BookFileType} from '../../model/library.model';
+import {Library, LibraryMonitorMode, LibraryScanMode, BookFileType} from '../../model/library.model';
 import {ToggleSwitch} from 'primeng/toggleswitch';
 import {Tooltip} from 'primeng/tooltip';
 import {IconPickerService} from '../../../utilities/services/icon-picker.service';
@@ -33,6 +33,7 @@ export class LibraryCreatorComponent implements OnInit {
   directoryPickerDialogRef!: DynamicDialogRef<DirectoryPickerComponent>;
   watch: boolean = false;
   scanMode: LibraryScanMode = 'FILE_AS_BOOK';
+  monitorMode: LibraryMonitorMode = 'NATIVE';
   defaultBookFormat: BookFileType | undefined = undefined;
 
   readonly scanModeOptions = [
@@ -40,6 +41,11 @@ export class LibraryCreatorComponent implements OnInit {
     {label: 'Each folder is a book with extras', value: 'FOLDER_AS_BOOK'}
   ];
 
+  readonly monitorModeOptions = [
+    {label: 'File system events', value: 'NATIVE'},
+    {label: 'Periodic polling', value: 'POLL'}
+  ];
+
   readonly bookFormatOptions = [
     {label: 'None', value: undefined},
     {label: 'EPUB', value: 'EPUB'},
@@ -61,11 +67,12 @@ export class LibraryCreatorComponent implements OnInit {
       this.mode = data.mode;
       this.library = this.libraryService.findLibraryById(data.libraryId);
       if (this.library) {
-        const {name, icon, paths, watch, scanMode, defaultBookFormat} = this.library;
+        const {name, icon, paths, watch, monitorMode, scanMode, defaultBookFormat} = this.library;
         this.chosenLibraryName = name;
         this.editModeLibraryName = name;
         this.selectedIcon = `pi pi-${icon}`;
         this.watch = watch;
+        this.monitorMode = monitorMode || 'NATIVE';
         this.scanMode = scanMode || 'FILE_AS_BOOK';
         this.defaultBookFormat = defaultBookFormat || undefined;
         this.folders = paths.map(path => path.path);
@@ -141,6 +148,7 @@ export class LibraryCreatorComponent implements OnInit {
         icon: this.selectedIcon?.replace('pi pi-', '') || 'heart',
         paths: this.folders.map(folder => ({path: folder})),
         watch: this.watch,
+        monitorMode: this.monitorMode,
         scanMode: this.scanMode,
         defaultBookFormat: this.defaultBookFormat
       };
@@ -160,6 +168,7 @@ export class LibraryCreatorComponent implements OnInit {
         icon: this.selectedIcon?.replace('pi pi-', '') || 'heart',
         paths: this.folders.map(folder => ({path: folder})),
         watch: this.watch,
+        monitorMode: this.monitorMode,
         scanMode: this.scanMode,
         defaultBookFormat: this.defaultBookFormat
       };
@@ -1,6 +1,7 @@
 import {SortOption} from './sort.model';
 
 export type LibraryScanMode = 'FILE_AS_BOOK' | 'FOLDER_AS_BOOK';
+export type LibraryMonitorMode = 'NATIVE' | 'POLL';
 export type BookFileType = 'PDF' | 'EPUB' | 'CBX';
 
 export interface Library {
@@ -8,6 +9,7 @@ export interface Library {
   name: string;
   icon: string;
   watch: boolean;
+  monitorMode?: LibraryMonitorMode;
   fileNamingPattern?: string;
   sort?: SortOption;
   paths: LibraryPath[];